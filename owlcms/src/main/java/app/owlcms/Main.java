@@ -9,8 +9,10 @@ package app.owlcms;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.EnumSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.beanutils.converters.DateConverter;
@@ -19,7 +21,10 @@ import org.slf4j.bridge.SLF4JBridgeHandler;
 
 import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.agegroup.AgeGroupRepository;
+import app.owlcms.data.athlete.AthleteWriteBehind;
+import app.owlcms.data.athlete.SinclairCoefficients;
 import app.owlcms.data.category.AgeDivision;
+import app.owlcms.data.category.RobiCategories;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.competition.CompetitionRepository;
 import app.owlcms.data.config.Config;
@@ -27,10 +32,14 @@ import app.owlcms.data.config.ConfigRepository;
 import app.owlcms.data.jpa.DemoData;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.data.jpa.ProdData;
+import app.owlcms.fieldofplay.FOPJournal;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.EmbeddedJetty;
 import app.owlcms.init.InitialData;
 import app.owlcms.init.OwlcmsFactory;
+import app.owlcms.init.StartupPipeline;
+import app.owlcms.metrics.FlightEvents;
+import app.owlcms.metrics.Metrics;
 import app.owlcms.utils.ResourceWalker;
 import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Logger;
@@ -54,6 +63,8 @@ public class Main {
     protected static String productionMode;
 
     private static InitialData initialData;
+    private static StartupPipeline startup;
+    private static Locale startupLocale;
 
     /**
      * The main method.
@@ -70,6 +81,10 @@ public class Main {
         } finally {
             tearDown();
         }
+        if (StartupUtils.getBooleanParam("exitAfterStartup")) {
+            // timers and caches may still have threads running
+            System.exit(0);
+        }
     }
 
     /**
@@ -105,32 +120,69 @@ public class Main {
         ConvertUtils.register(new DateConverter(null), java.util.Date.class);
         ConvertUtils.register(new DateConverter(null), java.sql.Date.class);
 
+        // Vaadin configs
+        System.setProperty("vaadin.i18n.provider", Translator.class.getName());
+
+        // data initialization proceeds while the web server starts
+        startInitData();
         return;
     }
 
+    /**
+     * @return the duration in milliseconds of each startup stage, empty until they are all done
+     */
+    public static Map<String, Long> getStartupTimings() {
+        return startup != null ? startup.getTimings() : Collections.emptyMap();
+    }
+
     /**
      * This method is actually called from EmbeddedJetty immediately after starting the server
+     *
+     * Waits for the startup stages to be done; requests are blocked until then.
      */
     public static void initData() {
-        // open jar as filesystem; cannot use /; any resource inside the jar will do
-        // cannot open the same jar twice.
-        ResourceWalker.openFileSystem("/templates");
-
-        // Vaadin configs
-        System.setProperty("vaadin.i18n.provider", Translator.class.getName());
-
-        // setup database
-        JPAService.init(memoryMode, resetMode);
-
-        // read locale from database and overrrde if needed
-        Locale l = overrideDisplayLanguage();
-
-        injectData(initialData, l);
+        if (startup == null) {
+            startInitData();
+        }
+        startup.await();
+    }
 
-        OwlcmsFactory.getDefaultFOP(true);  //initialization, don't push out to browsers
+    /**
+     * Start the data initialization stages.
+     *
+     * Stages run as soon as the stages they depend on are done: the database is opened while the translations and
+     * reference tables are read.
+     */
+    protected static synchronized void startInitData() {
+        if (startup != null) {
+            return;
+        }
+        startup = new StartupPipeline(3)
+                // open jar as filesystem; cannot use /; any resource inside the jar will do
+                // cannot open the same jar twice.
+                .stage("resources", () -> ResourceWalker.openFileSystem("/templates"))
+                .stage("translations", () -> Translator.getAllAvailableLocales())
+                // setup database
+                .stage("database", () -> JPAService.init(memoryMode, resetMode))
+                // Sinclair tables and Robi categories (whose names are translated), also loads the spreadsheet library
+                .stage("reference", () -> {
+                    SinclairCoefficients.menCoefficient();
+                    SinclairCoefficients.getSMMCoefficient(40);
+                    RobiCategories.loadReferenceCategories();
+                }, "translations")
+                // read locale from database and override if needed
+                .stage("locale", () -> startupLocale = overrideDisplayLanguage(), "database", "translations")
+                .stage("data", () -> injectData(initialData, startupLocale), "locale", "resources", "reference")
+                // write results pending from previous run, if write-behind is enabled
+                .stage("writeBehind", () -> AthleteWriteBehind.init(), "data")
+                // initialization, don't push out to browsers
+                .stage("fieldOfPlay", () -> OwlcmsFactory.getDefaultFOP(true), "writeBehind")
+                .start();
     }
 
     protected static void tearDown() {
+        FOPJournal.closeAll();
+        AthleteWriteBehind.shutdown();
         JPAService.close();
     }
 
@@ -273,6 +325,15 @@ public class Main {
     }
 
     private static void startRemoteMonitoring() {
+        Metrics.gauge("owlcms_athlete_writes_pending", "lift card changes journaled and not yet in the database", () -> {
+            AthleteWriteBehind wb = AthleteWriteBehind.getCurrent();
+            return wb != null ? wb.getPendingCount() : 0;
+        });
+        Metrics.gauges("owlcms_startup_stage_milliseconds", "time taken by each startup stage", "stage",
+                Main::getStartupTimings);
+        Metrics.registerMBean();
+        FlightEvents.startRecording();
+
 //        try {
 //            // Get the MBean server for monitoring/controlling the JVM
 //            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
@@ -43,7 +43,7 @@ public class AthleteTimerElement extends TimerElement {
 
     public AthleteTimerElement(Object origin) {
         this.setOrigin(origin);
-        logger.debug("### AthleteTimerElement new {} {}", origin, LoggerUtils.whereFrom());
+        logger.debug("### AthleteTimerElement new {} {}", origin, LoggerUtils.callerLocation());
     }
 
     /**
@@ -121,7 +121,7 @@ public class BreakTimerElement extends TimerElement {
         } else {
             milliseconds = e.isIndefinite() ? null : e.getTimeRemaining();
             uiEventLogger.debug("&&& breakTimer set {} {} {} {}", parentName, formatDuration(milliseconds),
-                    e.isIndefinite(), LoggerUtils.whereFrom());
+                    e.isIndefinite(), LoggerUtils.callerLocation());
         }
         doSetTimer(milliseconds);
     }
@@ -132,7 +132,7 @@ public class BreakTimerElement extends TimerElement {
             return;
         }
         Integer tr = e.isIndefinite() ? null : e.getMillis();
-        uiEventLogger.debug("&&& breakTimer start {} {} {} {}", parentName, tr, e.getOrigin(), LoggerUtils.whereFrom());
+        uiEventLogger.debug("&&& breakTimer start {} {} {} {}", parentName, tr, e.getOrigin(), LoggerUtils.callerLocation());
         doStartTimer(tr, true); // true means "silent".
     }
 
@@ -18,6 +18,7 @@ import com.vaadin.flow.component.polymertemplate.PolymerTemplate;
 import com.vaadin.flow.dom.Element;
 import com.vaadin.flow.templatemodel.TemplateModel;
 
+import app.owlcms.data.athlete.Athlete;
 import app.owlcms.fieldofplay.FOPEvent;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.ui.lifting.UIEventProcessor;
@@ -64,6 +65,9 @@ public class DecisionElement extends PolymerTemplate<DecisionElement.DecisionMod
     protected EventBus uiEventBus;
     protected EventBus fopEventBus;
 
+    private String lastDecision;
+    private FOPEvent.DecisionFullUpdate lastUpdate;
+
     public DecisionElement() {
     }
 
@@ -90,8 +94,21 @@ public class DecisionElement extends PolymerTemplate<DecisionElement.DecisionMod
             logger.debug("master referee update {} ({} {} {})", fop.getCurAthlete(), ref1, ref2, ref3, ref1Time,
                     ref2Time,
                     ref3Time);
-            fopEventBus.post(new FOPEvent.DecisionFullUpdate(origin, fop.getCurAthlete(), ref1, ref2, ref3, ref1Time,
-                    ref2Time, ref3Time));
+            Athlete athlete = fop.getCurAthlete();
+            String decision = (athlete != null ? athlete.getId() + " " + athlete.getAttemptsDone() : "") + " " + ref1
+                    + " " + ref2 + " " + ref3 + " " + ref1Time + " " + ref2Time + " " + ref3Time;
+            FOPEvent.DecisionFullUpdate update;
+            if (decision.equals(lastDecision)) {
+                // sent again by the browser: post the original event, which the event bus recognizes
+                update = lastUpdate;
+            } else {
+                update = new FOPEvent.DecisionFullUpdate(origin, athlete, ref1, ref2, ref3, ref1Time, ref2Time,
+                        ref3Time);
+                lastDecision = decision;
+                lastUpdate = update;
+            }
+            // the same decision relayed by another device is also rejected by the event bus
+            fopEventBus.post(update);
         });
 
     }
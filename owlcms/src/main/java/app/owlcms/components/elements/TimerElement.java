@@ -264,7 +264,7 @@ public abstract class TimerElement extends PolymerTemplate<TimerElement.TimerMod
 
     private void initTime(Integer milliseconds) {
         if (this instanceof BreakTimerElement) {
-            logger.debug("set time remaining = {} from {} ", formatDuration(milliseconds), LoggerUtils.whereFrom());
+            logger.debug("set time remaining = {} from {} ", formatDuration(milliseconds), LoggerUtils.callerLocation());
         }
         setIndefinite(milliseconds == null);
         setMsRemaining(milliseconds);
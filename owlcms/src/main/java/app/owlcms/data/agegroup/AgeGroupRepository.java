@@ -26,6 +26,7 @@ import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.category.Category;
+import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.utils.LoggerUtils;
 import app.owlcms.utils.ResourceWalker;
@@ -123,13 +124,14 @@ public class AgeGroupRepository {
         } catch (FileNotFoundException e1) {
             throw new RuntimeException(e1);
         }
+        CategoryRepository.resetIndex();
 
     }
 
     public static void reloadDefinitions(String localizedFileName) {
         JPAService.runInTransaction(em -> {
             try {
-                Query upd = em.createQuery("update Athlete set category = null");
+                Query upd = em.createQuery("update Athlete set category = null, version = version + 1");
                 upd.executeUpdate();
                 upd = em.createQuery("delete from Category");
                 upd.executeUpdate();
@@ -141,7 +143,10 @@ public class AgeGroupRepository {
             }
             return null;
         });
+        // athletes lost their category in a bulk update; fields of play must reload their group.
+        AthleteRepository.markAllChanged();
         AgeGroupDefinitionReader.doInsertAgeGroup(null, "/config/" + localizedFileName);
+        CategoryRepository.resetIndex();
         AthleteRepository.resetCategories();
     }
 
@@ -185,6 +190,9 @@ public class AgeGroupRepository {
             }
             return null;
         });
+        CategoryRepository.resetIndex();
+        // athletes of the removed categories were changed without being recorded
+        AthleteRepository.markAllChanged();
 
         return nAgeGroup;
     }
@@ -318,6 +326,7 @@ public class AgeGroupRepository {
             }
             return null;
         });
+        CategoryRepository.resetIndex();
     }
 
 }
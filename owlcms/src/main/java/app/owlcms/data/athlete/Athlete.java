@@ -24,9 +24,13 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.PostLoad;
+import javax.persistence.Table;
 import javax.persistence.Transient;
+import javax.persistence.Version;
 
 import org.slf4j.LoggerFactory;
 
@@ -69,6 +73,12 @@ import ch.qos.logback.classic.Logger;
 //must be listed in app.owlcms.data.jpa.JPAService.entityClassNames()
 @Entity
 @Cacheable
+@Table(indexes = {
+        // group lists, weighed-in or not
+        @Index(name = "ix_athlete_group_bw", columnList = "fk_group,bodyWeight"),
+        @Index(name = "ix_athlete_categ", columnList = "fk_categ"),
+        // also lower(lastName) on PostgreSQL, see SchemaMigration
+        @Index(name = "ix_athlete_lastname", columnList = "lastName") })
 public class Athlete {
     private final static Logger logger = (Logger) LoggerFactory.getLogger(Athlete.class);
     private static final int YEAR = LocalDateTime.now().getYear();
@@ -208,7 +218,7 @@ public class Athlete {
         int _20kgRuleValue = getStartingTotalMargin(a.getCategory(), qualTotal);
 
         logger.debug("{} validate20kgRule {} {} {}, {}, {}, {}", a, snatch1Request, cleanJerk1Request, curStartingTotal,
-                qualTotal, delta, LoggerUtils.whereFrom());
+                qualTotal, delta, LoggerUtils.callerLocation());
 
         if (snatch1Request == 0 && cleanJerk1Request == 0) {
             logger.debug("not checking starting total - no declarations");
@@ -275,9 +285,13 @@ public class Athlete {
     @Transient
     private final Level NORMAL_LEVEL = Level.INFO;
 
-//    /** used internally by JPA */
-//    @Version
-//    private Long version;
+    /** used internally by JPA */
+    @Version
+    private Long version;
+
+    /** lift card values as last read from or written to the database, for merging concurrent edits */
+    @Transient
+    private LiftValues liftBase;
 
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -1398,6 +1412,13 @@ public class Athlete {
         return (category != null ? category.getName() : "");
     }
 
+    /**
+     * @return the lift card values as last read from or written to the database, null for a new athlete
+     */
+    public LiftValues getLiftBase() {
+        return liftBase;
+    }
+
     /**
      * Gets the lot number.
      *
@@ -2158,6 +2179,13 @@ public class Athlete {
         return totalRankYth;
     }
 
+    /**
+     * @return the version used by JPA for optimistic locking
+     */
+    public Long getVersion() {
+        return version;
+    }
+
     /**
      * Gets the year of birth.
      *
@@ -2343,6 +2371,14 @@ public class Athlete {
         logger.setLevel(NORMAL_LEVEL);
     }
 
+    /**
+     * Remember the lift card values read from the database.
+     */
+    @PostLoad
+    public void resetLiftBase() {
+        liftBase = LiftValues.of(this, 0L);
+    }
+
     /**
      * Sets the attempts done.
      *
@@ -2841,6 +2877,10 @@ public class Athlete {
      * register/unregister itself.
      */
 
+    public void setLiftBase(LiftValues liftBase) {
+        this.liftBase = liftBase;
+    }
+
     /**
      * Sets the lift order rank.
      *
@@ -3381,6 +3421,10 @@ public class Athlete {
         validation = b;
     }
 
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     /**
      * Sets the year of birth.
      *
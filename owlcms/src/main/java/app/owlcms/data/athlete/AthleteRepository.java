@@ -6,21 +6,37 @@
  */
 package app.owlcms.data.athlete;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
 import javax.persistence.Query;
 
+import org.hibernate.StaleStateException;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.category.AgeDivision;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.jpa.QueryRegistry;
+import app.owlcms.metrics.Metrics;
+import app.owlcms.metrics.Timer;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
@@ -29,11 +45,122 @@ import ch.qos.logback.classic.Logger;
  */
 public class AthleteRepository {
 
+    /**
+     * Maximum number of ids in an <code>in</code> clause
+     */
+    private static final int IN_LIMIT = 500;
+
+    /**
+     * Joins used by the sort expressions; distinct from the filtering joins, and outer so athletes without group or
+     * category are kept.
+     */
+    private static final String SORT_JOINS = " left join a.group sg left join a.category sc left join sc.ageGroup sag";
+
+    /**
+     * Sortable properties and the corresponding JPQL expressions. Besides the athlete properties, "weighInTime" sorts
+     * on the group weigh-in time. Related entities sort the same way as their compareTo methods.
+     */
+    private static final Map<String, List<String>> SORT_PATHS = new HashMap<>();
+    static {
+        for (String property : List.of("lotNumber", "startNumber", "lastName", "firstName", "team", "gender",
+                "bodyWeight", "membership", "snatch1Declaration", "cleanJerk1Declaration", "qualifyingTotal",
+                "eligibleForIndividualRanking", "eligibleForTeamRanking")) {
+            SORT_PATHS.put(property, List.of("a." + property));
+        }
+        SORT_PATHS.put("yearOfBirth", List.of("a.fullBirthDate"));
+        SORT_PATHS.put("fullBirthDate", List.of("a.fullBirthDate"));
+        SORT_PATHS.put("group", List.of("sg.name"));
+        SORT_PATHS.put("weighInTime", List.of("sg.weighInTime"));
+        SORT_PATHS.put("ageGroup", List.of("sag.gender", "sag.minAge", "sag.maxAge"));
+        SORT_PATHS.put("category", List.of("sc.gender", "sag.gender", "sag.minAge", "sag.maxAge", "sc.maximumWeight"));
+    }
+
+    /**
+     * Filtering conditions present in a query, see {@link #filterShape}
+     */
+    private static final int LAST_NAME = 1;
+    private static final int GROUP = 2;
+    private static final int CATEGORY = 4;
+    private static final int AGE_GROUP = 8;
+    private static final int AGE_DIVISION = 16;
+    private static final int GENDER = 32;
+    private static final int WEIGHED_IN = 64;
+    private static final int NOT_WEIGHED_IN = 128;
+
+    /**
+     * Filtering queries, compiled once for each combination of filters and sort order.
+     */
+    private static final QueryRegistry filterQueries = new QueryRegistry("Athlete");
+
+    /**
+     * Sequence number of the last change to each athlete, so that the fields of play can fetch only the athletes
+     * changed since they loaded their group.
+     */
+    private static final Map<Long, Long> changes = new ConcurrentHashMap<>();
+    private static final AtomicLong changeSeq = new AtomicLong();
+    /** sequence number of the last change that did not record the athletes affected */
+    private static volatile long allChangedSeq;
+
     final private static Logger logger = (Logger) LoggerFactory.getLogger(AthleteRepository.class);
     static {
         logger.setLevel(Level.INFO);
     }
 
+    private static final Timer saveTimer = Metrics.timer("owlcms_athlete_save_seconds",
+            "time to save an athlete, including conflict merges");
+
+    /**
+     * Assign start numbers to the weighed-in athletes of a group, in display order. The athletes are updated in JDBC
+     * batches when the transaction is flushed.
+     *
+     * @param group
+     */
+    public static void assignStartNumbers(Group group) {
+        List<Athlete> athletes = JPAService.runInTransaction((em) -> {
+            List<Athlete> currentGroupAthletes = doFindAllByGroupAndWeighIn(em, group, true, (Gender) null);
+            AthleteSorter.displayOrder(currentGroupAthletes);
+            AthleteSorter.assignStartNumbers(currentGroupAthletes);
+            em.flush();
+            return currentGroupAthletes;
+        });
+        for (Athlete a : athletes) {
+            recordChange(a.getId());
+        }
+    }
+
+    /**
+     * Athletes changed through this repository since a given point.
+     *
+     * @param seq a value returned by {@link #getChangeSeq()}
+     * @return the ids of the athletes changed (or deleted) since, or null if athletes were changed without recording
+     *         which ones (bulk operations) and everything must be reloaded
+     */
+    public static Set<Long> changedSince(long seq) {
+        if (allChangedSeq > seq) {
+            return null;
+        }
+        Set<Long> changed = new HashSet<>();
+        for (Map.Entry<Long, Long> e : changes.entrySet()) {
+            if (e.getValue() > seq) {
+                changed.add(e.getKey());
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Clear the start numbers of the athletes in a group.
+     *
+     * @param group
+     */
+    public static void clearStartNumbers(Group group) {
+        JPAService.runInTransaction((em) -> {
+            return em.createQuery("update Athlete a set a.startNumber = 0, a.version = a.version + 1 where a.group = :group")
+                    .setParameter("group", group).executeUpdate();
+        });
+        markAllChanged();
+    }
+
     /**
      * Count filtered.
      *
@@ -71,14 +198,34 @@ public class AthleteRepository {
             Competition.getCurrent().setRankingsInvalid(true);
             return null;
         });
+        recordChange(Athlete.getId());
+    }
+
+    /**
+     * Delete athletes with bulk deletes.
+     *
+     * @param athletes
+     */
+    public static void deleteAll(List<Athlete> athletes) {
+        List<Long> ids = new ArrayList<>(athletes.size());
+        for (Athlete a : athletes) {
+            ids.add(a.getId());
+        }
+        JPAService.runInTransaction(em -> {
+            bulkUpdate(em.createQuery("delete from Athlete a where a.id in :ids"), ids);
+            Competition.getCurrent().setRankingsInvalid(true);
+            return null;
+        });
+        for (Long id : ids) {
+            recordChange(id);
+        }
     }
 
     public static Integer doCountFiltered(String lastName, Group group, Category category, AgeGroup ageGroup,
             AgeDivision ageDivision, Gender gender, Boolean weighedIn, EntityManager em) {
-        String selection = filteringSelection(lastName, group, category, ageGroup, ageDivision, gender, weighedIn);
-        String qlString = "select count(a.id) from Athlete a " + selection;
-        logger.trace("count query = {}", qlString);
-        Query query = em.createQuery(qlString);
+        int shape = filterShape(lastName, group, category, ageGroup, ageDivision, gender, weighedIn);
+        Query query = filterQueries.create(em, "count." + shape,
+                () -> "select count(a.id) from Athlete a" + filteringSelection(shape));
         setFilteringParameters(lastName, group, category, ageGroup, ageDivision, gender, query);
         int i = ((Long) query.getSingleResult()).intValue();
         return i;
@@ -89,30 +236,53 @@ public class AthleteRepository {
         return em.createQuery("select a from Athlete a").getResultList();
     }
 
+    /**
+     * Athletes in a group; the result is kept in the query cache until an athlete is written.
+     */
+    @SuppressWarnings("unchecked")
     public static List<Athlete> doFindAllByGroupAndWeighIn(EntityManager em, Group group, Boolean weighedIn,
             Gender gender) {
-        return doFindFiltered(em, (String) null, group, (Category) null, (AgeGroup) null, (AgeDivision) null, gender,
-                weighedIn,
-                -1, -1);
+        Query query = filteredQuery(em, (String) null, group, (Category) null, (AgeGroup) null, (AgeDivision) null,
+                gender, weighedIn, -1, -1, null);
+        return JPAService.cacheable(query, JPAService.ATHLETE_QUERIES).getResultList();
     }
 
     public static List<Athlete> doFindFiltered(EntityManager em, String lastName, Group group, Category category,
             AgeGroup ageGroup,
             AgeDivision ageDivision, Gender gender, Boolean weighedIn, int offset, int limit) {
-        String qlString = "select a from Athlete a"
-                + filteringSelection(lastName, group, category, ageGroup, ageDivision, gender, weighedIn);
-        logger.debug("find query = {}", qlString);
-        Query query = em.createQuery(qlString);
-        setFilteringParameters(lastName, group, category, ageGroup, ageDivision, gender, query);
-        if (offset >= 0) {
-            query.setFirstResult(offset);
-        }
-        if (limit > 0) {
-            query.setMaxResults(limit);
-        }
-        @SuppressWarnings("unchecked")
-        List<Athlete> resultList = query.getResultList();
-        return resultList;
+        return doFindFiltered(em, lastName, group, category, ageGroup, ageDivision, gender, weighedIn, offset, limit,
+                null);
+    }
+
+    /**
+     * Find filtered, sorted by the database.
+     *
+     * @param sortOrder properties to sort on, in order, with <code>true</code> for ascending. Unknown properties are
+     *                  ignored. <code>null</code> for no sorting.
+     * @see #SORT_PATHS
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Athlete> doFindFiltered(EntityManager em, String lastName, Group group, Category category,
+            AgeGroup ageGroup,
+            AgeDivision ageDivision, Gender gender, Boolean weighedIn, int offset, int limit,
+            Map<String, Boolean> sortOrder) {
+        return filteredQuery(em, lastName, group, category, ageGroup, ageDivision, gender, weighedIn, offset, limit,
+                sortOrder).getResultList();
+    }
+
+
+    /**
+     * Draw lot numbers for all the athletes. Start numbers are cleared, since they are assigned in lot number order.
+     * The athletes are updated in JDBC batches when the transaction is flushed.
+     */
+    public static void drawLots() {
+        JPAService.runInTransaction(em -> {
+            List<Athlete> toBeShuffled = doFindAll(em);
+            AthleteSorter.drawLots(toBeShuffled);
+            em.flush();
+            return null;
+        });
+        markAllChanged();
     }
 
     /**
@@ -120,7 +290,8 @@ public class AthleteRepository {
      */
 
     public static List<Athlete> findAll() {
-        return JPAService.runInTransaction(em -> doFindAll(em));
+        Map<Long, LiftValues> pending = pendingValues();
+        return withPending(pending, JPAService.runInTransaction(em -> doFindAll(em)));
     }
 
     /**
@@ -131,23 +302,48 @@ public class AthleteRepository {
      * @return the list
      */
     public static List<Athlete> findAllByGroupAndWeighIn(Group group, Boolean weighedIn) {
-        List<Athlete> findFiltered = findFiltered((String) null, group, (Category) null, (AgeGroup) null,
-                (AgeDivision) null, (Gender) null, weighedIn,
-                -1, -1);
+        Map<Long, LiftValues> pending = pendingValues();
+        List<Athlete> findFiltered = JPAService
+                .runInTransaction(em -> doFindAllByGroupAndWeighIn(em, group, weighedIn, (Gender) null));
         logger.debug("findFiltered found {}", findFiltered.size());
-        return findFiltered;
+        return withPending(pending, findFiltered);
     }
 
     public static List<Athlete> findAllByGroupAndWeighIn(Group group, Gender gender, boolean weighedIn) {
-        return JPAService.runInTransaction(em -> {
+        Map<Long, LiftValues> pending = pendingValues();
+        return withPending(pending, JPAService.runInTransaction(em -> {
             return doFindAllByGroupAndWeighIn(em, group, weighedIn, gender);
-        });
+        }));
     }
 
     public static Athlete findById(long id) {
-        return JPAService.runInTransaction(em -> {
+        Map<Long, LiftValues> pending = pendingValues();
+        Athlete a = JPAService.runInTransaction(em -> {
             return getById(id, em);
         });
+        if (a != null) {
+            withPending(pending, Collections.singletonList(a));
+        }
+        return a;
+    }
+
+    /**
+     * @param ids athlete ids
+     * @return the athletes that still exist
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Athlete> findByIds(Collection<Long> ids) {
+        Map<Long, LiftValues> pending = pendingValues();
+        List<Long> idList = new ArrayList<>(ids);
+        return withPending(pending, JPAService.runInTransaction(em -> {
+            List<Athlete> found = new ArrayList<>(idList.size());
+            Query query = em.createQuery("select a from Athlete a where a.id in :ids");
+            for (int i = 0; i < idList.size(); i += IN_LIMIT) {
+                query.setParameter("ids", idList.subList(i, Math.min(i + IN_LIMIT, idList.size())));
+                found.addAll(query.getResultList());
+            }
+            return found;
+        }));
     }
 
     /**
@@ -163,10 +359,36 @@ public class AthleteRepository {
      */
     public static List<Athlete> findFiltered(String lastName, Group group, Category category, AgeGroup ageGroup,
             AgeDivision ageDivision, Gender gender, Boolean weighedIn, int offset, int limit) {
-        return JPAService.runInTransaction(em -> {
+        Map<Long, LiftValues> pending = pendingValues();
+        return withPending(pending, JPAService.runInTransaction(em -> {
             return doFindFiltered(em, lastName, group, category, ageGroup, ageDivision, gender, weighedIn, offset,
                     limit);
-        });
+        }));
+    }
+
+    /**
+     * Find filtered, sorted by the database.
+     *
+     * @param sortOrder properties to sort on, in order, with <code>true</code> for ascending
+     * @return the list
+     * @see #doFindFiltered(EntityManager, String, Group, Category, AgeGroup, AgeDivision, Gender, Boolean, int, int,
+     *      Map)
+     */
+    public static List<Athlete> findFiltered(String lastName, Group group, Category category, AgeGroup ageGroup,
+            AgeDivision ageDivision, Gender gender, Boolean weighedIn, int offset, int limit,
+            Map<String, Boolean> sortOrder) {
+        Map<Long, LiftValues> pending = pendingValues();
+        return withPending(pending, JPAService.runInTransaction(em -> {
+            return doFindFiltered(em, lastName, group, category, ageGroup, ageDivision, gender, weighedIn, offset,
+                    limit, sortOrder);
+        }));
+    }
+
+    /**
+     * @return the current change sequence number, to be given later to {@link #changedSince(long)}
+     */
+    public static long getChangeSeq() {
+        return changeSeq.get();
     }
 
     /**
@@ -184,12 +406,43 @@ public class AthleteRepository {
         return (Athlete) query.getResultList().stream().findFirst().orElse(null);
     }
 
+    /**
+     * Give a version to the athletes stored before versioning was used; otherwise JPA would take them for new athletes.
+     */
+    public static void initVersions() {
+        int updated = JPAService.runInTransaction(em -> {
+            return em.createQuery("update Athlete a set a.version = 0 where a.version is null").executeUpdate();
+        });
+        if (updated > 0) {
+            logger.info("initialized version for {} athletes", updated);
+        }
+    }
+
+    /**
+     * Record that athletes were changed without going through this repository, or without knowing which ones.
+     */
+    public static void markAllChanged() {
+        allChangedSeq = changeSeq.incrementAndGet();
+    }
+
     /**
      * Use the athlete bodyweight (or presumed body weight if weigh-in has not taken place) to determine category.
+     *
+     * Categories are computed in memory; the athletes that end up in the same category are then updated with a single
+     * bulk update. Hibernate evicts the athlete cache region after bulk updates, so the second-level cache does not
+     * return stale categories.
      */
     public static void resetCategories() {
+        AthleteWriteBehind.awaitPendingWrites();
         JPAService.runInTransaction(em -> {
-            List<Athlete> athletes = AthleteRepository.doFindAll(em);
+            // athletes are not modified through the entity manager, no need for dirty checking
+            @SuppressWarnings("unchecked")
+            List<Athlete> athletes = em.createQuery("select a from Athlete a")
+                    .setHint("org.hibernate.readOnly", true).getResultList();
+
+            // ids of athletes to be updated, by target category (null key for no category)
+            Map<Category, List<Long>> weighedIn = new HashMap<>();
+            Map<Category, List<Long>> presumed = new HashMap<>();
             for (Athlete a : athletes) {
                 Double weight = a.getBodyWeight();
                 if (weight == null) {
@@ -198,41 +451,200 @@ public class AthleteRepository {
                         weight = presumedBodyWeight - 0.01D;
                         List<Category> categories = CategoryRepository.findByGenderAgeBW(
                                 a.getGender(), a.getAge(), weight);
-                        a.setPresumedCategory(categories.isEmpty() ? null : categories.get(0));
+                        presumed.computeIfAbsent(categories.isEmpty() ? null : categories.get(0),
+                                (c) -> new ArrayList<>()).add(a.getId());
                     }
                 } else {
                     List<Category> categories = CategoryRepository.findByGenderAgeBW(
                             a.getGender(), a.getAge(), weight);
-                    a.setCategory(categories.isEmpty() ? null : categories.get(0));
+                    weighedIn.computeIfAbsent(categories.isEmpty() ? null : categories.get(0),
+                            (c) -> new ArrayList<>()).add(a.getId());
                 }
+            }
 
-                em.merge(a);
+            int updated = 0;
+            for (Map.Entry<Category, List<Long>> e : presumed.entrySet()) {
+                updated += bulkUpdate(categoryUpdate(em, e.getKey(), false), e.getValue());
             }
-            em.flush();
+            for (Map.Entry<Category, List<Long>> e : weighedIn.entrySet()) {
+                // same as Athlete.setCategory: the presumed body weight follows the category
+                updated += bulkUpdate(categoryUpdate(em, e.getKey(), true), e.getValue());
+            }
+            logger.debug("reset categories for {} athletes with {} updates", updated,
+                    presumed.size() + weighedIn.size());
             Competition.getCurrent().setRankingsInvalid(true);
             return null;
         });
+        markAllChanged();
     }
 
     /**
-     * Save an athlete
+     * Save an athlete.
+     *
+     * If another screen saved the athlete since it was read, the lift card values are merged with
+     * {@link LiftValues#merge(LiftValues, LiftValues, LiftValues)} and the save is attempted again: lift card changes
+     * from both screens are kept, the other fields are those being saved. The athlete passed as parameter gets the
+     * merged values and the new version, so it can be saved again.
      *
      * @param athlete the athlete
      * @return the athlete
      */
     public static Athlete save(Athlete athlete) {
-        return JPAService.runInTransaction((em) -> {
-            Competition.getCurrent().setRankingsInvalid(true);
-            return em.merge(athlete);
-        });
+        long start = System.nanoTime();
+        try {
+            return doSave(athlete);
+        } finally {
+            saveTimer.recordSince(start);
+        }
+    }
+
+    private static Athlete doSave(Athlete athlete) {
+        // the whole lift card is written: the values still pending must not overwrite it later
+        AthleteWriteBehind.awaitPendingWrites();
+        Athlete merged;
+        try {
+            merged = JPAService.runInTransaction((em) -> {
+                return em.merge(athlete);
+            });
+        } catch (PersistenceException e) {
+            if (!isConflict(e) || athlete.getId() == null) {
+                throw e;
+            }
+            merged = JPAService.runInTransaction((em) -> {
+                return mergeConflict(em, athlete, e);
+            });
+        }
+        Competition.getCurrent().setRankingsInvalid(true);
+        recordChange(merged.getId());
+        if (athlete.getId() != null) {
+            athlete.setVersion(merged.getVersion());
+            athlete.resetLiftBase();
+            merged.setLiftBase(athlete.getLiftBase());
+        }
+        return merged;
+    }
+
+    /**
+     * Save the lift card of an athlete (declarations, changes, results). The other fields are left as they are in the
+     * database, and lift card values changed meanwhile on another screen are merged. The athlete passed as parameter
+     * gets the merged values and the new version.
+     *
+     * With write-behind enabled, the values are journaled and written to the database later.
+     *
+     * @param athlete the athlete
+     * @see AthleteWriteBehind
+     */
+    public static void saveResults(Athlete athlete) {
+        Competition.getCurrent().setRankingsInvalid(true);
+        AthleteWriteBehind wb = AthleteWriteBehind.getCurrent();
+        if (wb != null) {
+            wb.save(athlete);
+            recordChange(athlete.getId());
+            return;
+        }
+        Athlete current;
+        try {
+            current = JPAService.runInTransaction((em) -> {
+                return updateLiftCard(em, athlete);
+            });
+        } catch (PersistenceException e) {
+            if (!isConflict(e)) {
+                throw e;
+            }
+            // saved on another screen between our read and our write
+            current = JPAService.runInTransaction((em) -> {
+                return updateLiftCard(em, athlete);
+            });
+        }
+        recordChange(athlete.getId());
+        if (current != null) {
+            LiftValues.of(current, 0L).apply(athlete);
+            athlete.setVersion(current.getVersion());
+            athlete.resetLiftBase();
+        }
     }
 
-    private static String filteringJoins(Group group, Category category, AgeGroup ageGroup, AgeDivision ageDivision) {
+    /**
+     * @return a copy of the lift values not yet written by the write-behind, empty if not enabled. Taken before reading,
+     *         so that values written meanwhile are in what is read.
+     */
+    private static Map<Long, LiftValues> pendingValues() {
+        AthleteWriteBehind wb = AthleteWriteBehind.getCurrent();
+        return wb != null ? wb.getPendingValues() : Collections.emptyMap();
+    }
+
+    /**
+     * Apply the lift values not yet written by the write-behind to athletes read, so reads do not wait for the
+     * database write (nor fail because of it).
+     *
+     * @return the athletes
+     */
+    private static List<Athlete> withPending(Map<Long, LiftValues> pending, List<Athlete> athletes) {
+        if (!pending.isEmpty()) {
+            for (Athlete a : athletes) {
+                LiftValues v = pending.get(a.getId());
+                if (v != null) {
+                    v.apply(a);
+                }
+            }
+        }
+        return athletes;
+    }
+
+    /**
+     * Run a bulk statement with an <code>:ids</code> parameter, in chunks of {@link #IN_LIMIT} ids.
+     *
+     * @return number of rows affected
+     */
+    private static int bulkUpdate(Query query, List<Long> ids) {
+        int updated = 0;
+        for (int i = 0; i < ids.size(); i += IN_LIMIT) {
+            query.setParameter("ids", ids.subList(i, Math.min(i + IN_LIMIT, ids.size())));
+            updated += query.executeUpdate();
+        }
+        return updated;
+    }
+
+    private static Query categoryUpdate(EntityManager em, Category category, boolean weighedIn) {
+        if (category == null) {
+            return em.createQuery("update Athlete a set a.category = null, a.version = a.version + 1 where a.id in :ids");
+        } else if (weighedIn) {
+            return em.createQuery(
+                    "update Athlete a set a.category = :category, a.presumedBodyWeight = :presumedBodyWeight, a.version = a.version + 1 where a.id in :ids")
+                    .setParameter("category", category)
+                    .setParameter("presumedBodyWeight", category.getMaximumWeight());
+        } else {
+            return em.createQuery("update Athlete a set a.category = :category, a.version = a.version + 1 where a.id in :ids")
+                    .setParameter("category", category);
+        }
+    }
+
+    private static Query filteredQuery(EntityManager em, String lastName, Group group, Category category,
+            AgeGroup ageGroup,
+            AgeDivision ageDivision, Gender gender, Boolean weighedIn, int offset, int limit,
+            Map<String, Boolean> sortOrder) {
+        int shape = filterShape(lastName, group, category, ageGroup, ageDivision, gender, weighedIn);
+        String orderBy = sortOrder != null ? orderBy(sortOrder) : "";
+        // the order by clause is part of the shape: a new sort order is compiled once, like a new filter
+        Query query = filterQueries.create(em, "find." + shape + orderBy,
+                () -> "select a from Athlete a" + (sortOrder != null ? SORT_JOINS : "") + filteringSelection(shape)
+                        + orderBy);
+        setFilteringParameters(lastName, group, category, ageGroup, ageDivision, gender, query);
+        if (offset >= 0) {
+            query.setFirstResult(offset);
+        }
+        if (limit > 0) {
+            query.setMaxResults(limit);
+        }
+        return query;
+    }
+
+    private static String filteringJoins(int shape) {
         List<String> fromList = new LinkedList<>();
-        if (group != null) {
+        if ((shape & GROUP) != 0) {
             fromList.add("join a.group g"); // group is via a relationship, join on id
         }
-        if (category != null || ageGroup != null || ageDivision != null) {
+        if ((shape & (CATEGORY | AGE_GROUP | AGE_DIVISION)) != 0) {
             fromList.add("join a.category c"); // group is via a relationship, join on id
         }
         if (fromList.size() == 0) {
@@ -242,39 +654,38 @@ public class AthleteRepository {
         }
     }
 
-    private static String filteringSelection(String lastName, Group group, Category category, AgeGroup ageGroup,
-            AgeDivision ageDivision, Gender gender,
-            Boolean weighedIn) {
-        String joins = filteringJoins(group, category, ageGroup, ageDivision);
-        String where = filteringWhere(lastName, group, category, ageGroup, ageDivision, gender, weighedIn);
+    private static String filteringSelection(int shape) {
+        String joins = filteringJoins(shape);
+        String where = filteringWhere(shape);
         String selection = (joins != null ? " " + joins : "") + (where != null ? " where " + where : "");
         return selection;
     }
 
-    private static String filteringWhere(String lastName, Group group, Category category, AgeGroup ageGroup,
-            AgeDivision ageDivision, Gender gender,
-            Boolean weighedIn) {
+    private static String filteringWhere(int shape) {
         List<String> whereList = new LinkedList<>();
-        if (ageGroup != null) {
+        if ((shape & AGE_GROUP) != 0) {
             whereList.add("c.ageGroup = :ageGroup");
         }
-        if (ageDivision != null) {
+        if ((shape & AGE_DIVISION) != 0) {
             whereList.add("c.ageGroup.ageDivision = :division");
         }
-        if (group != null) {
+        if ((shape & GROUP) != 0) {
             whereList.add("g.id = :groupId"); // group is via a relationship, select the joined id.
         }
-        if (category != null) {
+        if ((shape & CATEGORY) != 0) {
             whereList.add("c.id = :categoryId"); // category is via a relationship, select the joined id.
         }
-        if (lastName != null && lastName.trim().length() > 0) {
+        if ((shape & LAST_NAME) != 0) {
             whereList.add("lower(a.lastName) like :lastName");
         }
-        if (gender != null) {
+        if ((shape & GENDER) != 0) {
             whereList.add("a.gender = :gender");
         }
-        if (weighedIn != null) {
-            whereList.add(weighedIn ? "a.bodyWeight > 0" : "(a.bodyWeight is null) OR (a.bodyWeight <= 0.1)");
+        if ((shape & WEIGHED_IN) != 0) {
+            whereList.add("a.bodyWeight > 0");
+        }
+        if ((shape & NOT_WEIGHED_IN) != 0) {
+            whereList.add("((a.bodyWeight is null) OR (a.bodyWeight <= 0.1))");
         }
         if (whereList.size() == 0) {
             return null;
@@ -284,6 +695,100 @@ public class AthleteRepository {
         }
     }
 
+    /**
+     * @return bit mask of the filtering conditions present; the JPQL only depends on this mask
+     */
+    private static int filterShape(String lastName, Group group, Category category, AgeGroup ageGroup,
+            AgeDivision ageDivision, Gender gender, Boolean weighedIn) {
+        int shape = 0;
+        if (lastName != null && lastName.trim().length() > 0) {
+            shape |= LAST_NAME;
+        }
+        if (group != null) {
+            shape |= GROUP;
+        }
+        if (category != null) {
+            shape |= CATEGORY;
+        }
+        if (ageGroup != null) {
+            shape |= AGE_GROUP;
+        }
+        if (ageDivision != null) {
+            shape |= AGE_DIVISION;
+        }
+        if (gender != null) {
+            shape |= GENDER;
+        }
+        if (weighedIn != null) {
+            shape |= weighedIn ? WEIGHED_IN : NOT_WEIGHED_IN;
+        }
+        return shape;
+    }
+
+    /**
+     * @return true if the exception was caused by an outdated version
+     */
+    private static boolean isConflict(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof OptimisticLockException || t instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merge the lift card of an athlete with the values saved meanwhile by another screen.
+     *
+     * @param conflict the exception raised by the first attempt, thrown again if the athlete no longer exists
+     */
+    private static Athlete mergeConflict(EntityManager em, Athlete athlete, PersistenceException conflict) {
+        Athlete current = em.find(Athlete.class, athlete.getId());
+        if (current == null) {
+            throw conflict;
+        }
+        mergeLiftCard(athlete, current).apply(athlete);
+        athlete.setVersion(current.getVersion());
+        return em.merge(athlete);
+    }
+
+    /**
+     * @return the lift card values being saved, merged with those in the database
+     */
+    private static LiftValues mergeLiftCard(Athlete athlete, Athlete current) {
+        LiftValues values = LiftValues.merge(athlete.getLiftBase(), LiftValues.of(athlete, 0L),
+                LiftValues.of(current, 0L));
+        if (values.getConflicts() > 0) {
+            logger./**/warn("{} lift card changed concurrently, {} conflicting values overwritten", athlete,
+                    values.getConflicts());
+        }
+        return values;
+    }
+
+    private static String orderBy(Map<String, Boolean> sortOrder) {
+        List<String> orderList = new LinkedList<>();
+        for (Map.Entry<String, Boolean> e : sortOrder.entrySet()) {
+            List<String> paths = SORT_PATHS.get(e.getKey());
+            if (paths == null) {
+                logger.debug("not sortable in database: {}", e.getKey());
+                continue;
+            }
+            String direction = Boolean.FALSE.equals(e.getValue()) ? " desc nulls last" : " asc nulls last";
+            for (String path : paths) {
+                orderList.add(path + direction);
+            }
+        }
+        // stable order for paging
+        orderList.add("a.id");
+        return " order by " + String.join(", ", orderList);
+    }
+
+    private static void recordChange(Long id) {
+        if (id != null) {
+            changes.put(id, changeSeq.incrementAndGet());
+        }
+    }
+
     private static void setFilteringParameters(String lastName, Group group, Category category, AgeGroup ageGroup,
             AgeDivision ageDivision, Gender gender,
             Query query) {
@@ -309,4 +814,18 @@ public class AthleteRepository {
         }
     }
 
+    /**
+     * Apply the merged lift card values to the athlete in the database.
+     *
+     * @return the updated athlete, null if it was deleted
+     */
+    private static Athlete updateLiftCard(EntityManager em, Athlete athlete) {
+        Athlete current = em.find(Athlete.class, athlete.getId());
+        if (current == null) {
+            return null;
+        }
+        mergeLiftCard(athlete, current).apply(current);
+        em.flush();
+        return current;
+    }
 }
@@ -0,0 +1,456 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athlete;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Write-behind persistence for lift results.
+ *
+ * When enabled with <code>-DwriteBehind=true</code>, the results of an attempt are appended to a local journal and
+ * the database is updated by a background writer, so the field of play does not wait for a database round trip.
+ * Several saves of the same athlete are merged, and the pending athletes are written in batches in a single
+ * transaction.
+ *
+ * The journal holds the lift values of each save, and a commit marker after each successful database write. On
+ * startup, the values saved after the last commit marker are written to the database. Saving only writes the record;
+ * forcing the journal to disk is done by the writer thread, once for all the records written since the previous
+ * force. A commit marker that did not reach the disk only means the same values are written again on startup.
+ *
+ * {@link AthleteRepository} applies the values not yet written to the athletes it reads, so reads neither wait for the
+ * writer nor fail when the database write does. It waits for the pending writes before saving a whole athlete, so the
+ * pending values cannot overwrite it afterwards.
+ *
+ * The write interval is set with <code>-DwriteBehindMillis</code> (100 ms by default).
+ *
+ * @author Jean-François Lamy
+ */
+public class AthleteWriteBehind {
+
+    private static final int MAGIC = 0x4F57424A; // "OWBJ"
+    private static final int VERSION = 1;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    private static final byte VALUES = 1;
+    private static final byte COMMIT = 2;
+    private static final long WRITE_INTERVAL_MILLIS = 100;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(AthleteWriteBehind.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static volatile AthleteWriteBehind current;
+    private static volatile ScheduledExecutorService writer;
+
+    /**
+     * Wait until the pending writes have reached the database. Does nothing if write-behind is not enabled.
+     */
+    public static void awaitPendingWrites() {
+        AthleteWriteBehind wb = current;
+        if (wb != null) {
+            wb.flush();
+        }
+    }
+
+    /**
+     * @return the write-behind journal, null if not enabled
+     */
+    public static AthleteWriteBehind getCurrent() {
+        return current;
+    }
+
+    /**
+     * Open the journal and start the writer if enabled by the startup parameters. Values saved but not written before
+     * the previous shutdown are written to the database.
+     */
+    public static synchronized void init() {
+        if (!isEnabled() || current != null) {
+            return;
+        }
+        String dirName = StartupUtils.getStringParam("writeBehindDir");
+        File dir = new File(dirName != null ? dirName : "database/journal");
+        dir.mkdirs();
+        AthleteWriteBehind wb = new AthleteWriteBehind(new File(dir, "athletes.wbj").toPath());
+        try {
+            int replayed = wb.open();
+            if (replayed > 0) {
+                logger.info("{} athlete updates recovered from write-behind journal", replayed);
+            }
+        } catch (IOException e) {
+            logger.error("cannot open write-behind journal, saving synchronously {}", LoggerUtils.exceptionMessage(e));
+            return;
+        }
+        current = wb;
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "athlete-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = StartupUtils.getIntegerParam("writeBehindMillis", (int) WRITE_INTERVAL_MILLIS);
+        writer.scheduleWithFixedDelay(wb::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return true if write-behind is enabled by the startup parameters
+     */
+    public static boolean isEnabled() {
+        return StartupUtils.getBooleanParam("writeBehind");
+    }
+
+    /**
+     * Write the pending values and close the journal.
+     */
+    public static synchronized void shutdown() {
+        if (writer != null) {
+            writer.shutdown();
+            writer = null;
+        }
+        AthleteWriteBehind wb = current;
+        current = null;
+        if (wb != null) {
+            wb.close();
+        }
+    }
+
+    private final Path path;
+    private FileChannel channel;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(512);
+    private final CRC32 crc = new CRC32();
+
+    /** values not yet in the database, by athlete id; guarded by this */
+    private final Map<Long, LiftValues> pending = new LinkedHashMap<>();
+    private long seq;
+
+    /** a force of the journal is queued on the writer; guarded by this */
+    private boolean syncScheduled;
+
+    /** serializes database writes */
+    private final Object flushLock = new Object();
+
+    /**
+     * @param path the journal file
+     */
+    public AthleteWriteBehind(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Write the pending values to the database, and mark them as committed in the journal.
+     *
+     * @return number of athletes written
+     * @throws RuntimeException if the database update fails; the values remain pending.
+     */
+    public int flush() {
+        synchronized (flushLock) {
+            List<LiftValues> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return 0;
+                }
+                batch = new ArrayList<>(pending.values());
+            }
+            long start = System.nanoTime();
+            JPAService.runInTransaction(em -> {
+                int i = 0;
+                for (LiftValues v : batch) {
+                    Athlete a = em.find(Athlete.class, v.getId());
+                    if (a == null) {
+                        // deleted since saved
+                        continue;
+                    }
+                    v.apply(a);
+                    if (++i % JPAService.BATCH_SIZE == 0) {
+                        em.flush();
+                        em.clear();
+                    }
+                }
+                return null;
+            });
+            synchronized (this) {
+                long committed = 0;
+                for (LiftValues v : batch) {
+                    // a newer save of the same athlete stays pending
+                    pending.remove(v.getId(), v);
+                    committed = Math.max(committed, v.getSeq());
+                }
+                commit(committed);
+            }
+            logger.debug("wrote {} athletes in {} ms", batch.size(), (System.nanoTime() - start) / 1000000);
+            return batch.size();
+        }
+    }
+
+    /**
+     * @return a copy of the values not yet in the database, by athlete id
+     */
+    public synchronized Map<Long, LiftValues> getPendingValues() {
+        return new HashMap<>(pending);
+    }
+
+    /**
+     * @return the number of athletes whose saved values are not yet in the database
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Read the journal, keep the values saved after the last commit as pending, and open the journal for appending.
+     *
+     * @return the number of pending athletes recovered
+     * @throws IOException
+     */
+    public synchronized int open() throws IOException {
+        pending.clear();
+        List<LiftValues> uncommitted = readUncommitted(path);
+        for (LiftValues v : uncommitted) {
+            pending.put(v.getId(), v);
+            seq = Math.max(seq, v.getSeq());
+        }
+        // rewrite the journal with only the pending values, which also discards a partially written tail.
+        rewrite();
+        return pending.size();
+    }
+
+    /**
+     * Record the lift values of an athlete. The values are written to the journal when this method returns, are forced
+     * to disk by the writer thread right after, and reach the database on the next write.
+     *
+     * @param athlete
+     */
+    public synchronized void save(Athlete athlete) {
+        LiftValues v = LiftValues.of(athlete, ++seq);
+        pending.put(v.getId(), v);
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.write(ByteBuffer.wrap(encode(VALUES, v, 0L)));
+            requestSync();
+        } catch (IOException e) {
+            logger.error("cannot write journal {} {}", path, LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    /**
+     * Write the pending values and close the journal.
+     */
+    public void close() {
+        flushQuietly();
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                logger.error("cannot close journal {} {}", path, LoggerUtils.exceptionMessage(e));
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Values in a journal that were saved after the last commit marker, last save of each athlete only.
+     *
+     * @param path the journal file
+     * @return the uncommitted values, in save order
+     * @throws IOException
+     */
+    public static List<LiftValues> readUncommitted(Path path) throws IOException {
+        Map<Long, LiftValues> uncommitted = new LinkedHashMap<>();
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        try (InputStream is = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger./**/warn("ignoring journal {}: unknown format", path);
+                return new ArrayList<>();
+            }
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                int checksum = in.readInt();
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    logger./**/warn("journal {}: bad checksum, ignoring the rest of the file", path);
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                if (type == VALUES) {
+                    LiftValues v = LiftValues.read(record);
+                    uncommitted.remove(v.getId());
+                    uncommitted.put(v.getId(), v);
+                } else if (type == COMMIT) {
+                    long committed = record.readLong();
+                    uncommitted.values().removeIf(v -> v.getSeq() <= committed);
+                }
+            }
+        } catch (EOFException e) {
+            // normal end, or record cut short by a crash
+        }
+        return new ArrayList<>(uncommitted.values());
+    }
+
+    /**
+     * Mark the values up to a sequence number as written. When nothing is left pending, the journal is emptied.
+     */
+    private void commit(long committed) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (pending.isEmpty()) {
+                channel.truncate(8);
+            } else {
+                channel.write(ByteBuffer.wrap(encode(COMMIT, null, committed)));
+            }
+            requestSync();
+        } catch (IOException e) {
+            logger.error("cannot write journal {} {}", path, LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    private byte[] encode(byte type, LiftValues v, long committed) throws IOException {
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0); // length placeholder
+        out.writeByte(type);
+        if (type == VALUES) {
+            v.write(out);
+        } else {
+            out.writeLong(committed);
+        }
+        out.flush();
+        byte[] bytes = buffer.toByteArray();
+        int length = bytes.length - 4;
+        byte[] record = new byte[bytes.length + 4];
+        System.arraycopy(bytes, 0, record, 0, bytes.length);
+        ByteBuffer.wrap(record).putInt(0, length);
+        crc.reset();
+        crc.update(record, 4, length);
+        ByteBuffer.wrap(record).putInt(4 + length, (int) crc.getValue());
+        return record;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("write-behind failed, {} athletes pending: {}", getPendingCount(),
+                    LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    /**
+     * Have the writer force the journal to disk, unless a force is already queued. Called holding the lock.
+     */
+    private void requestSync() {
+        if (syncScheduled) {
+            return;
+        }
+        ScheduledExecutorService w = writer;
+        if (w != null) {
+            try {
+                syncScheduled = true;
+                w.execute(this::sync);
+                return;
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                syncScheduled = false;
+            }
+        }
+        // no writer thread
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            logger.error("cannot write journal {} {}", path, LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    /**
+     * Force the records written so far to disk. Runs on the writer thread, without holding the lock, so saves are not
+     * delayed by the disk.
+     */
+    private void sync() {
+        FileChannel ch;
+        synchronized (this) {
+            // records written from now on need another force
+            syncScheduled = false;
+            ch = channel;
+        }
+        if (ch == null) {
+            return;
+        }
+        try {
+            ch.force(false);
+        } catch (ClosedChannelException e) {
+            // closed by shutdown, which forced it
+        } catch (IOException e) {
+            logger.error("cannot write journal {} {}", path, LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    private void rewrite() throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            out.write(header);
+            for (LiftValues v : pending.values()) {
+                out.write(ByteBuffer.wrap(encode(VALUES, v, 0L)));
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
@@ -0,0 +1,240 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.athlete;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * The lift card values of an athlete: the values changed when an attempt is declared, changed or lifted.
+ *
+ * Used to journal lift results ({@link AthleteWriteBehind}) and to merge lift cards edited concurrently on several
+ * screens ({@link #merge(LiftValues, LiftValues, LiftValues)}).
+ *
+ * @author Jean-François Lamy
+ */
+public class LiftValues {
+
+    private static final int NB_ATTEMPTS = 6;
+
+    /**
+     * @param a   the athlete
+     * @param seq sequence number of the save
+     * @return the lift values of the athlete
+     */
+    public static LiftValues of(Athlete a, long seq) {
+        LiftValues v = new LiftValues();
+        v.id = a.getId() != null ? a.getId() : -1L;
+        v.seq = seq;
+        v.forcedAsCurrent = a.getForcedAsCurrent();
+        v.set(0, a.getSnatch1AutomaticProgression(), a.getSnatch1Declaration(), a.getSnatch1Change1(),
+                a.getSnatch1Change2(), a.getSnatch1ActualLift(), a.getSnatch1LiftTime());
+        v.set(1, a.getSnatch2AutomaticProgression(), a.getSnatch2Declaration(), a.getSnatch2Change1(),
+                a.getSnatch2Change2(), a.getSnatch2ActualLift(), a.getSnatch2LiftTime());
+        v.set(2, a.getSnatch3AutomaticProgression(), a.getSnatch3Declaration(), a.getSnatch3Change1(),
+                a.getSnatch3Change2(), a.getSnatch3ActualLift(), a.getSnatch3LiftTime());
+        v.set(3, a.getCleanJerk1AutomaticProgression(), a.getCleanJerk1Declaration(), a.getCleanJerk1Change1(),
+                a.getCleanJerk1Change2(), a.getCleanJerk1ActualLift(), a.getCleanJerk1LiftTime());
+        v.set(4, a.getCleanJerk2AutomaticProgression(), a.getCleanJerk2Declaration(), a.getCleanJerk2Change1(),
+                a.getCleanJerk2Change2(), a.getCleanJerk2ActualLift(), a.getCleanJerk2LiftTime());
+        v.set(5, a.getCleanJerk3AutomaticProgression(), a.getCleanJerk3Declaration(), a.getCleanJerk3Change1(),
+                a.getCleanJerk3Change2(), a.getCleanJerk3ActualLift(), a.getCleanJerk3LiftTime());
+        return v;
+    }
+
+    /**
+     * Three-way merge of lift card values. For each field, a value changed by the saving screen since it read the
+     * athlete is kept; otherwise the value in the database is used, so changes made meanwhile on other screens are not
+     * lost. When both changed the same field differently, the saving screen wins, as it did before versioning.
+     *
+     * @param base   the values when the saving screen read the athlete, null if unknown
+     * @param mine   the values being saved
+     * @param theirs the values currently in the database
+     * @return the merged values
+     */
+    public static LiftValues merge(LiftValues base, LiftValues mine, LiftValues theirs) {
+        if (base == null) {
+            return mine;
+        }
+        LiftValues v = new LiftValues();
+        v.id = mine.id;
+        v.seq = mine.seq;
+        v.forcedAsCurrent = v.pick(base.forcedAsCurrent, mine.forcedAsCurrent, theirs.forcedAsCurrent);
+        for (int i = 0; i < NB_ATTEMPTS; i++) {
+            v.automaticProgression[i] = v.pick(base.automaticProgression[i], mine.automaticProgression[i],
+                    theirs.automaticProgression[i]);
+            v.declaration[i] = v.pick(base.declaration[i], mine.declaration[i], theirs.declaration[i]);
+            v.change1[i] = v.pick(base.change1[i], mine.change1[i], theirs.change1[i]);
+            v.change2[i] = v.pick(base.change2[i], mine.change2[i], theirs.change2[i]);
+            v.actualLift[i] = v.pick(base.actualLift[i], mine.actualLift[i], theirs.actualLift[i]);
+            v.liftTime[i] = v.pick(base.liftTime[i], mine.liftTime[i], theirs.liftTime[i]);
+        }
+        return v;
+    }
+
+    static LiftValues read(DataInputStream in) throws IOException {
+        LiftValues v = new LiftValues();
+        v.id = in.readLong();
+        v.seq = in.readLong();
+        v.forcedAsCurrent = in.readBoolean();
+        for (int i = 0; i < NB_ATTEMPTS; i++) {
+            v.automaticProgression[i] = readNullableString(in);
+            v.declaration[i] = readNullableString(in);
+            v.change1[i] = readNullableString(in);
+            v.change2[i] = readNullableString(in);
+            v.actualLift[i] = readNullableString(in);
+            long millis = in.readLong();
+            v.liftTime[i] = millis < 0 ? null
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        }
+        return v;
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private long id;
+    private long seq;
+    /** number of fields changed differently on both sides during a merge */
+    private int conflicts;
+    private boolean forcedAsCurrent;
+    private final String[] automaticProgression = new String[NB_ATTEMPTS];
+    private final String[] declaration = new String[NB_ATTEMPTS];
+    private final String[] change1 = new String[NB_ATTEMPTS];
+    private final String[] change2 = new String[NB_ATTEMPTS];
+    private final String[] actualLift = new String[NB_ATTEMPTS];
+    private final LocalDateTime[] liftTime = new LocalDateTime[NB_ATTEMPTS];
+
+    private LiftValues() {
+    }
+
+    /**
+     * Copy the values to an athlete. As in {@link Athlete#copy(Athlete, Athlete)}, validation is disabled since the
+     * values were valid when saved.
+     *
+     * @param a the athlete (normally managed by an entity manager)
+     */
+    public void apply(Athlete a) {
+        boolean validation = a.isValidation();
+        try {
+            a.setValidation(false);
+            a.setLoggerLevel(Level.OFF);
+
+            a.setSnatch1AutomaticProgression(automaticProgression[0]);
+            a.setSnatch1Declaration(declaration[0]);
+            a.setSnatch1Change1(change1[0]);
+            a.setSnatch1Change2(change2[0]);
+            a.setSnatch1ActualLift(actualLift[0]);
+            a.setSnatch1LiftTime(liftTime[0]);
+
+            a.setSnatch2AutomaticProgression(automaticProgression[1]);
+            a.setSnatch2Declaration(declaration[1]);
+            a.setSnatch2Change1(change1[1]);
+            a.setSnatch2Change2(change2[1]);
+            a.setSnatch2ActualLift(actualLift[1]);
+            a.setSnatch2LiftTime(liftTime[1]);
+
+            a.setSnatch3AutomaticProgression(automaticProgression[2]);
+            a.setSnatch3Declaration(declaration[2]);
+            a.setSnatch3Change1(change1[2]);
+            a.setSnatch3Change2(change2[2]);
+            a.setSnatch3ActualLift(actualLift[2]);
+            a.setSnatch3LiftTime(liftTime[2]);
+
+            a.setCleanJerk1AutomaticProgression(automaticProgression[3]);
+            a.setCleanJerk1Declaration(declaration[3]);
+            a.setCleanJerk1Change1(change1[3]);
+            a.setCleanJerk1Change2(change2[3]);
+            a.setCleanJerk1ActualLift(actualLift[3]);
+            a.setCleanJerk1LiftTime(liftTime[3]);
+
+            a.setCleanJerk2AutomaticProgression(automaticProgression[4]);
+            a.setCleanJerk2Declaration(declaration[4]);
+            a.setCleanJerk2Change1(change1[4]);
+            a.setCleanJerk2Change2(change2[4]);
+            a.setCleanJerk2ActualLift(actualLift[4]);
+            a.setCleanJerk2LiftTime(liftTime[4]);
+
+            a.setCleanJerk3AutomaticProgression(automaticProgression[5]);
+            a.setCleanJerk3Declaration(declaration[5]);
+            a.setCleanJerk3Change1(change1[5]);
+            a.setCleanJerk3Change2(change2[5]);
+            a.setCleanJerk3ActualLift(actualLift[5]);
+            a.setCleanJerk3LiftTime(liftTime[5]);
+
+            a.setForcedAsCurrent(forcedAsCurrent);
+        } finally {
+            a.setValidation(validation);
+            a.resetLoggerLevel();
+        }
+    }
+
+    /**
+     * @return number of fields changed differently by the saving screen and in the database, for merged values
+     */
+    public int getConflicts() {
+        return conflicts;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeLong(id);
+        out.writeLong(seq);
+        out.writeBoolean(forcedAsCurrent);
+        for (int i = 0; i < NB_ATTEMPTS; i++) {
+            writeNullableString(out, automaticProgression[i]);
+            writeNullableString(out, declaration[i]);
+            writeNullableString(out, change1[i]);
+            writeNullableString(out, change2[i]);
+            writeNullableString(out, actualLift[i]);
+            out.writeLong(liftTime[i] != null ? liftTime[i].atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : -1L);
+        }
+    }
+
+    private void set(int i, String automaticProgression, String declaration, String change1, String change2,
+            String actualLift, LocalDateTime liftTime) {
+        this.automaticProgression[i] = automaticProgression;
+        this.declaration[i] = declaration;
+        this.change1[i] = change1;
+        this.change2[i] = change2;
+        this.actualLift[i] = actualLift;
+        this.liftTime[i] = liftTime;
+    }
+
+    private <T> T pick(T base, T mine, T theirs) {
+        if (Objects.equals(mine, base)) {
+            return theirs;
+        }
+        if (!Objects.equals(theirs, base) && !Objects.equals(theirs, mine)) {
+            conflicts++;
+        }
+        return mine;
+    }
+}
@@ -19,8 +19,10 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.slf4j.LoggerFactory;
@@ -50,6 +52,9 @@ import ch.qos.logback.classic.Logger;
 //must be listed in app.owlcms.data.jpa.JPAService.entityClassNames()
 @Entity
 @Cacheable
+@Table(indexes = {
+        @Index(name = "ix_category_agegroup", columnList = "agegroup_id"),
+        @Index(name = "ix_category_gender_bw", columnList = "gender,maximumWeight") })
 public class Category implements Serializable, Comparable<Category>, Cloneable {
 
     @SuppressWarnings("unused")
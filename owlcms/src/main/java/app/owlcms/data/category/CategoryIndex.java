@@ -0,0 +1,185 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.category;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.athlete.Gender;
+
+/**
+ * Immutable index of the categories in active age groups, used to find the categories that fit an athlete without
+ * querying the database.
+ *
+ * For each gender, the ages are cut into intervals where the same age groups apply, and for each age interval the body
+ * weights are cut into intervals where the same categories apply. A lookup is two binary searches and returns the
+ * candidates already sorted with {@link RegistrationPreferenceComparator}.
+ *
+ * The result is the same as the JPQL query in {@link CategoryRepository#findFiltered}: the age group is active,
+ * <code>minAge &lt;= age &lt;= maxAge</code> and <code>minimumWeight &lt; bodyWeight &lt;= maximumWeight</code>.
+ *
+ * The index only hands out category ids. The categories it was built from are detached and shared by all the
+ * threads, so callers load their own instances (see {@link CategoryRepository#findByGenderAgeBW}).
+ *
+ * @author owlcms
+ */
+public class CategoryIndex {
+
+    /**
+     * Categories for one gender and one age interval, by body weight interval.
+     */
+    private static class WeightSlots {
+        /** upper bounds of the body weight intervals */
+        private final double[] bounds;
+        /** candidates for bodyWeight in (bounds[i-1], bounds[i]] */
+        private final List<List<Category>> candidates;
+        /** all categories for the age interval, when body weight is unknown */
+        private final List<Category> all;
+
+        WeightSlots(List<Category> categories) {
+            all = Collections.unmodifiableList(categories);
+            TreeSet<Double> points = new TreeSet<>();
+            for (Category c : categories) {
+                points.add(c.getMinimumWeight());
+                points.add(c.getMaximumWeight());
+            }
+            bounds = points.stream().mapToDouble(Double::doubleValue).toArray();
+            candidates = new ArrayList<>(bounds.length);
+            for (int i = 0; i < bounds.length; i++) {
+                if (i == 0) {
+                    // below the smallest minimum weight
+                    candidates.add(Collections.emptyList());
+                    continue;
+                }
+                double low = bounds[i - 1];
+                double high = bounds[i];
+                candidates.add(Collections.unmodifiableList(categories.stream()
+                        .filter(c -> c.getMinimumWeight() <= low && c.getMaximumWeight() >= high)
+                        .collect(Collectors.toList())));
+            }
+        }
+
+        List<Category> find(Double bodyWeight) {
+            if (bodyWeight == null) {
+                return all;
+            }
+            int i = Arrays.binarySearch(bounds, bodyWeight);
+            if (i < 0) {
+                // first bound larger than the body weight
+                i = -i - 1;
+            }
+            return i < bounds.length ? candidates.get(i) : Collections.emptyList();
+        }
+    }
+
+    /**
+     * Age intervals for one gender.
+     */
+    private static class AgeSlots {
+        /** lower bounds of the age intervals */
+        private final int[] bounds;
+        /** slots[i] applies for age in [bounds[i], bounds[i+1]) */
+        private final WeightSlots[] slots;
+        /** all categories for the gender, when age is unknown */
+        private final List<Category> all;
+
+        AgeSlots(List<Category> categories) {
+            all = Collections.unmodifiableList(categories);
+            TreeSet<Integer> points = new TreeSet<>();
+            for (Category c : categories) {
+                AgeGroup ag = c.getAgeGroup();
+                points.add(ag.getMinAge());
+                points.add(ag.getMaxAge() + 1);
+            }
+            bounds = points.stream().mapToInt(Integer::intValue).toArray();
+            slots = new WeightSlots[bounds.length];
+            for (int i = 0; i < bounds.length; i++) {
+                int age = bounds[i];
+                slots[i] = new WeightSlots(categories.stream()
+                        .filter(c -> c.getAgeGroup().getMinAge() <= age && c.getAgeGroup().getMaxAge() >= age)
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        List<Category> find(Integer age, Double bodyWeight) {
+            if (age == null) {
+                return bodyWeight == null ? all
+                        : all.stream()
+                                .filter(c -> c.getMinimumWeight() < bodyWeight && c.getMaximumWeight() >= bodyWeight)
+                                .collect(Collectors.toList());
+            }
+            int i = Arrays.binarySearch(bounds, age);
+            if (i < 0) {
+                // last bound smaller than the age
+                i = -i - 2;
+            }
+            return i >= 0 ? slots[i].find(bodyWeight) : Collections.emptyList();
+        }
+    }
+
+    /**
+     * @param categories all the categories; those whose age group is inactive are ignored
+     * @return the index
+     */
+    public static CategoryIndex build(List<Category> categories) {
+        return new CategoryIndex(categories);
+    }
+
+    private final Map<Gender, AgeSlots> byGender = new EnumMap<>(Gender.class);
+
+    private final int size;
+
+    private CategoryIndex(List<Category> categories) {
+        List<Category> active = categories.stream()
+                .filter(c -> c.getAgeGroup() != null && c.getAgeGroup().isActive() && c.getGender() != null
+                        && c.getMinimumWeight() != null && c.getMaximumWeight() != null)
+                .sorted(new RegistrationPreferenceComparator())
+                .collect(Collectors.toList());
+        size = active.size();
+        Map<Gender, List<Category>> grouped = active.stream().collect(Collectors.groupingBy(Category::getGender));
+        for (Map.Entry<Gender, List<Category>> e : grouped.entrySet()) {
+            byGender.put(e.getKey(), new AgeSlots(e.getValue()));
+        }
+    }
+
+    /**
+     * Categories that fit an athlete, in order of preference.
+     *
+     * @param gender     null for all genders
+     * @param age        null for all ages
+     * @param bodyWeight null for all body weights
+     * @return the ids of the categories
+     */
+    public List<Long> find(Gender gender, Integer age, Double bodyWeight) {
+        List<Category> found;
+        if (gender != null) {
+            AgeSlots slots = byGender.get(gender);
+            found = slots != null ? slots.find(age, bodyWeight) : Collections.emptyList();
+        } else {
+            found = new ArrayList<>();
+            for (AgeSlots slots : byGender.values()) {
+                found.addAll(slots.find(age, bodyWeight));
+            }
+            found.sort(new RegistrationPreferenceComparator());
+        }
+        return found.stream().map(Category::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * @return number of categories indexed
+     */
+    public int size() {
+        return size;
+    }
+}
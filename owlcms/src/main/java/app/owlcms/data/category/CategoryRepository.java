@@ -6,9 +6,11 @@
  */
 package app.owlcms.data.category;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import javax.persistence.EntityManager;
 import javax.persistence.Query;
@@ -18,6 +20,7 @@ import org.slf4j.LoggerFactory;
 import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.jpa.QueryRegistry;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
@@ -32,6 +35,30 @@ public class CategoryRepository {
         logger.setLevel(Level.INFO);
     }
 
+    private static volatile CategoryIndex index;
+
+    /**
+     * Incremented by {@link #resetIndex()}; an index built from data read before a reset is not published.
+     */
+    private static long indexGeneration;
+    private static final Object indexLock = new Object();
+
+    /**
+     * Filtering conditions present in a query, see {@link #filterShape}
+     */
+    private static final int NAME = 1;
+    private static final int GENDER = 2;
+    private static final int AGE_DIVISION = 4;
+    private static final int AGE_GROUP = 8;
+    private static final int AGE = 16;
+    private static final int BODY_WEIGHT = 32;
+    private static final int ACTIVE = 64;
+
+    /**
+     * Filtering queries, compiled once for each combination of filters.
+     */
+    private static final QueryRegistry filterQueries = new QueryRegistry("Category");
+
     /**
      * Count filtered.
      *
@@ -57,15 +84,15 @@ public class CategoryRepository {
             em.remove(getById(Category.getId(), em));
             return null;
         });
+        resetIndex();
     }
 
     public static Integer doCountFiltered(String name, Gender gender, AgeDivision ageDivision, AgeGroup ageGroup,
             Integer age, Double bodyWeight, Boolean active, EntityManager em) {
-        String selection = filteringSelection(name, gender, ageDivision, ageGroup, age, bodyWeight, active);
-        String qlString = "select count(c.id) from Category c " + selection;
-        logger.trace("count = {}", qlString);
-        Query query = em.createQuery(qlString);
-        setFilteringParameters(name, gender, ageDivision, ageGroup, age, bodyWeight, true, query);
+        int shape = filterShape(name, gender, ageDivision, ageGroup, age, bodyWeight, active);
+        Query query = filterQueries.create(em, "count." + shape,
+                () -> "select count(c.id) from Category c" + filteringSelection(shape));
+        setFilteringParameters(name, gender, ageDivision, ageGroup, age, bodyWeight, active, query);
         int i = ((Long) query.getSingleResult()).intValue();
         return i;
     }
@@ -79,12 +106,10 @@ public class CategoryRepository {
 
     public static List<Category> doFindFiltered(EntityManager em, String name, Gender gender, AgeDivision ageDivision,
             AgeGroup ageGroup, Integer age, Double bodyWeight, Boolean active, int offset, int limit) {
-        String qlString = "select c from Category c"
-                + filteringSelection(name, gender, ageDivision, ageGroup, age, bodyWeight, active)
-                + " order by c.ageGroup.ageDivision, c.gender, c.ageGroup.minAge, c.ageGroup.maxAge, c.ageGroup, c.maximumWeight";
-        logger.trace("query = {}", qlString);
-
-        Query query = em.createQuery(qlString);
+        int shape = filterShape(name, gender, ageDivision, ageGroup, age, bodyWeight, active);
+        Query query = filterQueries.create(em, "find." + shape,
+                () -> "select c from Category c" + filteringSelection(shape)
+                        + " order by c.ageGroup.ageDivision, c.gender, c.ageGroup.minAge, c.ageGroup.maxAge, c.ageGroup, c.maximumWeight");
         setFilteringParameters(name, gender, ageDivision, ageGroup, age, bodyWeight, active, query);
         if (offset >= 0) {
             query.setFirstResult(offset);
@@ -101,11 +126,8 @@ public class CategoryRepository {
      * @return active categories
      */
     public static List<Category> findActive() {
-        List<Category> findFiltered = findFiltered((String) null, (Gender) null, (AgeDivision) null, (AgeGroup) null,
-                (Integer) null, (Double) null,
-                true, -1, -1);
-        findFiltered.sort(new RegistrationPreferenceComparator());
-        return findFiltered;
+        // the index holds the active categories, sorted with RegistrationPreferenceComparator
+        return findByIds(getIndex().find((Gender) null, (Integer) null, (Double) null));
     }
 
     public static Collection<Category> findActive(Gender gender, Double bodyWeight) {
@@ -125,27 +147,31 @@ public class CategoryRepository {
      */
     @SuppressWarnings("unchecked")
     public static List<Category> findAll() {
-        return JPAService
-                .runInTransaction(em -> em.createQuery("select c from Category c order by c.name").getResultList());
+        return JPAService.runInTransaction(
+                em -> JPAService.cacheable(em.createQuery("select c from Category c order by c.name"),
+                        JPAService.REFERENCE_QUERIES).getResultList());
     }
 
+    /**
+     * Active categories for an athlete, from the in-memory index.
+     *
+     * Sorted to put more specific category age before. M30 before O21, O21 also before SR (MASTERS, then U, then
+     * IWF/other)
+     *
+     * @return the categories, first one is the default; new instances loaded for the caller
+     */
     public static List<Category> findByGenderAgeBW(Gender gender, Integer age, Double bodyWeight) {
-        Boolean active = true;
-        List<Category> findFiltered = findFiltered((String) null, gender, (AgeDivision) null, (AgeGroup) null, age,
-                bodyWeight, active, -1, -1);
-        // sort comparison to put more specific category age before. M30 before O21, O21 also before SR (MASTERS, then
-        // U, then IWF/other)
-        findFiltered.sort(new RegistrationPreferenceComparator());
-        return findFiltered;
+        return findByIds(getIndex().find(gender, age, bodyWeight));
     }
 
     public static List<Category> findByGenderDivisionAgeBW(Gender gender, AgeDivision ageDivision, Integer age,
             Double bodyWeight) {
-        Boolean active = true;
-        List<Category> findFiltered = findFiltered((String) null, gender, ageDivision, (AgeGroup) null, age, bodyWeight,
-                active, -1, -1);
-        findFiltered.sort(new RegistrationPreferenceComparator());
-        return findFiltered;
+        List<Category> found = findByGenderAgeBW(gender, age, bodyWeight);
+        if (ageDivision == null) {
+            return found;
+        }
+        return found.stream().filter(c -> c.getAgeGroup().getAgeDivision() == ageDivision)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -204,10 +230,90 @@ public class CategoryRepository {
      * @return the category
      */
     public static Category save(Category Category) {
-        return JPAService.runInTransaction(em -> em.merge(Category));
+        Category merged = JPAService.runInTransaction(em -> em.merge(Category));
+        resetIndex();
+        return merged;
+    }
+
+    /**
+     * Load categories found in the index, keeping the order of the ids. Category is cacheable, so this does not
+     * normally query the database.
+     *
+     * @param ids category ids
+     * @return the categories, skipping ids deleted since the index was built
+     */
+    private static List<Category> findByIds(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return JPAService.runInTransaction(em -> ids.stream()
+                .map(id -> em.find(Category.class, id))
+                .filter(c -> c != null)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Discard the category index after categories or age groups have changed. It is rebuilt on next use.
+     */
+    public static void resetIndex() {
+        synchronized (indexLock) {
+            indexGeneration++;
+            index = null;
+        }
     }
 
-    private static String filteringJoins(AgeGroup ag, Integer age) {
+    private static CategoryIndex getIndex() {
+        CategoryIndex curIndex = index;
+        if (curIndex == null) {
+            long generation;
+            synchronized (indexLock) {
+                generation = indexGeneration;
+            }
+            long start = System.nanoTime();
+            curIndex = CategoryIndex.build(findAll());
+            logger.debug("category index built, {} active categories, {} ms", curIndex.size(),
+                    (System.nanoTime() - start) / 1000000);
+            synchronized (indexLock) {
+                // a reset during the build means the categories read may be stale; the next call rebuilds.
+                if (generation == indexGeneration) {
+                    index = curIndex;
+                }
+            }
+        }
+        return curIndex;
+    }
+
+    /**
+     * @return bit mask of the filtering conditions present; the JPQL only depends on this mask
+     */
+    private static int filterShape(String name, Gender gender, AgeDivision ageDivision, AgeGroup ageGroup,
+            Integer age, Double bodyWeight, Boolean active) {
+        int shape = 0;
+        if (name != null && name.trim().length() > 0) {
+            shape |= NAME;
+        }
+        if (gender != null) {
+            shape |= GENDER;
+        }
+        if (ageDivision != null) {
+            shape |= AGE_DIVISION;
+        }
+        if (ageGroup != null) {
+            shape |= AGE_GROUP;
+        }
+        if (age != null) {
+            shape |= AGE;
+        }
+        if (bodyWeight != null) {
+            shape |= BODY_WEIGHT;
+        }
+        if (active != null && active) {
+            shape |= ACTIVE;
+        }
+        return shape;
+    }
+
+    private static String filteringJoins() {
         List<String> fromList = new LinkedList<>();
         // if (ag != null || age != null) {
         fromList.add("join c.ageGroup ag"); // group is via a relationship, join on id
@@ -219,42 +325,40 @@ public class CategoryRepository {
         }
     }
 
-    private static String filteringSelection(String name, Gender gender, AgeDivision ageDivision, AgeGroup ageGroup,
-            Integer age, Double bodyWeight, Boolean active) {
-        String joins = filteringJoins(ageGroup, age);
-        String where = filteringWhere(name, ageDivision, ageGroup, age, bodyWeight, gender, active);
+    private static String filteringSelection(int shape) {
+        String joins = filteringJoins();
+        String where = filteringWhere(shape);
         String selection = (joins != null ? " " + joins : "") + (where != null ? " where " + where : "");
         return selection;
     }
 
-    private static String filteringWhere(String name, AgeDivision ageDivision, AgeGroup ageGroup, Integer age,
-            Double bodyWeight, Gender gender, Boolean active) {
+    private static String filteringWhere(int shape) {
         List<String> whereList = new LinkedList<>();
-        if (ageDivision != null) {
+        if ((shape & AGE_DIVISION) != 0) {
             whereList.add("c.ageGroup.ageDivision = :division");
         }
-        if (name != null && name.trim().length() > 0) {
+        if ((shape & NAME) != 0) {
             whereList.add("lower(c.name) like :name");
         }
-        if (active != null && active) {
+        if ((shape & ACTIVE) != 0) {
             // must be active in an active age group
             // whereList.add("(c.active = :active) and (ag.active = :active)");
             whereList.add("(ag.active = :active)");
         }
-        if (gender != null) {
+        if ((shape & GENDER) != 0) {
             whereList.add("c.gender = :gender");
         }
         // because there is exactly one ageGroup following could be done with
         // c.ageGroup.id = :ageGroupId
-        if (ageGroup != null) {
+        if ((shape & AGE_GROUP) != 0) {
             whereList.add("ag.id = :ageGroupId"); // group is via a relationship, select the joined id.
         }
         // because there is exactly one ageGroup following could test on
         // c.ageGroup.minAge and maxAge
-        if (age != null) {
+        if ((shape & AGE) != 0) {
             whereList.add("(ag.minAge <= :age) and (ag.maxAge >= :age)");
         }
-        if (bodyWeight != null) {
+        if ((shape & BODY_WEIGHT) != 0) {
             whereList.add("(c.minimumWeight < :bodyWeight) and (c.maximumWeight >= :bodyWeight)");
         }
         if (whereList.size() == 0) {
@@ -68,12 +68,7 @@ public class RobiCategories {
     private static ArrayList<Category> ythReferenceCategories;
 
     public static Category findRobiCategory(Athlete a) {
-        if (jrSrReferenceCategories == null) {
-            loadJrSrReferenceCategories();
-        }
-        if (ythReferenceCategories == null) {
-            loadYthReferenceCategories();
-        }
+        loadReferenceCategories();
         RobiCategories x = new RobiCategories();
         List<Category> categories;
         Integer age = a.getAge();
@@ -94,6 +89,19 @@ public class RobiCategories {
         }
     }
 
+    /**
+     * Read the IWF reference categories, if not already done. Called at startup so the first score computation does
+     * not wait for the workbook to be parsed.
+     */
+    public static synchronized void loadReferenceCategories() {
+        if (jrSrReferenceCategories == null) {
+            loadJrSrReferenceCategories();
+        }
+        if (ythReferenceCategories == null) {
+            loadYthReferenceCategories();
+        }
+    }
+
     @SuppressWarnings("unused")
     private static String dumpCat(Category c) {
         StringBuilder sb = new StringBuilder();
@@ -13,8 +13,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.stream.Collectors;
 
@@ -39,6 +43,9 @@ import app.owlcms.data.group.Group;
 import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.jpa.LocaleAttributeConverter;
 import app.owlcms.i18n.Translator;
+import app.owlcms.metrics.FlightEvents;
+import app.owlcms.metrics.Metrics;
+import app.owlcms.metrics.Timer;
 import app.owlcms.ui.results.Resource;
 import app.owlcms.utils.ResourceWalker;
 import app.owlcms.utils.StartupUtils;
@@ -58,6 +65,11 @@ public class Competition {
 
     final static private Logger logger = (Logger) LoggerFactory.getLogger(Competition.class);
 
+    final static private Timer fullRankingsTimer = Metrics.timer("owlcms_rankings_seconds",
+            "time to compute the global rankings", "kind", "full");
+    final static private Timer groupRankingsTimer = Metrics.timer("owlcms_rankings_seconds",
+            "time to compute the global rankings", "kind", "groups");
+
     /**
      * Gets the current.
      *
@@ -187,18 +199,27 @@ public class Competition {
     private boolean rankingsInvalid = true;
 
     synchronized public void computeGlobalRankings(boolean full) {
-        List<Athlete> athletes = AthleteRepository.findAllByGroupAndWeighIn(null, true);
-        if (athletes.isEmpty()) {
-            // prevent outputting silliness.
-            logger./**/warn("no athletes");
-            reportingBeans.clear();
-            return;
-        }
-        sortGroupResults(athletes);
-        if (full) {
-            sortTeamResults(athletes);
+        long start = System.nanoTime();
+        int size = 0;
+        try {
+            // includes the lift values not yet written by the write-behind
+            List<Athlete> athletes = AthleteRepository.findAllByGroupAndWeighIn(null, true);
+            size = athletes.size();
+            if (athletes.isEmpty()) {
+                // prevent outputting silliness.
+                logger./**/warn("no athletes");
+                reportingBeans.clear();
+                return;
+            }
+            sortGroupResults(athletes);
+            if (full) {
+                sortTeamResults(athletes);
+            }
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            (full ? fullRankingsTimer : groupRankingsTimer).record(elapsed);
+            FlightEvents.rankingRecomputed(full, size, elapsed);
         }
-
     }
 
     @Override
@@ -473,6 +494,25 @@ public class Competition {
         return reportingBeans;
     }
 
+    /**
+     * @return a copy of the reporting beans, whose lists, sets and maps are copied as well and cannot be changed
+     */
+    synchronized public HashMap<String, Object> getReportingBeansSnapshot() {
+        HashMap<String, Object> snapshot = new HashMap<>();
+        for (Map.Entry<String, Object> e : reportingBeans.entrySet()) {
+            Object value = e.getValue();
+            if (value instanceof List) {
+                value = Collections.unmodifiableList(new ArrayList<>((List<?>) value));
+            } else if (value instanceof Set) {
+                value = Collections.unmodifiableSet(new LinkedHashSet<>((Set<?>) value));
+            } else if (value instanceof Map) {
+                value = Collections.unmodifiableMap(new LinkedHashMap<>((Map<?, ?>) value));
+            }
+            snapshot.put(e.getKey(), value);
+        }
+        return snapshot;
+    }
+
     public Integer getWomensTeamSize() {
         return womensTeamSize;
     }
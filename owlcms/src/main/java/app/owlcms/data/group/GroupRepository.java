@@ -14,6 +14,7 @@ import javax.persistence.Query;
 import org.slf4j.LoggerFactory;
 
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
@@ -55,6 +56,8 @@ public class GroupRepository {
             }
             return null;
         });
+        // the athletes of the group were changed through the entity manager
+        AthleteRepository.markAllChanged();
     }
 
     @SuppressWarnings("unchecked")
@@ -72,7 +75,8 @@ public class GroupRepository {
     @SuppressWarnings("unchecked")
     public static List<Group> findAll() {
         return JPAService.runInTransaction(
-                em -> em.createQuery("select c from CompetitionGroup c order by c.name").getResultList());
+                em -> JPAService.cacheable(em.createQuery("select c from CompetitionGroup c order by c.name"),
+                        JPAService.REFERENCE_QUERIES).getResultList());
     }
 
     public static Group findByName(String name) {
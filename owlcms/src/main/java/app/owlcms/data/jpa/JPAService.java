@@ -28,17 +28,31 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
 import javax.persistence.spi.PersistenceUnitInfo;
 
 import org.h2.tools.Server;
+import org.hibernate.SessionFactory;
 import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
 import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
 import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
 import org.hibernate.jpa.boot.internal.PersistenceUnitInfoDescriptor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.stat.Statistics;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.ImmutableList;
@@ -47,7 +61,9 @@ import com.google.common.collect.ImmutableMap;
 import app.owlcms.Main;
 import app.owlcms.data.agegroup.AgeGroup;
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.category.Category;
+import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.config.Config;
 import app.owlcms.data.group.Group;
@@ -63,14 +79,72 @@ import ch.qos.logback.classic.Logger;
  */
 public class JPAService {
 
+    /**
+     * Counts the entities written, whatever the repository.
+     */
+    @SuppressWarnings("serial")
+    private static class DataVersionListener
+            implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+        @Override
+        public void onPostDelete(PostDeleteEvent event) {
+            dataVersion.incrementAndGet();
+        }
+
+        @Override
+        public void onPostInsert(PostInsertEvent event) {
+            dataVersion.incrementAndGet();
+        }
+
+        @Override
+        public void onPostUpdate(PostUpdateEvent event) {
+            dataVersion.incrementAndGet();
+        }
+
+        @Override
+        public boolean requiresPostCommitHanding(EntityPersister persister) {
+            return false;
+        }
+    }
+
     private static final Logger logger = (Logger) LoggerFactory.getLogger(JPAService.class);
     private static final Logger startLogger = (Logger) LoggerFactory.getLogger(Main.class);
     static {
         logger.setLevel(Level.INFO);
     }
 
+    /**
+     * JDBC batch size; bulk loaders flush and clear the persistence context at the same interval.
+     */
+    public static final int BATCH_SIZE = 20;
+
+    /**
+     * Query cache region for reference data (groups, platforms, categories). Sized in ehcache.xml.
+     */
+    public static final String REFERENCE_QUERIES = "owlcms.reference";
+
+    /**
+     * Query cache region for athlete lists; invalidated whenever an athlete is written.
+     */
+    public static final String ATHLETE_QUERIES = "owlcms.athletes";
+
     protected static EntityManagerFactory factory;
 
+    private static final AtomicLong dataVersion = new AtomicLong();
+
+    /**
+     * Store the results of a query in the query cache.
+     *
+     * @param query  the query
+     * @param region the query cache region
+     * @return the query
+     */
+    public static Query cacheable(Query query, String region) {
+        query.setHint("org.hibernate.cacheable", true);
+        query.setHint("org.hibernate.cacheRegion", region);
+        return query;
+    }
+
     /**
      * Close.
      */
@@ -81,6 +155,26 @@ public class JPAService {
         factory = null;
     }
 
+    /**
+     * A number that changes whenever an entity is inserted, updated or deleted, for results computed from the database
+     * and kept in memory. Bulk updates through queries are not seen.
+     *
+     * @return the current data version
+     */
+    public static long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * Hibernate statistics, including the second-level and query cache regions. Collected when started with
+     * <code>-DcacheStatistics=true</code>, or after {@link Statistics#setStatisticsEnabled(boolean)}.
+     *
+     * @return the statistics, null if the database is not initialized
+     */
+    public static Statistics getStatistics() {
+        return factory != null ? factory.unwrap(SessionFactory.class).getStatistics() : null;
+    }
+
     /**
      * Inits the database
      *
@@ -89,6 +183,12 @@ public class JPAService {
     public static void init(boolean inMemory, boolean reset) {
         if (factory == null) {
             factory = getFactory(inMemory, reset);
+            registerDataVersionListener();
+            // databases created by earlier versions lack the indexes
+            SchemaMigration.createMissingIndexes();
+            AthleteRepository.initVersions();
+            // cached categories come from the previous database
+            CategoryRepository.resetIndex();
         }
     }
 
@@ -292,11 +392,14 @@ public class JPAService {
         ImmutableMap<String, Object> vals = new ImmutableMap.Builder<String, Object>()
                 .put(HBM2DDL_AUTO, "update")
                 .put(SHOW_SQL, false)
-                .put(QUERY_STARTUP_CHECKING, false).put(GENERATE_STATISTICS, false)
-                .put(USE_REFLECTION_OPTIMIZER, false).put(USE_SECOND_LEVEL_CACHE, true).put(USE_QUERY_CACHE, false)
-                .put(USE_STRUCTURED_CACHE, false).put(STATEMENT_BATCH_SIZE, 20)
+                .put(QUERY_STARTUP_CHECKING, false)
+                .put(GENERATE_STATISTICS, StartupUtils.getBooleanParam("cacheStatistics"))
+                .put(USE_REFLECTION_OPTIMIZER, false).put(USE_SECOND_LEVEL_CACHE, true).put(USE_QUERY_CACHE, true)
+                .put(USE_STRUCTURED_CACHE, false).put(STATEMENT_BATCH_SIZE, BATCH_SIZE)
+                .put("hibernate.order_inserts", true).put("hibernate.order_updates", true)
                 .put(CACHE_REGION_FACTORY, "org.hibernate.cache.jcache.JCacheRegionFactory")
                 .put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider")
+                .put("hibernate.javax.cache.uri", "ehcache.xml")
                 .put("hibernate.javax.cache.missing_cache_strategy", "create")
                 .put("javax.persistence.sharedCache.mode", "ALL").put("hibernate.c3p0.min_size", 5)
 //                .put("hibernate.c3p0.max_size", 20).put("hibernate.c3p0.acquire_increment", 5)
@@ -347,6 +450,15 @@ public class JPAService {
         return props;
     }
 
+    private static void registerDataVersionListener() {
+        EventListenerRegistry registry = factory.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        DataVersionListener listener = new DataVersionListener();
+        registry.appendListeners(EventType.POST_INSERT, listener);
+        registry.appendListeners(EventType.POST_UPDATE, listener);
+        registry.appendListeners(EventType.POST_DELETE, listener);
+    }
+
     /**
      * H2 can expose its embedded server on demand.
      *
@@ -0,0 +1,88 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.jpa;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Named queries built on first use, one per query shape.
+ *
+ * Filtering screens combine optional conditions; the JPQL only depends on which conditions are present, so the
+ * repositories compute a shape key (usually a bit mask of the conditions present) and the JPQL for a shape is built
+ * and compiled once, then registered as a named query. Later queries with the same shape reuse the compiled
+ * definition, only the parameter values change.
+ *
+ * @author Jean-François Lamy
+ */
+public class QueryRegistry {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(QueryRegistry.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final String prefix;
+
+    /** JPQL of the registered queries, by name */
+    private final Map<String, String> registered = new ConcurrentHashMap<>();
+
+    /** factory where the queries are registered; a new database starts a new registry */
+    private volatile EntityManagerFactory factory;
+
+    /**
+     * @param prefix prefix of the query names, usually the entity name
+     */
+    public QueryRegistry(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * Create a query for a shape, registering the named query the first time the shape is used.
+     *
+     * @param em    the entity manager
+     * @param shape the shape key; queries with the same key must have the same JPQL
+     * @param jpql  builds the JPQL for the shape, only called the first time
+     * @return a new query, parameters not set
+     */
+    public Query create(EntityManager em, String shape, Supplier<String> jpql) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        if (emf != factory) {
+            synchronized (this) {
+                if (emf != factory) {
+                    registered.clear();
+                    factory = emf;
+                }
+            }
+        }
+        String name = prefix + "." + shape;
+        registered.computeIfAbsent(name, n -> {
+            String qlString = jpql.get();
+            logger.debug("registering query {} = {}", n, qlString);
+            emf.addNamedQuery(n, em.createQuery(qlString));
+            return qlString;
+        });
+        return em.createNamedQuery(name);
+    }
+
+    /**
+     * @return number of shapes registered in the current database
+     */
+    public int size() {
+        return registered.size();
+    }
+}
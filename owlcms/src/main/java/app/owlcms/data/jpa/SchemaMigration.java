@@ -0,0 +1,110 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.data.jpa;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.PersistenceException;
+import javax.persistence.Table;
+
+import org.hibernate.Session;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Bring the indexes of an existing database up to date.
+ *
+ * The indexes are declared with the <code>@Table</code> annotation of the entities, and created by Hibernate when the
+ * schema is created. Databases created by an earlier version are updated here, when the database is opened. Indexes
+ * that JPA cannot declare (PostgreSQL expression indexes) are also created here.
+ *
+ * @author Jean-François Lamy
+ */
+public class SchemaMigration {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(SchemaMigration.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /**
+     * Case-insensitive prefix search on last names; text_pattern_ops so <code>like 'abc%'</code> can use the index
+     * whatever the database collation.
+     */
+    private static final String PG_LASTNAME_INDEX = "create index if not exists ix_athlete_lastname_lower"
+            + " on Athlete (lower(lastName) text_pattern_ops)";
+
+    /**
+     * Create the missing indexes.
+     *
+     * @return number of index statements run
+     */
+    public static int createMissingIndexes() {
+        long start = System.nanoTime();
+        List<String> statements = indexStatements();
+        String product = JPAService.runInTransaction(em -> em.unwrap(Session.class)
+                .doReturningWork(c -> c.getMetaData().getDatabaseProductName()));
+        if ("PostgreSQL".equalsIgnoreCase(product)) {
+            statements.add(PG_LASTNAME_INDEX);
+        }
+        int count = 0;
+        for (String statement : statements) {
+            // one transaction per index: on PostgreSQL a failed statement aborts the transaction
+            try {
+                JPAService.runInTransaction(em -> em.createNativeQuery(statement).executeUpdate());
+                count++;
+            } catch (PersistenceException e) {
+                // the database is usable without the index, only slower
+                logger.error("{} failed: {}", statement, LoggerUtils.exceptionMessage(e));
+            }
+        }
+        logger.debug("{} indexes checked in {} ms", count, (System.nanoTime() - start) / 1000000);
+        return count;
+    }
+
+    /**
+     * @return a <code>create index if not exists</code> statement for each index declared on the entities
+     */
+    static List<String> indexStatements() {
+        List<String> statements = new ArrayList<>();
+        for (String className : JPAService.entityClassNames()) {
+            Class<?> entityClass;
+            try {
+                entityClass = Class.forName(className);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(e);
+            }
+            Table table = entityClass.getAnnotation(Table.class);
+            if (table == null) {
+                continue;
+            }
+            String tableName = tableName(entityClass, table);
+            for (Index index : table.indexes()) {
+                statements.add("create " + (index.unique() ? "unique " : "") + "index if not exists " + index.name()
+                        + " on " + tableName + " (" + index.columnList() + ")");
+            }
+        }
+        return statements;
+    }
+
+    private static String tableName(Class<?> entityClass, Table table) {
+        if (!table.name().isEmpty()) {
+            return table.name();
+        }
+        Entity entity = entityClass.getAnnotation(Entity.class);
+        if (entity != null && !entity.name().isEmpty()) {
+            return entity.name();
+        }
+        return entityClass.getSimpleName();
+    }
+}
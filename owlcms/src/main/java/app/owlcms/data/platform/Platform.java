@@ -628,7 +628,7 @@ public class Platform implements Serializable, Comparable<Platform> {
      */
     public void setSoundMixerName(String soundMixerName) {
         logger.debug("setSoundMixerName {} {} {}", System.identityHashCode(this), soundMixerName,
-                LoggerUtils.whereFrom());
+                LoggerUtils.callerLocation());
         this.soundMixerName = soundMixerName;
         if (soundMixerName == null) {
             mixerChecked = true;
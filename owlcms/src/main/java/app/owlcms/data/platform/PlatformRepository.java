@@ -55,7 +55,8 @@ public class PlatformRepository {
      */
     @SuppressWarnings("unchecked")
     public static List<Platform> findAll() {
-        return JPAService.runInTransaction(em -> em.createQuery("select c from Platform c").getResultList());
+        return JPAService.runInTransaction(em -> JPAService
+                .cacheable(em.createQuery("select c from Platform c"), JPAService.REFERENCE_QUERIES).getResultList());
     }
 
     /**
@@ -114,7 +114,7 @@ public class RecordRepository {
     public static void reloadDefinitions(String localizedFileName) {
         JPAService.runInTransaction(em -> {
             try {
-                Query upd = em.createQuery("update Athlete set category = null");
+                Query upd = em.createQuery("update Athlete set category = null, version = version + 1");
                 upd.executeUpdate();
                 upd = em.createQuery("delete from Category");
                 upd.executeUpdate();
@@ -126,6 +126,8 @@ public class RecordRepository {
             }
             return null;
         });
+        // athletes lost their category in a bulk update; fields of play must reload their group.
+        AthleteRepository.markAllChanged();
         RecordDefinitionReader.doInsertRecords(null, "/config/records/" + localizedFileName);
         AthleteRepository.resetCategories();
     }
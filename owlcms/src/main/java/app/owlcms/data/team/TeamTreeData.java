@@ -60,7 +60,7 @@ public class TeamTreeData extends TreeData<TeamTreeItem> {
                 continue;
             }
 
-            logger.debug("**************************************** Gender {} {}", gender, LoggerUtils.whereFrom());
+            logger.debug("**************************************** Gender {} {}", gender, LoggerUtils.callerLocation());
 
             List<TeamTreeItem> curGenderTeams = getTeamItemsByGender().get(gender);
             if (curGenderTeams == null) {
@@ -142,7 +142,7 @@ public class AttemptBoard extends PolymerTemplate<AttemptBoard.AttemptBoardModel
      */
     public AttemptBoard() {
         OwlcmsFactory.waitDBInitialized();
-        logger.debug("*** AttemptBoard new {}", LoggerUtils.whereFrom());
+        logger.debug("*** AttemptBoard new {}", LoggerUtils.callerLocation());
         athleteTimer.setOrigin(this);
         getModel().setJavaComponentId(this.toString());
         getModel().setKgSymbol(getTranslation("KgSymbol"));
@@ -408,7 +408,7 @@ public class AttemptBoard extends PolymerTemplate<AttemptBoard.AttemptBoardModel
     }
 
     protected void doEmpty() {
-        logger.debug("doEmpty {}", LoggerUtils.whereFrom());
+        logger.debug("doEmpty {}", LoggerUtils.callerLocation());
         hidePlates();
         this.getElement().callJsFunction("clear");
     }
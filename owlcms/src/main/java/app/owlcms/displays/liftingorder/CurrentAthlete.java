@@ -363,7 +363,7 @@ public class CurrentAthlete extends PolymerTemplate<CurrentAthlete.CurrentAthlet
 
     public void uiLog(UIEvent e) {
         uiEventLogger.debug("### {} {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin(), LoggerUtils.whereFrom());
+                this.getOrigin(), e.getOrigin(), LoggerUtils.callerLocation());
     }
 
     protected void doEmpty() {
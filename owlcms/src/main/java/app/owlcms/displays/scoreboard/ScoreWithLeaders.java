@@ -6,10 +6,8 @@
  */
 package app.owlcms.displays.scoreboard;
 
-import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.slf4j.LoggerFactory;
 
@@ -35,11 +33,7 @@ import app.owlcms.components.elements.AthleteTimerElement;
 import app.owlcms.components.elements.BreakTimerElement;
 import app.owlcms.components.elements.DecisionElement;
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athlete.LiftDefinition.Changes;
-import app.owlcms.data.athlete.LiftInfo;
-import app.owlcms.data.athlete.XAthlete;
 import app.owlcms.data.athleteSort.AthleteSorter;
-import app.owlcms.data.category.Category;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
 import app.owlcms.i18n.Translator;
@@ -52,6 +46,7 @@ import app.owlcms.ui.shared.RequireLogin;
 import app.owlcms.ui.shared.SafeEventBusRegistration;
 import app.owlcms.uievents.BreakDisplay;
 import app.owlcms.uievents.BreakType;
+import app.owlcms.uievents.ScoreboardResults;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.uievents.UIEvent.Decision;
 import app.owlcms.uievents.UIEvent.LiftingOrderUpdated;
@@ -59,7 +54,6 @@ import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
-import elemental.json.JsonArray;
 import elemental.json.JsonObject;
 import elemental.json.JsonValue;
 
@@ -151,8 +145,6 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
     private Group curGroup;
     private int liftsDone;
 
-    JsonArray sattempts;
-    JsonArray cattempts;
     private boolean darkMode;
     private ContextMenu contextMenu;
     private Location location;
@@ -294,9 +286,8 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
     @Subscribe
     public void slaveGlobalRankingUpdated(UIEvent.GlobalRankingUpdated e) {
         uiLog(e);
-        Competition competition = Competition.getCurrent();
         UIEventProcessor.uiAccess(this, uiEventBus, () -> {
-            computeLeaders(competition);
+            computeLeaders();
         });
     }
 
@@ -315,12 +306,13 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
     public void slaveOrderUpdated(UIEvent.LiftingOrderUpdated e) {
         // uiLog(e);
         uiEventLogger.debug("### {} isDisplayToggle={}", this.getClass().getSimpleName(), e.isDisplayToggle());
-        UIEventProcessor.uiAccess(this, uiEventBus, e, () -> {
+        UIEventProcessor.uiAccess(this, uiEventBus, e, () -> OwlcmsSession.withFop(fop -> {
             Athlete a = e.getAthlete();
-            order = Competition.getCurrent().getGlobalCategoryRankingsForGroup(curGroup);
-            liftsDone = AthleteSorter.countLiftsDone(order);
+            ScoreboardResults results = fop.getScoreboardResults();
+            order = results.getGroupRankings();
+            liftsDone = results.getLiftsDone();
             doUpdate(a, e);
-        });
+        }));
     }
 
     @Subscribe
@@ -365,7 +357,7 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
 
     public void uiLog(UIEvent e) {
         uiEventLogger.debug("### {} {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin(), LoggerUtils.whereFrom());
+                this.getOrigin(), e.getOrigin(), LoggerUtils.callerLocation());
     }
 
     protected void doEmpty() {
@@ -417,20 +409,19 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
         getElement().executeJs("document.querySelector('html').setAttribute('theme', 'dark');");
         
         // fop obtained via QueryParameterReader interface default methods.
-        Competition competition = Competition.getCurrent();
         OwlcmsSession.withFop(fop -> {
             init();
 
             // get the global category rankings for the group
-            order = competition.getGlobalCategoryRankingsForGroup(fop.getGroup());
-
-            liftsDone = AthleteSorter.countLiftsDone(order);
+            ScoreboardResults results = fop.getScoreboardResults();
+            order = results.getGroupRankings();
+            liftsDone = results.getLiftsDone();
             syncWithFOP(new UIEvent.SwitchGroup(fop.getGroup(), fop.getState(), fop.getCurAthlete(), this));
             // we listen on uiEventBus.
             uiEventBus = uiEventBusRegister(this, fop);
         });
         setDarkMode(this, isDarkMode(), false);
-        computeLeaders(competition);
+        computeLeaders();
     }
 
     protected void setTranslationMap() {
@@ -445,44 +436,18 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
         this.getElement().setPropertyJson("t", translations);
     }
 
-    private void computeLeaders(Competition competition) {
+    private void computeLeaders() {
         logger.debug("computeLeaders");
         OwlcmsSession.withFop(fop -> {
             Athlete curAthlete = fop.getCurAthlete();
             if (curAthlete != null && curAthlete.getGender() != null) {
-                getModel().setCategoryName(curAthlete.getCategory().getName());
-                order = competition.getGlobalTotalRanking(curAthlete.getGender());
-                // logger.debug("rankings for current gender {}
-                // size={}",curAthlete.getGender(),globalRankingsForCurrentGroup.size());
-                order = filterToCategory(curAthlete.getCategory(),
-                        order);
-                // logger.debug("rankings for current category {}
-                // size={}",curAthlete.getCategory(),globalRankingsForCurrentGroup.size());
-                order = order.stream().filter(a -> a.getTotal() > 0)
-                        .collect(Collectors.toList());
-                if (order.size() > 0) {
-                    // null as second argument because we do not highlight current athletes in the leaderboard
-                    this.getElement().setPropertyJson("leaders", getAthletesJson(order, null));
-                } else {
-                    // no one has totaled, so we show the snatch stats
-                    if (!fop.isCjStarted()) {
-                        order = Competition.getCurrent()
-                                .getGlobalSnatchRanking(curAthlete.getGender());
-                        order = filterToCategory(curAthlete.getCategory(),
-                                order);
-                        order = order.stream()
-                                .filter(a -> a.getSnatchTotal() > 0).collect(Collectors.toList());
-                        if (order.size() > 0) {
-                            this.getElement().setPropertyJson("leaders",
-                                    getAthletesJson(order, null));
-                        } else {
-                            // nothing to show
-                            this.getElement().setPropertyJson("leaders", Json.createNull());
-                        }
-                    } else {
-                        // nothing to show
-                        this.getElement().setPropertyJson("leaders", Json.createNull());
-                    }
+                // shared with the other scoreboards and the remote forwarder, computed once per ranking update
+                ScoreboardResults results = fop.getScoreboardResults();
+                getModel().setCategoryName(results.getCategoryName());
+                JsonValue leaders = results.getLeaders();
+                this.getElement().setPropertyJson("leaders", leaders != null ? leaders : Json.createNull());
+                if (results.isWideTeamNames()) {
+                    getModel().setWideTeamNames(true);
                 }
             }
         });
@@ -516,161 +481,11 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
         updateBottom(model, computeLiftType(a));
     }
 
-    private List<Athlete> filterToCategory(Category category, List<Athlete> order) {
-        return order
-                .stream()
-                .filter(a -> category != null && category.equals(a.getCategory()))
-                .limit(3)
-                .collect(Collectors.toList());
-    }
-
     private String formatAttempt(Integer attemptNo) {
         String translate = Translator.translate("AttemptBoard_attempt_number", (attemptNo % 3) + 1);
         return translate;
     }
 
-    private String formatInt(Integer total) {
-        if (total == null || total == 0) {
-            return "-";
-        } else if (total == -1) {
-            return "inv.";// invited lifter, not eligible.
-        } else if (total < 0) {
-            return "(" + Math.abs(total) + ")";
-        } else {
-            return total.toString();
-        }
-    }
-
-    private String formatKg(String total) {
-        return (total == null || total.trim().isEmpty()) ? "-"
-                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
-    }
-
-    private void getAthleteJson(Athlete a, JsonObject ja, Category curCat, int liftOrderRank) {
-        String category;
-        category = curCat != null ? curCat.getName() : "";
-        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
-        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
-        ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
-        Integer startNumber = a.getStartNumber();
-        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
-        ja.put("category", category != null ? category : "");
-        getAttemptsJson(a, liftOrderRank);
-        ja.put("sattempts", sattempts);
-        ja.put("cattempts", cattempts);
-        ja.put("total", formatInt(a.getTotal()));
-        ja.put("snatchRank", formatInt(a.getSnatchRank()));
-        ja.put("cleanJerkRank", formatInt(a.getCleanJerkRank()));
-        ja.put("totalRank", formatInt(a.getTotalRank()));
-        ja.put("group", a.getGroup() != null ? a.getGroup().getName() : "");
-        boolean notDone = a.getAttemptsDone() < 6;
-        String blink = (notDone ? " blink" : "");
-        if (notDone) {
-            ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
-        }
-    }
-
-    /**
-     * @param groupAthletes, List<Athlete> liftOrder
-     * @return
-     */
-    private JsonValue getAthletesJson(List<Athlete> groupAthletes, List<Athlete> liftOrder) {
-        JsonArray jath = Json.createArray();
-        int athx = 0;
-        Category prevCat = null;
-        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
-        long nextId = (liftOrder != null && liftOrder.size() > 1) ? liftOrder.get(1).getId() : -1L;
-        List<Athlete> athletes = groupAthletes != null ? Collections.unmodifiableList(groupAthletes)
-                : Collections.emptyList();
-        for (Athlete a : athletes) {
-            JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
-            if (curCat != null && !curCat.equals(prevCat)) {
-                // changing categories, put marker before athlete
-                ja.put("isSpacer", true);
-                jath.set(athx, ja);
-                ja = Json.createObject();
-                prevCat = curCat;
-                athx++;
-            }
-            // compute the blinking rank
-            getAthleteJson(a, ja, curCat, (a.getId() == currentId)
-                    ? 1
-                    : ((a.getId() == nextId)
-                            ? 2
-                            : 0));
-            String team = a.getTeam();
-            if (team != null && team.trim().length() > Competition.SHORT_TEAM_LENGTH) {
-                logger.trace("long team {}", team);
-                getModel().setWideTeamNames(true);
-            }
-            jath.set(athx, ja);
-            athx++;
-        }
-        return jath;
-    }
-
-    /**
-     * Compute Json string ready to be used by web component template
-     *
-     * CSS classes are pre-computed and passed along with the values; weights are formatted.
-     *
-     * @param a
-     * @param liftOrderRank2
-     * @return json string with nested attempts values
-     */
-    private void getAttemptsJson(Athlete a, int liftOrderRank) {
-        sattempts = Json.createArray();
-        cattempts = Json.createArray();
-        XAthlete x = new XAthlete(a);
-        Integer curLift = x.getAttemptsDone();
-        int ix = 0;
-        for (LiftInfo i : x.getRequestInfoArray()) {
-            JsonObject jri = Json.createObject();
-            String stringValue = i.getStringValue();
-            boolean notDone = x.getAttemptsDone() < 6;
-            String blink = (notDone ? " blink" : "");
-
-            jri.put("goodBadClassName", "narrow empty");
-            jri.put("stringValue", "");
-            if (i.getChangeNo() >= 0) {
-                String trim = stringValue != null ? stringValue.trim() : "";
-                switch (Changes.values()[i.getChangeNo()]) {
-                case ACTUAL:
-                    if (!trim.isEmpty()) {
-                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
-                            jri.put("goodBadClassName", "narrow fail");
-                            jri.put("stringValue", "-");
-                        } else {
-                            boolean failed = stringValue.startsWith("-");
-                            jri.put("goodBadClassName", failed ? "narrow fail" : "narrow good");
-                            jri.put("stringValue", formatKg(stringValue));
-                        }
-                    }
-                    break;
-                default:
-                    if (stringValue != null && !trim.isEmpty()) {
-                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
-                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
-                        jri.put("goodBadClassName", "narrow request");
-                        if (notDone) {
-                            jri.put("className", highlight);
-                        }
-                        jri.put("stringValue", stringValue);
-                    }
-                    break;
-                }
-            }
-
-            if (ix < 3) {
-                sattempts.set(ix, jri);
-            } else {
-                cattempts.set(ix % 3, jri);
-            }
-            ix++;
-        }
-    }
-
     private Object getOrigin() {
         return this;
     }
@@ -716,21 +531,25 @@ public class ScoreWithLeaders extends PolymerTemplate<ScoreWithLeaders.Scoreboar
     private void updateBottom(ScoreboardModel model, String liftType) {
         OwlcmsSession.withFop((fop) -> {
             curGroup = fop.getGroup();
-            order = Competition.getCurrent().getGlobalCategoryRankingsForGroup(curGroup);
+            ScoreboardResults results = fop.getScoreboardResults();
+            order = results.getGroupRankings();
             if (liftType != null) {
                 model.setGroupName(
                         curGroup != null
                                 ? Translator.translate("Scoreboard.GroupLiftType", curGroup.getName(), liftType)
                                 : ""); 
-                liftsDone = AthleteSorter.countLiftsDone(order);
+                liftsDone = results.getLiftsDone();
                 model.setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
             } else {
                 model.setGroupName("X");
                 model.setLiftsDone("Y");
                 this.getElement().callJsFunction("groupDone");
             }
-            this.getElement().setPropertyJson("athletes",
-                    getAthletesJson(order, fop.getLiftingOrder()));
+            JsonValue athletes = results.getGroupAthletes();
+            this.getElement().setPropertyJson("athletes", athletes != null ? athletes : Json.createArray());
+            if (results.isWideTeamNames()) {
+                model.setWideTeamNames(true);
+            }
         });
     }
 
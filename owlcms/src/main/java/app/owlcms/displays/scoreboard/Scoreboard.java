@@ -355,7 +355,7 @@ public class Scoreboard extends PolymerTemplate<Scoreboard.ScoreboardModel>
 
     public void uiLog(UIEvent e) {
         uiEventLogger.debug("### {} {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin(), LoggerUtils.whereFrom());
+                this.getOrigin(), e.getOrigin(), LoggerUtils.callerLocation());
     }
 
     protected void doEmpty() {
@@ -294,10 +294,10 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.TopSinclairModel> i
 
     public void uiLog(UIEvent e) {
         if (e == null) {
-            uiEventLogger.debug("### {} {}", this.getClass().getSimpleName(), LoggerUtils.whereFrom());
+            uiEventLogger.debug("### {} {}", this.getClass().getSimpleName(), LoggerUtils.callerLocation());
         } else {
             uiEventLogger.debug("### {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
         }
     }
 
@@ -473,12 +473,12 @@ public class TopSinclair extends PolymerTemplate<TopSinclair.TopSinclairModel> i
 
     private void setSortedMen(List<Athlete> sortedMen) {
         this.sortedMen = sortedMen;
-        logger.debug("sortedMen = {} -- {}", getSortedMen(), LoggerUtils.whereFrom());
+        logger.debug("sortedMen = {} -- {}", getSortedMen(), LoggerUtils.callerLocation());
     }
 
     private void setSortedWomen(List<Athlete> sortedWomen) {
         this.sortedWomen = sortedWomen;
-        logger.debug("sortedWomen = {} -- {}", getSortedWomen(), LoggerUtils.whereFrom());
+        logger.debug("sortedWomen = {} -- {}", getSortedWomen(), LoggerUtils.callerLocation());
     }
 
     private void setWide(boolean b) {
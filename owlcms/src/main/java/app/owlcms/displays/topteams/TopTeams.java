@@ -239,10 +239,10 @@ public class TopTeams extends PolymerTemplate<TopTeams.TopTeamsModel> implements
 
     public void uiLog(UIEvent e) {
         if (e == null) {
-            uiEventLogger.debug("### {} {}", this.getClass().getSimpleName(), LoggerUtils.whereFrom());
+            uiEventLogger.debug("### {} {}", this.getClass().getSimpleName(), LoggerUtils.callerLocation());
         } else {
             uiEventLogger.debug("### {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
         }
     }
 
@@ -248,10 +248,10 @@ public class TopTeamsSinclair extends PolymerTemplate<TopTeamsSinclair.TopTeamsS
 
     public void uiLog(UIEvent e) {
         if (e == null) {
-            uiEventLogger.debug("### {} {}", this.getClass().getSimpleName(), LoggerUtils.whereFrom());
+            uiEventLogger.debug("### {} {}", this.getClass().getSimpleName(), LoggerUtils.callerLocation());
         } else {
             uiEventLogger.debug("### {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
         }
     }
 
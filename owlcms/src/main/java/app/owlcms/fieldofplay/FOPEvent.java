@@ -8,6 +8,7 @@ package app.owlcms.fieldofplay;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.LoggerFactory;
 
@@ -25,6 +26,18 @@ import ch.qos.logback.classic.Logger;
  */
 public class FOPEvent {
 
+    /**
+     * An athlete was saved on another screen (registration, weigh-in). The field of play uses the saved athlete and
+     * recomputes the lifting order, without changing the clock or its state.
+     */
+    static public class AthleteUpdated extends FOPEvent {
+
+        public AthleteUpdated(Object origin, Athlete a) {
+            super(a, origin);
+        }
+
+    }
+
     /**
      * Class BarbellOrPlatesChanged
      */
@@ -155,9 +168,15 @@ public class FOPEvent {
         public Integer ref2Time;
         public Integer ref3Time;
 
+        /**
+         * attempt being decided (1 to 6), null if the athlete is unknown
+         */
+        public Integer attempt;
+
         public DecisionFullUpdate(Object origin, Athlete athlete, Boolean ref1, Boolean ref2, Boolean ref3,
                 Integer long1, Integer long2, Integer long3) {
             super(athlete, origin);
+            this.attempt = attemptBeingDecided(athlete);
             this.ref1 = ref1;
             this.ref2 = ref2;
             this.ref3 = ref3;
@@ -210,12 +229,22 @@ public class FOPEvent {
 
         public int refIndex;
 
-        public DecisionUpdate(Object origin, int refIndex, boolean decision) {
-            super(origin);
+        /**
+         * attempt being decided (1 to 6), null if the athlete is unknown
+         */
+        public Integer attempt;
+
+        public DecisionUpdate(Object origin, Athlete athlete, int refIndex, boolean decision) {
+            super(athlete, origin);
+            this.attempt = attemptBeingDecided(athlete);
             this.refIndex = refIndex;
             this.decision = decision;
         }
 
+        public DecisionUpdate(Object origin, int refIndex, boolean decision) {
+            this(origin, null, refIndex, decision);
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -500,10 +529,19 @@ public class FOPEvent {
 
     private long timestamp;
 
+    private static AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Together with the origin, identifies the event; assigned when the event is created. An origin that sends the
+     * same request again posts the event it created the first time, which the {@link FOPEventBus} rejects.
+     */
+    private long seq;
+
     public FOPEvent(Athlete athlete, Object origin) {
         this.athlete = athlete;
         this.origin = origin;
         this.timestamp = System.currentTimeMillis();
+        this.seq = sequence.incrementAndGet();
     }
 
     FOPEvent(Object origin) {
@@ -533,6 +571,10 @@ public class FOPEvent {
         return origin;
     }
 
+    public long getSeq() {
+        return seq;
+    }
+
     @Override
     public int hashCode() {
         // by default, events are always different, unless they override hashcode.
@@ -545,4 +587,12 @@ public class FOPEvent {
         this.athlete = athlete;
     }
 
+    private static Integer attemptBeingDecided(Athlete athlete) {
+        if (athlete == null) {
+            return null;
+        }
+        Integer attemptsDone = athlete.getAttemptsDone();
+        return (attemptsDone != null ? attemptsDone : 0) + 1;
+    }
+
 }
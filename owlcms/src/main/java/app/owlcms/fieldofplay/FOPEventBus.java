@@ -0,0 +1,197 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.fieldofplay;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+
+import ch.qos.logback.classic.Level;
+import app.owlcms.data.athlete.Athlete;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Event bus for a field of play that rejects an event submitted a second time, before it is dispatched.
+ *
+ * Events are identified by their origin and their sequence number (see {@link FOPEvent#getSeq()}). The identifiers of
+ * the last {@link #CAPACITY} events are kept in a ring buffer, with a set for constant-time lookup.
+ *
+ * Referee decisions are also rejected when they repeat, for the same athlete, attempt and referee, the decision already
+ * received, whatever device sent them. Several devices (keypads, master referee, jury) may relay the same decision. The
+ * decisions are forgotten when the field of play resets them (on {@link FOPEvent.DecisionReset} and when a new clock
+ * is given), so that an attempt can be decided again.
+ *
+ * @author owlcms
+ */
+public class FOPEventBus extends EventBus {
+
+    private static class EventId {
+        private final Object origin;
+        private final long seq;
+
+        EventId(FOPEvent e) {
+            this.origin = e.getOrigin();
+            this.seq = e.getSeq();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof EventId)) {
+                return false;
+            }
+            EventId other = (EventId) obj;
+            return origin == other.origin && seq == other.seq;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(origin) + Long.hashCode(seq);
+        }
+    }
+
+    private static class DecisionId {
+        private final Object athlete;
+        private final Integer attempt;
+        private final int refIndex;
+
+        DecisionId(Athlete athlete, Integer attempt, int refIndex) {
+            // athletes not yet saved have no id.
+            this.athlete = athlete.getId() != null ? athlete.getId() : System.identityHashCode(athlete);
+            this.attempt = attempt;
+            this.refIndex = refIndex;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof DecisionId)) {
+                return false;
+            }
+            DecisionId other = (DecisionId) obj;
+            return athlete.equals(other.athlete) && Objects.equals(attempt, other.attempt)
+                    && refIndex == other.refIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(athlete, attempt, refIndex);
+        }
+    }
+
+    static final int CAPACITY = 128;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPEventBus.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final EventId[] ring = new EventId[CAPACITY];
+    private final Set<EventId> recent = new HashSet<>(CAPACITY * 2);
+    private int next;
+    private long accepted;
+    private long duplicates;
+    private final Map<DecisionId, Boolean> decisions = new HashMap<>();
+
+    public FOPEventBus(String identifier) {
+        super(identifier);
+    }
+
+    /**
+     * @return number of events dispatched
+     */
+    public synchronized long getAcceptedCount() {
+        return accepted;
+    }
+
+    /**
+     * @return number of events rejected because they had already been submitted
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicates;
+    }
+
+    @Override
+    public void post(Object event) {
+        if (event instanceof FOPEvent && !accept((FOPEvent) event)) {
+            logger.debug("{} DUPLICATE event rejected {} {}", identifier(), event.getClass().getSimpleName(), event);
+            return;
+        }
+        super.post(event);
+    }
+
+    private synchronized boolean accept(FOPEvent e) {
+        EventId id = new EventId(e);
+        if (recent.contains(id) || !acceptDecision(e)) {
+            duplicates++;
+            return false;
+        }
+        recent.add(id);
+        EventId oldest = ring[next];
+        if (oldest != null) {
+            recent.remove(oldest);
+        }
+        ring[next] = id;
+        next = (next + 1) % CAPACITY;
+        accepted++;
+        return true;
+    }
+
+    /**
+     * Forget the decisions received, when the field of play resets the referee decisions.
+     */
+    synchronized void clearDecisions() {
+        decisions.clear();
+    }
+
+    /**
+     * @return false if the event is a decision that changes nothing to the decisions already received
+     */
+    private boolean acceptDecision(FOPEvent e) {
+        if (e instanceof FOPEvent.DecisionReset) {
+            decisions.clear();
+            return true;
+        }
+        Athlete athlete = e.getAthlete();
+        if (athlete == null) {
+            return true;
+        }
+        if (e instanceof FOPEvent.DecisionUpdate) {
+            FOPEvent.DecisionUpdate du = (FOPEvent.DecisionUpdate) e;
+            return recordDecision(new DecisionId(athlete, du.attempt, du.refIndex), du.decision);
+        } else if (e instanceof FOPEvent.DecisionFullUpdate) {
+            FOPEvent.DecisionFullUpdate dfu = (FOPEvent.DecisionFullUpdate) e;
+            // not short-circuited: every referee's decision is recorded
+            boolean changed = recordDecision(new DecisionId(athlete, dfu.attempt, 0), dfu.ref1);
+            changed |= recordDecision(new DecisionId(athlete, dfu.attempt, 1), dfu.ref2);
+            changed |= recordDecision(new DecisionId(athlete, dfu.attempt, 2), dfu.ref3);
+            return changed;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the referee's decision was not already known
+     */
+    private boolean recordDecision(DecisionId id, Boolean decision) {
+        if (decisions.containsKey(id) && Objects.equals(decisions.get(id), decision)) {
+            return false;
+        }
+        decisions.put(id, decision);
+        return true;
+    }
+}
@@ -0,0 +1,497 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.fieldofplay;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.ui.shared.BreakManagement.CountdownType;
+import app.owlcms.uievents.BreakType;
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Append-only journal of the field of play state, one file per platform.
+ *
+ * After each {@link FOPEvent} is handled, a compact binary record with the event name and the resulting state (group,
+ * automaton state, break and clock timers, clock owner, decisions) is appended. The state is captured on the field of
+ * play thread; writing the record, forcing it to disk (batched) and compacting the file take place on a background
+ * writer thread, in order. Every {@link #getSnapshotInterval()} records the journal is rewritten as a single snapshot
+ * record so it does not grow during the day.
+ *
+ * Athlete results are not in the journal -- they are already saved in the database before the events that change
+ * them complete. Replaying is therefore restoring the last valid record, not re-executing the events, which would
+ * apply lifts a second time.
+ *
+ * Enabled with <code>-DfopJournal=true</code> or <code>OWLCMS_FOPJOURNAL=true</code>. The directory defaults to
+ * <code>database/journal</code> and can be changed with <code>-DfopJournalDir</code>.
+ *
+ * @author owlcms
+ */
+public class FOPJournal {
+
+    /**
+     * One journal record. The state of the field of play after an event has been handled.
+     */
+    public static class Entry {
+        public long timestamp;
+        public String eventName;
+        public String groupName;
+        public FOPState state;
+        public BreakType breakType;
+        public CountdownType countdownType;
+        public int athleteTimeRemaining;
+        public boolean athleteTimerRunning;
+        public int breakTimeRemaining;
+        public LocalDateTime breakEnd;
+        public boolean breakIndefinite;
+        public boolean breakRunning;
+        public long clockOwnerId = -1L;
+        public long previousAthleteId = -1L;
+        public boolean cjStarted;
+        public Boolean[] decisions = new Boolean[3];
+
+        public Entry() {
+        }
+
+        static Entry of(FieldOfPlay fop, FOPEvent e) {
+            Entry entry = new Entry();
+            entry.timestamp = System.currentTimeMillis();
+            entry.eventName = e != null ? e.getClass().getSimpleName() : "";
+            entry.groupName = fop.getGroup() != null ? fop.getGroup().getName() : null;
+            entry.state = fop.getState();
+            entry.breakType = fop.getBreakType();
+            entry.countdownType = fop.getCountdownType();
+            IProxyTimer athleteTimer = fop.getAthleteTimer();
+            if (athleteTimer != null) {
+                entry.athleteTimeRemaining = athleteTimer.getTimeRemaining();
+                entry.athleteTimerRunning = athleteTimer.isRunning();
+            }
+            ProxyBreakTimer breakTimer = fop.getBreakTimer();
+            if (breakTimer != null) {
+                entry.breakIndefinite = breakTimer.isIndefinite();
+                entry.breakRunning = breakTimer.isRunning();
+                entry.breakEnd = breakTimer.getEnd();
+                entry.breakTimeRemaining = breakTimer.isRunning() ? breakTimer.liveTimeRemaining()
+                        : breakTimer.getTimeRemaining();
+            }
+            entry.clockOwnerId = idOf(fop.getClockOwner());
+            entry.previousAthleteId = idOf(fop.getPreviousAthlete());
+            entry.cjStarted = fop.isCjStarted();
+            Boolean[] decisions = fop.getRefereeDecisions();
+            if (decisions != null) {
+                System.arraycopy(decisions, 0, entry.decisions, 0, 3);
+            }
+            return entry;
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            Entry entry = new Entry();
+            entry.timestamp = in.readLong();
+            entry.eventName = in.readUTF();
+            entry.groupName = readNullableString(in);
+            entry.state = readEnum(in, FOPState.values());
+            entry.breakType = readEnum(in, BreakType.values());
+            entry.countdownType = readEnum(in, CountdownType.values());
+            entry.athleteTimeRemaining = in.readInt();
+            entry.athleteTimerRunning = in.readBoolean();
+            entry.breakTimeRemaining = in.readInt();
+            long end = in.readLong();
+            entry.breakEnd = end < 0 ? null
+                    : LocalDateTime.ofInstant(Instant.ofEpochMilli(end), ZoneId.systemDefault());
+            entry.breakIndefinite = in.readBoolean();
+            entry.breakRunning = in.readBoolean();
+            entry.clockOwnerId = in.readLong();
+            entry.previousAthleteId = in.readLong();
+            entry.cjStarted = in.readBoolean();
+            for (int i = 0; i < 3; i++) {
+                byte b = in.readByte();
+                entry.decisions[i] = b < 0 ? null : b == 1;
+            }
+            return entry;
+        }
+
+        private static long idOf(Athlete a) {
+            return a != null && a.getId() != null ? a.getId() : -1L;
+        }
+
+        private static <E extends Enum<E>> E readEnum(DataInputStream in, E[] values) throws IOException {
+            byte ordinal = in.readByte();
+            return ordinal < 0 || ordinal >= values.length ? null : values[ordinal];
+        }
+
+        private static String readNullableString(DataInputStream in) throws IOException {
+            return in.readBoolean() ? in.readUTF() : null;
+        }
+
+        private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+            out.writeByte(value != null ? value.ordinal() : -1);
+        }
+
+        private static void writeNullableString(DataOutputStream out, String s) throws IOException {
+            out.writeBoolean(s != null);
+            if (s != null) {
+                out.writeUTF(s);
+            }
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(timestamp);
+            out.writeUTF(eventName != null ? eventName : "");
+            writeNullableString(out, groupName);
+            writeEnum(out, state);
+            writeEnum(out, breakType);
+            writeEnum(out, countdownType);
+            out.writeInt(athleteTimeRemaining);
+            out.writeBoolean(athleteTimerRunning);
+            out.writeInt(breakTimeRemaining);
+            out.writeLong(breakEnd != null ? breakEnd.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1L);
+            out.writeBoolean(breakIndefinite);
+            out.writeBoolean(breakRunning);
+            out.writeLong(clockOwnerId);
+            out.writeLong(previousAthleteId);
+            out.writeBoolean(cjStarted);
+            for (int i = 0; i < 3; i++) {
+                out.writeByte(decisions[i] == null ? -1 : (decisions[i] ? 1 : 0));
+            }
+        }
+    }
+
+    private static final int MAGIC = 0x464F504A; // "FOPJ"
+    private static final int VERSION = 1;
+    private static final int MAX_RECORD_SIZE = 64 * 1024;
+    private static final long FORCE_INTERVAL_MILLIS = 250;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPJournal.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static Set<FOPJournal> openJournals = ConcurrentHashMap.newKeySet();
+    /** writes, forces and compacts all the journals, in the order the entries were appended */
+    private static ScheduledExecutorService writer;
+
+    /**
+     * Restore the field of play from its journal if there is one, and record its future events.
+     *
+     * @param fop the field of play, already initialized
+     */
+    public static void attach(FieldOfPlay fop) {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            FOPJournal journal = new FOPJournal(getJournalFile(fop.getName()).toPath());
+            Entry last = journal.open();
+            if (last != null && last.groupName != null) {
+                fop.restore(last);
+                logger.info("{} restored from journal in {} ms: group {} state {} (last event {} at {})",
+                        fop.getName(), (System.nanoTime() - start) / 1000000, last.groupName, fop.getState(),
+                        last.eventName, Instant.ofEpochMilli(last.timestamp));
+            }
+            fop.setJournal(journal);
+        } catch (IOException e) {
+            logger.error("{} cannot open journal {}", fop.getName(), LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    /**
+     * Close all the journals, once the records already appended are on disk. Called when the application stops.
+     */
+    public static void closeAll() {
+        for (FOPJournal j : openJournals) {
+            j.close();
+        }
+        synchronized (FOPJournal.class) {
+            if (writer != null) {
+                writer.shutdown();
+                writer = null;
+            }
+        }
+    }
+
+    /**
+     * @return true if the journal is enabled by the startup parameters
+     */
+    public static boolean isEnabled() {
+        return StartupUtils.getBooleanParam("fopJournal");
+    }
+
+    /**
+     * Read the last valid record from a journal. A truncated or corrupted record (power failure during a write) ends
+     * the journal.
+     *
+     * @param path the journal file
+     * @return the last valid entry, null if none
+     * @throws IOException
+     */
+    public static Entry readLast(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Entry last = null;
+        try (InputStream is = Files.newInputStream(path);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(is))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger./**/warn("ignoring journal {}: unknown format", path);
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                int checksum = in.readInt();
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    logger./**/warn("journal {}: bad checksum, ignoring the rest of the file", path);
+                    break;
+                }
+                last = Entry.read(new DataInputStream(new ByteArrayInputStream(payload)));
+            }
+        } catch (EOFException e) {
+            // normal end, or record cut short by a crash
+        }
+        return last;
+    }
+
+    private static File getJournalFile(String fopName) {
+        String dirName = StartupUtils.getStringParam("fopJournalDir");
+        File dir = new File(dirName != null ? dirName : "database/journal");
+        dir.mkdirs();
+        return new File(dir, fopName.replaceAll("[^\\p{Alnum}_-]", "_") + ".fopj");
+    }
+
+    private static synchronized ScheduledExecutorService register(FOPJournal journal) {
+        openJournals.add(journal);
+        if (writer == null) {
+            writer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "fop-journal");
+                t.setDaemon(true);
+                return t;
+            });
+            writer.scheduleWithFixedDelay(() -> {
+                for (FOPJournal j : openJournals) {
+                    j.force();
+                }
+            }, FORCE_INTERVAL_MILLIS, FORCE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        return writer;
+    }
+
+    private final Path path;
+    private volatile ScheduledExecutorService journalWriter;
+    private FileChannel channel;
+    private boolean dirty;
+    private int recordsSinceSnapshot;
+    private int snapshotInterval = 1000;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * @param path the journal file
+     */
+    public FOPJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Append the state of the field of play after an event.
+     *
+     * @param fop
+     * @param e   the event that was just handled
+     */
+    public void append(FieldOfPlay fop, FOPEvent e) {
+        append(Entry.of(fop, e));
+    }
+
+    /**
+     * Append an entry. The entry is written by the background writer; the caller does not wait for the disk.
+     *
+     * @param entry the state to record; must not be changed afterwards
+     */
+    public void append(Entry entry) {
+        ScheduledExecutorService w = journalWriter;
+        if (w == null) {
+            return;
+        }
+        try {
+            w.execute(() -> write(entry));
+        } catch (RejectedExecutionException e) {
+            // closed meanwhile
+        }
+    }
+
+    /**
+     * Close the journal, once the entries already appended are written and forced to disk.
+     */
+    public void close() {
+        openJournals.remove(this);
+        ScheduledExecutorService w = journalWriter;
+        journalWriter = null;
+        if (w == null) {
+            closeChannel();
+            return;
+        }
+        try {
+            w.submit(this::closeChannel).get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException | ExecutionException | TimeoutException e) {
+            logger.error("cannot close journal {} {}", path, LoggerUtils.exceptionMessage(e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Force pending writes to disk. Called periodically so that several events share one fsync.
+     */
+    public synchronized void force() {
+        if (channel == null || !dirty) {
+            return;
+        }
+        try {
+            channel.force(false);
+            dirty = false;
+        } catch (IOException e) {
+            logger.error("cannot sync journal {} {}", path, LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    public int getSnapshotInterval() {
+        return snapshotInterval;
+    }
+
+    /**
+     * Open the journal for appending. The existing contents are compacted to the last valid record, which also
+     * discards a partially written tail.
+     *
+     * @return the last valid entry found, null if none
+     * @throws IOException
+     */
+    public synchronized Entry open() throws IOException {
+        Entry last = readLast(path);
+        snapshot(last);
+        journalWriter = register(this);
+        return last;
+    }
+
+    public void setSnapshotInterval(int snapshotInterval) {
+        this.snapshotInterval = snapshotInterval;
+    }
+
+    private synchronized void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            logger.error("cannot close journal {} {}", path, LoggerUtils.exceptionMessage(e));
+        }
+        channel = null;
+    }
+
+    private byte[] encode(Entry entry) throws IOException {
+        buffer.reset();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(0); // length placeholder
+        entry.write(out);
+        out.flush();
+        byte[] record = new byte[buffer.size() + 4];
+        byte[] bytes = buffer.toByteArray();
+        int length = bytes.length - 4;
+        System.arraycopy(bytes, 0, record, 0, bytes.length);
+        ByteBuffer.wrap(record).putInt(0, length);
+        crc.reset();
+        crc.update(record, 4, length);
+        ByteBuffer.wrap(record).putInt(4 + length, (int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Replace the journal with a new file containing only the header and the given entry.
+     */
+    private void snapshot(Entry entry) throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            out.write(header);
+            if (entry != null) {
+                out.write(ByteBuffer.wrap(encode(entry)));
+            }
+            out.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        recordsSinceSnapshot = 0;
+        dirty = false;
+    }
+
+    /**
+     * Runs on the writer thread.
+     */
+    private synchronized void write(Entry entry) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (recordsSinceSnapshot >= snapshotInterval) {
+                // the entry being written contains the complete state, start over with it.
+                snapshot(entry);
+                return;
+            }
+            channel.write(ByteBuffer.wrap(encode(entry)));
+            dirty = true;
+            recordsSinceSnapshot++;
+        } catch (IOException ex) {
+            logger.error("cannot write journal {} {}", path, LoggerUtils.exceptionMessage(ex));
+        }
+    }
+
+}
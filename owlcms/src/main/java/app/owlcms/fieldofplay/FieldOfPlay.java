@@ -15,12 +15,13 @@ import static app.owlcms.fieldofplay.FOPState.TIME_RUNNING;
 import static app.owlcms.fieldofplay.FOPState.TIME_STOPPED;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.Executors;
 
-import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.Mixer;
 
 import org.apache.commons.lang3.ObjectUtils;
@@ -35,7 +36,9 @@ import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.platform.Platform;
+import app.owlcms.fieldofplay.FOPEvent.AthleteUpdated;
 import app.owlcms.fieldofplay.FOPEvent.BarbellOrPlatesChanged;
 import app.owlcms.fieldofplay.FOPEvent.BreakPaused;
 import app.owlcms.fieldofplay.FOPEvent.BreakStarted;
@@ -52,11 +55,14 @@ import app.owlcms.fieldofplay.FOPEvent.TimeStarted;
 import app.owlcms.fieldofplay.FOPEvent.TimeStopped;
 import app.owlcms.fieldofplay.FOPEvent.WeightChange;
 import app.owlcms.i18n.Translator;
-import app.owlcms.sound.Sound;
-import app.owlcms.sound.Tone;
+import app.owlcms.metrics.FlightEvents;
+import app.owlcms.metrics.Metrics;
+import app.owlcms.sound.MixerOutput;
+import app.owlcms.sound.SoundBank;
 import app.owlcms.ui.shared.BreakManagement.CountdownType;
 import app.owlcms.uievents.BreakType;
 import app.owlcms.uievents.EventForwarder;
+import app.owlcms.uievents.ScoreboardResults;
 import app.owlcms.uievents.UIEvent;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Level;
@@ -112,7 +118,7 @@ public class FieldOfPlay {
      */
     private Athlete clockOwner;
     private Athlete curAthlete;
-    private EventBus fopEventBus = null;
+    private FOPEventBus fopEventBus = null;
     private EventBus uiEventBus = null;
     private EventBus postBus = null;
     private Group group = null;
@@ -126,7 +132,9 @@ public class FieldOfPlay {
     private List<Athlete> liftingOrder;
     private List<Athlete> displayOrder;
     private int curWeight;
-    private Tone downSignal;
+    /** the sounds for the current mixer of the platform */
+    private SoundBank soundBank;
+    private Mixer soundBankMixer;
     private boolean initialWarningEmitted;
     private boolean finalWarningEmitted;
     private boolean timeoutEmitted;
@@ -142,8 +150,22 @@ public class FieldOfPlay {
     private CountdownType countdownType;
 
     private boolean cjStarted;
+    /** set while handling an event that is ignored in the current state; such events are not journaled */
+    private boolean eventRejected;
 
-    private Integer prevHash;
+    private ScoreboardResults scoreboardResults;
+    private final Object scoreboardResultsLock = new Object();
+
+    private FOPJournal journal;
+
+    /** change sequence number when the group was loaded, -1 if never loaded; see AthleteRepository.changedSince */
+    private long loadedChangeSeq = -1;
+    private int fullLoads;
+    private int patchedLoads;
+    private int patchedAthletes;
+
+    /** time to handle an event, java.util.Timer is used for delays */
+    private app.owlcms.metrics.Timer eventTimer;
 
     /**
      * Instantiates a new field of play state. When using this constructor {@link #init(List, IProxyTimer)} must later
@@ -154,7 +176,18 @@ public class FieldOfPlay {
      */
     public FieldOfPlay(Group group, Platform platform2) {
         this.name = platform2.getName();
-        this.fopEventBus = new EventBus("FOP-" + name);
+        this.eventTimer = Metrics.timer("owlcms_fop_event_seconds", "time to handle a field of play event", "fop",
+                name);
+        Metrics.gauge("owlcms_fop_group_loads", "loads of the current group athletes", this::getFullLoads, "fop", name,
+                "kind", "full");
+        Metrics.gauge("owlcms_fop_group_loads", "loads of the current group athletes", this::getPatchedLoads, "fop",
+                name, "kind", "patched");
+        this.fopEventBus = new FOPEventBus("FOP-" + name);
+        FOPEventBus bus = this.fopEventBus;
+        Metrics.gauge("owlcms_fop_events", "events submitted to the field of play", bus::getAcceptedCount, "fop",
+                name, "kind", "accepted");
+        Metrics.gauge("owlcms_fop_events", "events submitted to the field of play", bus::getDuplicateCount, "fop",
+                name, "kind", "duplicate");
         this.postBus = new EventBus("POST-" + name);
 
         // this.uiEventBus = new EventBus("UI-" + name);
@@ -163,6 +196,8 @@ public class FieldOfPlay {
         this.athleteTimer = null;
         this.breakTimer = new ProxyBreakTimer(this);
         this.setPlatform(platform2);
+        // decode the sounds and open the lines before the first clock starts
+        prepareDownSignal();
 
         this.fopEventBus.register(this);
         EventForwarder.listenToFOP(this);
@@ -176,7 +211,9 @@ public class FieldOfPlay {
      */
     public FieldOfPlay(List<Athlete> athletes, IProxyTimer timer1, IProxyTimer breakTimer1, boolean testingMode) {
         this.name = "test";
-        this.fopEventBus = new EventBus("FOP-" + this.name);
+        this.eventTimer = Metrics.timer("owlcms_fop_event_seconds", "time to handle a field of play event", "fop",
+                name);
+        this.fopEventBus = new FOPEventBus("FOP-" + this.name);
         this.uiEventBus = new EventBus("UI-" + this.name);
         this.postBus = new EventBus("POST-" + name);
         this.setTestingMode(testingMode);
@@ -195,7 +232,7 @@ public class FieldOfPlay {
     }
 
     public void emitDown(FOPEvent e) {
-        logger.debug("emitting down {}", LoggerUtils.whereFrom(2));
+        logger.debug("emitting down {}", LoggerUtils.callerLocation(2));
         getAthleteTimer().stop(); // paranoia
         this.setPreviousAthlete(getCurAthlete()); // would be safer to use past lifting order
         setClockOwner(null); // athlete has lifted, time does not keep running for them
@@ -210,8 +247,7 @@ public class FieldOfPlay {
         logger.info("{} Final Warning", getName());
 
         if (emitSoundsOnServer2 && !emitted2) {
-            // instead of finalWarning2.wav sounds too much like down
-            new Sound(getSoundMixer(), "initialWarning2.wav").emit();
+            getSoundBank().play(SoundBank.INITIAL_WARNING);
             setFinalWarningEmitted(true);
         }
     }
@@ -222,7 +258,7 @@ public class FieldOfPlay {
         // logger.trace("emitInitialWarning server={} emitted={}", emitSoundsOnServer2, emitted2); // $NON-NLS-1
 
         if (emitSoundsOnServer2 && !emitted2) {
-            new Sound(getSoundMixer(), "initialWarning2.wav").emit();
+            getSoundBank().play(SoundBank.INITIAL_WARNING);
             setInitialWarningEmitted(true);
         }
     }
@@ -234,7 +270,7 @@ public class FieldOfPlay {
         logger.info("{} Time Over", getName());
 
         if (emitSoundsOnServer2 && !emitted2) {
-            new Sound(getSoundMixer(), "timeOver2.wav").emit();
+            getSoundBank().play(SoundBank.TIME_OVER);
             setTimeoutEmitted(true);
         }
     }
@@ -272,12 +308,19 @@ public class FieldOfPlay {
     }
 
     /**
-     * @return the fopEventBus
+     * @return the fopEventBus, which also counts the accepted and duplicate events
      */
-    public EventBus getFopEventBus() {
+    public FOPEventBus getFopEventBus() {
         return fopEventBus;
     }
 
+    /**
+     * @return number of times the athletes of the group were loaded with a query for the whole group
+     */
+    public int getFullLoads() {
+        return fullLoads;
+    }
+
     /**
      * @return the group
      */
@@ -306,6 +349,20 @@ public class FieldOfPlay {
         return name;
     }
 
+    /**
+     * @return number of athletes fetched again because they changed, when reloading the current group
+     */
+    public int getPatchedAthletes() {
+        return patchedAthletes;
+    }
+
+    /**
+     * @return number of times the current group was reloaded by fetching only the athletes changed
+     */
+    public int getPatchedLoads() {
+        return patchedLoads;
+    }
+
     /**
      * @return the platform
      */
@@ -324,6 +381,21 @@ public class FieldOfPlay {
         return previousAthlete;
     }
 
+    /**
+     * Results shown at the bottom of the scoreboards. Computed at most once after each change to the rankings or the
+     * lifting order, and shared by all the displays and by the remote forwarder.
+     *
+     * @return the current results snapshot
+     */
+    public ScoreboardResults getScoreboardResults() {
+        synchronized (scoreboardResultsLock) {
+            if (scoreboardResults == null) {
+                scoreboardResults = ScoreboardResults.compute(this);
+            }
+            return scoreboardResults;
+        }
+    }
+
     /**
      * @return the current state
      */
@@ -386,16 +458,34 @@ public class FieldOfPlay {
      */
     @Subscribe
     public void handleFOPEvent(FOPEvent e) {
-        int newHash = e.hashCode();
-        if (prevHash != null && newHash == prevHash) {
-            prevHash = newHash;
-            logger.debug("{} state {}, DUPLICATE event received {} {}", getName(), this.getState(),
-                    e.getClass().getSimpleName(), e);
+        long start = System.nanoTime();
+        eventRejected = false;
+        try {
+            doHandleFOPEvent(e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            eventTimer.record(elapsed);
+            FlightEvents.fopEventHandled(getName(), getGroup() != null ? getGroup().getName() : null,
+                    e.getClass().getSimpleName(), elapsed);
+        }
+        // not reached if the event threw
+        if (journal != null && !eventRejected) {
+            journal.append(this, e);
+        }
+    }
+
+    private void doHandleFOPEvent(FOPEvent e) {
+        // duplicates have already been rejected by the event bus
+        logger.debug("{} state {}, event received {} {}", getName(), this.getState(), e.getClass().getSimpleName(),
+                e);
+        if (e instanceof WeightChange && !patchAthlete(e.getAthlete())) {
+            // athlete saved on another screen, not lifting in this group
+            eventRejected = true;
+            return;
+        }
+        if (e instanceof AthleteUpdated) {
+            athleteUpdated((AthleteUpdated) e);
             return;
-        } else {
-            logger.debug("{} state {}, event received {} {}", getName(), this.getState(), e.getClass().getSimpleName(),
-                    e);
-            prevHash = newHash;
         }
         // it is always possible to explicitly interrupt competition (break between the
         // two lifts, technical incident, etc.)
@@ -619,6 +709,7 @@ public class FieldOfPlay {
         if (athletes != null && athletes.size() > 0) {
             recomputeLiftingOrder();
         }
+        invalidateScoreboardResults();
         logger.debug("group {} athletes {}", getGroup(), athletes.size());
         if (state == null) {
             this.setState(INACTIVE);
@@ -648,7 +739,8 @@ public class FieldOfPlay {
      *
      * @param group
      * @param origin
-     * @param forceLoad reload from database even if current group
+     * @param forceLoad reload from database even if current group. When the group is the current one, only the
+     *                  athletes changed since it was loaded are fetched.
      */
     public void loadGroup(Group group, Object origin, boolean forceLoad) {
         String thisGroupName = this.getGroup() != null ? this.getGroup().getName() : null;
@@ -659,23 +751,41 @@ public class FieldOfPlay {
             logger.trace("group {} already loaded", loadGroupName);
             return;
         }
+        long start = System.nanoTime();
+        boolean sameGroup = group != null && group.equals(this.getGroup());
         this.setGroup(group);
-        if (group != null) {
+        if (sameGroup && patchChangedAthletes()) {
+            init(getLiftingOrder(), athleteTimer, breakTimer, alreadyLoaded);
+            FlightEvents.groupLoaded(getName(), loadGroupName, false, getLiftingOrder().size(),
+                    System.nanoTime() - start);
+        } else if (group != null) {
             logger.debug("{} loading data for group {} [{} {} {} {}]",
                     thisGroupName,
                     loadGroupName,
                     alreadyLoaded,
                     forceLoad,
                     origin.getClass().getSimpleName(),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
+            // changes made while the query runs will be fetched on the next load
+            long changeSeq = AthleteRepository.getChangeSeq();
             List<Athlete> findAllByGroupAndWeighIn = AthleteRepository.findAllByGroupAndWeighIn(group, true);
+            loadedChangeSeq = changeSeq;
+            fullLoads++;
             init(findAllByGroupAndWeighIn, athleteTimer, breakTimer, alreadyLoaded);
+            FlightEvents.groupLoaded(getName(), loadGroupName, true, findAllByGroupAndWeighIn.size(),
+                    System.nanoTime() - start);
         } else {
             init(new ArrayList<Athlete>(), athleteTimer, breakTimer, alreadyLoaded);
         }
     }
 
     public void pushOut(UIEvent event) {
+        if (event instanceof UIEvent.LiftingOrderUpdated || event instanceof UIEvent.GlobalRankingUpdated
+                || event instanceof UIEvent.SwitchGroup || event instanceof UIEvent.Decision
+                || event instanceof UIEvent.StartLifting || event instanceof UIEvent.GroupDone) {
+            // subscribers must not see the results computed before the event.
+            invalidateScoreboardResults();
+        }
         getUiEventBus().post(event);
         getPostEventBus().post(event);
     }
@@ -684,6 +794,56 @@ public class FieldOfPlay {
         recomputeLiftingOrder(true);
     }
 
+    /**
+     * Restore the state saved in the journal after a restart.
+     *
+     * Athletes are reloaded from the database. A running clock is restored stopped, and a decision being shown is
+     * skipped, so that the announcer and timekeeper resume from a known state.
+     *
+     * @param entry the last journal entry for this field of play
+     */
+    public void restore(FOPJournal.Entry entry) {
+        Group group = GroupRepository.findByName(entry.groupName);
+        if (group == null) {
+            logger./**/warn("{} cannot restore journal, group {} not found", getName(), entry.groupName);
+            return;
+        }
+        loadGroup(group, this, true);
+        setBreakType(entry.breakType);
+        setCountdownType(entry.countdownType);
+        setCjStarted(entry.cjStarted);
+        setClockOwner(findLifter(entry.clockOwnerId));
+        setPreviousAthlete(findLifter(entry.previousAthleteId));
+
+        athleteTimer.setTimeRemaining(entry.athleteTimeRemaining);
+        athleteTimer.stop();
+
+        ProxyBreakTimer breakTimer2 = getBreakTimer();
+        if (entry.breakIndefinite) {
+            breakTimer2.setIndefinite();
+        } else if (entry.breakEnd != null) {
+            breakTimer2.setEnd(entry.breakEnd);
+        } else {
+            long elapsed = entry.breakRunning ? System.currentTimeMillis() - entry.timestamp : 0;
+            breakTimer2.setTimeRemaining((int) Math.max(0, entry.breakTimeRemaining - elapsed));
+        }
+
+        FOPState newState = entry.state;
+        if (newState == TIME_RUNNING) {
+            newState = TIME_STOPPED;
+        } else if (newState == DOWN_SIGNAL_VISIBLE || newState == DECISION_VISIBLE) {
+            // the decision was recorded in the database before the state change, move on.
+            newState = CURRENT_ATHLETE_DISPLAYED;
+        } else if (newState == null) {
+            newState = INACTIVE;
+        }
+        setState(newState);
+        if (newState == BREAK && entry.breakRunning && breakTimer2.liveTimeRemaining() > 0) {
+            breakTimer2.start();
+        }
+        pushOut(new UIEvent.SwitchGroup(getGroup(), getState(), getCurAthlete(), this));
+    }
+
     /**
      * Sets the athleteTimer.
      *
@@ -720,6 +880,13 @@ public class FieldOfPlay {
         this.group = group;
     }
 
+    /**
+     * @param journal the journal where the state is recorded after each event, null for none
+     */
+    public void setJournal(FOPJournal journal) {
+        this.journal = journal;
+    }
+
     /**
      * Sets the name.
      *
@@ -751,7 +918,7 @@ public class FieldOfPlay {
      * @param group the group
      */
     public void startLifting(Group group, Object origin) {
-        logger.debug("startLifting {}", LoggerUtils.stackTrace());
+        logger.debug("startLifting {}", LoggerUtils.lazyStackTrace());
         loadGroup(group, origin, true);
         logger.trace("{} start lifting for group {} origin={}", this.getName(),
                 (group != null ? group.getName() : group), origin);
@@ -795,7 +962,7 @@ public class FieldOfPlay {
      * @param state the new state
      */
     void setState(FOPState state) {
-        logger.debug("{} entering {} {}", getName(), state, LoggerUtils.whereFrom());
+        logger.debug("{} entering {} {}", getName(), state, LoggerUtils.callerLocation());
         // if (state == INACTIVE) {
         // logger.debug("entering inactive {}",LoggerUtils.stackTrace());
         // }
@@ -807,6 +974,25 @@ public class FieldOfPlay {
         this.state = state;
     }
 
+    /**
+     * Athlete saved on another screen. The saved athlete replaces the one in the lifting order and the displays get the
+     * new order; the clock, the current athlete and the state are left as they are, even during a break.
+     */
+    private void athleteUpdated(AthleteUpdated e) {
+        if (!patchAthlete(e.getAthlete())) {
+            // not lifting in this group
+            return;
+        }
+        List<Athlete> order = getLiftingOrder();
+        AthleteSorter.liftingOrder(order);
+        setDisplayOrder(AthleteSorter.displayOrderCopy(order));
+        Athlete nextAthlete = order.size() > 1 ? order.get(1) : null;
+        boolean inBreak = state == FOPState.BREAK && breakTimer != null && breakTimer.isRunning();
+        pushOut(new UIEvent.LiftingOrderUpdated(getCurAthlete(), nextAthlete, previousAthlete, e.getAthlete(),
+                order, getDisplayOrder(), getAthleteTimer().getTimeRemaining(), false, false, e.getOrigin(),
+                inBreak));
+    }
+
     private void broadcast(String string) {
         getUiEventBus().post(new UIEvent.Broadcast(string, this));
     }
@@ -908,15 +1094,50 @@ public class FieldOfPlay {
         updateGlobalRankings();
     }
 
-    private Athlete getClockOwner() {
+    Athlete getClockOwner() {
         return clockOwner;
     }
 
+    Boolean[] getRefereeDecisions() {
+        return refereeDecision;
+    }
+
+    private Athlete findLifter(long id) {
+        if (id < 0 || liftingOrder == null) {
+            return null;
+        }
+        return liftingOrder.stream().filter(a -> a.getId() != null && a.getId() == id).findFirst().orElse(null);
+    }
+
+    /**
+     * The sound bank is replaced when the platform is switched to another mixer.
+     *
+     * @return the sounds for the platform mixer, null if sounds are not emitted on the server
+     */
+    private synchronized SoundBank getSoundBank() {
+        Mixer mixer = getSoundMixer();
+        if (soundBank == null || mixer != soundBankMixer) {
+            if (soundBank != null) {
+                soundBank.close();
+            }
+            soundBank = mixer == null ? null
+                    : new SoundBank(getName(), new MixerOutput(mixer), e -> broadcast("SoundSystemProblem"));
+            soundBankMixer = mixer;
+        }
+        return soundBank;
+    }
+
     private Mixer getSoundMixer() {
         Platform platform2 = getPlatform();
         return platform2 == null ? null : platform2.getMixer();
     }
 
+    private void invalidateScoreboardResults() {
+        synchronized (scoreboardResultsLock) {
+            scoreboardResults = null;
+        }
+    }
+
     private boolean isDecisionDisplayScheduled() {
         return decisionDisplayScheduled;
     }
@@ -937,14 +1158,90 @@ public class FieldOfPlay {
         return timeoutEmitted;
     }
 
+    /**
+     * Use an athlete saved on another screen (registration, weigh-in) in place of the one in the lifting order, instead
+     * of reloading the group from the database. The athlete is added or removed if the change makes it enter or leave
+     * the group.
+     *
+     * @param saved the athlete as saved
+     * @return false if the athlete is not, and was not, in the current group
+     */
+    private boolean patchAthlete(Athlete saved) {
+        List<Athlete> order = getLiftingOrder();
+        if (saved == null || order == null) {
+            return false;
+        }
+        int i = 0;
+        while (i < order.size() && !order.get(i).getId().equals(saved.getId())) {
+            i++;
+        }
+        Athlete old = i < order.size() ? order.get(i) : null;
+        if (old == saved) {
+            // edited in place, e.g. on the athlete card
+            return true;
+        }
+        Double bodyWeight = saved.getBodyWeight();
+        boolean inGroup = getGroup() != null && getGroup().equals(saved.getGroup()) && bodyWeight != null
+                && bodyWeight > 0;
+        if (old == null) {
+            if (!inGroup) {
+                return false;
+            }
+            order.add(saved);
+        } else if (inGroup) {
+            order.set(i, saved);
+        } else {
+            order.remove(i);
+        }
+        Athlete replacement = inGroup ? saved : null;
+        if (saved.equals(curAthlete)) {
+            setCurAthlete(replacement);
+        }
+        if (saved.equals(clockOwner)) {
+            setClockOwner(replacement);
+        }
+        if (saved.equals(previousAthlete)) {
+            setPreviousAthlete(replacement);
+        }
+        logger.debug("{} patched athlete {} {}", getName(), saved, old == null ? "added" : (inGroup ? "" : "removed"));
+        return true;
+    }
+
+    /**
+     * Fetch the athletes changed since the current group was loaded, and use them in the lifting order.
+     *
+     * @return false if the whole group must be loaded again
+     */
+    private boolean patchChangedAthletes() {
+        List<Athlete> order = getLiftingOrder();
+        if (order == null || loadedChangeSeq < 0) {
+            return false;
+        }
+        long changeSeq = AthleteRepository.getChangeSeq();
+        Set<Long> changed = AthleteRepository.changedSince(loadedChangeSeq);
+        if (changed == null) {
+            return false;
+        }
+        if (!changed.isEmpty()) {
+            Set<Long> found = new HashSet<>();
+            for (Athlete a : AthleteRepository.findByIds(changed)) {
+                found.add(a.getId());
+                patchAthlete(a);
+            }
+            // deleted athletes
+            order.removeIf(a -> changed.contains(a.getId()) && !found.contains(a.getId()));
+        }
+        loadedChangeSeq = changeSeq;
+        patchedLoads++;
+        patchedAthletes += changed.size();
+        logger.debug("{} group {} reloaded, {} athletes changed", getName(), getGroup(), changed.size());
+        return true;
+    }
+
     private void prepareDownSignal() {
         if (isEmitSoundsOnServer()) {
-            try {
-                downSignal = new Tone(getSoundMixer(), 1100, 1200, 1.0);
-            } catch (IllegalArgumentException | LineUnavailableException e) {
-                logger.error("{}\n{}", e.getCause(), LoggerUtils.stackTrace(e));
-                broadcast("SoundSystemProblem");
-            }
+            // opens the lines if the mixer has changed, the down signal must start right away
+            getSoundBank();
         }
     }
 
@@ -1015,7 +1312,7 @@ public class FieldOfPlay {
                 previousAthlete != null ? previousAthlete.getFullName() : "",
                 timeAllowed,
                 attemptsDone,
-                LoggerUtils.whereFrom());
+                LoggerUtils.callerLocation());
         if (currentDisplayAffected) {
             getAthleteTimer().setTimeRemaining(timeAllowed);
         }
@@ -1036,6 +1333,30 @@ public class FieldOfPlay {
     private void resetDecisions() {
         refereeDecision = new Boolean[3];
         refereeTime = new Integer[3];
+        if (fopEventBus != null) {
+            // the same referee may now send the same decision for a new attempt
+            fopEventBus.clearDecisions();
+        }
+    }
+
+    /**
+     * A decision sent late (e.g. relayed by a second device) must not be taken for a decision on the next attempt.
+     *
+     * @return false if the decision is for an attempt already decided, or for another athlete
+     */
+    private boolean isForCurrentAttempt(Athlete athlete, Integer attempt) {
+        if (athlete == null || attempt == null) {
+            // sender does not know the athlete
+            return true;
+        }
+        Athlete cur = getCurAthlete();
+        boolean sameAthlete = cur == athlete || (cur != null && cur.getId() != null
+                && cur.getId().equals(athlete.getId()));
+        boolean current = sameAthlete && attempt == cur.getAttemptsDone() + 1;
+        if (!current) {
+            logger.debug("{} ignoring decision for {} attempt {}", getName(), athlete, attempt);
+        }
+        return current;
     }
 
     private void resetEmittedFlags() {
@@ -1047,12 +1368,12 @@ public class FieldOfPlay {
     }
 
     private void setClockOwner(Athlete athlete) {
-        logger.trace("***setting clock owner to {} [{}]", athlete, LoggerUtils.whereFrom());
+        logger.trace("***setting clock owner to {} [{}]", athlete, LoggerUtils.callerLocation());
         this.clockOwner = athlete;
     }
 
     private void setCurAthlete(Athlete athlete) {
-        logger.trace("changing curAthlete to {} [{}]", athlete, LoggerUtils.whereFrom());
+        logger.trace("changing curAthlete to {} [{}]", athlete, LoggerUtils.callerLocation());
         this.curAthlete = athlete;
     }
 
@@ -1155,7 +1476,7 @@ public class FieldOfPlay {
             getCurAthlete().failedLift();
         }
         getCurAthlete().resetForcedAsCurrent();
-        AthleteRepository.save(getCurAthlete());
+        AthleteRepository.saveResults(getCurAthlete());
         uiShowRefereeDecisionOnSlaveDisplays(getCurAthlete(), goodLift, refereeDecision, refereeTime, origin);
         recomputeLiftingOrder();
         updateGlobalRankings();
@@ -1182,7 +1503,7 @@ public class FieldOfPlay {
             getCurAthlete().failedLift();
         }
         getCurAthlete().resetForcedAsCurrent();
-        AthleteRepository.save(getCurAthlete());
+        AthleteRepository.saveResults(getCurAthlete());
         uiShowRefereeDecisionOnSlaveDisplays(getCurAthlete(), goodLift, refereeDecision, refereeTime, origin);
         recomputeLiftingOrder();
         updateGlobalRankings();
@@ -1247,7 +1568,7 @@ public class FieldOfPlay {
 
     private void transitionToLifting(FOPEvent e, Group group2, boolean stopBreakTimer) {
         logger.debug("transitionToLifting {} {} from:{}", e.getAthlete(), stopBreakTimer,
-                LoggerUtils.whereFrom());
+                LoggerUtils.callerLocation());
 
         Athlete clockOwner = getClockOwner();
         if (getCurAthlete() != null && getCurAthlete().equals(clockOwner)) {
@@ -1286,14 +1607,7 @@ public class FieldOfPlay {
         boolean downEmitted2 = isDownEmitted();
         uiEventLogger.debug("showDownSignalOnSlaveDisplays server={} emitted={}", emitSoundsOnServer2, downEmitted2);
         if (emitSoundsOnServer2 && !downEmitted2) {
-            // sound is synchronous, we don't want to wait.
-            new Thread(() -> {
-                try {
-                    downSignal.emit();
-                } catch (IllegalArgumentException | LineUnavailableException e) {
-                    broadcast("SoundSystemProblem");
-                }
-            }).start();
+            getSoundBank().play(SoundBank.DOWN);
             setDownEmitted(true);
         }
         pushOut(new UIEvent.DownSignal(origin2));
@@ -1325,6 +1639,7 @@ public class FieldOfPlay {
     }
 
     private void unexpectedEventInState(FOPEvent e, FOPState state) {
+        eventRejected = true;
         // events not worth signaling
         if (e instanceof DecisionReset || e instanceof DecisionFullUpdate) {
             // ignore
@@ -1340,13 +1655,17 @@ public class FieldOfPlay {
     }
 
     private void updateGlobalRankings() {
-        logger.debug("update rankings {}", LoggerUtils.whereFrom());
+        logger.debug("update rankings {}", LoggerUtils.callerLocation());
         Competition competition = Competition.getCurrent();
+        // does not wait for the write-behind to reach the database
         competition.computeGlobalRankings(false);
         uiShowUpdatedRankings();
     }
 
     private void updateRefereeDecisions(FOPEvent.DecisionFullUpdate e) {
+        if (!isForCurrentAttempt(e.getAthlete(), e.attempt)) {
+            return;
+        }
         refereeDecision[0] = e.ref1;
         refereeTime[0] = e.ref1Time;
         refereeDecision[1] = e.ref2;
@@ -1357,6 +1676,9 @@ public class FieldOfPlay {
     }
 
     private void updateRefereeDecisions(FOPEvent.DecisionUpdate e) {
+        if (!isForCurrentAttempt(e.getAthlete(), e.attempt)) {
+            return;
+        }
         refereeDecision[e.refIndex] = e.decision;
         refereeTime[e.refIndex] = 0;
         processRefereeDecisions(e);
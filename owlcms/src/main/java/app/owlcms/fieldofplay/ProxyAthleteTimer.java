@@ -87,7 +87,7 @@ public class ProxyAthleteTimer implements IProxyTimer {
         if (running) {
             computeTimeRemaining();
         }
-        logger.debug("setting Time -- timeRemaining = {} [{}]", timeRemaining, LoggerUtils.whereFrom());
+        logger.debug("setting Time -- timeRemaining = {} [{}]", timeRemaining, LoggerUtils.callerLocation());
         this.timeRemaining = timeRemaining;
         fop.pushOut(new UIEvent.SetTime(timeRemaining, null));
         running = false;
@@ -100,7 +100,7 @@ public class ProxyAthleteTimer implements IProxyTimer {
     public void start() {
         if (!running) {
             startMillis = System.currentTimeMillis();
-            logger.debug("starting Time -- timeRemaining = {} [{}]", timeRemaining, LoggerUtils.whereFrom());
+            logger.debug("starting Time -- timeRemaining = {} [{}]", timeRemaining, LoggerUtils.callerLocation());
             timeRemainingAtLastStop = timeRemaining;
         }
         fop.pushOut(new UIEvent.StartTime(timeRemaining, null, fop.isEmitSoundsOnServer()));
@@ -115,7 +115,7 @@ public class ProxyAthleteTimer implements IProxyTimer {
         if (running) {
             computeTimeRemaining();
         }
-        logger.trace("***stopping Time -- timeRemaining = {} [{}]", timeRemaining, LoggerUtils.whereFrom());
+        logger.trace("***stopping Time -- timeRemaining = {} [{}]", timeRemaining, LoggerUtils.callerLocation());
         timeRemainingAtLastStop = timeRemaining;
         fop.pushOut(new UIEvent.StopTime(timeRemaining, null));
         running = false;
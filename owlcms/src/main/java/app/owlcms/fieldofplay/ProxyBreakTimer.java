@@ -117,19 +117,19 @@ public class ProxyBreakTimer implements IProxyTimer {
         if (end != null) {
             int until = (int) LocalDateTime.now().until(end, ChronoUnit.MILLIS);
             logger.debug("liveTimeRemaining target {} {}", DurationFormatUtils.formatDurationHMS(until),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
             return until;
         } else if (running) {
             stopMillis = System.currentTimeMillis();
             long elapsed = stopMillis - startMillis;
             int tr = (int) (getTimeRemaining() - elapsed);
             logger.debug("liveTimeRemaining running {} {}", DurationFormatUtils.formatDurationHMS(tr),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
             return tr;
         } else {
             int tr = getTimeRemaining();
             logger.debug("liveTimeRemaining stopped {} {}", DurationFormatUtils.formatDurationHMS(tr),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
             return tr;
         }
     }
@@ -143,7 +143,7 @@ public class ProxyBreakTimer implements IProxyTimer {
 
     public void setIndefinite() {
         indefinite = true;
-        logger.debug("setting break indefinite = {} [{}]", indefinite, LoggerUtils.whereFrom());
+        logger.debug("setting break indefinite = {} [{}]", indefinite, LoggerUtils.callerLocation());
         this.setTimeRemaining(0);
         this.setEnd(null);
         fop.pushOut(new UIEvent.BreakSetTime(fop.getBreakType(), fop.getCountdownType(), getTimeRemaining(), null,
@@ -169,7 +169,7 @@ public class ProxyBreakTimer implements IProxyTimer {
 //        }
 
         logger.debug("setting break timeRemaining = {} [{}]", DurationFormatUtils.formatDurationHMS(this.timeRemaining),
-                LoggerUtils.stackTrace());
+                LoggerUtils.lazyStackTrace());
 
 //        fop.pushOut(new UIEvent.BreakSetTime(fop.getBreakType(), fop.getCountdownType(), timeRemaining,
 //                this.indefinite, this));
@@ -199,9 +199,9 @@ public class ProxyBreakTimer implements IProxyTimer {
         }
         running = false;
         timeRemainingAtLastStop = timeRemaining;
-        logger.debug("***stopping Break -- timeRemaining = {} [{}]", getTimeRemaining(), LoggerUtils.whereFrom());
+        logger.debug("***stopping Break -- timeRemaining = {} [{}]", getTimeRemaining(), LoggerUtils.callerLocation());
         timeRemainingAtLastStop = getTimeRemaining();
-        logger.debug("break stop = {} [{}]", liveTimeRemaining(), LoggerUtils.whereFrom());
+        logger.debug("break stop = {} [{}]", liveTimeRemaining(), LoggerUtils.callerLocation());
         UIEvent.BreakPaused event = new UIEvent.BreakPaused(isIndefinite() ? null : getMillis(), getOrigin(), false,
                 fop.getBreakType(), fop.getCountdownType());
         fop.pushOut(event);
@@ -228,7 +228,7 @@ public class ProxyBreakTimer implements IProxyTimer {
             // we've already signaled time over.
             return;
         }
-        logger.debug("break timeover = {} [{}]", getTimeRemaining(), LoggerUtils.whereFrom());
+        logger.debug("break timeover = {} [{}]", getTimeRemaining(), LoggerUtils.callerLocation());
 
         // should emit sound at end of break
         fop.pushOut(new UIEvent.BreakDone(origin));
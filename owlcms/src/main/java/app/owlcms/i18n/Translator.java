@@ -169,90 +169,94 @@ public class Translator implements I18NProvider {
         File bundleDir = Files.createTempDir();
         line = 0;
 
-        if (i18nloader == null) {
-            logger.debug("reloading translation bundles");
-
-            InputStream csvStream = helper.getClass().getResourceAsStream(csvName);
-            ICsvListReader listReader = null;
-            try {
-                CsvPreference[] preferences = new CsvPreference[] { CsvPreference.STANDARD_PREFERENCE,
-                        CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE, CsvPreference.TAB_PREFERENCE };
-
-                List<String> stringList = new ArrayList<>();
-                for (CsvPreference preference : preferences) {
-                    listReader = new CsvListReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8),
-                            preference);
-
-                    if ((stringList = readLine(listReader)) == null) {
-                        throw new RuntimeException(csvName + " file is empty");
-                    } else if (stringList.size() <= 2) {
-                        // reset stream
-                        csvStream = helper.getClass().getResourceAsStream(csvName);
-                    } else {
-                        logger.debug(stringList.toString());
-                        break;
+        // the startup stages and the first requests may get here at the same time
+        synchronized (Translator.class) {
+            if (i18nloader == null) {
+                logger.debug("reloading translation bundles");
+
+                InputStream csvStream = helper.getClass().getResourceAsStream(csvName);
+                ICsvListReader listReader = null;
+                try {
+                    CsvPreference[] preferences = new CsvPreference[] { CsvPreference.STANDARD_PREFERENCE,
+                            CsvPreference.EXCEL_NORTH_EUROPE_PREFERENCE, CsvPreference.TAB_PREFERENCE };
+
+                    List<String> stringList = new ArrayList<>();
+                    for (CsvPreference preference : preferences) {
+                        listReader = new CsvListReader(new InputStreamReader(csvStream, StandardCharsets.UTF_8),
+                                preference);
+
+                        if ((stringList = readLine(listReader)) == null) {
+                            throw new RuntimeException(csvName + " file is empty");
+                        } else if (stringList.size() <= 2) {
+                            // reset stream
+                            csvStream = helper.getClass().getResourceAsStream(csvName);
+                        } else {
+                            logger.debug(stringList.toString());
+                            break;
+                        }
                     }
-                }
 
-                final File[] outFiles = new File[stringList.size()];
-                final Properties[] languageProperties = new Properties[outFiles.length];
-                locales = new ArrayList<>();
-                for (int i = 1; i < outFiles.length; i++) {
-                    String language = stringList.get(i);
-                    locales.add(createLocale(language));
-                    if (language != null && !language.isEmpty()) {
-                        language = "_" + language;
+                    final File[] outFiles = new File[stringList.size()];
+                    final Properties[] languageProperties = new Properties[outFiles.length];
+                    List<Locale> csvLocales = new ArrayList<>();
+                    for (int i = 1; i < outFiles.length; i++) {
+                        String language = stringList.get(i);
+                        csvLocales.add(createLocale(language));
+                        if (language != null && !language.isEmpty()) {
+                            language = "_" + language;
+                        }
+                        final File outfile = new File(bundleDir, baseName + language + ".properties");
+                        outFiles[i] = outfile;
+                        languageProperties[i] = new Properties();
                     }
-                    final File outfile = new File(bundleDir, baseName + language + ".properties");
-                    outFiles[i] = outfile;
-                    languageProperties[i] = new Properties();
-                }
 
-                // reading to properties
-                while ((stringList = readLine(listReader)) != null) {
-                    final String key = stringList.get(0);
-                    if (key == null) {
-                        String message = MessageFormat.format("{0} line {1}: key is null", csvName, line);
-                        logger.error(message);
-                        throw new RuntimeException(message);
-                    }
-                    logger.debug(stringList.toString());
-                    for (int i = 1; i < languageProperties.length; i++) {
-                        // treat the CSV strings using same rules as Properties files.
-                        // u0000 escapes are translated to Java characters
-                        String input = stringList.get(i);
-                        if (input != null) {
-                            // "\ " is not valid, \u0020 is needed.
-                            String unescapeJava = StringEscapeUtils.unescapeJava(input.trim());
-                            if (!unescapeJava.isEmpty()) {
-                                Properties properties = languageProperties[i];
-                                if (properties == null) {
-                                    String message = MessageFormat
-                                            .format("{0} line {1}: languageProperties[{2}] is null", csvName, line, i);
-                                    logger.error(message);
-                                    throw new RuntimeException(message);
+                    // reading to properties
+                    while ((stringList = readLine(listReader)) != null) {
+                        final String key = stringList.get(0);
+                        if (key == null) {
+                            String message = MessageFormat.format("{0} line {1}: key is null", csvName, line);
+                            logger.error(message);
+                            throw new RuntimeException(message);
+                        }
+                        logger.debug(stringList.toString());
+                        for (int i = 1; i < languageProperties.length; i++) {
+                            // treat the CSV strings using same rules as Properties files.
+                            // u0000 escapes are translated to Java characters
+                            String input = stringList.get(i);
+                            if (input != null) {
+                                // "\ " is not valid, \u0020 is needed.
+                                String unescapeJava = StringEscapeUtils.unescapeJava(input.trim());
+                                if (!unescapeJava.isEmpty()) {
+                                    Properties properties = languageProperties[i];
+                                    if (properties == null) {
+                                        String message = MessageFormat.format(
+                                                "{0} line {1}: languageProperties[{2}] is null", csvName, line, i);
+                                        logger.error(message);
+                                        throw new RuntimeException(message);
+                                    }
+                                    properties.setProperty(key, unescapeJava);
                                 }
-                                properties.setProperty(key, unescapeJava);
                             }
                         }
                     }
-                }
 
-                // writing
-                for (int i = 1; i < languageProperties.length; i++) {
-                    logger.debug("writing to " + outFiles[i].getAbsolutePath());
-                    languageProperties[i].store(new FileOutputStream(outFiles[i]), "generated from " + csvName);
-                }
-                final URL[] urls = { bundleDir.toURI().toURL() };
-                i18nloader = new URLClassLoader(urls);
-
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                if (listReader != null) {
-                    try {
-                        listReader.close();
-                    } catch (IOException e) {
+                    // writing
+                    for (int i = 1; i < languageProperties.length; i++) {
+                        logger.debug("writing to " + outFiles[i].getAbsolutePath());
+                        languageProperties[i].store(new FileOutputStream(outFiles[i]), "generated from " + csvName);
+                    }
+                    final URL[] urls = { bundleDir.toURI().toURL() };
+                    locales = csvLocales;
+                    i18nloader = new URLClassLoader(urls);
+
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    if (listReader != null) {
+                        try {
+                            listReader.close();
+                        } catch (IOException e) {
+                        }
                     }
                 }
             }
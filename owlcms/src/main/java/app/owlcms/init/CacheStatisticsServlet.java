@@ -0,0 +1,122 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.init;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.utils.AccessUtils;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Hit, miss and eviction counts for each second-level and query cache region, as plain text.
+ *
+ * Statistics are collected when the application is started with <code>-DcacheStatistics=true</code>;
+ * <code>/cacheStats?enable=true</code> and <code>/cacheStats?enable=false</code> switch collection on and off while
+ * running. Evictions are reported by Ehcache through its JCache statistics beans.
+ *
+ * Only available when diagnostics are enabled, and protected by the PIN (see
+ * {@link AccessUtils#checkDiagnosticsAccess}); region names and sizes reveal what the competition contains.
+ *
+ * @author owlcms
+ */
+@WebServlet("/cacheStats")
+public class CacheStatisticsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(CacheStatisticsServlet.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!AccessUtils.checkDiagnosticsAccess(request, response)) {
+            return;
+        }
+        Statistics stats = JPAService.getStatistics();
+        if (stats == null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+        String enable = request.getParameter("enable");
+        if (enable != null) {
+            stats.setStatisticsEnabled(Boolean.parseBoolean(enable));
+            logger.info("cache statistics {}", stats.isStatisticsEnabled() ? "enabled" : "disabled");
+        }
+        if (!stats.isStatisticsEnabled()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "cache statistics are not enabled");
+            return;
+        }
+
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+        out.printf("second-level cache: hits=%d misses=%d puts=%d%n", stats.getSecondLevelCacheHitCount(),
+                stats.getSecondLevelCacheMissCount(), stats.getSecondLevelCachePutCount());
+        out.printf("query cache: hits=%d misses=%d puts=%d%n", stats.getQueryCacheHitCount(),
+                stats.getQueryCacheMissCount(), stats.getQueryCachePutCount());
+        out.printf("%n%-45s %10s %10s %10s %10s %10s %7s%n", "region", "hits", "misses", "puts", "evictions",
+                "entries", "hit%");
+
+        Set<String> regionNames = new TreeSet<>(Arrays.asList(stats.getSecondLevelCacheRegionNames()));
+        regionNames.add(JPAService.REFERENCE_QUERIES);
+        regionNames.add(JPAService.ATHLETE_QUERIES);
+        for (String regionName : regionNames) {
+            CacheRegionStatistics region = stats.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            long hits = region.getHitCount();
+            long misses = region.getMissCount();
+            long lookups = hits + misses;
+            Long evictions = evictions(regionName);
+            out.printf("%-45s %10d %10d %10d %10s %10d %7s%n", regionName, hits, misses, region.getPutCount(),
+                    evictions != null ? evictions : "-", region.getElementCountInMemory(),
+                    lookups > 0 ? String.format("%.1f", hits * 100.0D / lookups) : "-");
+        }
+        out.flush();
+    }
+
+    /**
+     * @return evictions reported by the Ehcache statistics bean for the region, null if not available
+     */
+    private Long evictions(String regionName) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Set<ObjectName> names = server
+                    .queryNames(new ObjectName("javax.cache:type=CacheStatistics,Cache=" + regionName + ",*"), null);
+            long evictions = 0;
+            for (ObjectName name : names) {
+                evictions += (Long) server.getAttribute(name, "CacheEvictions");
+            }
+            return names.isEmpty() ? null : evictions;
+        } catch (Exception e) {
+            logger.debug("no eviction count for {}: {}", regionName, LoggerUtils.exceptionMessage(e));
+            return null;
+        }
+    }
+}
@@ -59,24 +59,42 @@ public class EmbeddedJetty {
      */
     public void run(int port, String contextPath) throws Exception {
         startLogger.info("starting web server");
-        URL webRootLocation = this.getClass().getResource("/META-INF/resources/");
-        URI webRootUri = webRootLocation.toURI();
+        long start = System.nanoTime();
 
         WebAppContext context = new WebAppContext();
-        context.setBaseResource(Resource.newResource(webRootUri));
         context.setContextPath(contextPath);
-        context.setAttribute("org.eclipse.jetty.server.webapp.ContainerIncludeJarPattern", ".*");
-        context.setConfigurationDiscovered(true);
-        context.setConfigurations(new Configuration[] {
-                new AnnotationConfiguration(),
-                new WebInfConfiguration(),
-                new WebXmlConfiguration(),
-                new MetaInfConfiguration(),
-                new FragmentConfiguration(),
-                new EnvConfiguration(),
-                new PlusConfiguration(),
-                new JettyWebXmlConfiguration()
-        });
+        StartupIndex index = StartupUtils.getBooleanParam("fastStart") ? StartupIndex.load() : null;
+        if (index != null) {
+            // everything was found at build time, nothing to scan
+            context.setBaseResource(index.resourceBase());
+            context.setConfigurations(new Configuration[] {
+                    new WebInfConfiguration(),
+                    new WebXmlConfiguration(),
+                    new EnvConfiguration(),
+                    new PlusConfiguration(),
+                    new JettyWebXmlConfiguration()
+            });
+            index.register(context);
+        } else {
+            if (StartupUtils.getBooleanParam("fastStart")) {
+                logger./**/warn("no startup index, scanning the class path");
+            }
+            URL webRootLocation = this.getClass().getResource("/META-INF/resources/");
+            URI webRootUri = webRootLocation.toURI();
+            context.setBaseResource(Resource.newResource(webRootUri));
+            context.setAttribute("org.eclipse.jetty.server.webapp.ContainerIncludeJarPattern", ".*");
+            context.setConfigurationDiscovered(true);
+            context.setConfigurations(new Configuration[] {
+                    new AnnotationConfiguration(),
+                    new WebInfConfiguration(),
+                    new WebXmlConfiguration(),
+                    new MetaInfConfiguration(),
+                    new FragmentConfiguration(),
+                    new EnvConfiguration(),
+                    new PlusConfiguration(),
+                    new JettyWebXmlConfiguration()
+            });
+        }
         Context servletContext = context.getServletContext();
         servletContext.setExtendedListenerTypes(true);
         context.addEventListener(new ServletContextListeners());
@@ -89,16 +107,25 @@ public class EmbeddedJetty {
 
         try {
             // start the server so that kubernetes ingress does not complain due to long initialization.
+            long configured = System.nanoTime();
             server.start();
             startLogger.info("started on port {}", port);
+            long started = System.nanoTime();
             
             // start JPA+Hibernate, initialize database if needed, etc.
             Main.initData();
+            startLogger.info("startup phases ({}): configuration {} ms, web server {} ms, data {} ms",
+                    index != null ? "startup index" : "class path scan", (configured - start) / 1000000,
+                    (started - configured) / 1000000, (System.nanoTime() - started) / 1000000);
             
             // server threads blocking on latch will now go ahead.
             startLogger.info("initialization done, allowing requests.");
             getLatch().countDown();
-            
+            if (StartupUtils.logReady("owlcms")) {
+                server.stop();
+                return;
+            }
+
             StartupUtils.startBrowser();
             server.join();
         } catch (Exception e) {
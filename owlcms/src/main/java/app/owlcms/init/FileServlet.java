@@ -21,18 +21,14 @@
 package app.owlcms.init;
 
 import java.io.Closeable;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
-import java.net.URI;
-import java.net.URISyntaxException;
-import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -48,11 +44,14 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.HttpOutput;
 import org.slf4j.LoggerFactory;
 
+import app.owlcms.init.ResourceCache.CachedResource;
+import app.owlcms.metrics.Counter;
+import app.owlcms.metrics.Metrics;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Logger;
 
 /**
@@ -65,7 +64,7 @@ import ch.qos.logback.classic.Logger;
  */
 /**
  * Modified to fetch files under the ./local directory relative to the startup directory and, failing that, as a
- * resource on the classpath.
+ * resource on the classpath. Files are read once and kept in memory by a {@link ResourceCache}.
  *
  * @author Jean-François Lamy
  *
@@ -73,6 +72,51 @@ import ch.qos.logback.classic.Logger;
 @WebServlet("/local/*")
 public class FileServlet extends HttpServlet {
 
+    /**
+     * A byte range of a file, as a channel that ends with the range.
+     */
+    private static class RangeChannel implements ReadableByteChannel {
+        private final FileChannel channel;
+        private long remaining;
+
+        RangeChannel(FileChannel channel, long start, long length) throws IOException {
+            this.channel = channel.position(start);
+            this.remaining = length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n;
+            if (dst.remaining() > remaining) {
+                ByteBuffer limited = dst.duplicate();
+                limited.limit(dst.position() + (int) remaining);
+                n = channel.read(limited);
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+            } else {
+                n = channel.read(dst);
+            }
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+
     /**
      * This class represents a byte range.
      */
@@ -103,12 +147,18 @@ public class FileServlet extends HttpServlet {
     private static final long serialVersionUID = -4889625575833532034L;
 
     private static final int DEFAULT_BUFFER_SIZE = 10240; // ..bytes = 10KB.
+    private static final int FILE_BUFFER_SIZE = 65536; // ..bytes = 64KB, for files read from disk.
     private static final long DEFAULT_EXPIRE_TIME = 604800000L; // ..ms = 1 week.
 
     // Properties ---------------------------------------------------------------------------------
 
     private static final String MULTIPART_BOUNDARY = "MULTIPART_BYTERANGES";
 
+    private static final Counter channelSends = Metrics.counter("owlcms_file_sends_total",
+            "byte ranges of files not in memory, by how they were written", "path", "channel");
+    private static final Counter copySends = Metrics.counter("owlcms_file_sends_total",
+            "byte ranges of files not in memory, by how they were written", "path", "copy");
+
     // Actions ------------------------------------------------------------------------------------
 
     /**
@@ -153,6 +203,7 @@ public class FileServlet extends HttpServlet {
      */
     private static void copy(RandomAccessFile input, OutputStream output, long start, long length)
             throws IOException {
+        copySends.inc();
         byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
         int read;
 
@@ -177,6 +228,48 @@ public class FileServlet extends HttpServlet {
         }
     }
 
+    /**
+     * Send the given byte range as the whole response content.
+     *
+     * A file that is not in memory is handed to Jetty as a channel; Jetty reads it into its own pooled (direct)
+     * buffers and writes them to the connection, so the bytes are not copied through the servlet output buffer.
+     *
+     * @param content The content, null if not in memory.
+     * @param input   The file, used if content is null.
+     * @param output  The output to write to.
+     * @param start   Start of the byte range.
+     * @param length  Length of the byte range.
+     * @throws IOException If something fails at I/O level.
+     */
+    private static void send(byte[] content, RandomAccessFile input, OutputStream output, long start, long length)
+            throws IOException {
+        if (content == null && output instanceof HttpOutput) {
+            channelSends.inc();
+            ((HttpOutput) output).sendContent(new RangeChannel(input.getChannel(), start, length));
+        } else {
+            write(content, input, output, start, length);
+        }
+    }
+
+    /**
+     * Write the given byte range, from memory if the content is there, else from the file.
+     *
+     * @param content The content, null if not in memory.
+     * @param input   The file, used if content is null.
+     * @param output  The output to write to.
+     * @param start   Start of the byte range.
+     * @param length  Length of the byte range.
+     * @throws IOException If something fails at I/O level.
+     */
+    private static void write(byte[] content, RandomAccessFile input, OutputStream output, long start, long length)
+            throws IOException {
+        if (content != null) {
+            output.write(content, (int) start, (int) length);
+        } else {
+            copy(input, output, start, length);
+        }
+    }
+
     /**
      * Returns true if the given match header matches the given value.
      *
@@ -209,6 +302,19 @@ public class FileServlet extends HttpServlet {
 
     private Logger logger = (Logger) LoggerFactory.getLogger(FileServlet.class);
     private Path basePath;
+    private ResourceCache cache;
+
+    /**
+     * Stop watching the override directory.
+     *
+     * @see HttpServlet#destroy().
+     */
+    @Override
+    public void destroy() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
 
     /**
      * Initialize the servlet.
@@ -240,6 +346,18 @@ public class FileServlet extends HttpServlet {
             throw new ServletException("FileServlet init param 'basePath' value '"
                     + basePathName + "' is not readable in file system.");
         }
+
+        long cacheBytes = StartupUtils.getIntegerParam("resourceCacheMB", 32) * 1024L * 1024L;
+        cache = new ResourceCache(basePath, cacheBytes, name -> {
+            String contentType = getServletContext().getMimeType(name);
+            return contentType != null && contentType.startsWith("text");
+        });
+        cache.watch();
+        Metrics.gauge("owlcms_resource_cache_requests", "files served from the resource cache", cache::getHits,
+                "result", "hit");
+        Metrics.gauge("owlcms_resource_cache_requests", "files served from the resource cache", cache::getMisses,
+                "result", "miss");
+        Metrics.gauge("owlcms_resource_cache_bytes", "size of the files kept in memory", cache::getBytes);
     }
 
     /**
@@ -298,11 +416,16 @@ public class FileServlet extends HttpServlet {
         processRequest(request, response, false);
     }
 
-    private File getFileFromPathInfo(HttpServletResponse response, String requestedFile)
+    /**
+     * Find the requested file in the override directory or on the class path.
+     *
+     * @return the file, or null if an error was sent
+     */
+    private CachedResource getResourceFromPathInfo(HttpServletResponse response, String requestedFile)
             throws IOException, UnsupportedEncodingException {
 
         // Check if file is actually supplied to the request URL.
-        if (requestedFile == null) {
+        if (requestedFile == null || requestedFile.equals("/")) {
             response.sendError(HttpServletResponse.SC_BAD_REQUEST);
             return null;
         }
@@ -323,30 +446,18 @@ public class FileServlet extends HttpServlet {
             finalPath = resolvePath(basePath, relativePath);
             logger.debug("looking for {}", finalPath);
 
-            if (Files.exists(finalPath)) {
-                logger.debug("found Filesystem File: {}", finalPath.toRealPath());
-                return finalPath.toFile();
-            } else {
-                // if there is no override in /local on disk, look for resource on classpath
-                String resourceName = "/" + relativeFileName;
-
-                boolean useTemp = true;
-                if (useTemp) {
-                    return getFileFromResource(response, finalPath, resourceName);
-                } else {
-                    return getFileFromZip(response, resourceName);
-                }
+            // if there is no override in /local on disk, look for resource on classpath
+            CachedResource resource = cache.get(basePath.relativize(finalPath));
+            if (resource == null) {
+                logger./**/error("resource not found on classpath /{}", relativeFileName);
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
             }
+            return resource;
         } catch (IllegalArgumentException e) {
             logger.error(e.getLocalizedMessage());
             response.getWriter().print(e.getLocalizedMessage());
             response.sendError(HttpServletResponse.SC_FORBIDDEN);
             return null;
-        } catch (URISyntaxException e) {
-            logger.error(e.getLocalizedMessage());
-            response.getWriter().print(e.getLocalizedMessage());
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return null;
         } catch (Exception e) {
             logger.error(LoggerUtils.stackTrace(e));
             response.getWriter().print(e.getLocalizedMessage());
@@ -355,51 +466,6 @@ public class FileServlet extends HttpServlet {
         }
     }
 
-    private File getFileFromResource(HttpServletResponse response, Path finalPath, String resourceName)
-            throws IOException, FileNotFoundException {
-        InputStream in = getClass().getResourceAsStream(resourceName);
-        if (in != null) {
-            final String fullFileName = finalPath.getFileName().toString();
-            final String extension = FilenameUtils.getExtension(fullFileName);
-            final String baseName = FilenameUtils.getBaseName(fullFileName);
-            final File tempFile = File.createTempFile(baseName, "."+extension);
-            logger.debug("creating {}", tempFile.getAbsolutePath());
-            tempFile.deleteOnExit();
-            try (FileOutputStream out = new FileOutputStream(tempFile)) {
-                IOUtils.copy(in, out);
-            }
-            tempFile.setReadable(true);
-            return tempFile;
-        } else {
-            logger./**/error("resource not found on classpath {}", resourceName);
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return null;
-        }
-    }
-
-    private File getFileFromZip(HttpServletResponse response, String resourceName)
-            throws URISyntaxException, IOException {
-        // we need a file so we use the zipfilesystem.
-        // this does not work on older Java?
-        URL resource = getClass().getResource(resourceName);
-        if (resource != null) {
-            URI resourcesURI = resource.toURI();
-            Path resourcePath = Paths.get(resourcesURI);
-            if (!Files.exists(resourcePath)) {
-                logger./**/error("file not found on classpath {}", resourcePath);
-                response.sendError(HttpServletResponse.SC_NOT_FOUND);
-                return null;
-            } else {
-                logger.debug("found Classpath/Jar File: {}", resourcePath.toRealPath());
-                return resourcePath.toFile();
-            }
-        } else {
-            logger./**/error("resource not found on classpath {}", resourceName);
-            response.sendError(HttpServletResponse.SC_NOT_FOUND);
-            return null;
-        }
-    }
-
     /**
      * Process the actual request.
      *
@@ -416,16 +482,16 @@ public class FileServlet extends HttpServlet {
         String requestedFileName = request.getPathInfo();
         logger.debug("requested file = {}", requestedFileName);
 
-        File file = getFileFromPathInfo(response, requestedFileName);
-        if (file == null) {
+        CachedResource resource = getResourceFromPathInfo(response, requestedFileName);
+        if (resource == null) {
             return;
         }
 
         // Prepare some variables. The ETag is an unique identifier of the file.
-        String fileName = file.getName();
-        long length = file.length();
-        long lastModified = file.lastModified();
-        String eTag = fileName + "_" + length + "_" + lastModified;
+        String fileName = resource.getName();
+        long length = resource.getLength();
+        long lastModified = resource.getLastModified();
+        String eTag = resource.getETag();
         long expires = System.currentTimeMillis() + DEFAULT_EXPIRE_TIME;
 
         // Validate request headers for caching ---------------------------------------------------
@@ -563,22 +629,28 @@ public class FileServlet extends HttpServlet {
 
         // Initialize response.
         response.reset();
-        response.setBufferSize(DEFAULT_BUFFER_SIZE);
+        response.setBufferSize(resource.getContent() != null ? DEFAULT_BUFFER_SIZE : FILE_BUFFER_SIZE);
         response.setHeader("Content-Disposition", disposition + ";filename=\"" + fileName + "\"");
         response.setHeader("Accept-Ranges", "bytes");
         response.setHeader("ETag", eTag);
         response.setDateHeader("Last-Modified", lastModified);
         response.setDateHeader("Expires", expires);
+        if (contentType.startsWith("text")) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
 
         // Send requested file (part(s)) to client ------------------------------------------------
 
         // Prepare streams.
+        byte[] bytes = resource.getContent();
         RandomAccessFile input = null;
         OutputStream output = null;
 
         try {
-            // Open streams.
-            input = new RandomAccessFile(file, "r");
+            // Open streams; files too large to be kept in memory are read from disk.
+            if (bytes == null) {
+                input = new RandomAccessFile(resource.getFile(), "r");
+            }
             output = response.getOutputStream();
 
             if (ranges.isEmpty() || ranges.get(0) == full) {
@@ -588,18 +660,22 @@ public class FileServlet extends HttpServlet {
                 response.setContentType(contentType);
 
                 if (content) {
-                    if (acceptsGzip) {
+                    byte[] gzipped = acceptsGzip ? resource.getGzipped() : null;
+                    if (gzipped != null) {
+                        // The browser accepts GZIP, send the content compressed when it was read.
+                        response.setHeader("Content-Encoding", "gzip");
+                        response.setHeader("Content-Length", String.valueOf(gzipped.length));
+                        output.write(gzipped);
+                    } else if (acceptsGzip && bytes == null) {
                         // The browser accepts GZIP, so GZIP the content.
+                        // Content length is not directly predictable in that case.
                         response.setHeader("Content-Encoding", "gzip");
                         output = new GZIPOutputStream(output, DEFAULT_BUFFER_SIZE);
+                        copy(input, output, r.start, r.length);
                     } else {
-                        // Content length is not directly predictable in case of GZIP.
-                        // So only add it if there is no means of GZIP, else browser will hang.
                         response.setHeader("Content-Length", String.valueOf(r.length));
+                        send(bytes, input, output, r.start, r.length);
                     }
-
-                    // Copy full range.
-                    copy(input, output, r.start, r.length);
                 }
 
             } else if (ranges.size() == 1) {
@@ -613,7 +689,7 @@ public class FileServlet extends HttpServlet {
 
                 if (content) {
                     // Copy single part range.
-                    copy(input, output, r.start, r.length);
+                    send(bytes, input, output, r.start, r.length);
                 }
 
             } else {
@@ -635,7 +711,7 @@ public class FileServlet extends HttpServlet {
                         sos.println("Content-Range: bytes " + r.start + "-" + r.end + "/" + r.total);
 
                         // Copy single part range of multi part range.
-                        copy(input, output, r.start, r.length);
+                        write(bytes, input, output, r.start, r.length);
                     }
 
                     // End with multipart boundary.
@@ -0,0 +1,72 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.init;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.metrics.FlightEvents;
+import app.owlcms.utils.AccessUtils;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The always-on flight recording (see {@link FlightEvents}), as a .jfr file to open with JDK Mission Control.
+ *
+ * Only available when diagnostics are enabled, and protected by the PIN (see
+ * {@link AccessUtils#checkDiagnosticsAccess}). The recording does not include the environment or the system
+ * properties, but it shows thread stacks and timings.
+ *
+ * @author Jean-François Lamy
+ */
+@WebServlet("/jfr")
+public class FlightRecordingServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FlightRecordingServlet.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!AccessUtils.checkDiagnosticsAccess(request, response)) {
+            return;
+        }
+        Path file = Files.createTempFile("owlcms", ".jfr");
+        try {
+            if (!FlightEvents.dump(file)) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND, "flight recording is not enabled");
+                return;
+            }
+            String name = "owlcms_" + new SimpleDateFormat("yyyy-MM-dd_HH'h'mm'm'ss's'").format(new Date()) + ".jfr";
+            response.setContentType("application/octet-stream");
+            response.setHeader("Content-Disposition", "attachment; filename=\"" + name + "\"");
+            response.setContentLengthLong(Files.size(file));
+            Files.copy(file, response.getOutputStream());
+        } catch (IOException e) {
+            logger.error("could not send flight recording: {}", LoggerUtils.exceptionMessage(e));
+            if (!response.isCommitted()) {
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
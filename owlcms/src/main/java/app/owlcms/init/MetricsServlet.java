@@ -0,0 +1,44 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.init;
+
+import java.io.IOException;
+
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import app.owlcms.metrics.Metrics;
+import app.owlcms.utils.AccessUtils;
+
+/**
+ * The application metrics in the Prometheus text exposition format, for scraping.
+ *
+ * Only available when diagnostics are enabled, and protected by the PIN (see
+ * {@link AccessUtils#checkDiagnosticsAccess}); configure the scraper with basic authentication or the PIN as bearer
+ * token.
+ *
+ * @author Jean-François Lamy
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!AccessUtils.checkDiagnosticsAccess(request, response)) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(8192);
+        Metrics.write(sb);
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(sb.toString());
+    }
+}
@@ -19,6 +19,7 @@ import org.slf4j.LoggerFactory;
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.platform.Platform;
 import app.owlcms.data.platform.PlatformRepository;
+import app.owlcms.fieldofplay.FOPJournal;
 import app.owlcms.fieldofplay.FieldOfPlay;
 import app.owlcms.fieldofplay.ProxyAthleteTimer;
 import app.owlcms.fieldofplay.ProxyBreakTimer;
@@ -59,7 +60,7 @@ public class OwlcmsFactory {
      * @return first field of play, sorted alphabetically
      */
     public static FieldOfPlay getDefaultFOP(boolean init) {
-        logger.debug("OwlcmsFactory {}\n{}",init,LoggerUtils.stackTrace());
+        logger.debug("OwlcmsFactory {}\n{}",init,LoggerUtils.lazyStackTrace());
         if (defaultFOP != null) {
             return defaultFOP;
         } else {
@@ -142,6 +143,8 @@ public class OwlcmsFactory {
             logger.debug("fop {}", fop.getName());
             // no group selected, no athletes, announcer will need to pick a group.
             fop.init(new LinkedList<Athlete>(), new ProxyAthleteTimer(fop), new ProxyBreakTimer(fop), true);
+            // resume where we were if restarting after a crash
+            FOPJournal.attach(fop);
             fopByName.put(name, fop);
         }
     }
@@ -56,7 +56,7 @@ public class OwlcmsSession {
         if (currentVaadinSession != null) {
             OwlcmsSession owlcmsSession = (OwlcmsSession) currentVaadinSession.getAttribute("owlcmsSession");
             if (owlcmsSession == null) {
-                logger.trace("creating new OwlcmsSession {}", LoggerUtils.whereFrom());
+                logger.trace("creating new OwlcmsSession {}", LoggerUtils.callerLocation());
                 owlcmsSession = new OwlcmsSession();
                 currentVaadinSession.setAttribute("owlcmsSession", owlcmsSession);
             }
@@ -134,7 +134,7 @@ public class OwlcmsSession {
     }
 
     public static void setFop(FieldOfPlay fop) {
-        logger.trace("setFop {} from {}", (fop != null ? fop.getName() : null), LoggerUtils.whereFrom());
+        logger.trace("setFop {} from {}", (fop != null ? fop.getName() : null), LoggerUtils.callerLocation());
         setAttribute(FOP, fop);
     }
 
@@ -0,0 +1,375 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.init;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The files served by {@link FileServlet}, kept in memory with their validators and their compressed variant.
+ *
+ * A file is read once, from the <code>./local</code> override directory or else from the class path. The least
+ * recently used files are dropped when the total size goes over the limit. Files larger than a tenth of the limit are
+ * not kept in memory: override files, and class path resources that are plain files, are read from disk on each
+ * request; resources inside a jar are read for each request.
+ *
+ * The override directory is watched, so a file that is added, edited or removed there is served right away.
+ *
+ * @author Jean-François Lamy
+ */
+public class ResourceCache {
+
+    /**
+     * A file ready to be served.
+     */
+    public static class CachedResource {
+        private final String name;
+        private final byte[] content;
+        private final File file;
+        private final long length;
+        private final long lastModified;
+        private final String eTag;
+        private final byte[] gzipped;
+
+        CachedResource(String name, byte[] content, File file, long length, long lastModified, boolean compress) {
+            this.name = name;
+            this.content = content;
+            this.file = file;
+            this.length = length;
+            this.lastModified = lastModified;
+            this.eTag = name + "_" + length + "_" + lastModified;
+            this.gzipped = compress && content != null ? gzip(content) : null;
+        }
+
+        /**
+         * @return the content, null if the file is too large to be kept in memory
+         */
+        public byte[] getContent() {
+            return content;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return the file on disk, null for a small class path resource or one inside a jar
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the gzip-compressed content, null if the file is not compressible, not in memory, or does not
+         *         compress.
+         */
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        long memorySize() {
+            return (content != null ? content.length : 0) + (gzipped != null ? gzipped.length : 0);
+        }
+
+        private static byte[] gzip(byte[] content) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(content.length / 2 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bos)) {
+                gzip.write(content);
+            } catch (IOException e) {
+                // cannot happen when writing to memory
+                throw new IllegalStateException(e);
+            }
+            return bos.size() < content.length ? bos.toByteArray() : null;
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(ResourceCache.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /** class path resources have no date of their own */
+    private static final long startTime = System.currentTimeMillis() / 1000 * 1000;
+
+    private final Path basePath;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Predicate<String> compressible;
+
+    /** access order, the first entry is the least recently used */
+    private final LinkedHashMap<String, CachedResource> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    /** changes whenever entries are invalidated, so that a file read meanwhile is not kept */
+    private long generation;
+    private long hits;
+    private long misses;
+
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+
+    /**
+     * @param basePath     the absolute path of the override directory; need not exist
+     * @param maxBytes     the maximum size of the content kept in memory
+     * @param compressible whether a file name is that of a file worth compressing
+     */
+    public ResourceCache(Path basePath, long maxBytes, Predicate<String> compressible) {
+        this.basePath = basePath;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 10;
+        this.compressible = compressible;
+    }
+
+    /**
+     * Forget all the files.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+        generation++;
+    }
+
+    /**
+     * Stop watching the override directory.
+     */
+    public void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // nothing to clean up
+            }
+        }
+    }
+
+    /**
+     * @param relativePath the path relative to the override directory, also the class path resource name
+     * @return the file, or null if it exists neither in the override directory nor on the class path.
+     * @throws IOException
+     */
+    public CachedResource get(Path relativePath) throws IOException {
+        String key = key(relativePath);
+        long loadGeneration;
+        synchronized (this) {
+            CachedResource r = entries.get(key);
+            if (r != null) {
+                hits++;
+                return r;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+
+        CachedResource r = load(key, basePath.resolve(relativePath));
+        if (r == null || r.getContent() == null || r.getLength() > maxEntryBytes) {
+            return r;
+        }
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                CachedResource previous = entries.put(key, r);
+                bytes += r.memorySize() - (previous != null ? previous.memorySize() : 0);
+                evict();
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return the size of the content kept in memory
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Forget a file, or all the files in a directory.
+     *
+     * @param relativePath the path relative to the override directory
+     */
+    public synchronized void invalidate(Path relativePath) {
+        String key = key(relativePath);
+        String prefix = key + "/";
+        Iterator<Map.Entry<String, CachedResource>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, CachedResource> e = it.next();
+            if (e.getKey().equals(key) || e.getKey().startsWith(prefix)) {
+                bytes -= e.getValue().memorySize();
+                it.remove();
+            }
+        }
+        generation++;
+    }
+
+    /**
+     * @return the number of files kept in memory
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Watch the override directory and its subdirectories, if it exists.
+     */
+    public void watch() {
+        if (!Files.isDirectory(basePath)) {
+            return;
+        }
+        try {
+            watchService = basePath.getFileSystem().newWatchService();
+            register(basePath);
+        } catch (IOException e) {
+            logger./**/warn("cannot watch {}, changes will be seen after a restart: {}", basePath, e.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::processEvents, "local-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    private void evict() {
+        Iterator<CachedResource> it = entries.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().memorySize();
+            it.remove();
+        }
+    }
+
+    private String key(Path relativePath) {
+        return relativePath.normalize().toString().replace(File.separatorChar, '/');
+    }
+
+    private CachedResource load(String key, Path diskPath) throws IOException {
+        if (key.isEmpty()) {
+            // the directory itself
+            return null;
+        }
+        String name = diskPath.getFileName() != null ? diskPath.getFileName().toString() : key;
+        if (Files.isRegularFile(diskPath)) {
+            return loadFile(key, name, diskPath);
+        }
+        URL url = getClass().getResource("/" + key);
+        if (url == null) {
+            return null;
+        }
+        URLConnection connection = url.openConnection();
+        if (connection.getContentLengthLong() > maxEntryBytes && "file".equals(url.getProtocol())) {
+            try {
+                return loadFile(key, name, Path.of(url.toURI()));
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // not a plain file after all, read it
+            }
+        }
+        long lastModified = connection.getLastModified();
+        byte[] content;
+        try (InputStream in = connection.getInputStream()) {
+            content = IOUtils.toByteArray(in);
+        }
+        logger.debug("read {} from class path", key);
+        return new CachedResource(name, content, null, content.length, lastModified > 0 ? lastModified : startTime,
+                compressible.test(name));
+    }
+
+    /**
+     * @return the file, with its content if small enough to be kept in memory
+     */
+    private CachedResource loadFile(String key, String name, Path diskPath) throws IOException {
+        File file = diskPath.toFile();
+        long length = file.length();
+        byte[] content = length <= maxEntryBytes ? Files.readAllBytes(diskPath) : null;
+        logger.debug("read {} from {}", key, diskPath.getParent());
+        return new CachedResource(name, content, file, content != null ? content.length : length,
+                file.lastModified(), compressible.test(name));
+    }
+
+    private void processEvents() {
+        while (true) {
+            WatchKey watchKey;
+            try {
+                watchKey = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path dir = watchedDirs.get(watchKey);
+            for (WatchEvent<?> event : watchKey.pollEvents()) {
+                if (event.kind() == OVERFLOW || dir == null) {
+                    clear();
+                    continue;
+                }
+                Path changed = dir.resolve((Path) event.context());
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed)) {
+                    try {
+                        register(changed);
+                    } catch (IOException e) {
+                        logger./**/warn("cannot watch {}: {}", changed, e.getMessage());
+                    }
+                }
+                logger.debug("{} {}", event.kind(), changed);
+                // a new file hides the class path resource with the same name
+                invalidate(basePath.relativize(changed));
+            }
+            if (!watchKey.reset()) {
+                watchedDirs.remove(watchKey);
+            }
+        }
+    }
+
+    private void register(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) paths.filter(Files::isDirectory)::iterator) {
+                watchedDirs.put(d.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), d);
+            }
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.vaadin.flow.server.SessionInitEvent;
 import com.vaadin.flow.server.VaadinServiceInitListener;
 import com.vaadin.flow.server.VaadinSession;
 
+import app.owlcms.metrics.UIMetrics;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
 
@@ -42,10 +43,11 @@ public class ServiceListener implements VaadinServiceInitListener {
      */
     @Override
     public void serviceInit(ServiceInitEvent event) {
-        logger.debug("Vaadin Service Startup Configuration. {} {}", event.toString(), LoggerUtils.whereFrom());
+        logger.debug("Vaadin Service Startup Configuration. {} {}", event.toString(), LoggerUtils.callerLocation());
         event.getSource().addSessionInitListener(sessionInitEvent -> {
             sessionInit(sessionInitEvent);
         });
+        UIMetrics.register(event.getSource());
 
     }
 
@@ -0,0 +1,144 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.init;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Startup stages run as a dependency graph: each stage starts as soon as the stages it depends on are done, so
+ * independent stages run at the same time.
+ *
+ * The time taken by each stage is logged when all are done, and available from {@link #getTimings()}.
+ *
+ * @author Jean-François Lamy
+ */
+public class StartupPipeline {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(StartupPipeline.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private final Map<String, CompletableFuture<Void>> stages = new LinkedHashMap<>();
+    /** stage durations in milliseconds, in completion order */
+    private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final ExecutorService executor;
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+    private long startTime;
+    private CompletableFuture<Void> done;
+
+    /**
+     * @param threads number of stages that can run at the same time
+     */
+    public StartupPipeline(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "startup-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Wait until all the stages are done.
+     *
+     * @throws RuntimeException the failure of the first stage that failed; the stages that depend on it are not run.
+     */
+    public void await() {
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * @return the stage durations in milliseconds, in completion order
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<>(timings);
+        }
+    }
+
+    /**
+     * Add a stage.
+     *
+     * @param name      the stage name
+     * @param action    what the stage does
+     * @param dependsOn the stages that must be done first; they must have been added before
+     * @return this pipeline
+     */
+    public StartupPipeline stage(String name, Runnable action, String... dependsOn) {
+        List<CompletableFuture<Void>> required = new ArrayList<>();
+        required.add(started);
+        for (String dependency : dependsOn) {
+            CompletableFuture<Void> f = stages.get(dependency);
+            if (f == null) {
+                throw new IllegalArgumentException(name + " depends on unknown stage " + dependency);
+            }
+            required.add(f);
+        }
+        stages.put(name, CompletableFuture.allOf(required.toArray(new CompletableFuture[required.size()]))
+                .thenRunAsync(() -> run(name, action), executor));
+        return this;
+    }
+
+    /**
+     * Start running the stages.
+     *
+     * @return this pipeline
+     */
+    public StartupPipeline start() {
+        startTime = System.nanoTime();
+        done = CompletableFuture.allOf(stages.values().toArray(new CompletableFuture[stages.size()]))
+                .whenComplete((r, t) -> {
+                    executor.shutdown();
+                    log(t);
+                });
+        started.complete(null);
+        return this;
+    }
+
+    private void log(Throwable t) {
+        StringBuilder sb = new StringBuilder();
+        synchronized (timings) {
+            for (Map.Entry<String, Long> e : timings.entrySet()) {
+                sb.append(sb.length() > 0 ? ", " : "").append(e.getKey()).append(' ').append(e.getValue())
+                        .append(" ms");
+            }
+        }
+        long elapsed = (System.nanoTime() - startTime) / 1000000;
+        if (t == null) {
+            logger.info("startup stages done in {} ms: {}", elapsed, sb);
+        } else {
+            logger.error("startup failed after {} ms, completed: {}", elapsed, sb);
+        }
+    }
+
+    private void run(String name, Runnable action) {
+        long start = System.nanoTime();
+        logger.debug("stage {} starting at +{} ms", name, (start - startTime) / 1000000);
+        action.run();
+        timings.put(name, (System.nanoTime() - start) / 1000000);
+    }
+}
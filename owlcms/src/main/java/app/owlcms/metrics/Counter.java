@@ -0,0 +1,47 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up.
+ *
+ * @author Jean-François Lamy
+ */
+public class Counter extends Metric {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter(String name, String labels) {
+        super(name, labels);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public void inc() {
+        count.increment();
+    }
+
+    @Override
+    String type() {
+        return "counter";
+    }
+
+    @Override
+    void values(Map<String, Object> attributes) {
+        attributes.put(key(), getCount());
+    }
+
+    @Override
+    void write(StringBuilder sb) {
+        sb.append(series("", null)).append(' ').append(getCount()).append('\n');
+    }
+}
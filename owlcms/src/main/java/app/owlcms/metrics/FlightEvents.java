@@ -0,0 +1,133 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.util.Date;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.metrics.jfr.FlightRecording;
+import app.owlcms.metrics.jfr.FopEventHandled;
+import app.owlcms.metrics.jfr.GroupLoaded;
+import app.owlcms.metrics.jfr.RankingRecomputed;
+import app.owlcms.metrics.jfr.RemotePush;
+import app.owlcms.metrics.jfr.ReportGenerated;
+import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Flight recorder events for the stages that can make a screen late: field of play events, group loads, rankings,
+ * pushes to the public results server and reports.
+ *
+ * The events cost almost nothing when no recording is running. With <code>-Djfr=true</code> (or
+ * <code>OWLCMS_JFR=true</code>) a recording runs all the time and keeps the last <code>jfrMaxAgeMinutes</code>
+ * (default 120) minutes, up to <code>jfrMaxSizeMB</code> (default 200) MB, on disk. It can be fetched with
+ * <code>jcmd &lt;pid&gt; JFR.dump name=owlcms filename=owlcms.jfr</code> or from <code>/jfr</code> when diagnostics
+ * are enabled, and is written to the <code>jfrDir</code> directory (default <code>jfr</code>) when the application
+ * stops.
+ *
+ * Java runtimes without a flight recorder (e.g. OpenJ9) ignore all this, the jdk.jfr classes are only used when
+ * available.
+ *
+ * @author Jean-François Lamy
+ */
+public class FlightEvents {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FlightEvents.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final boolean available = checkAvailable();
+
+    /**
+     * @param file where to write the recording so far
+     * @return false if no recording is running
+     */
+    public static boolean dump(Path file) throws java.io.IOException {
+        return available && FlightRecording.dump(file);
+    }
+
+    public static void fopEventHandled(String fop, String group, String event, long elapsedNanos) {
+        if (available) {
+            FopEventHandled.record(fop, group, event, elapsedNanos);
+        }
+    }
+
+    public static void groupLoaded(String fop, String group, boolean full, int athletes, long elapsedNanos) {
+        if (available) {
+            GroupLoaded.record(fop, group, full, athletes, elapsedNanos);
+        }
+    }
+
+    public static void rankingRecomputed(boolean full, int athletes, long elapsedNanos) {
+        if (available) {
+            RankingRecomputed.record(full, athletes, elapsedNanos);
+        }
+    }
+
+    /**
+     * @param status the HTTP status, 0 if the server could not be reached
+     * @param size   the size of the content posted
+     */
+    public static void remotePush(String url, int status, long size, long elapsedNanos) {
+        if (available) {
+            RemotePush.record(url, status, size, elapsedNanos);
+        }
+    }
+
+    /**
+     * @param report   the kind of report
+     * @param group    the group, null for the whole competition
+     * @param athletes the number of athletes in the report
+     * @param size     the size of the spreadsheet
+     */
+    public static void reportGenerated(String report, String group, int athletes, long size, long elapsedNanos) {
+        if (available) {
+            ReportGenerated.record(report, group, athletes, size, elapsedNanos);
+        }
+    }
+
+    /**
+     * Start the always-on recording if requested by the startup parameters.
+     */
+    public static void startRecording() {
+        if (!StartupUtils.getBooleanParam("jfr")) {
+            return;
+        }
+        if (!available) {
+            logger./**/warn("flight recording requested, but this Java runtime has no flight recorder");
+            return;
+        }
+        int maxAgeMinutes = StartupUtils.getIntegerParam("jfrMaxAgeMinutes", 120);
+        int maxSizeMB = StartupUtils.getIntegerParam("jfrMaxSizeMB", 200);
+        String dir = StartupUtils.getStringParam("jfrDir");
+        Path exitDump = Paths.get(dir != null ? dir : "jfr",
+                "owlcms_" + new SimpleDateFormat("yyyy-MM-dd_HH'h'mm'm'ss's'").format(new Date()) + ".jfr");
+        try {
+            FlightRecording.start(Duration.ofMinutes(maxAgeMinutes), maxSizeMB * 1024L * 1024L, exitDump);
+            logger.info("flight recording started, keeping {} minutes up to {} MB; written to {} on exit",
+                    maxAgeMinutes, maxSizeMB, exitDump.toAbsolutePath());
+        } catch (Exception e) {
+            logger.error("could not start flight recording: {}", LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    private static boolean checkAvailable() {
+        try {
+            return FlightRecording.isAvailable();
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Values read when the metrics are collected: one value, or one value per label value when the label values are only
+ * known at that time (e.g. one per route).
+ *
+ * @author Jean-François Lamy
+ */
+public class Gauge extends Metric {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(Gauge.class);
+
+    private final String labelName;
+    private final Supplier<? extends Map<String, ? extends Number>> values;
+
+    /**
+     * @param labelName the label that tells the values apart, null for a single value
+     * @param values    the values by label value; for a single value, the key is ignored
+     */
+    Gauge(String name, String labels, String labelName, Supplier<? extends Map<String, ? extends Number>> values) {
+        super(name, labels);
+        this.labelName = labelName;
+        this.values = values;
+    }
+
+    @Override
+    String type() {
+        return "gauge";
+    }
+
+    @Override
+    void values(Map<String, Object> attributes) {
+        for (Map.Entry<String, ? extends Number> e : read().entrySet()) {
+            attributes.put(labelName == null ? key() : series("", Metric.labels(labelName, e.getKey())), e.getValue());
+        }
+    }
+
+    @Override
+    void write(StringBuilder sb) {
+        for (Map.Entry<String, ? extends Number> e : read().entrySet()) {
+            sb.append(labelName == null ? series("", null) : series("", Metric.labels(labelName, e.getKey())))
+                    .append(' ').append(e.getValue()).append('\n');
+        }
+    }
+
+    private Map<String, ? extends Number> read() {
+        try {
+            Map<String, ? extends Number> map = values.get();
+            return map != null ? map : Map.of();
+        } catch (RuntimeException e) {
+            // the component being measured may be shutting down
+            logger.debug("cannot read {}: {}", name, LoggerUtils.exceptionMessage(e));
+            return Map.of();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.util.Map;
+
+/**
+ * A named series, with fixed label values.
+ *
+ * @author Jean-François Lamy
+ */
+public abstract class Metric {
+
+    /**
+     * @param labels alternating label names and values
+     * @return the labels in exposition format, without the braces
+     */
+    static String labels(String... labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("labels must be name/value pairs");
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    final String name;
+    final String labels;
+
+    Metric(String name, String labels) {
+        this.name = name;
+        this.labels = labels;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the series name with its labels, as in the exposition format
+     */
+    String key() {
+        return labels.isEmpty() ? name : name + "{" + labels + "}";
+    }
+
+    /**
+     * @return the exposition format type
+     */
+    abstract String type();
+
+    /**
+     * Add the current values, as seen through JMX.
+     */
+    abstract void values(Map<String, Object> attributes);
+
+    /**
+     * Append the current values in the text exposition format.
+     */
+    abstract void write(StringBuilder sb);
+
+    /**
+     * @param suffix appended to the name
+     * @param extra  an additional label, in exposition format, or null
+     * @return the series name with the labels
+     */
+    String series(String suffix, String extra) {
+        StringBuilder sb = new StringBuilder(name).append(suffix);
+        if (!labels.isEmpty() || extra != null) {
+            sb.append('{').append(labels);
+            if (extra != null) {
+                sb.append(labels.isEmpty() ? "" : ",").append(extra);
+            }
+            sb.append('}');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,219 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The metrics of the application: counters, timers and gauges.
+ *
+ * Getting a metric looks it up by name and labels, so code on a hot path keeps the metric in a field. Recording is
+ * lock-free. The values are available in the Prometheus text format from {@link #write(StringBuilder)} (served on
+ * <code>/metrics</code>) and through JMX as the attributes of <code>app.owlcms:type=Metrics</code>.
+ *
+ * @author Jean-François Lamy
+ */
+public class Metrics {
+
+    /**
+     * All the series as read-only attributes, named as in the text format. The list of attributes grows as metrics
+     * are created.
+     */
+    private static class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Object value = snapshot().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Object> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String a : attributes) {
+                if (values.containsKey(a)) {
+                    list.add(new Attribute(a, values.get(a)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            List<MBeanAttributeInfo> infos = new ArrayList<>();
+            for (Map.Entry<String, Object> e : snapshot().entrySet()) {
+                infos.add(new MBeanAttributeInfo(e.getKey(), e.getValue().getClass().getName(), e.getKey(), true,
+                        false, false));
+            }
+            return new MBeanInfo(Metrics.class.getName(), "owlcms metrics",
+                    infos.toArray(new MBeanAttributeInfo[infos.size()]), null, null, null);
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException(attribute.getName());
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(Metrics.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    public static final String OBJECT_NAME = "app.owlcms:type=Metrics";
+
+    private static final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+    private static final Map<String, String> help = new ConcurrentHashMap<>();
+
+    /**
+     * @param name   the metric name
+     * @param help   what is counted
+     * @param labels alternating label names and values
+     * @return the counter, created on first use
+     */
+    public static Counter counter(String name, String help, String... labels) {
+        return get(name, help, labels, Counter.class, Counter::new);
+    }
+
+    /**
+     * A value read when the metrics are collected.
+     *
+     * @param name   the metric name
+     * @param help   what is measured
+     * @param value  reads the value
+     * @param labels alternating label names and values
+     */
+    public static void gauge(String name, String help, Supplier<? extends Number> value, String... labels) {
+        register(new Gauge(name, Metric.labels(labels), null, () -> Map.of("", value.get())), help);
+    }
+
+    /**
+     * Values read when the metrics are collected, one per label value.
+     *
+     * @param name      the metric name
+     * @param help      what is measured
+     * @param labelName the label that tells the values apart
+     * @param values    reads the values by label value
+     */
+    public static void gauges(String name, String help, String labelName,
+            Supplier<? extends Map<String, ? extends Number>> values) {
+        register(new Gauge(name, "", labelName, values), help);
+    }
+
+    /**
+     * Make the metrics visible through JMX.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsMBean(), name);
+            }
+        } catch (Exception e) {
+            logger./**/warn("metrics not available through JMX: {}", LoggerUtils.exceptionMessage(e));
+        }
+    }
+
+    /**
+     * @return the current values, as seen through JMX, sorted by name
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> values = new TreeMap<>();
+        for (Metric m : metrics.values()) {
+            m.values(values);
+        }
+        return values;
+    }
+
+    /**
+     * @param name   the metric name
+     * @param help   what is timed
+     * @param labels alternating label names and values
+     * @return the timer, created on first use
+     */
+    public static Timer timer(String name, String help, String... labels) {
+        return get(name, help, labels, Timer.class, Timer::new);
+    }
+
+    /**
+     * Append all the metrics in the Prometheus text exposition format.
+     */
+    public static void write(StringBuilder sb) {
+        Map<String, List<Metric>> byName = new TreeMap<>();
+        for (Metric m : new TreeMap<>(metrics).values()) {
+            byName.computeIfAbsent(m.getName(), k -> new ArrayList<>()).add(m);
+        }
+        for (Map.Entry<String, List<Metric>> e : byName.entrySet()) {
+            String name = e.getKey();
+            sb.append("# HELP ").append(name).append(' ').append(help.getOrDefault(name, name)).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(e.getValue().get(0).type()).append('\n');
+            for (Metric m : e.getValue()) {
+                m.write(sb);
+            }
+        }
+    }
+
+    private static <T extends Metric> T get(String name, String helpText, String[] labels, Class<T> type,
+            BiFunction<String, String, T> factory) {
+        String labelString = Metric.labels(labels);
+        String key = labelString.isEmpty() ? name : name + "{" + labelString + "}";
+        Metric m = metrics.get(key);
+        if (m == null) {
+            help.putIfAbsent(name, helpText);
+            m = metrics.computeIfAbsent(key, k -> factory.apply(name, labelString));
+        }
+        if (!type.isInstance(m)) {
+            throw new IllegalArgumentException(name + " is not a " + type.getSimpleName());
+        }
+        return type.cast(m);
+    }
+
+    /**
+     * Gauges replace the previous gauge with the same name and labels, e.g. when a field of play is recreated.
+     */
+    private static void register(Gauge gauge, String helpText) {
+        help.putIfAbsent(gauge.getName(), helpText);
+        metrics.put(gauge.key(), gauge);
+    }
+}
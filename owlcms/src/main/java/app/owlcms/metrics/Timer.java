@@ -0,0 +1,108 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durations, as a histogram with fixed buckets, a count, a total and a maximum.
+ *
+ * Recording only updates striped adders, so threads recording at the same time do not wait for each other.
+ *
+ * @author Jean-François Lamy
+ */
+public class Timer extends Metric {
+
+    /** bucket upper bounds, in seconds */
+    static final double[] BOUNDS = { 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5,
+            10 };
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS.length];
+    private static final String[] BOUND_LABELS = new String[BOUNDS.length];
+    static {
+        for (int i = 0; i < BOUNDS.length; i++) {
+            BOUNDS_NANOS[i] = (long) (BOUNDS[i] * 1.0E9);
+            BOUND_LABELS[i] = "le=\"" + BigDecimal.valueOf(BOUNDS[i]).toPlainString() + "\"";
+        }
+    }
+
+    /** the last bucket is for the durations above the last bound */
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    Timer(String name, String labels) {
+        super(name, labels);
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1.0E6;
+    }
+
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0.0D : totalNanos.sum() / 1.0E6 / n;
+    }
+
+    /**
+     * @param nanos a duration measured with {@link System#nanoTime()}
+     */
+    public void record(long nanos) {
+        int i = 0;
+        while (i < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[i]) {
+            i++;
+        }
+        buckets[i].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    /**
+     * Record the time since a start time.
+     *
+     * @param startNanos the value of {@link System#nanoTime()} at the start
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    @Override
+    String type() {
+        return "histogram";
+    }
+
+    @Override
+    void values(Map<String, Object> attributes) {
+        attributes.put(series("_count", null), getCount());
+        attributes.put(series("_mean_ms", null), getMeanMillis());
+        attributes.put(series("_max_ms", null), getMaxMillis());
+    }
+
+    @Override
+    void write(StringBuilder sb) {
+        long cumulative = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            cumulative += buckets[i].sum();
+            sb.append(series("_bucket", BOUND_LABELS[i])).append(' ').append(cumulative).append('\n');
+        }
+        cumulative += buckets[BOUNDS.length].sum();
+        sb.append(series("_bucket", "le=\"+Inf\"")).append(' ').append(cumulative).append('\n');
+        sb.append(series("_sum", null)).append(' ').append(totalNanos.sum() / 1.0E9).append('\n');
+        sb.append(series("_count", null)).append(' ').append(cumulative).append('\n');
+    }
+}
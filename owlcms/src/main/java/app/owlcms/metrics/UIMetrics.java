@@ -0,0 +1,58 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vaadin.flow.component.UI;
+import com.vaadin.flow.server.VaadinService;
+
+/**
+ * Browser pages connected to the application, by route, and the UI updates waiting to be run in their sessions.
+ *
+ * @author Jean-François Lamy
+ */
+public class UIMetrics {
+
+    /** the route currently shown by each page */
+    private static final Map<UI, String> routes = new ConcurrentHashMap<>();
+
+    /**
+     * Track the pages created by a Vaadin service.
+     */
+    public static void register(VaadinService service) {
+        service.addUIInitListener(e -> track(e.getUI()));
+        Metrics.gauges("owlcms_ui_connected", "browser pages connected", "route", UIMetrics::countByRoute);
+        Metrics.gauge("owlcms_ui_pending_access", "UI updates queued in the sessions and not yet run",
+                UIMetrics::pendingAccess);
+    }
+
+    private static Map<String, Integer> countByRoute() {
+        Map<String, Integer> counts = new TreeMap<>();
+        for (String route : routes.values()) {
+            counts.merge(route, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static int pendingAccess() {
+        return routes.keySet().stream().map(UI::getSession).filter(Objects::nonNull).distinct()
+                .mapToInt(s -> s.getPendingAccessQueue().size()).sum();
+    }
+
+    private static void track(UI ui) {
+        routes.put(ui, "/");
+        ui.addAfterNavigationListener(e -> {
+            String path = e.getLocation().getPath();
+            routes.put(ui, path.isEmpty() ? "/" : path);
+        });
+        ui.addDetachListener(e -> routes.remove(ui));
+    }
+}
@@ -0,0 +1,83 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics.jfr;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+/**
+ * The always-on recording: the JDK "default" settings, the lowest overhead, plus the owlcms events. The recording is
+ * kept on disk and the data older or larger than the limits is dropped.
+ *
+ * The events that copy the environment, the system properties and the command lines are turned off: the PIN, the
+ * update key and the database credentials are often given that way.
+ *
+ * @author Jean-François Lamy
+ */
+public class FlightRecording {
+
+    public static final String NAME = "owlcms";
+
+    /**
+     * Events of the "default" settings that can contain credentials.
+     */
+    private static final String[] SENSITIVE_EVENTS = { "jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty",
+            "jdk.JVMInformation", "jdk.SystemProcess" };
+
+    private static Recording recording;
+
+    /**
+     * @param file where to write the recording so far
+     * @return false if the recording is not running
+     * @throws IOException
+     */
+    public static synchronized boolean dump(Path file) throws IOException {
+        if (recording == null) {
+            return false;
+        }
+        recording.dump(file);
+        return true;
+    }
+
+    public static boolean isAvailable() {
+        return FlightRecorder.isAvailable();
+    }
+
+    /**
+     * @param maxAge   how long the data is kept
+     * @param maxBytes how much data is kept
+     * @param exitDump where the recording is written when the application stops
+     * @throws IOException    if the dump directory cannot be created
+     * @throws ParseException if the JDK settings cannot be read
+     */
+    public static synchronized void start(Duration maxAge, long maxBytes, Path exitDump)
+            throws IOException, ParseException {
+        if (recording != null) {
+            return;
+        }
+        Recording r = new Recording(Configuration.getConfiguration("default"));
+        r.setName(NAME);
+        for (String event : SENSITIVE_EVENTS) {
+            r.disable(event);
+        }
+        r.setToDisk(true);
+        r.setMaxAge(maxAge);
+        r.setMaxSize(maxBytes);
+        Files.createDirectories(exitDump.toAbsolutePath().getParent());
+        r.setDestination(exitDump);
+        r.setDumpOnExit(true);
+        r.start();
+        recording = r;
+    }
+}
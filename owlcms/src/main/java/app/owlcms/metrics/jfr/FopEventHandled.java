@@ -0,0 +1,52 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A field of play event handled, committed when done.
+ *
+ * @author Jean-François Lamy
+ */
+@Name("app.owlcms.FopEventHandled")
+@Label("FOP Event Handled")
+@Category({ "owlcms", "Field of Play" })
+@Description("Event processed by the field of play state machine")
+@StackTrace(false)
+public class FopEventHandled extends Event {
+
+    public static void record(String fop, String group, String event, long elapsedNanos) {
+        FopEventHandled e = new FopEventHandled();
+        if (e.shouldCommit()) {
+            e.fop = fop;
+            e.group = group;
+            e.event = event;
+            e.elapsed = elapsedNanos;
+            e.commit();
+        }
+    }
+
+    @Label("Field of Play")
+    String fop;
+
+    @Label("Group")
+    String group;
+
+    @Label("Event")
+    String event;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
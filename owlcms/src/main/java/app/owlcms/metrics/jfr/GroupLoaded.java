@@ -0,0 +1,56 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The athletes of a group loaded on a field of play, committed when done.
+ *
+ * @author Jean-François Lamy
+ */
+@Name("app.owlcms.GroupLoaded")
+@Label("Group Loaded")
+@Category({ "owlcms", "Field of Play" })
+@Description("Athletes of the current group read from the database, completely or only those changed")
+@StackTrace(false)
+public class GroupLoaded extends Event {
+
+    public static void record(String fop, String group, boolean full, int athletes, long elapsedNanos) {
+        GroupLoaded e = new GroupLoaded();
+        if (e.shouldCommit()) {
+            e.fop = fop;
+            e.group = group;
+            e.full = full;
+            e.athletes = athletes;
+            e.elapsed = elapsedNanos;
+            e.commit();
+        }
+    }
+
+    @Label("Field of Play")
+    String fop;
+
+    @Label("Group")
+    String group;
+
+    @Label("Full Load")
+    boolean full;
+
+    @Label("Athletes")
+    int athletes;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
@@ -0,0 +1,48 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The global rankings computed, committed when done.
+ *
+ * @author Jean-François Lamy
+ */
+@Name("app.owlcms.RankingRecomputed")
+@Label("Ranking Recomputed")
+@Category({ "owlcms", "Results" })
+@Description("Rankings of all the weighed-in athletes, with the team rankings for a full computation")
+@StackTrace(false)
+public class RankingRecomputed extends Event {
+
+    public static void record(boolean full, int athletes, long elapsedNanos) {
+        RankingRecomputed e = new RankingRecomputed();
+        if (e.shouldCommit()) {
+            e.full = full;
+            e.athletes = athletes;
+            e.elapsed = elapsedNanos;
+            e.commit();
+        }
+    }
+
+    @Label("Full")
+    boolean full;
+
+    @Label("Athletes")
+    int athletes;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
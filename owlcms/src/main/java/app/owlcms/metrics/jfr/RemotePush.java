@@ -0,0 +1,55 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * An update posted to the public results server, committed when the answer is received or the post fails.
+ *
+ * @author Jean-François Lamy
+ */
+@Name("app.owlcms.RemotePush")
+@Label("Remote Push")
+@Category({ "owlcms", "Public Results" })
+@Description("Update posted to the public results server")
+@StackTrace(false)
+public class RemotePush extends Event {
+
+    public static void record(String url, int status, long size, long elapsedNanos) {
+        RemotePush e = new RemotePush();
+        if (e.shouldCommit()) {
+            e.url = url;
+            e.status = status;
+            e.size = size;
+            e.elapsed = elapsedNanos;
+            e.commit();
+        }
+    }
+
+    @Label("URL")
+    String url;
+
+    @Label("HTTP Status")
+    @Description("0 if the server could not be reached")
+    int status;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
@@ -0,0 +1,58 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A spreadsheet produced from a template, committed when written.
+ *
+ * @author Jean-François Lamy
+ */
+@Name("app.owlcms.ReportGenerated")
+@Label("Report Generated")
+@Category({ "owlcms", "Results" })
+@Description("Spreadsheet (start list, protocol, competition book, cards) produced and sent")
+@StackTrace(false)
+public class ReportGenerated extends Event {
+
+    public static void record(String report, String group, int athletes, long size, long elapsedNanos) {
+        ReportGenerated e = new ReportGenerated();
+        if (e.shouldCommit()) {
+            e.report = report;
+            e.group = group;
+            e.athletes = athletes;
+            e.size = size;
+            e.elapsed = elapsedNanos;
+            e.commit();
+        }
+    }
+
+    @Label("Report")
+    String report;
+
+    @Label("Group")
+    String group;
+
+    @Label("Athletes")
+    int athletes;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
@@ -0,0 +1,444 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.simulation;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.DemoData;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.platform.Platform;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.fieldofplay.ProxyAthleteTimer;
+import app.owlcms.fieldofplay.ProxyBreakTimer;
+import app.owlcms.i18n.Translator;
+import app.owlcms.uievents.BreakType;
+import app.owlcms.uievents.UIEvent;
+import app.owlcms.utils.StartupUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Headless replay of field of play events, for profiling the lifting pipeline without browsers or a web server.
+ *
+ * Each field of play receives a script of steps on its own thread. A script is either read from a file or generated
+ * from the groups in the database with a fixed random seed, so two runs on the same data are identical. Steps are
+ * posted on the field of play event bus, which is synchronous, so the time taken by a post is the time to process the
+ * event.
+ *
+ * Script format, one step per line, <code>#</code> starts a comment:
+ *
+ * <pre>
+ * delayMillis action [arguments]
+ *
+ * group M1          switch to group M1
+ * start             start lifting
+ * time | stop       start or stop the clock
+ * down              down signal
+ * decision 1 1 0    referee decisions for the current athlete
+ * reset             reset decisions
+ * change 1          current athlete asks for 1kg more
+ * break TECHNICAL 600   break of the given type for 600 seconds
+ * </pre>
+ *
+ * The delays are divided by the speed; a speed of 0 replays as fast as possible.
+ *
+ * Parameters (-D or OWLCMS_ environment variables): replayPlatforms, replayAthletes, replaySpeed (percentage, 100 is
+ * real time), replaySeed, replayScript.
+ *
+ * @author owlcms
+ */
+public class FOPReplay {
+
+    /**
+     * Measurements for a replay.
+     */
+    public static class Report {
+        public int nbPlatforms;
+        public int nbEvents;
+        public long elapsedNanos;
+        public long[] latencyNanos = new long[0];
+        public long allocatedBytes = -1;
+        public int rankingUpdates;
+        public int liftingOrderUpdates;
+        public int rejectedChanges;
+
+        public double getEventsPerSecond() {
+            return elapsedNanos > 0 ? nbEvents * 1.0E9 / elapsedNanos : 0;
+        }
+
+        /**
+         * @param p percentile, between 0 and 100
+         * @return the latency at that percentile, in microseconds
+         */
+        public long getLatencyMicros(double p) {
+            if (latencyNanos.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p / 100.0 * latencyNanos.length) - 1;
+            return latencyNanos[Math.max(0, Math.min(index, latencyNanos.length - 1))] / 1000;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1.0E9;
+            return String.format(Locale.ENGLISH,
+                    "replay of %d events on %d platforms in %.3fs: %.0f events/s%n"
+                            + "  latency us: p50=%d p90=%d p99=%d max=%d%n"
+                            + "  allocation: %s%n"
+                            + "  ranking updates=%d lifting order updates=%d rejected changes=%d",
+                    nbEvents, nbPlatforms, seconds, getEventsPerSecond(),
+                    getLatencyMicros(50), getLatencyMicros(90), getLatencyMicros(99), getLatencyMicros(100),
+                    allocatedBytes < 0 ? "not available"
+                            : String.format(Locale.ENGLISH, "%d MB (%.1f MB/s)", allocatedBytes / (1024 * 1024),
+                                    seconds > 0 ? allocatedBytes / (1024.0 * 1024.0) / seconds : 0),
+                    rankingUpdates, liftingOrderUpdates, rejectedChanges);
+        }
+    }
+
+    /**
+     * One line of a replay script.
+     */
+    public static class Step {
+        final long delayMillis;
+        final String action;
+        final String[] args;
+
+        public Step(long delayMillis, String action, String... args) {
+            this.delayMillis = delayMillis;
+            this.action = action;
+            this.args = args;
+        }
+
+        static Step parse(String line) {
+            String[] tokens = line.trim().split("\\s+");
+            return new Step(Long.parseLong(tokens[0]), tokens[1], Arrays.copyOfRange(tokens, 2, tokens.length));
+        }
+
+        @Override
+        public String toString() {
+            return delayMillis + " " + action + (args.length > 0 ? " " + String.join(" ", args) : "");
+        }
+    }
+
+    /**
+     * Replays the script for one field of play and keeps its measurements.
+     */
+    private class Runner {
+        private final FieldOfPlay fop;
+        private final List<Step> script;
+        private final long[] latencies;
+        private int nbEvents;
+        private int rejectedChanges;
+        private long allocatedBytes = -1;
+        private final AtomicInteger rankingUpdates = new AtomicInteger();
+        private final AtomicInteger liftingOrderUpdates = new AtomicInteger();
+
+        Runner(FieldOfPlay fop, List<Step> script) {
+            this.fop = fop;
+            this.script = script;
+            this.latencies = new long[script.size()];
+            fop.getPostEventBus().register(this);
+        }
+
+        @Subscribe
+        public void countRankings(UIEvent.GlobalRankingUpdated e) {
+            rankingUpdates.incrementAndGet();
+        }
+
+        @Subscribe
+        public void countOrder(UIEvent.LiftingOrderUpdated e) {
+            liftingOrderUpdates.incrementAndGet();
+        }
+
+        Runner call() throws InterruptedException {
+            long startAllocated = threadAllocatedBytes();
+            EventBus bus = fop.getFopEventBus();
+            for (Step step : script) {
+                if (speed > 0 && step.delayMillis > 0) {
+                    Thread.sleep(step.delayMillis * 100 / speed);
+                }
+                FOPEvent event = toEvent(step);
+                if (event == null) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                bus.post(event);
+                latencies[nbEvents++] = System.nanoTime() - start;
+            }
+            long endAllocated = threadAllocatedBytes();
+            if (startAllocated >= 0 && endAllocated >= 0) {
+                allocatedBytes = endAllocated - startAllocated;
+            }
+            logger.debug("{} done, {} events", fop.getName(), nbEvents);
+            return this;
+        }
+
+        private FOPEvent toEvent(Step step) {
+            switch (step.action) {
+            case "group":
+                return new FOPEvent.SwitchGroup(GroupRepository.findByName(step.args[0]), this);
+            case "start":
+                return new FOPEvent.StartLifting(this);
+            case "time":
+                return new FOPEvent.TimeStarted(this);
+            case "stop":
+                return new FOPEvent.TimeStopped(this);
+            case "down":
+                return new FOPEvent.DownSignal(this);
+            case "decision":
+                return new FOPEvent.DecisionFullUpdate(this, fop.getCurAthlete(), "1".equals(step.args[0]),
+                        "1".equals(step.args[1]), "1".equals(step.args[2]), 0, 0, 0);
+            case "reset":
+                return new FOPEvent.DecisionReset(this);
+            case "change":
+                Athlete a = fop.getCurAthlete();
+                if (a == null || !requestChange(a, Integer.parseInt(step.args[0]))) {
+                    rejectedChanges++;
+                    return null;
+                }
+                return new FOPEvent.WeightChange(this, a);
+            case "break":
+                return new FOPEvent.BreakStarted(BreakType.valueOf(step.args[0]), null,
+                        Integer.parseInt(step.args[1]) * 1000, null, this);
+            default:
+                throw new IllegalArgumentException("unknown replay action: " + step);
+            }
+        }
+    }
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPReplay.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /**
+     * Replay on an in-memory database filled with demo data.
+     *
+     * @param args ignored, see class comment for parameters
+     * @throws Exception
+     */
+    public static void main(String... args) throws Exception {
+        int nbPlatforms = StartupUtils.getIntegerParam("replayPlatforms", 2);
+        int nbAthletes = StartupUtils.getIntegerParam("replayAthletes", 20);
+        int speed = StartupUtils.getIntegerParam("replaySpeed", 0);
+        long seed = StartupUtils.getIntegerParam("replaySeed", 0);
+        String scriptName = StartupUtils.getStringParam("replayScript");
+        try {
+            JPAService.init(true, true);
+            Translator.setForcedLocale(Locale.ENGLISH);
+            DemoData.insertInitialData(nbAthletes, null);
+
+            FOPReplay replay = new FOPReplay(speed);
+            List<Group> groups = GroupRepository.findAll();
+            for (int i = 0; i < nbPlatforms; i++) {
+                List<Group> platformGroups = new ArrayList<>();
+                for (int j = i; j < groups.size(); j += nbPlatforms) {
+                    platformGroups.add(groups.get(j));
+                }
+                List<Step> script = scriptName != null ? readScript(Paths.get(scriptName))
+                        : generateScript(platformGroups, new Random(seed + i));
+                replay.add("Replay" + (i + 1), script);
+            }
+            logger.info("{}", replay.run());
+        } finally {
+            JPAService.close();
+        }
+    }
+
+    /**
+     * Generate a competition for the groups: every athlete takes six attempts, 70% are good, and one call in ten is
+     * followed by a change.
+     *
+     * @param groups the groups to lift, in order
+     * @param r      random generator; use a fixed seed to get the same script
+     * @return the script
+     */
+    public static List<Step> generateScript(List<Group> groups, Random r) {
+        List<Step> script = new ArrayList<>();
+        for (Group g : groups) {
+            int nbAthletes = AthleteRepository.findAllByGroupAndWeighIn(g, true).size();
+            if (nbAthletes == 0) {
+                continue;
+            }
+            script.add(new Step(0, "group", g.getName()));
+            script.add(new Step(60000, "start"));
+            for (int i = 0; i < nbAthletes * 6; i++) {
+                if (r.nextFloat() < 0.1) {
+                    script.add(new Step(5000, "change", "1"));
+                }
+                script.add(new Step(10000, "time"));
+                script.add(new Step(30000, "down"));
+                script.add(new Step(0, "decision", vote(r), vote(r), vote(r)));
+                script.add(new Step(3000, "reset"));
+            }
+        }
+        return script;
+    }
+
+    /**
+     * @param path a replay script
+     * @return the steps
+     * @throws IOException
+     */
+    public static List<Step> readScript(Path path) throws IOException {
+        List<Step> script = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            if (!line.trim().isEmpty()) {
+                script.add(Step.parse(line));
+            }
+        }
+        return script;
+    }
+
+    static boolean requestChange(Athlete a, int delta) {
+        Integer requested = a.getNextAttemptRequestedWeight();
+        if (requested == null || requested <= 0) {
+            return false;
+        }
+        String weight = Integer.toString(requested + delta);
+        try {
+            switch (a.getAttemptsDone() + 1) {
+            case 1:
+                a.setSnatch1Change1(weight);
+                break;
+            case 2:
+                a.setSnatch2Change1(weight);
+                break;
+            case 3:
+                a.setSnatch3Change1(weight);
+                break;
+            case 4:
+                a.setCleanJerk1Change1(weight);
+                break;
+            case 5:
+                a.setCleanJerk2Change1(weight);
+                break;
+            case 6:
+                a.setCleanJerk3Change1(weight);
+                break;
+            default:
+                return false;
+            }
+        } catch (RuntimeException e) {
+            // rule violation, the change is refused as it would be on the marshal screen
+            return false;
+        }
+        return true;
+    }
+
+    private static long threadAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static String vote(Random r) {
+        return r.nextFloat() < 0.7 ? "1" : "0";
+    }
+
+    private final int speed;
+
+    private final List<Runner> runners = new ArrayList<>();
+
+    /**
+     * @param speed replay speed in percent of real time, 0 for as fast as possible
+     */
+    public FOPReplay(int speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * Add a field of play that will replay the script.
+     *
+     * @param fopName name of the new field of play
+     * @param script  the steps to replay
+     * @return the field of play
+     */
+    public FieldOfPlay add(String fopName, List<Step> script) {
+        FieldOfPlay fop = new FieldOfPlay(null, new Platform(fopName));
+        fop.init(new ArrayList<Athlete>(), new ProxyAthleteTimer(fop), new ProxyBreakTimer(fop), true);
+        // no waiting for decision display
+        fop.setTestingMode(true);
+        runners.add(new Runner(fop, script));
+        return fop;
+    }
+
+    /**
+     * Replay all the scripts, each field of play on its own thread.
+     *
+     * @return the measurements
+     * @throws InterruptedException
+     * @throws ExecutionException
+     */
+    public Report run() throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, runners.size()));
+        Report report = new Report();
+        try {
+            long start = System.nanoTime();
+            List<Future<Runner>> futures = new ArrayList<>();
+            for (Runner runner : runners) {
+                futures.add(executor.submit(runner::call));
+            }
+            List<Runner> done = new ArrayList<>();
+            for (Future<Runner> f : futures) {
+                done.add(f.get());
+            }
+            report.elapsedNanos = System.nanoTime() - start;
+
+            report.nbPlatforms = done.size();
+            List<long[]> all = new ArrayList<>();
+            for (Runner runner : done) {
+                report.nbEvents += runner.nbEvents;
+                report.rejectedChanges += runner.rejectedChanges;
+                report.rankingUpdates += runner.rankingUpdates.get();
+                report.liftingOrderUpdates += runner.liftingOrderUpdates.get();
+                if (runner.allocatedBytes >= 0) {
+                    report.allocatedBytes = Math.max(report.allocatedBytes, 0) + runner.allocatedBytes;
+                }
+                all.add(Arrays.copyOf(runner.latencies, runner.nbEvents));
+            }
+            report.latencyNanos = all.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        } finally {
+            executor.shutdown();
+        }
+        return report;
+    }
+}
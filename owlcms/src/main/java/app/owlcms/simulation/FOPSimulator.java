@@ -7,11 +7,17 @@
 package app.owlcms.simulation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.slf4j.LoggerFactory;
@@ -27,10 +33,13 @@ import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.platform.Platform;
 import app.owlcms.data.platform.PlatformRepository;
 import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FOPState;
 import app.owlcms.fieldofplay.FieldOfPlay;
 import app.owlcms.init.OwlcmsFactory;
-import app.owlcms.init.OwlcmsSession;
+import app.owlcms.ui.shared.BreakManagement.CountdownType;
+import app.owlcms.uievents.BreakType;
 import app.owlcms.uievents.UIEvent;
+import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 
@@ -38,56 +47,122 @@ import ch.qos.logback.classic.Logger;
  *
  * Simulate a meet by triggering events and reacting to response.
  *
+ * All platforms are simulated at the same time, each on its own thread. The {@link LoadProfile} controls the weight
+ * change bursts, jury reversals, breaks and referee timing; simulated displays can be attached to each field of play to
+ * measure how long user interface events take to reach them. A latency and throughput report is logged when all the
+ * groups are done.
+ *
  * @author Jean-François Lamy
  *
  */
 public class FOPSimulator implements Runnable {
 
+    /**
+     * What the simulated officials do. Values are read from the startup parameters (-D or OWLCMS_ environment
+     * variables).
+     */
+    public static class LoadProfile {
+        /** percentage of calls preceded by a burst of weight changes */
+        int changePercent = StartupUtils.getIntegerParam("simulationChangePercent", 10);
+        /** maximum number of changes in a burst */
+        int changeBurst = StartupUtils.getIntegerParam("simulationChangeBurst", 3);
+        /** percentage of lifts where the jury reverses the referees */
+        int juryPercent = StartupUtils.getIntegerParam("simulationJuryPercent", 2);
+        /** percentage of calls preceded by a technical break */
+        int breakPercent = StartupUtils.getIntegerParam("simulationBreakPercent", 1);
+        int breakSeconds = StartupUtils.getIntegerParam("simulationBreakSeconds", 10);
+        /** time between clock start and the end of the lift */
+        int liftMillis = StartupUtils.getIntegerParam("simulationLiftMillis", 2000);
+        /** referees press their buttons at random within this delay */
+        int refereeMillis = StartupUtils.getIntegerParam("simulationRefereeMillis", 1500);
+        /** simulated displays listening to each field of play */
+        int displays = StartupUtils.getIntegerParam("simulationDisplays", 0);
+    }
+
+    /**
+     * Stands for a scoreboard or attempt board: counts the user interface events and how long after the last
+     * field of play event they arrive.
+     */
+    private class SimulatedDisplay {
+        @Subscribe
+        public void onEvent(UIEvent e) {
+            displayLatencies.add(System.nanoTime() - lastPostNanos);
+        }
+    }
+
+    /**
+     * Latencies in nanoseconds, recorded from several threads.
+     */
+    private static class Latencies {
+        private long[] values = new long[1024];
+        private int size;
+
+        synchronized void add(long nanos) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
     final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPSimulator.class);
 
     final private static Logger uiEventLogger = (Logger) LoggerFactory.getLogger("Simulation-" + logger.getName());
 
-    static Map<Platform, List<Group>> groupsByPlatform = new TreeMap<>();
+    static Map<String, List<Group>> groupsByPlatform = new TreeMap<>();
 
     private static Random r = new Random(0);
 
     public static void runSimulation() {
-        uiEventLogger.setLevel(Level.DEBUG);
+        uiEventLogger.setLevel(Level.INFO);
         try {
-            Thread.sleep(15000);
+            // give browsers time to reconnect
+            Thread.sleep(StartupUtils.getIntegerParam("simulationDelay", 15) * 1000L);
         } catch (InterruptedException e) {
         }
 
-        // only use one platform for now.
-        List<Platform> ps = PlatformRepository.findAll().stream().limit(1).collect(Collectors.toList());
+        List<Platform> ps = PlatformRepository.findAll();
         List<Group> gs = GroupRepository.findAll();
 
         int i = 0;
         for (Group g : gs) {
-            Platform curP = ps.get(i % ps.size());
-            List<Group> curGroupList = groupsByPlatform.get(curP);
-            if (curGroupList == null) {
-                curGroupList = new ArrayList<>();
-            }
+            // use the platform assigned to the group, spread the others
+            Platform curP = g.getPlatform() != null ? g.getPlatform() : ps.get(i++ % ps.size());
             List<Athlete> as = AthleteRepository.findAllByGroupAndWeighIn(g, true);
             if (as.size() == 0) {
                 as = weighIn(g);
             }
             if (as.size() > 0) {
-                curGroupList.add(g);
-                groupsByPlatform.put(curP, curGroupList);
-                logger.debug("platform {} groups {}", System.identityHashCode(curP), groupsByPlatform.get(curP));
+                groupsByPlatform.computeIfAbsent(curP.getName(), (k) -> new ArrayList<>()).add(g);
+                logger.debug("platform {} groups {}", curP.getName(), groupsByPlatform.get(curP.getName()));
             }
         }
 
-        // use first platform only for now
-//        for (Platform p: ps) {
-//            FieldOfPlay f = OwlcmsFactory.getFOPByName(p.getName());
-//            LATER create more listeners.
-        FieldOfPlay f = OwlcmsFactory.getFOPByName(ps.get(0).getName());
-        FOPSimulator fopSimulator = new FOPSimulator(f);
-        fopSimulator.run();
-//        }
+        LoadProfile profile = new LoadProfile();
+        List<FOPSimulator> simulators = new ArrayList<>();
+        for (Platform p : ps) {
+            List<Group> groups = groupsByPlatform.get(p.getName());
+            if (groups == null) {
+                continue;
+            }
+            FieldOfPlay f = OwlcmsFactory.getFOPByName(p.getName());
+            FOPSimulator fopSimulator = new FOPSimulator(f, groups, profile, new Random(r.nextLong()));
+            simulators.add(fopSimulator);
+            new Thread(fopSimulator, "simulation-" + p.getName()).start();
+        }
+        for (FOPSimulator s : simulators) {
+            try {
+                s.done.await();
+            } catch (InterruptedException e) {
+            }
+            logger.info("{}", s.report());
+        }
     }
 
     static <K, V> Map<V, K> invertMap(Map<K, V> map) {
@@ -97,6 +172,14 @@ public class FOPSimulator implements Runnable {
         return map.entrySet().stream().collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
     }
 
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+    }
+
     private static List<Athlete> weighIn(Group g) {
         List<Athlete> as = AthleteRepository.findAllByGroupAndWeighIn(g, null);
         for (Athlete a : as) {
@@ -127,179 +210,195 @@ public class FOPSimulator implements Runnable {
 
     private List<Group> curGs;
 
-    public FOPSimulator(FieldOfPlay f) {
-        this.fop = f;
-    }
+    private LoadProfile profile;
 
-    @Override
-    public void run() {
-        fopEventBus = fop.getFopEventBus();
-        fopEventBus.register(this);
-        uiEventBus = fop.getUiEventBus();
-        uiEventBus.register(this);
-        this.setOrigin(this);
+    private Random random;
 
-        logger.debug("simulating fop {}", fop);
-        startNextGroup();
-    }
+    private BlockingQueue<UIEvent> wakeUps = new LinkedBlockingQueue<>();
 
-    @Subscribe
-    public void slaveDecisionReset(UIEvent.DecisionReset e) {
-        uiEventLogger.debug("### {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin());
-        doFirstAthlete(e);
-    }
+    private CountDownLatch done = new CountDownLatch(1);
 
-    /**
-     * Multiple attempt boards and athlete-facing boards can co-exist. We need to show down on the slave devices -- the
-     * master device is the one where refereeing buttons are attached.
-     *
-     * @param e
-     */
-    @Subscribe
-    public void slaveDownSignal(UIEvent.DownSignal e) {
-        uiEventLogger.debug("### {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin());
-        // nothing to do, wait for decision reset
-    }
+    private volatile long lastPostNanos;
 
-    @Subscribe
-    public void slaveGroupDone(UIEvent.GroupDone e) {
-        uiEventLogger.debug("### {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin());
-        startNextGroup();
-    }
+    private Latencies fopLatencies = new Latencies();
 
-    @Subscribe
-    public void slaveOrderUpdated(UIEvent.LiftingOrderUpdated e) {
-        // nothing to do
+    private Latencies displayLatencies = new Latencies();
+
+    private int nbLifts;
+
+    private int nbChanges;
+
+    private int nbReversals;
+
+    private int nbBreaks;
+
+    private long startNanos;
+
+    private long endNanos;
+
+    public FOPSimulator(FieldOfPlay f, List<Group> groups, LoadProfile profile, Random random) {
+        this.fop = f;
+        this.curGs = new ArrayList<>(groups);
+        this.profile = profile;
+        this.random = random;
     }
 
     /**
-     * Multiple attempt boards and athlete-facing boards can co-exist. We need to show decisions on the slave devices --
-     * the master device is the one where refereeing buttons are attached.
-     *
-     * @param e
+     * @return latency and throughput for this platform
      */
-    @Subscribe
-    public void slaveRefereeDecision(UIEvent.Decision e) {
-        // nothing to do
-    }
-
-    @Subscribe
-    public void slaveStartBreak(UIEvent.BreakStarted e) {
-        // nothing to do
+    public String report() {
+        double seconds = (endNanos - startNanos) / 1.0E9;
+        long[] fopSorted = fopLatencies.sorted();
+        long[] displaySorted = displayLatencies.sorted();
+        return String.format(Locale.ENGLISH,
+                "%s: %d lifts in %.1fs (%.1f lifts/min), %d changes, %d jury reversals, %d breaks%n"
+                        + "  event handling us: p50=%d p90=%d p99=%d max=%d (%d events)%n"
+                        + "  display delivery us: p50=%d p90=%d p99=%d max=%d (%d events, %d displays)%n"
+                        + "  group loads: %d full, %d patched (%d changed athletes fetched)",
+                fop.getName(), nbLifts, seconds, seconds > 0 ? nbLifts * 60 / seconds : 0, nbChanges, nbReversals,
+                nbBreaks,
+                percentile(fopSorted, 50), percentile(fopSorted, 90), percentile(fopSorted, 99),
+                percentile(fopSorted, 100), fopSorted.length,
+                percentile(displaySorted, 50), percentile(displaySorted, 90), percentile(displaySorted, 99),
+                percentile(displaySorted, 100), displaySorted.length, profile.displays,
+                fop.getFullLoads(), fop.getPatchedLoads(), fop.getPatchedAthletes());
     }
 
-    @Subscribe
-    public void slaveStartLifting(UIEvent.StartLifting e) {
-        uiEventLogger.debug("### {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin());
-        doFirstAthlete(e);
-    }
+    /**
+     * Lift all the groups. User interface events wake up the simulator, which then acts according to the state of the
+     * field of play.
+     */
+    @Override
+    public void run() {
+        fopEventBus = fop.getFopEventBus();
+        uiEventBus = fop.getUiEventBus();
+        uiEventBus.register(this);
+        for (int i = 0; i < profile.displays; i++) {
+            uiEventBus.register(new SimulatedDisplay());
+        }
+        this.setOrigin(this);
 
-    @Subscribe
-    public void slaveStopBreak(UIEvent.BreakDone e) {
-        uiEventLogger.debug("### {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
-                this.getOrigin(), e.getOrigin());
-        doFirstAthlete(e);
+        logger.debug("simulating fop {}", fop);
+        startNanos = System.nanoTime();
+        try {
+            boolean more = startNextGroup();
+            while (more) {
+                // time out in case the event that woke us up was processed before the state changed.
+                wakeUps.poll(1, TimeUnit.SECONDS);
+                wakeUps.clear();
+                FOPState state = fop.getState();
+                if (state == FOPState.CURRENT_ATHLETE_DISPLAYED) {
+                    doAthleteUpdate(fop.getCurAthlete());
+                } else if (state == FOPState.BREAK && fop.getBreakType() == BreakType.GROUP_DONE) {
+                    more = doDone();
+                }
+            }
+        } catch (InterruptedException e) {
+            logger./**/warn("{} simulation interrupted", fop.getName());
+        } finally {
+            endNanos = System.nanoTime();
+            uiEventBus.unregister(this);
+            done.countDown();
+        }
     }
 
     @Subscribe
-    public void slaveSwitchGroup(UIEvent.SwitchGroup e) {
+    public void wakeUp(UIEvent e) {
         uiEventLogger.debug("### {} {} {} {}", this.getClass().getSimpleName(), e.getClass().getSimpleName(),
                 this.getOrigin(), e.getOrigin());
-        OwlcmsSession.withFop(fop -> {
-            switch (fop.getState()) {
-            case INACTIVE:
-                doEmpty();
-                break;
-            case BREAK:
-                if (e.getGroup() == null) {
-                    doEmpty();
-                } else {
-                    doBreak();
-                }
-                break;
-            default:
-                doAthleteUpdate(fop.getCurAthlete());
-            }
-        });
-        // uiEventLogger./**/warn("#### reloading {}", this.getElement().getClass());
-        // this.getElement().callJsFunction("reload");
+        wakeUps.offer(e);
     }
 
-    protected void doAthleteUpdate(Athlete a) {
+    protected void doAthleteUpdate(Athlete a) throws InterruptedException {
         logger.debug("$$$ a {}  ", a);
-
-        if (a == null) {
-            doEmpty();
-            return;
-        } else if (a.getAttemptsDone() >= 6) {
-            OwlcmsSession.withFop((fop) -> doDone(fop.getGroup()));
+        if (a == null || a.getAttemptsDone() >= 6) {
             return;
         }
 
-        // do a lift in group g
-        fopEventBus.post(new FOPEvent.TimeStarted(this));
-        try {
-            Thread.sleep(2000);
-        } catch (InterruptedException e) {
+        if (random.nextInt(100) < profile.breakPercent) {
+            nbBreaks++;
+            post(new FOPEvent.BreakStarted(BreakType.TECHNICAL, CountdownType.DURATION,
+                    profile.breakSeconds * 1000, null, this));
+            Thread.sleep(profile.breakSeconds * 1000L);
+            post(new FOPEvent.StartLifting(this));
+            return;
         }
-        fopEventBus.post(new FOPEvent.TimeStopped(this));
-        fopEventBus.post(new FOPEvent.DecisionUpdate(this, 0, goodLift(r)));
-        fopEventBus.post(new FOPEvent.DecisionUpdate(this, 1, goodLift(r)));
-        fopEventBus.post(new FOPEvent.DecisionUpdate(this, 2, goodLift(r)));
-    }
 
-    protected void doBreak(FieldOfPlay fop) {
-    }
+        if (random.nextInt(100) < profile.changePercent) {
+            doChangeBurst();
+            if (fop.getState() != FOPState.CURRENT_ATHLETE_DISPLAYED) {
+                return;
+            }
+        }
 
-    protected void doEmpty() {
+        // do a lift in group g
+        Athlete lifter = fop.getCurAthlete();
+        post(new FOPEvent.TimeStarted(this));
+        Thread.sleep(profile.liftMillis);
+        post(new FOPEvent.TimeStopped(this));
+        boolean[] decisions = { goodLift(random), goodLift(random), goodLift(random) };
+        boolean reversal = random.nextInt(100) < profile.juryPercent;
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(random.nextInt(profile.refereeMillis + 1));
+            if (reversal && i == 2) {
+                // jury overrules the referees before the decision is final
+                boolean majority = (decisions[0] ? 1 : 0) + (decisions[1] ? 1 : 0) + (decisions[2] ? 1 : 0) >= 2;
+                post(new FOPEvent.ExplicitDecision(lifter, this, !majority, decisions[0], decisions[1],
+                        decisions[2]));
+                nbReversals++;
+            } else {
+                post(new FOPEvent.DecisionUpdate(this, lifter, i, decisions[i]));
+            }
+        }
+        nbLifts++;
     }
 
     Object getOrigin() {
         return this.origin;
     }
 
-    private void doBreak() {
-        // nothing for now
+    private void doChangeBurst() {
+        List<Athlete> order = fop.getLiftingOrder().stream().filter(x -> x.getAttemptsDone() < 6)
+                .collect(Collectors.toList());
+        if (order.isEmpty()) {
+            return;
+        }
+        int n = 1 + random.nextInt(Math.max(1, profile.changeBurst));
+        for (int i = 0; i < n; i++) {
+            Athlete changing = order.get(random.nextInt(Math.min(order.size(), 5)));
+            if (FOPReplay.requestChange(changing, 1)) {
+                nbChanges++;
+                post(new FOPEvent.WeightChange(this, changing));
+            }
+        }
     }
 
-    private Object doDone(Group group) {
+    private boolean doDone() {
         if (curGs.size() > 0) {
             curGs.remove(0);
-            startNextGroup();
-        }
-        return null;
-    }
-
-    private void doFirstAthlete(UIEvent e) {
-        Athlete a = e.getAthlete();
-        if (a == null) {
-            OwlcmsSession.withFop(fop -> {
-                List<Athlete> order = fop.getLiftingOrder();
-                Athlete athlete = order.size() > 0 ? order.get(0) : null;
-                doAthleteUpdate(athlete);
-            });
-        } else {
-            doAthleteUpdate(a);
         }
+        return startNextGroup();
     }
 
     private boolean goodLift(Random r) {
         return r.nextFloat() < 0.7;
     }
 
+    private void post(FOPEvent e) {
+        long start = System.nanoTime();
+        lastPostNanos = start;
+        fopEventBus.post(e);
+        fopLatencies.add(System.nanoTime() - start);
+    }
+
     private void setOrigin(Object origin) {
         this.origin = origin;
     }
 
     private boolean startNextGroup() {
-        curGs = groupsByPlatform.get(fop.getPlatform());
         if (curGs.size() > 0) {
             Group g = curGs.get(0);
-            logger.info("########## starting group {} of {}", g, curGs);
+            logger.info("########## {} starting group {} of {}", fop.getName(), g, curGs);
             fop.startLifting(g, this);
             return true;
         } else {
@@ -0,0 +1,77 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.sound;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Plays sounds on a sound card.
+ *
+ * Each sound gets its own line, opened and started once, with a buffer large enough to hold the whole sound. Playing
+ * is then a write to a running line, which returns without waiting for the sound to be heard, and two different
+ * sounds can be heard at the same time.
+ *
+ * @author Jean-François Lamy
+ */
+public class MixerOutput implements SoundOutput {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(MixerOutput.class);
+
+    private final Mixer mixer;
+    private final Map<String, SourceDataLine> lines = new HashMap<>();
+
+    public MixerOutput(Mixer mixer) {
+        this.mixer = mixer;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (SourceDataLine line : lines.values()) {
+            line.stop();
+            line.close();
+        }
+        lines.clear();
+    }
+
+    @Override
+    public synchronized void play(PcmSound sound) throws LineUnavailableException {
+        SourceDataLine line = lines.get(sound.getName());
+        if (line == null) {
+            line = open(sound);
+        }
+        // a new time over cuts the previous one short
+        line.flush();
+        line.write(sound.getSamples(), 0, sound.getSamples().length);
+    }
+
+    @Override
+    public synchronized void prepare(PcmSound sound) throws LineUnavailableException {
+        if (!lines.containsKey(sound.getName())) {
+            open(sound);
+        }
+    }
+
+    private SourceDataLine open(PcmSound sound) throws LineUnavailableException {
+        SourceDataLine line = AudioSystem.getSourceDataLine(sound.getFormat(), mixer.getMixerInfo());
+        line.open(sound.getFormat(), sound.getSamples().length);
+        line.start();
+        lines.put(sound.getName(), line);
+        logger.debug("{}: line for {} opened, buffer {} bytes", mixer.getMixerInfo().getName(), sound,
+                line.getBufferSize());
+        return line;
+    }
+}
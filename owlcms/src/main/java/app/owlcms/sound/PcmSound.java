@@ -0,0 +1,78 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.sound;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * A sound decoded to PCM samples, ready to be written to a line.
+ *
+ * @author Jean-François Lamy
+ */
+public class PcmSound {
+
+    /**
+     * Decode a WAV file from the sounds directory.
+     *
+     * @param soundRelativeURL the file name, e.g. <code>timeOver2.wav</code>
+     * @return the decoded sound
+     * @throws IOException                   if the file is missing or cannot be read
+     * @throws UnsupportedAudioFileException if the file is not an uncompressed WAV file
+     */
+    public static PcmSound fromWav(String soundRelativeURL) throws IOException, UnsupportedAudioFileException {
+        String soundURL = Sound.SOUND_PREFIX + soundRelativeURL;
+        try (InputStream resource = PcmSound.class.getResourceAsStream(soundURL)) {
+            if (resource == null) {
+                throw new IOException(soundURL + " not found");
+            }
+            // same as Sound: WaveFileReader avoids the mark/reset attempts on the jar stream
+            AudioInputStream inputStream = new WaveFileReader().getAudioInputStream(resource);
+            return new PcmSound(soundRelativeURL, inputStream.getFormat(), IOUtils.toByteArray(inputStream));
+        }
+    }
+
+    private final String name;
+    private final AudioFormat format;
+    private final byte[] samples;
+
+    public PcmSound(String name, AudioFormat format, byte[] samples) {
+        this.name = name;
+        this.format = format;
+        this.samples = samples;
+    }
+
+    /**
+     * @return the playing time
+     */
+    public long getDurationMillis() {
+        return (long) (samples.length / format.getFrameSize() * 1000 / format.getFrameRate());
+    }
+
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public byte[] getSamples() {
+        return samples;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
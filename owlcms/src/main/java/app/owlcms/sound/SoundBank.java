@@ -0,0 +1,146 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.sound;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The sounds of a platform, decoded once and played on a thread of their own.
+ *
+ * The sounds are decoded the first time a bank is created and shared by all the platforms; each bank prepares its
+ * output when created, so that on a sound card the lines are already open when the first sound is needed.
+ * {@link #play(String)} only queues the sound and returns, the field of play never waits for the sound system.
+ *
+ * @author Jean-François Lamy
+ */
+public class SoundBank {
+
+    /** also used for the final warning, finalWarning2.wav sounds too much like down */
+    public static final String INITIAL_WARNING = "initialWarning2.wav";
+    public static final String TIME_OVER = "timeOver2.wav";
+    public static final String DOWN = "down";
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(SoundBank.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static Map<String, PcmSound> decoded;
+
+    /**
+     * @return the sounds, decoded on the first call
+     */
+    public static synchronized Map<String, PcmSound> getSounds() {
+        if (decoded == null) {
+            long start = System.currentTimeMillis();
+            Map<String, PcmSound> sounds = new LinkedHashMap<>();
+            for (String wav : new String[] { INITIAL_WARNING, TIME_OVER }) {
+                try {
+                    sounds.put(wav, PcmSound.fromWav(wav));
+                } catch (Exception e) {
+                    logger.error("could not decode {} {}", wav, LoggerUtils.stackTrace(e));
+                }
+            }
+            sounds.put(DOWN, Tone.pcm(DOWN, 1100, 1200, 1.0));
+            decoded = sounds;
+            logger.debug("sounds decoded in {} ms", System.currentTimeMillis() - start);
+        }
+        return decoded;
+    }
+
+    private final String name;
+    private final SoundOutput output;
+    private final Consumer<Exception> onError;
+    private final ExecutorService player;
+    private long maxStartLatency;
+
+    /**
+     * @param name    the platform name, for the thread name and the log
+     * @param output  where the sounds are played
+     * @param onError told when a sound cannot be played, on the sound thread
+     */
+    public SoundBank(String name, SoundOutput output, Consumer<Exception> onError) {
+        this.name = name;
+        this.output = output;
+        this.onError = onError;
+        this.player = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "sound-" + name);
+            t.setDaemon(true);
+            // late sounds are noticed by the referees and the athletes
+            t.setPriority(Thread.MAX_PRIORITY);
+            return t;
+        });
+        for (PcmSound sound : getSounds().values()) {
+            try {
+                output.prepare(sound);
+            } catch (Exception e) {
+                logger.error("{}: could not prepare {} {}", name, sound, LoggerUtils.stackTrace(e));
+                onError.accept(e);
+            }
+        }
+    }
+
+    /**
+     * Stop playing and release the output. Sounds queued and not yet started are dropped.
+     */
+    public void close() {
+        player.shutdownNow();
+        // the output waits for a sound being written
+        output.close();
+    }
+
+    /**
+     * @return the longest time between a request and the start of the sound, in milliseconds
+     */
+    public synchronized long getMaxStartLatencyMillis() {
+        return maxStartLatency / 1000000;
+    }
+
+    /**
+     * Queue a sound and return.
+     *
+     * @param soundName one of the names defined in this class
+     */
+    public void play(String soundName) {
+        PcmSound sound = getSounds().get(soundName);
+        if (sound == null) {
+            logger./**/warn("{}: no sound {}", name, soundName);
+            return;
+        }
+        long requested = System.nanoTime();
+        try {
+            player.execute(() -> {
+                long latency = System.nanoTime() - requested;
+                try {
+                    output.play(sound);
+                    recordLatency(latency);
+                    logger.debug("{}: {} started after {} ms", name, sound, latency / 1000000);
+                } catch (Exception e) {
+                    logger.error("{}: could not play {} {}", name, sound, LoggerUtils.stackTrace(e));
+                    onError.accept(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("{}: closed, {} not played", name, sound);
+        }
+    }
+
+    private synchronized void recordLatency(long latency) {
+        maxStartLatency = Math.max(maxStartLatency, latency);
+    }
+}
@@ -0,0 +1,38 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.sound;
+
+import javax.sound.sampled.LineUnavailableException;
+
+/**
+ * Where a {@link SoundBank} plays its sounds. {@link MixerOutput} plays on a sound card; tests use a stand-in.
+ *
+ * @author Jean-François Lamy
+ */
+public interface SoundOutput {
+
+    /**
+     * Release the lines.
+     */
+    void close();
+
+    /**
+     * Play a sound. Called on the sound bank thread only, after {@link #prepare(PcmSound)}.
+     *
+     * @param sound the sound
+     * @throws LineUnavailableException
+     */
+    void play(PcmSound sound) throws LineUnavailableException;
+
+    /**
+     * Get ready to play a sound, so that {@link #play(PcmSound)} starts as soon as possible.
+     *
+     * @param sound the sound
+     * @throws LineUnavailableException
+     */
+    void prepare(PcmSound sound) throws LineUnavailableException;
+}
@@ -13,6 +13,34 @@ import javax.sound.sampled.Mixer;
 import javax.sound.sampled.SourceDataLine;
 
 public class Tone {
+
+    /**
+     * @param name  the name of the sound
+     * @param hz    the frequency
+     * @param msecs the duration
+     * @param vol   the volume, from 0.0 to 1.0
+     * @return the samples for a sine wave
+     */
+    public static PcmSound pcm(String name, int hz, int msecs, double vol) {
+        if (vol > 1.0 || vol < 0.0) {
+            throw new IllegalArgumentException("Volume out of range 0.0 - 1.0");
+        }
+        byte[] buf = new byte[msecs * 8];
+
+        for (int i = 0; i < buf.length; i++) {
+            double angle = i / (8000.0 / hz) * 2.0 * Math.PI;
+            buf[i] = (byte) (Math.sin(angle) * 127.0 * vol);
+        }
+
+        // shape the front and back ends of the wave form
+        for (int i = 0; i < 20 && i < buf.length / 2; i++) {
+            buf[i] = (byte) (buf[i] * i / 20);
+            buf[buf.length - 1 - i] = (byte) (buf[buf.length - 1 - i] * i / 20);
+        }
+
+        return new PcmSound(name, new AudioFormat(8000f, 8, 1, true, false), buf);
+    }
+
     private byte[] buf;
     private AudioFormat af;
     private SourceDataLine sdl;
@@ -49,23 +77,9 @@ public class Tone {
      */
     protected void init(int hz, int msecs, double vol, Mixer mixer)
             throws LineUnavailableException, IllegalArgumentException {
-        if (vol > 1.0 || vol < 0.0) {
-            throw new IllegalArgumentException("Volume out of range 0.0 - 1.0");
-        }
-        buf = new byte[msecs * 8];
-
-        for (int i = 0; i < buf.length; i++) {
-            double angle = i / (8000.0 / hz) * 2.0 * Math.PI;
-            buf[i] = (byte) (Math.sin(angle) * 127.0 * vol);
-        }
-
-        // shape the front and back ends of the wave form
-        for (int i = 0; i < 20 && i < buf.length / 2; i++) {
-            buf[i] = (byte) (buf[i] * i / 20);
-            buf[buf.length - 1 - i] = (byte) (buf[buf.length - 1 - i] * i / 20);
-        }
-
-        af = new AudioFormat(8000f, 8, 1, true, false);
+        PcmSound tone = pcm("tone", hz, msecs, vol);
+        buf = tone.getSamples();
+        af = tone.getFormat();
         sdl = AudioSystem.getSourceDataLine(af, mixer.getMixerInfo());
     }
 
@@ -22,7 +22,6 @@ import com.vaadin.flow.component.UI;
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.i18n.Translator;
-import app.owlcms.init.OwlcmsSession;
 import net.sf.jxls.transformer.XLSTransformer;
 
 /**
@@ -118,8 +117,11 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
     protected void setReportingInfo() {
         super.setReportingInfo();
         Competition competition = Competition.getCurrent();
-        competition.computeGlobalRankings(true);
-        setReportingBeans(competition.getReportingBeans());
+        synchronized (competition) {
+            competition.computeGlobalRankings(true);
+            // rankings recomputed while the workbook is produced must not change it
+            setReportingBeans(competition.getReportingBeansSnapshot());
+        }
     }
 
 //    private byte[] loadDefaultPackageTemplate(Locale locale, Competition current) {
@@ -154,36 +156,36 @@ public class JXLSCompetitionBook extends JXLSWorkbookStreamSource {
             Sheet curSheet = workbook.getSheetAt(sheetIndex);
             String sheetName = curSheet.getSheetName();
             workbook.setSheetName(sheetIndex,
-                    Translator.translate("CompetitionBook." + sheetName, OwlcmsSession.getLocale()));
+                    Translator.translate("CompetitionBook." + sheetName, getLocale()));
 
             String leftHeader = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_LeftHeader",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (leftHeader != null) {
                 curSheet.getHeader().setLeft(leftHeader);
             }
             String centerHeader = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_CenterHeader",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (centerHeader != null) {
                 curSheet.getHeader().setCenter(centerHeader);
             }
             String rightHeader = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_RightHeader",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (rightHeader != null) {
                 curSheet.getHeader().setRight(rightHeader);
             }
 
             String leftFooter = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_LeftFooter",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (leftFooter != null) {
                 curSheet.getFooter().setLeft(leftFooter);
             }
             String centerFooter = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_CenterFooter",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (centerFooter != null) {
                 curSheet.getFooter().setCenter(centerFooter);
             }
             String rightFooter = Translator.translateOrElseNull("CompetitionBook." + sheetName + "_RightFooter",
-                    OwlcmsSession.getLocale());
+                    getLocale());
             if (rightFooter != null) {
                 curSheet.getFooter().setRight(rightFooter);
             }
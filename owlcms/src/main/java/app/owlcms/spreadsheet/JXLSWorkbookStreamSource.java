@@ -6,15 +6,31 @@
  */
 package app.owlcms.spreadsheet;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.BorderStyle;
@@ -32,12 +48,16 @@ import com.vaadin.flow.server.StreamResourceWriter;
 import com.vaadin.flow.server.VaadinSession;
 
 import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsSession;
+import app.owlcms.metrics.FlightEvents;
 import app.owlcms.utils.LoggerUtils;
+import app.owlcms.utils.StartupUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import net.sf.jxls.transformer.XLSTransformer;
@@ -49,6 +69,19 @@ import net.sf.jxls.transformer.XLSTransformer;
 @SuppressWarnings("serial")
 public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
 
+    /**
+     * A workbook ready to be sent.
+     */
+    private static final class GeneratedReport {
+        private final byte[] content;
+        private final int athletes;
+
+        GeneratedReport(byte[] content, int athletes) {
+            this.content = content;
+            this.athletes = athletes;
+        }
+    }
+
     final private static Logger logger = (Logger) LoggerFactory.getLogger(JXLSWorkbookStreamSource.class);
     final private static Logger jexlLogger = (Logger) LoggerFactory.getLogger("org.apache.commons.jexl2.JexlEngine");
     final private static Logger tagLogger = (Logger) LoggerFactory.getLogger("net.sf.jxls.tag.ForEachTag");
@@ -58,12 +91,40 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
         tagLogger.setLevel(Level.ERROR);
     }
 
+    /** show the progress notification if the workbook is not ready by then */
+    private static final long PROGRESS_DELAY_MILLIS = 1000;
+
+    /** reports waiting for a thread; further requests are turned down */
+    private static final int QUEUED_REPORTS = 8;
+
+    /** workbooks produced, the least recently used is dropped */
+    private static final int CACHED_REPORTS = 16;
+
+    /**
+     * The workbooks are produced on a few threads, so that a burst of downloads does not take all the CPUs away from
+     * the fields of play. <code>-DreportThreads=n</code> (default 2) sets how many.
+     */
+    private static final ThreadPoolExecutor reportExecutor = newReportExecutor();
+
+    /**
+     * Workbooks by report, template, locale, group and data version, so that downloading the same report again is
+     * instant until an athlete or the competition changes.
+     */
+    private static final Map<String, GeneratedReport> reportCache = Collections
+            .synchronizedMap(new LinkedHashMap<String, GeneratedReport>(CACHED_REPORTS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, GeneratedReport> eldest) {
+                    return size() > CACHED_REPORTS;
+                }
+            });
+
     private HashMap<String, Object> reportingBeans;
 
     private boolean excludeNotWeighed;
 
     private Group group;
     private UI ui;
+    private Locale locale;
 
     public JXLSWorkbookStreamSource(UI ui) {
         this.ui = ui;
@@ -74,52 +135,33 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
     /**
      * Read the xls template and write the processed XLS file out.
      *
+     * The session is not locked: the data is gathered on the request thread, the workbook is produced by the report
+     * executor from a copy of the reporting beans, and is sent once ready. A notification is shown if this takes more
+     * than a moment. The locale and the notifications need the UI, so they go through {@link UI#access}.
+     *
      * @see com.vaadin.flow.server.StreamResourceWriter#accept(java.io.OutputStream,
      *      com.vaadin.flow.server.VaadinSession)
      */
-    @SuppressWarnings("unchecked")
     @Override
     public void accept(OutputStream stream, VaadinSession session) throws IOException {
+        long start = System.nanoTime();
         try {
-            session.lock();
-            Locale locale = OwlcmsSession.getLocale();
-            XLSTransformer transformer = new XLSTransformer();
-            configureTransformer(transformer);
-            Workbook workbook = null;
-            try {
-                setReportingInfo();
-                HashMap<String, Object> reportingBeans2 = getReportingBeans();
-                List<Athlete> athletes = (List<Athlete>) reportingBeans2.get("athletes");
-                if (athletes != null && athletes.size() > 0) {
-                    workbook = transformer.transformXLS(getTemplate(locale), reportingBeans2);
-                    if (workbook != null) {
-                        postProcess(workbook);
-                    }
-                } else {
-                    String noAthletes = "No Athletes";
-                    ui.access(() -> {
-                        Notification notif = new Notification();
-                        notif.addThemeVariants(NotificationVariant.LUMO_ERROR);
-                        notif.setPosition(Position.TOP_STRETCH);
-                        notif.setDuration(3000);
-                        notif.setText(noAthletes);
-                        notif.open();
-                    });
-                    workbook = new HSSFWorkbook();
-                    workbook.createSheet().createRow(1).createCell(1).setCellValue(noAthletes);
-                }
-            } catch (Exception e) {
-                logger.error(LoggerUtils.stackTrace(e));
+            GeneratedReport report;
+            Locale reportLocale = readLocale();
+            // the reporting beans and locale belong to this source, the same user may click twice
+            synchronized (this) {
+                locale = reportLocale;
+                report = generate(reportLocale);
             }
-            if (workbook != null) {
-                workbook.write(stream);
+            if (report != null) {
+                stream.write(report.content);
+                FlightEvents.reportGenerated(getClass().getSimpleName(), group != null ? group.getName() : null,
+                        report.athletes, report.content.length, System.nanoTime() - start);
             }
         } catch (IOException e) {
             // ignore
         } catch (Throwable t) {
             logger.error(LoggerUtils.stackTrace(t));
-        } finally {
-            session.unlock();
         }
     }
 
@@ -201,6 +243,13 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
         // do nothing, to be overridden as needed,
     }
 
+    /**
+     * @return the locale of the report being produced
+     */
+    protected Locale getLocale() {
+        return locale;
+    }
+
     /**
      * Try the possible variations of a template based on locale. For "/templates/start/startList", ".xls", and a locale
      * of fr_CA, the following names will be tried /templates/start/startList_fr_CA.xls
@@ -256,4 +305,147 @@ public abstract class JXLSWorkbookStreamSource implements StreamResourceWriter {
             return compare = ObjectUtils.compare(a.getPlatform(), b.getPlatform(), true);
         }).collect(Collectors.toList()));
     }
+
+    private static ThreadPoolExecutor newReportExecutor() {
+        int threads = StartupUtils.getIntegerParam("reportThreads", 2);
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUED_REPORTS), r -> {
+                    Thread t = new Thread(r, "report-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Wait for the workbook, telling the user it is on its way if it takes a while.
+     */
+    private byte[] await(Future<byte[]> result, Locale locale) throws Exception {
+        try {
+            try {
+                return result.get(PROGRESS_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                String text = Translator.translateOrElseEn("Spreadsheet.Generating", locale);
+                AtomicReference<Notification> progress = new AtomicReference<>();
+                ui.access(() -> progress.set(showNotification(text, NotificationVariant.LUMO_PRIMARY, 0)));
+                try {
+                    return result.get();
+                } finally {
+                    ui.access(() -> {
+                        Notification shown = progress.get();
+                        if (shown != null) {
+                            shown.close();
+                        }
+                    });
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Everything the workbook depends on, read before the data is gathered so that a change made meanwhile gives
+     * another key.
+     */
+    private String cacheKey(byte[] template, Locale locale) {
+        CRC32 crc = new CRC32();
+        crc.update(template);
+        return getClass().getName() + "|" + Long.toHexString(crc.getValue()) + "|" + locale + "|"
+                + (group != null ? group.getId() : "") + "|" + excludeNotWeighed + "|" + JPAService.getDataVersion()
+                + "|" + AthleteRepository.getChangeSeq();
+    }
+
+    /**
+     * @return the workbook, null if it could not be produced
+     */
+    @SuppressWarnings("unchecked")
+    private GeneratedReport generate(Locale locale) {
+        try {
+            byte[] template;
+            try (InputStream in = getTemplate(locale)) {
+                template = IOUtils.toByteArray(in);
+            }
+            String key = cacheKey(template, locale);
+            GeneratedReport cached = reportCache.get(key);
+            if (cached != null) {
+                logger.debug("{} from cache", getClass().getSimpleName());
+                return cached;
+            }
+
+            setReportingInfo();
+            // the executor works on its own copy, the beans of this source are replaced at the next download
+            HashMap<String, Object> beans = new HashMap<>(getReportingBeans());
+            setReportingBeans(beans);
+            List<Athlete> athletes = (List<Athlete>) beans.get("athletes");
+            if (athletes == null || athletes.isEmpty()) {
+                String noAthletes = "No Athletes";
+                ui.access(() -> showNotification(noAthletes, NotificationVariant.LUMO_ERROR, 3000));
+                Workbook workbook = new HSSFWorkbook();
+                workbook.createSheet().createRow(1).createCell(1).setCellValue(noAthletes);
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                workbook.write(out);
+                return new GeneratedReport(out.toByteArray(), 0);
+            }
+
+            Future<byte[]> result;
+            try {
+                result = reportExecutor.submit(() -> transform(template, beans));
+            } catch (RejectedExecutionException e) {
+                logger./**/warn("{} not produced, {} reports already waiting", getClass().getSimpleName(),
+                        QUEUED_REPORTS);
+                String busy = Translator.translateOrElseEn("Spreadsheet.Busy", locale);
+                ui.access(() -> showNotification(busy, NotificationVariant.LUMO_ERROR, 5000));
+                return null;
+            }
+            GeneratedReport report = new GeneratedReport(await(result, locale), athletes.size());
+            reportCache.put(key, report);
+            return report;
+        } catch (Exception e) {
+            logger.error(LoggerUtils.stackTrace(e));
+            return null;
+        }
+    }
+
+    /**
+     * The locale of the user asking for the report. Read with the session locked, since it may set the locale of the
+     * UI.
+     */
+    private Locale readLocale() throws Exception {
+        AtomicReference<Locale> uiLocale = new AtomicReference<>();
+        ui.access(() -> uiLocale.set(OwlcmsSession.getLocale())).get();
+        return uiLocale.get();
+    }
+
+    /**
+     * Must be called from {@link UI#access}.
+     */
+    private Notification showNotification(String text, NotificationVariant variant, int duration) {
+        Notification notif = new Notification();
+        notif.addThemeVariants(variant);
+        notif.setPosition(Position.TOP_STRETCH);
+        notif.setDuration(duration);
+        notif.setText(text);
+        notif.open();
+        return notif;
+    }
+
+    /**
+     * Runs on the report executor.
+     */
+    private byte[] transform(byte[] template, HashMap<String, Object> beans) throws Exception {
+        XLSTransformer transformer = new XLSTransformer();
+        configureTransformer(transformer);
+        Workbook workbook = transformer.transformXLS(new ByteArrayInputStream(template), beans);
+        if (workbook == null) {
+            throw new IOException("no workbook produced by " + getClass().getSimpleName());
+        }
+        postProcess(workbook);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        workbook.write(out);
+        return out.toByteArray();
+    }
 }
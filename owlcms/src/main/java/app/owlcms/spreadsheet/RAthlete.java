@@ -17,11 +17,7 @@ import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.Gender;
 import app.owlcms.data.category.Category;
 import app.owlcms.data.category.CategoryRepository;
-import app.owlcms.data.group.Group;
-import app.owlcms.data.group.GroupRepository;
-import app.owlcms.data.platform.PlatformRepository;
 import app.owlcms.i18n.Translator;
-import app.owlcms.ui.preparation.UploadDialog;
 import app.owlcms.utils.DateTimeUtils;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
@@ -188,20 +184,7 @@ public class RAthlete {
         if (groupName == null) {
             return;
         }
-        Group group = GroupRepository.findByName(groupName);
-        if (group == null) {
-            group = new Group();
-            group.setName(groupName);
-            group.setPlatform(PlatformRepository.findAll().get(0));
-            Group nGroup = GroupRepository.save(group);
-            a.setGroup(nGroup);
-            logger.debug("creating group {}",groupName);
-            UploadDialog.listGroups("group creation");
-//            throw new Exception(
-//                    Translator.translate("Upload.GroupNotDefined", groupName));
-        } else {
-            a.setGroup(group);
-        }
+        a.setGroup(RCompetition.getGroup(groupName));
     }
 
     /**
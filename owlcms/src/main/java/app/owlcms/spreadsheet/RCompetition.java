@@ -9,17 +9,23 @@ package app.owlcms.spreadsheet;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.Date;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import app.owlcms.data.category.Category;
 import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.competition.Competition;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
 
 public class RCompetition {
 
     static Map<String, Category> activeCategories = new HashMap<>();
 
+    static Map<String, Group> groupsByName = null;
+
     public static Map<String, Category> getActiveCategories() {
         return activeCategories;
     }
@@ -31,6 +37,46 @@ public class RCompetition {
         });
     }
 
+    /**
+     * Group for an athlete row. Groups missing from the groups sheet are created on the fly; they are not persisted
+     * here, the caller persists all the groups at once.
+     *
+     * @param groupName
+     * @return the group with that name
+     */
+    public static Group getGroup(String groupName) {
+        if (groupsByName == null) {
+            // not reset by the caller, use the groups in the database
+            resetGroups(GroupRepository.findAll());
+        }
+        return groupsByName.computeIfAbsent(groupName, (n) -> new Group(n));
+    }
+
+    /**
+     * @return the groups referenced by the spreadsheet, including those created on the fly
+     */
+    public static Collection<Group> getGroups() {
+        return groupsByName != null ? groupsByName.values() : List.of();
+    }
+
+    /**
+     * Forget the groups and categories of an upload, so that its entities are not kept until the next one.
+     */
+    public static void clearUpload() {
+        groupsByName = null;
+        activeCategories.clear();
+    }
+
+    /**
+     * @param groups groups read from the spreadsheet
+     */
+    public static void resetGroups(List<Group> groups) {
+        groupsByName = new HashMap<>();
+        for (Group g : groups) {
+            groupsByName.put(g.getName(), g);
+        }
+    }
+
     Competition c = new Competition();
 
     public Competition getCompetition() {
@@ -179,7 +179,7 @@ public abstract class OwlcmsCrudFormFactory<T> extends DefaultCrudFormFactory<T>
             }
             if (!valid) {
                 logger.debug("validationStatusHandler updateFieldErrors={} {}", showErrorsOnFields,
-                        LoggerUtils.whereFrom());
+                        LoggerUtils.callerLocation());
                 if (errorLabel != null) {
                     setErrorLabel(s, showErrorsOnFields);
                 }
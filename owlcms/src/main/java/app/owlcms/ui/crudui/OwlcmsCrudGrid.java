@@ -6,7 +6,9 @@
  */
 package app.owlcms.ui.crudui;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.LoggerFactory;
 import org.vaadin.crudui.crud.CrudOperation;
@@ -22,6 +24,10 @@ import com.vaadin.flow.component.grid.Grid.SelectionMode;
 import com.vaadin.flow.component.grid.GridSortOrder;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.notification.Notification;
+import com.vaadin.flow.data.provider.DataProvider;
+import com.vaadin.flow.data.provider.Query;
+import com.vaadin.flow.data.provider.QuerySortOrder;
+import com.vaadin.flow.data.provider.SortDirection;
 
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
@@ -43,6 +49,8 @@ public class OwlcmsCrudGrid<T> extends GridCrud<T> {
 
     private long clicked = 0L;
 
+    private DataProvider<T, ?> lazyDataProvider;
+
     /**
      * Instantiates a new owlcms crudGrid crudGrid.
      *
@@ -61,6 +69,45 @@ public class OwlcmsCrudGrid<T> extends GridCrud<T> {
         initLayoutGrid();
     }
 
+    /**
+     * Sort order requested by the grid, for the repositories.
+     *
+     * @param query the data provider query
+     * @return the sort properties in order, with true for ascending
+     */
+    public static Map<String, Boolean> sortOrder(Query<?, ?> query) {
+        Map<String, Boolean> sortOrder = new LinkedHashMap<>();
+        for (QuerySortOrder order : query.getSortOrders()) {
+            sortOrder.put(order.getSorted(), order.getDirection() != SortDirection.DESCENDING);
+        }
+        return sortOrder;
+    }
+
+    /**
+     * Reload the grid. With a lazy data provider, only the rows being displayed are fetched again.
+     *
+     * @see org.vaadin.crudui.crud.impl.GridCrud#refreshGrid()
+     */
+    @Override
+    public void refreshGrid() {
+        if (lazyDataProvider != null) {
+            lazyDataProvider.refreshAll();
+        } else {
+            super.refreshGrid();
+        }
+    }
+
+    /**
+     * Fetch the rows from a lazy data provider (typically a CallbackDataProvider that queries the database by page)
+     * instead of loading the full list returned by findAll.
+     *
+     * @param dataProvider
+     */
+    public void setLazyDataProvider(DataProvider<T, ?> dataProvider) {
+        this.lazyDataProvider = dataProvider;
+        grid.setDataProvider(dataProvider);
+    }
+
     public void sort(List<GridSortOrder<T>> sortOrder) {
         grid.sort(sortOrder);
     }
@@ -86,7 +86,7 @@ public class AnnouncerContent extends AthleteGridContent implements HasDynamicTi
         FieldOfPlay fop = OwlcmsSession.getFop();
         if (fop != null) {
             logger.trace("findAll {} {} {}", fop.getName(), fop.getGroup() == null ? null : fop.getGroup().getName(),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
             final String filterValue;
             if (lastNameFilter.getValue() != null) {
                 filterValue = lastNameFilter.getValue().toLowerCase();
@@ -195,7 +195,7 @@ public class AnnouncerContent extends AthleteGridContent implements HasDynamicTi
      */
     @Override
     protected void createInitialBar() {
-        logger.debug("AnnouncerContent creating top bar {}", LoggerUtils.whereFrom());
+        logger.debug("AnnouncerContent creating top bar {}", LoggerUtils.callerLocation());
         topBar = getAppLayout().getAppBarElementWrapper();
         topBar.removeAll();
         initialBar = true;
@@ -304,13 +304,13 @@ public class AnnouncerContent extends AthleteGridContent implements HasDynamicTi
         topBarGroupSelect.setClearButtonVisible(true);
         OwlcmsSession.withFop((fop) -> {
             Group group = fop.getGroup();
-            logger.trace("initial setting group to {} {}", group, LoggerUtils.whereFrom());
+            logger.trace("initial setting group to {} {}", group, LoggerUtils.callerLocation());
             topBarGroupSelect.setValue(group);
             getGroupFilter().setValue(group);
         });
         topBarGroupSelect.addValueChangeListener(e -> {
             Group group = e.getValue();
-            logger.trace("##### select setting filter group to {} {}", group, LoggerUtils.whereFrom());
+            logger.trace("##### select setting filter group to {} {}", group, LoggerUtils.callerLocation());
             getGroupFilter().setValue(group);
         });
     }
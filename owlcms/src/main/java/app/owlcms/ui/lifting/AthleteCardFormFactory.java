@@ -666,7 +666,7 @@ public class AthleteCardFormFactory extends OwlcmsCrudFormFactory<Athlete> imple
                 (e) -> {
                     Athlete.copy(originalAthlete, getEditedAthlete());
                     originalAthlete.withdraw();
-                    AthleteRepository.save(originalAthlete);
+                    AthleteRepository.saveResults(originalAthlete);
                     OwlcmsSession.withFop((fop) -> {
                         fop.getFopEventBus().post(new FOPEvent.WeightChange(this.getOrigin(), originalAthlete));
                     });
@@ -701,7 +701,7 @@ public class AthleteCardFormFactory extends OwlcmsCrudFormFactory<Athlete> imple
      */
     private void doUpdate() {
         Athlete.copy(originalAthlete, getEditedAthlete());
-        AthleteRepository.save(originalAthlete);
+        AthleteRepository.saveResults(originalAthlete);
         OwlcmsSession.withFop((fop) -> {
             fop.getFopEventBus().post(new FOPEvent.WeightChange(this.getOrigin(), originalAthlete));
         });
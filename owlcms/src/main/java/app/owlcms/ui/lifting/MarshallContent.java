@@ -56,7 +56,7 @@ public class MarshallContent extends AthleteGridContent implements HasDynamicTit
         FieldOfPlay fop = OwlcmsSession.getFop();
         if (fop != null) {
             logger.trace("findAll {} {} {}", fop.getName(), fop.getGroup() == null ? null : fop.getGroup().getName(),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
             final String filterValue;
             if (lastNameFilter.getValue() != null) {
                 filterValue = lastNameFilter.getValue().toLowerCase();
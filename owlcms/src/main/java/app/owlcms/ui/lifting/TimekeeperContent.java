@@ -258,7 +258,7 @@ public class TimekeeperContent extends AthleteGridContent implements HasDynamicT
     protected void syncWithFOP(boolean refreshGrid) {
         OwlcmsSession.withFop((fop) -> {
             Group fopGroup = fop.getGroup();
-            logger.debug("syncing FOP, group = {}, {}", fopGroup, LoggerUtils.whereFrom(2));
+            logger.debug("syncing FOP, group = {}, {}", fopGroup, LoggerUtils.callerLocation(2));
 
             Athlete curAthlete2 = fop.getCurAthlete();
             FOPState state = fop.getState();
@@ -290,7 +290,7 @@ public class TimekeeperContent extends AthleteGridContent implements HasDynamicT
                         decisions.setVisible(true);
                     }
                     if (breakButton == null) {
-                        logger.debug("breakButton is null\n{}", LoggerUtils.stackTrace());
+                        logger.debug("breakButton is null\n{}", LoggerUtils.lazyStackTrace());
                         return;
                     }
                     breakButton.setText("");
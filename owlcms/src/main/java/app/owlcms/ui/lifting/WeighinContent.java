@@ -8,8 +8,10 @@ package app.owlcms.ui.lifting;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.slf4j.LoggerFactory;
 import org.vaadin.crudui.crud.CrudListener;
@@ -22,6 +24,7 @@ import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.DataProvider;
 import com.vaadin.flow.data.renderer.NumberRenderer;
 import com.vaadin.flow.data.renderer.TextRenderer;
 import com.vaadin.flow.data.value.ValueChangeMode;
@@ -185,10 +188,31 @@ public class WeighinContent extends VerticalLayout implements CrudListener<Athle
         OwlcmsCrudGrid<Athlete> crudGrid = new OwlcmsCrudGrid<>(Athlete.class, new OwlcmsGridLayout(Athlete.class),
                 crudFormFactory, grid);
         crudGrid.setCrudListener(this);
+        crudGrid.setLazyDataProvider(createDataProvider());
         crudGrid.setClickRowToUpdate(true);
         return crudGrid;
     }
 
+    /**
+     * Rows are fetched one page at a time, sorted and counted by the database. When the grid is not sorted, the
+     * database sorts in registration order.
+     *
+     * @return the data provider for the crudGrid
+     */
+    protected DataProvider<Athlete, Void> createDataProvider() {
+        return DataProvider.fromCallbacks(
+                query -> {
+                    Map<String, Boolean> sortOrder = OwlcmsCrudGrid.sortOrder(query);
+                    return AthleteRepository.findFiltered(lastNameFilter.getValue(), groupFilter.getValue(),
+                            categoryFilter.getValue(), ageGroupFilter.getValue(), ageDivisionFilter.getValue(),
+                            genderFilter.getValue(), weighedInFilter.getValue(), query.getOffset(), query.getLimit(),
+                            sortOrder.isEmpty() ? registrationOrder() : sortOrder).stream();
+                },
+                query -> AthleteRepository.countFiltered(lastNameFilter.getValue(), groupFilter.getValue(),
+                        categoryFilter.getValue(), ageGroupFilter.getValue(), ageDivisionFilter.getValue(),
+                        genderFilter.getValue(), weighedInFilter.getValue()));
+    }
+
     /**
      * The filters at the top of the crudGrid
      *
@@ -356,4 +380,24 @@ public class WeighinContent extends VerticalLayout implements CrudListener<Athle
             ((BodyWeightField) e).focus();
         });
     }
+
+    /**
+     * Database equivalent of {@link app.owlcms.data.athleteSort.RegistrationOrderComparator}.
+     *
+     * @return the sort properties
+     */
+    private Map<String, Boolean> registrationOrder() {
+        Map<String, Boolean> sortOrder = new LinkedHashMap<>();
+        sortOrder.put("weighInTime", true);
+        sortOrder.put("group", true);
+        if (Competition.getCurrent().isMasters()) {
+            // older age groups first
+            sortOrder.put("ageGroup", false);
+        }
+        sortOrder.put("category", true);
+        sortOrder.put("lotNumber", true);
+        sortOrder.put("lastName", true);
+        sortOrder.put("firstName", true);
+        return sortOrder;
+    }
 }
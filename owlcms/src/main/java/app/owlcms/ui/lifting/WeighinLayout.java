@@ -6,8 +6,6 @@
  */
 package app.owlcms.ui.lifting;
 
-import java.util.List;
-
 import org.slf4j.LoggerFactory;
 
 import com.github.appreciated.app.layout.component.applayout.AbstractLeftAppLayoutBase;
@@ -32,13 +30,9 @@ import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.server.StreamResource;
 
-import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.AthleteRepository;
-import app.owlcms.data.athlete.Gender;
-import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.group.GroupRepository;
-import app.owlcms.data.jpa.JPAService;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.spreadsheet.JXLSCards;
 import app.owlcms.spreadsheet.JXLSJurySheet;
@@ -213,14 +207,7 @@ public class WeighinLayout extends OwlcmsRouterLayout implements SafeEventBusReg
             errorNotification();
             return;
         }
-        JPAService.runInTransaction((em) -> {
-            List<Athlete> currentGroupAthletes = AthleteRepository.doFindAllByGroupAndWeighIn(em, group, null,
-                    (Gender) null);
-            for (Athlete a : currentGroupAthletes) {
-                a.setStartNumber(0);
-            }
-            return currentGroupAthletes;
-        });
+        AthleteRepository.clearStartNumbers(group);
         ((WeighinContent) getLayoutComponentContent()).refresh();
     }
 
@@ -230,13 +217,7 @@ public class WeighinLayout extends OwlcmsRouterLayout implements SafeEventBusReg
             errorNotification();
             return;
         }
-        JPAService.runInTransaction((em) -> {
-            List<Athlete> currentGroupAthletes = AthleteRepository.doFindAllByGroupAndWeighIn(em, group, true,
-                    (Gender) null);
-            AthleteSorter.displayOrder(currentGroupAthletes);
-            AthleteSorter.assignStartNumbers(currentGroupAthletes);
-            return currentGroupAthletes;
-        });
+        AthleteRepository.assignStartNumbers(group);
         ((WeighinContent) getLayoutComponentContent()).refresh();
     }
 }
@@ -77,7 +77,7 @@ public interface QueryParameterReader extends HasUrlParameter<String> {
             params.remove("group");
         }
 
-        logger.debug("URL parsing: {} OwlcmsSession: fop={} group={}", LoggerUtils.whereFrom(),
+        logger.debug("URL parsing: {} OwlcmsSession: fop={} group={}", LoggerUtils.callerLocation(),
                 (fop != null ? fop.getName() : null), (group != null ? group.getName() : null));
         return params;
     }
@@ -24,6 +24,7 @@ import com.vaadin.flow.component.grid.Grid;
 import com.vaadin.flow.component.icon.VaadinIcon;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
 import com.vaadin.flow.component.textfield.TextField;
+import com.vaadin.flow.data.provider.DataProvider;
 import com.vaadin.flow.data.renderer.NumberRenderer;
 import com.vaadin.flow.data.renderer.TextRenderer;
 import com.vaadin.flow.data.value.ValueChangeMode;
@@ -207,10 +208,27 @@ public class RegistrationContent extends VerticalLayout implements CrudListener<
         OwlcmsCrudGrid<Athlete> crudGrid = new OwlcmsCrudGrid<>(Athlete.class, new OwlcmsGridLayout(Athlete.class),
                 crudFormFactory, grid);
         crudGrid.setCrudListener(this);
+        crudGrid.setLazyDataProvider(createDataProvider());
         crudGrid.setClickRowToUpdate(true);
         return crudGrid;
     }
 
+    /**
+     * Rows are fetched one page at a time, sorted and counted by the database.
+     *
+     * @return the data provider for the crudGrid
+     */
+    protected DataProvider<Athlete, Void> createDataProvider() {
+        return DataProvider.fromCallbacks(
+                query -> AthleteRepository.findFiltered(lastNameFilter.getValue(), groupFilter.getValue(),
+                        categoryFilter.getValue(), ageGroupFilter.getValue(), ageDivisionFilter.getValue(),
+                        genderFilter.getValue(), weighedInFilter.getValue(), query.getOffset(), query.getLimit(),
+                        OwlcmsCrudGrid.sortOrder(query)).stream(),
+                query -> AthleteRepository.countFiltered(lastNameFilter.getValue(), groupFilter.getValue(),
+                        categoryFilter.getValue(), ageGroupFilter.getValue(), ageDivisionFilter.getValue(),
+                        genderFilter.getValue(), weighedInFilter.getValue()));
+    }
+
     /**
      * The filters at the top of the crudGrid
      *
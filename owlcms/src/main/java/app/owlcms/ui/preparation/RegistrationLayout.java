@@ -35,7 +35,6 @@ import com.vaadin.flow.server.StreamResource;
 import app.owlcms.components.ConfirmationDialog;
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.AthleteRepository;
-import app.owlcms.data.athleteSort.AthleteSorter;
 import app.owlcms.data.group.Group;
 import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.jpa.JPAService;
@@ -218,32 +217,19 @@ public class RegistrationLayout extends OwlcmsRouterLayout implements SafeEventB
             em.flush();
             return null;
         });
+        AthleteRepository.markAllChanged();
     }
 
     private void deleteAthletes() {
         RegistrationContent content = (RegistrationContent) getLayoutComponentContent();
-        JPAService.runInTransaction(em -> {
-            List<Athlete> athletes = (List<Athlete>) content.doFindAll(em);
-            for (Athlete a : athletes) {
-                em.remove(a);
-            }
-            em.flush();
-            return null;
-        });
+        List<Athlete> athletes = JPAService.runInTransaction(em -> (List<Athlete>) content.doFindAll(em));
+        AthleteRepository.deleteAll(athletes);
         content.refreshCrudGrid();
     }
 
     private void drawLots() {
         RegistrationContent content = (RegistrationContent) getLayoutComponentContent();
-        JPAService.runInTransaction(em -> {
-            List<Athlete> toBeShuffled = AthleteRepository.doFindAll(em);
-            AthleteSorter.drawLots(toBeShuffled);
-            for (Athlete a : toBeShuffled) {
-                em.merge(a);
-            }
-            em.flush();
-            return null;
-        });
+        AthleteRepository.drawLots();
         content.refreshCrudGrid();
     }
 
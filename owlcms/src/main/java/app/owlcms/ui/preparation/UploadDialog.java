@@ -6,17 +6,22 @@
  */
 package app.owlcms.ui.preparation;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.persistence.EntityManager;
+
 import org.apache.commons.beanutils.BeanUtils;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.slf4j.LoggerFactory;
@@ -32,12 +37,11 @@ import com.vaadin.flow.component.upload.receivers.MemoryBuffer;
 
 import app.owlcms.data.athlete.Athlete;
 import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.category.Category;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.group.Group;
-import app.owlcms.data.group.GroupRepository;
 import app.owlcms.data.jpa.JPAService;
 import app.owlcms.data.platform.Platform;
-import app.owlcms.data.platform.PlatformRepository;
 import app.owlcms.i18n.Translator;
 import app.owlcms.spreadsheet.RAthlete;
 import app.owlcms.spreadsheet.RCompetition;
@@ -104,7 +108,7 @@ public class UploadDialog extends Dialog {
         return cleanMessage;
     }
 
-    private void appendErrors(TextArea ta, StringBuffer sb, XLSReadStatus status) {
+    private void appendErrors(StringBuffer sb, XLSReadStatus status) {
         @SuppressWarnings("unchecked")
         List<XLSReadMessage> errors = status.getReadMessages();
         for (XLSReadMessage m : errors) {
@@ -120,210 +124,223 @@ public class UploadDialog extends Dialog {
             logger.debug(cleanMessage + causeMessage);
             sb.append(System.lineSeparator());
         }
-        if (sb.length() > 0) {
-            ta.setValue(sb.toString());
-            ta.setVisible(true);
-        }
     }
 
-    private int processAthletes(InputStream inputStream, TextArea ta) {
-        StringBuffer sb = new StringBuffer();
+    /**
+     * Read the athletes sheet. Groups and categories are resolved from the in-memory maps in {@link RCompetition}.
+     *
+     * @param workbook the uploaded file
+     * @param c        receives the competition information
+     * @param groups   the groups read from the groups sheet
+     * @param sb       receives the error messages
+     * @return the athletes read
+     */
+    private List<RAthlete> readAthletes(byte[] workbook, RCompetition c, List<RGroup> groups, StringBuffer sb) {
+        List<RAthlete> athletes = new ArrayList<>();
         try (InputStream xmlInputStream = this.getClass().getResourceAsStream(REGISTRATION_READER_SPEC)) {
-            inputStream.reset();
-            ReaderConfig readerConfig = ReaderConfig.getInstance();
-            readerConfig.setUseDefaultValuesForPrimitiveTypes(true);
-            readerConfig.setSkipErrors(true);
             XLSReader reader = ReaderBuilder.buildFromXML(xmlInputStream);
 
-            try (InputStream xlsInputStream = inputStream) {
-                RCompetition c = new RCompetition();
-                RCompetition.resetActiveCategories();
+            RCompetition.resetActiveCategories();
+            RCompetition.resetGroups(groups.stream().map(RGroup::getGroup).collect(Collectors.toList()));
 
-                List<RAthlete> athletes = new ArrayList<>();
+            Map<String, Object> beans = new HashMap<>();
+            beans.put("competition", c);
+            beans.put("athletes", athletes);
 
-                Map<String, Object> beans = new HashMap<>();
-                beans.put("competition", c);
-                beans.put("athletes", athletes);
-
-                XLSReadStatus status = reader.read(inputStream, beans);
-
-                logger.info(getTranslation("DataRead") + " " + athletes.size() + " athletes");
-                updateAthletes(sb, c, athletes);
-
-                appendErrors(ta, sb, status);
-                return athletes.size();
-            } catch (InvalidFormatException | IOException e) {
-                logger.error(LoggerUtils.stackTrace(e));
-            }
-        } catch (IOException | SAXException e1) {
-            logger.error(LoggerUtils.stackTrace(e1));
+            XLSReadStatus status = reader.read(new ByteArrayInputStream(workbook), beans);
+            logger.info(getTranslation("DataRead") + " " + athletes.size() + " athletes");
+            appendErrors(sb, status);
+        } catch (InvalidFormatException | IOException | SAXException e) {
+            logger.error(LoggerUtils.stackTrace(e));
         }
-        return 0;
+        return athletes;
     }
 
-    private int processGroups(InputStream inputStream, TextArea ta, boolean dryRun) {
-        StringBuffer sb = new StringBuffer();
+    /**
+     * Read the groups sheet. Older registration files have no such sheet, in which case the groups are created from
+     * the athlete rows.
+     *
+     * @param workbook the uploaded file
+     * @param sb       receives the error messages
+     * @return the groups read
+     */
+    private List<RGroup> readGroups(byte[] workbook, StringBuffer sb) {
+        List<RGroup> groups = new ArrayList<>();
         try (InputStream xmlInputStream = this.getClass().getResourceAsStream(GROUPS_READER_SPEC)) {
-            inputStream.reset();
-            ReaderConfig readerConfig = ReaderConfig.getInstance();
-            readerConfig.setUseDefaultValuesForPrimitiveTypes(true);
-            readerConfig.setSkipErrors(true);
             XLSReader reader = ReaderBuilder.buildFromXML(xmlInputStream);
 
-            try (InputStream xlsInputStream = inputStream) {
-                List<RGroup> groups = new ArrayList<>();
-
-                Map<String, Object> beans = new HashMap<>();
-                beans.put("groups", groups);
+            Map<String, Object> beans = new HashMap<>();
+            beans.put("groups", groups);
 
-                // logger.info(getTranslation("ReadingData_"));
-                XLSReadStatus status = reader.read(inputStream, beans);
-                logger.info("Read {} groups.", groups.size());
-                if (!dryRun) {
-                    updatePlatformsAndGroups(groups);
-                }
-
-                appendErrors(ta, sb, status);
-                return groups.size();
-            } catch (InvalidFormatException | IOException e) {
-                logger.error(LoggerUtils.stackTrace(e));
-            }
-        } catch (IOException | SAXException e1) {
-            logger.error(LoggerUtils.stackTrace(e1));
+            XLSReadStatus status = reader.read(new ByteArrayInputStream(workbook), beans);
+            logger.info("Read {} groups.", groups.size());
+            appendErrors(sb, status);
+        } catch (InvalidFormatException | IOException | SAXException e) {
+            logger.error(LoggerUtils.stackTrace(e));
         }
-        return 0;
+        return groups;
     }
 
     private void processInput(String fileName, InputStream inputStream, TextArea ta) {
-        // clear athletes to be able to clear groups
-        resetAthletes();
-        listGroups("after reset athletes");
-        
-        int nbGroups = processGroups(inputStream, ta, true);
-        listGroups("after processGroups dryRun");
-        if (nbGroups >= 0) {
-            // new format, reset groups from spreadsheet
-            resetGroups();
-            processGroups(inputStream, ta, false);
-            listGroups("after processGroups real");
+        StringBuffer sb = new StringBuffer();
+        long start = System.nanoTime();
+
+        // the upload is kept in memory and read once per sheet
+        byte[] workbook;
+        try (InputStream xlsInputStream = inputStream) {
+            workbook = xlsInputStream.readAllBytes();
+        } catch (IOException e) {
+            logger.error(LoggerUtils.stackTrace(e));
+            return;
         }
+        long read = System.nanoTime();
+
+        ReaderConfig readerConfig = ReaderConfig.getInstance();
+        readerConfig.setUseDefaultValuesForPrimitiveTypes(true);
+        readerConfig.setSkipErrors(true);
+
+        List<RGroup> groups;
+        List<RAthlete> athletes;
+        long groupsRead;
+        long athletesRead;
+        long done;
+        // the groups and categories of the upload are held in static maps read by RAthlete; one upload at a time.
+        synchronized (RCompetition.class) {
+            try {
+                groups = readGroups(workbook, sb);
+                groupsRead = System.nanoTime();
 
-        processAthletes(inputStream, ta);
-        listGroups("after processAthletes real");
-        return;
-    }
-
-    private void resetGroups() {
-        // delete all athletes and groups (naive version).
-        JPAService.runInTransaction(em -> {
-            List<Group> oldGroups = GroupRepository.doFindAll(em);
-            for (Group g : oldGroups) {
-                em.remove(g);
+                RCompetition c = new RCompetition();
+                athletes = readAthletes(workbook, c, groups, sb);
+                athletesRead = System.nanoTime();
+
+                try {
+                    Competition nc = updateDatabase(c, groups, athletes);
+                    AthleteRepository.markAllChanged();
+                    Competition.setCurrent(nc);
+                } catch (RuntimeException e) {
+                    logger.error(LoggerUtils.stackTrace(e));
+                    sb.append(e.getLocalizedMessage());
+                    sb.append(System.lineSeparator());
+                }
+                done = System.nanoTime();
+            } finally {
+                RCompetition.clearUpload();
             }
-            em.flush();
-            return null;
-        });
-    }
-    
-    static public void listGroups(String msg) {
-//        JPAService.runInTransaction(em -> {
-//            List<Group> oldGroups = GroupRepository.doFindAll(em);
-//            logger.error("{} : {}", msg, oldGroups.size());
-//            for (Group g : oldGroups) {
-//                logger.error("{}, group {}, id={}, {}",msg,g.getName(),g.getId(), g.getPlatform());
-//            }
-//            em.flush();
-//            return null;
-//        });
+        }
+
+        logger.info("{}: {} groups, {} athletes; upload {}ms, groups {}ms, athletes {}ms, database {}ms", fileName,
+                groups.size(), athletes.size(), (read - start) / 1000000, (groupsRead - read) / 1000000,
+                (athletesRead - groupsRead) / 1000000, (done - athletesRead) / 1000000);
+
+        if (sb.length() > 0) {
+            ta.setValue(sb.toString());
+            ta.setVisible(true);
+        }
     }
 
-    private void resetAthletes() {
-        // delete all athletes and groups (naive version).
-        JPAService.runInTransaction(em -> {
-            List<Athlete> athletes = AthleteRepository.doFindAll(em);
-            for (Athlete a : athletes) {
-                em.remove(a);
+    /**
+     * Replace the athletes, groups and platforms with those read, in a single transaction. Existing rows are removed
+     * with bulk deletes, and new rows are inserted in JDBC batches of {@link JPAService#BATCH_SIZE}.
+     *
+     * @return the updated competition
+     */
+    private Competition updateDatabase(RCompetition c, List<RGroup> groups, List<RAthlete> athletes) {
+        return JPAService.runInTransaction(em -> {
+            // athletes first, they refer to groups
+            int nbAthletes = em.createQuery("delete from Athlete").executeUpdate();
+            int nbGroups = em.createQuery("delete from CompetitionGroup").executeUpdate();
+            logger.debug("deleted {} athletes, {} groups", nbAthletes, nbGroups);
+
+            Map<String, Platform> platforms = updatePlatforms(em, groups);
+            Platform defaultPlatform = platforms.isEmpty() ? null : platforms.values().iterator().next();
+            for (RGroup g : groups) {
+                g.getGroup().setPlatform(g.getPlatform() != null ? platforms.get(g.getPlatform()) : defaultPlatform);
+            }
+            for (Group group : RCompetition.getGroups()) {
+                if (group.getPlatform() == null) {
+                    // group only named on athlete rows
+                    group.setPlatform(defaultPlatform);
+                }
+                em.persist(group);
+                logger.info("group {} weighIn {} competition {}", group, group.getWeighInTime(),
+                        group.getCompetitionTime());
             }
             em.flush();
-            return null;
-        });
-    }
 
-    private void updateAthletes(StringBuffer sb, RCompetition c, List<RAthlete> athletes) {
-        JPAService.runInTransaction(em -> {
-
-            Competition curC = Competition.getCurrent();
-            try {
-                Competition rCompetition = c.getCompetition();
-                // save some properties from current database that do not appear on spreadheet
-                rCompetition.setEnforce20kgRule(curC.isEnforce20kgRule());
-                rCompetition.setUseBirthYear(curC.isUseBirthYear());
-                rCompetition.setMasters(curC.isMasters());
-
-                // update the current competition with the new properties read from spreadsheet
-                BeanUtils.copyProperties(curC, rCompetition);
-                // update in database and set current to result of JPA merging.
-                Competition.setCurrent(em.merge(curC));
-
-                // update the athletes with the values read; create if not present.
-                // because the athletes in the file have got no Id, this will create
-                // new athletes if the file is reloaded.
-                athletes.stream().forEach(r -> {
-                    Athlete athlete = r.getAthlete();
-                    em.merge(athlete);
-                });
-                em.flush();
-            } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
-                sb.append(e.getLocalizedMessage());
+            // because the athletes in the file have got no Id, this creates new athletes if the file is reloaded.
+            int i = 0;
+            for (RAthlete r : athletes) {
+                Athlete athlete = r.getAthlete();
+                Group group = athlete.getGroup();
+                if (group != null) {
+                    athlete.setGroup(em.getReference(Group.class, group.getId()));
+                }
+                Category category = athlete.getCategory();
+                if (category != null) {
+                    // do not change the presumed body weight
+                    athlete.setPresumedCategory(em.getReference(Category.class, category.getId()));
+                }
+                em.persist(athlete);
+                if (++i % JPAService.BATCH_SIZE == 0) {
+                    em.flush();
+                    em.clear();
+                }
             }
+            em.flush();
 
-            return null;
+            return updateCompetition(em, c);
         });
     }
 
-    private void updatePlatformsAndGroups(List<RGroup> groups) {
-        Set<String> futurePlatforms = groups.stream().map(RGroup::getPlatform).collect(Collectors.toSet());
+    private Competition updateCompetition(EntityManager em, RCompetition c) {
+        Competition curC = Competition.getCurrent();
+        Competition rCompetition = c.getCompetition();
+        // save some properties from current database that do not appear on spreadheet
+        rCompetition.setEnforce20kgRule(curC.isEnforce20kgRule());
+        rCompetition.setUseBirthYear(curC.isUseBirthYear());
+        rCompetition.setMasters(curC.isMasters());
+
+        try {
+            // update the current competition with the new properties read from spreadsheet
+            BeanUtils.copyProperties(curC, rCompetition);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+        return em.merge(curC);
+    }
 
-        if (futurePlatforms.isEmpty()) {
+    /**
+     * Keep the platforms named in the groups sheet, create the missing ones, delete the others.
+     *
+     * @return the platforms by name
+     */
+    private Map<String, Platform> updatePlatforms(EntityManager em, List<RGroup> groups) {
+        Set<String> futurePlatforms = groups.stream().map(RGroup::getPlatform).filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        @SuppressWarnings("unchecked")
+        List<Platform> current = em.createQuery("select p from Platform p").getResultList();
+        if (futurePlatforms.isEmpty() && !current.isEmpty()) {
             // keep at least one platform
-            futurePlatforms.add(PlatformRepository.findAll().get(0).getName());
+            futurePlatforms.add(current.get(0).getName());
         }
         logger.debug("to be kept {}", futurePlatforms);
 
-        Set<String> afterCleanupPlatforms = new HashSet<>();
-        // delete all unused platforms
-        for (Platform pl : PlatformRepository.findAll()) {
-            if (!futurePlatforms.contains(pl.getName())) {
-                PlatformRepository.delete(pl);
+        Map<String, Platform> platforms = new LinkedHashMap<>();
+        for (Platform pl : current) {
+            if (futurePlatforms.contains(pl.getName())) {
+                platforms.put(pl.getName(), pl);
             } else {
-                afterCleanupPlatforms.add(pl.getName());
+                em.remove(pl);
             }
         }
-        Set<String> checkPlatforms = PlatformRepository.findAll().stream().map(Platform::getName).collect(Collectors.toSet());
-        logger.debug("platforms after cleanup {}",checkPlatforms);
-
-        JPAService.runInTransaction(em -> {
-            groups.stream().forEach(g -> {
-                String platformName = g.getPlatform();
-                Group group = g.getGroup();
-                if (!afterCleanupPlatforms.contains(platformName)) {
-                    Platform np = new Platform();
-                    np.setName(platformName);
-                    group.setPlatform(np);
-                    em.persist(np);
-                } else {
-                    Platform op = PlatformRepository.findByName(platformName);
-                    group.setPlatform(op);
-                    em.merge(op);
-                }
-                em.merge(group);
+        for (String name : futurePlatforms) {
+            platforms.computeIfAbsent(name, (n) -> {
+                Platform np = new Platform(n);
+                em.persist(np);
+                return np;
             });
-            em.flush();
-            return null;
-        });
-
-        groups.stream().forEach(g -> {
-            logger.info("group {} weighIn {} competition {}", g.getGroup(), g.getWeighinTime(), g.getCompetitionTime());
-        });
+        }
+        return platforms;
     }
 }
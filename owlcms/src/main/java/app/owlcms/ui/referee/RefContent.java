@@ -341,14 +341,16 @@ public class RefContent extends VerticalLayout implements QueryParameterReader,
 
     private void doRed() {
         OwlcmsSession.withFop(fop -> {
-            fop.getFopEventBus().post(new FOPEvent.DecisionUpdate(getOrigin(), refIndex - 1, false));
+            fop.getFopEventBus().post(new FOPEvent.DecisionUpdate(getOrigin(), fop.getCurAthlete(), refIndex - 1,
+                    false));
         });
         good.getStyle().set("color", "grey");
     }
 
     private void doWhite() {
         OwlcmsSession.withFop(fop -> {
-            fop.getFopEventBus().post(new FOPEvent.DecisionUpdate(getOrigin(), refIndex - 1, true));
+            fop.getFopEventBus().post(new FOPEvent.DecisionUpdate(getOrigin(), fop.getCurAthlete(), refIndex - 1,
+                    true));
         });
         bad.getStyle().set("color", "grey");
     }
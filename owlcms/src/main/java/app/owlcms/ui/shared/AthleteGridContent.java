@@ -238,7 +238,7 @@ public abstract class AthleteGridContent extends VerticalLayout
         FieldOfPlay fop = OwlcmsSession.getFop();
         if (fop != null) {
             logger.trace("findAll {} {} {}", fop.getName(), fop.getGroup() == null ? null : fop.getGroup().getName(),
-                    LoggerUtils.whereFrom());
+                    LoggerUtils.callerLocation());
             final String filterValue;
             if (lastNameFilter.getValue() != null) {
                 filterValue = lastNameFilter.getValue().toLowerCase();
@@ -352,7 +352,7 @@ public abstract class AthleteGridContent extends VerticalLayout
             }
 
             if (this instanceof AnnouncerContent) {
-                logger.debug("starting break {}", LoggerUtils.stackTrace());
+                logger.debug("starting break {}", LoggerUtils.lazyStackTrace());
             }
             syncWithFOP(true);
         });
@@ -463,7 +463,7 @@ public abstract class AthleteGridContent extends VerticalLayout
         if (crudGrid == null) {
             return;
         }
-        logger.debug("{} {}", e.getOrigin(), LoggerUtils.whereFrom());
+        logger.debug("{} {}", e.getOrigin(), LoggerUtils.callerLocation());
         UIEventProcessor.uiAccess(crudGrid, uiEventBus, e, () -> {
             crudGrid.refreshGrid();
         });
@@ -582,7 +582,7 @@ public abstract class AthleteGridContent extends VerticalLayout
     }
 
     protected void createInitialBar() {
-        logger.debug("AthleteGridContent creating top bar {}", LoggerUtils.whereFrom());
+        logger.debug("AthleteGridContent creating top bar {}", LoggerUtils.callerLocation());
         topBar = getAppLayout().getAppBarElementWrapper();
         topBar.removeAll();
         initialBar = true;
@@ -789,7 +789,7 @@ public abstract class AthleteGridContent extends VerticalLayout
                 Group group = fop.getGroup();
                 topBarGroupSelect.setValue(group); // does nothing if already correct
                 Integer attemptsDone = (athlete != null ? athlete.getAttemptsDone() : 0);
-                logger.debug("doUpdateTopBar {} {} {}", LoggerUtils.whereFrom(), athlete, attemptsDone);
+                logger.debug("doUpdateTopBar {} {} {}", LoggerUtils.callerLocation(), athlete, attemptsDone);
                 if (athlete != null && attemptsDone < 6) {
                     if (!initialBar) {
                         String lastName2 = athlete.getLastName();
@@ -904,7 +904,7 @@ public abstract class AthleteGridContent extends VerticalLayout
     protected void syncWithFOP(boolean refreshGrid) {
         OwlcmsSession.withFop((fop) -> {
             Group fopGroup = fop.getGroup();
-            logger.debug("syncing FOP, group = {}, {}", fopGroup, LoggerUtils.whereFrom(2));
+            logger.debug("syncing FOP, group = {}, {}", fopGroup, LoggerUtils.callerLocation(2));
             createTopBarGroupSelect();
 
             if (refreshGrid) {
@@ -950,7 +950,7 @@ public abstract class AthleteGridContent extends VerticalLayout
                         decisions.setVisible(true);
                     }
                     if (breakButton == null) {
-                        logger.debug("breakButton is null\n{}", LoggerUtils.stackTrace());
+                        logger.debug("breakButton is null\n{}", LoggerUtils.lazyStackTrace());
                         return;
                     }
                     breakButton.setText("");
@@ -50,7 +50,10 @@ import app.owlcms.data.category.Category;
 import app.owlcms.data.category.CategoryRepository;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.displays.athletecard.AthleteCard;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
 import app.owlcms.i18n.Translator;
+import app.owlcms.init.OwlcmsFactory;
 import app.owlcms.init.OwlcmsSession;
 import app.owlcms.ui.crudui.OwlcmsCrudFormFactory;
 import app.owlcms.utils.LoggerUtils;
@@ -83,7 +86,8 @@ public final class AthleteRegistrationFormFactory extends OwlcmsCrudFormFactory<
      */
     @Override
     public Athlete add(Athlete athlete) {
-        AthleteRepository.save(athlete);
+        Athlete saved = AthleteRepository.save(athlete);
+        patchFieldsOfPlay(saved);
         enablePrint(athlete);
         return athlete;
     }
@@ -204,7 +208,8 @@ public final class AthleteRegistrationFormFactory extends OwlcmsCrudFormFactory<
      */
     @Override
     public Athlete update(Athlete athlete) {
-        AthleteRepository.save(athlete);
+        Athlete saved = AthleteRepository.save(athlete);
+        patchFieldsOfPlay(saved);
 //        logger.debug("saved id={} {} {} {}", athlete.getId(), athlete.getSnatch1Declaration(),
 //                athlete.getCleanJerk1Declaration());
 //        logger.debug("merged id={} {} {}", merged.getId(), merged.getSnatch1Declaration(),
@@ -470,7 +475,7 @@ public final class AthleteRegistrationFormFactory extends OwlcmsCrudFormFactory<
     }
 
     private void checkOther20kgFields(String prop1, String prop2) {
-        logger.debug("entering checkOther20kgFields {} {}", isCheckOther20kgFields(), LoggerUtils.whereFrom());
+        logger.debug("entering checkOther20kgFields {} {}", isCheckOther20kgFields(), LoggerUtils.callerLocation());
         if (isCheckOther20kgFields()) {
             setCheckOther20kgFields(false); // prevent recursion
             Binding<Athlete, ?> prop1Binding = binder.getBinding(prop1).get();
@@ -667,8 +672,18 @@ public final class AthleteRegistrationFormFactory extends OwlcmsCrudFormFactory<
         return checkOther20kgFields;
     }
 
+    /**
+     * Let the fields of play where the athlete is lifting use the saved values, without reloading their group. This is
+     * not a weight change: the clock and the state of the fields of play are not affected.
+     */
+    private void patchFieldsOfPlay(Athlete saved) {
+        for (FieldOfPlay fop : OwlcmsFactory.getFOPs()) {
+            fop.getFopEventBus().post(new FOPEvent.AthleteUpdated(this, saved));
+        }
+    }
+
     private void setCheckOther20kgFields(boolean checkOther20kgFields) {
-        logger.debug("checkOther20kgFields={} {}", checkOther20kgFields, LoggerUtils.whereFrom());
+        logger.debug("checkOther20kgFields={} {}", checkOther20kgFields, LoggerUtils.callerLocation());
         this.checkOther20kgFields = checkOther20kgFields;
     }
 
@@ -157,7 +157,7 @@ public class BreakManagement extends VerticalLayout implements SafeEventBusRegis
     }
 
     public void init(Object origin, BreakType brt, CountdownType cdt, Dialog parentDialog) {
-        logger.debug("init brt={} cdt={} from {}", brt, cdt, LoggerUtils.whereFrom());
+        logger.debug("init brt={} cdt={} from {}", brt, cdt, LoggerUtils.callerLocation());
         ignoreBreakTypeValueChange = false;
         this.setOrigin(origin);
         this.parentDialog = parentDialog;
@@ -393,7 +393,7 @@ public class BreakManagement extends VerticalLayout implements SafeEventBusRegis
         }
         datePicker.setValue(nextDate);
         timePicker.setValue(LocalTime.of(nextHr, nextStepMin));
-        logger.debug("setting default duration as default {}", LoggerUtils.whereFrom());
+        logger.debug("setting default duration as default {}", LoggerUtils.callerLocation());
         setDurationField(DEFAULT_DURATION);
     }
 
@@ -554,7 +554,7 @@ public class BreakManagement extends VerticalLayout implements SafeEventBusRegis
     }
 
     private void setCtValue(CountdownType ct2) {
-        logger.debug("setting ct {}  from {}", ct2, LoggerUtils.whereFrom());
+        logger.debug("setting ct {}  from {}", ct2, LoggerUtils.callerLocation());
         ct.setValue(ct2);
     }
 
@@ -568,7 +568,7 @@ public class BreakManagement extends VerticalLayout implements SafeEventBusRegis
     }
 
     private void setRequestedBreakType(BreakType requestedBreakType) {
-        logger.trace("requestedBreakType={} {}", requestedBreakType, LoggerUtils.whereFrom());
+        logger.trace("requestedBreakType={} {}", requestedBreakType, LoggerUtils.callerLocation());
         this.requestedBreakType = requestedBreakType;
     }
 
@@ -11,12 +11,10 @@ import java.io.UnsupportedEncodingException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import org.apache.http.NameValuePair;
 import org.apache.http.StatusLine;
@@ -33,11 +31,6 @@ import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 
 import app.owlcms.data.athlete.Athlete;
-import app.owlcms.data.athlete.LiftDefinition.Changes;
-import app.owlcms.data.athlete.LiftInfo;
-import app.owlcms.data.athlete.XAthlete;
-import app.owlcms.data.athleteSort.AthleteSorter;
-import app.owlcms.data.category.Category;
 import app.owlcms.data.competition.Competition;
 import app.owlcms.data.config.Config;
 import app.owlcms.data.group.Group;
@@ -45,6 +38,10 @@ import app.owlcms.fieldofplay.FOPState;
 import app.owlcms.fieldofplay.FieldOfPlay;
 import app.owlcms.i18n.Translator;
 import app.owlcms.init.OwlcmsSession;
+import app.owlcms.metrics.Counter;
+import app.owlcms.metrics.FlightEvents;
+import app.owlcms.metrics.Metrics;
+import app.owlcms.metrics.Timer;
 import app.owlcms.uievents.UIEvent.BreakDone;
 import app.owlcms.uievents.UIEvent.BreakPaused;
 import app.owlcms.uievents.UIEvent.BreakSetTime;
@@ -56,7 +53,6 @@ import app.owlcms.uievents.UIEvent.StopTime;
 import app.owlcms.utils.LoggerUtils;
 import ch.qos.logback.classic.Logger;
 import elemental.json.Json;
-import elemental.json.JsonArray;
 import elemental.json.JsonObject;
 import elemental.json.JsonValue;
 
@@ -64,6 +60,11 @@ public class EventForwarder implements BreakDisplay {
 
     private static HashMap<String, EventForwarder> registeredFop = new HashMap<>();
 
+    private static final Timer postTimer = Metrics.timer("owlcms_publicresults_post_seconds",
+            "time to post an update to the public results server");
+    private static final Counter postFailures = Metrics.counter("owlcms_publicresults_post_failures_total",
+            "updates the public results server did not accept or could not be reached for");
+
     public static void listenToFOP(FieldOfPlay fop) {
         String fopName = fop.getName();
         if (registeredFop.get(fopName) == null) {
@@ -75,13 +76,10 @@ public class EventForwarder implements BreakDisplay {
     private EventBus fopEventBus;
     private FieldOfPlay fop;
     private String categoryName;
-    private List<Athlete> categoryRankings;
 
     private boolean wideTeamNames;
     private JsonValue leaders;
     private JsonValue groupAthletes;
-    private JsonArray sattempts;
-    private JsonArray cattempts;
     private Logger logger = (Logger) LoggerFactory.getLogger(EventForwarder.class);
     private String liftsDone;
     private String attempt;
@@ -291,9 +289,8 @@ public class EventForwarder implements BreakDisplay {
 
     @Subscribe
     public void slaveGlobalRankingUpdated(UIEvent.GlobalRankingUpdated e) {
-        Competition competition = Competition.getCurrent();
-        computeLeaders(competition);
-        computeCurrentGroup(competition);
+        computeLeaders();
+        computeCurrentGroup();
         pushUpdate();
     }
 
@@ -323,8 +320,7 @@ public class EventForwarder implements BreakDisplay {
     @Subscribe
     public void slaveOrderUpdated(UIEvent.LiftingOrderUpdated e) {
         Athlete a = e.getAthlete();
-        Competition competition = Competition.getCurrent();
-        computeCurrentGroup(competition);
+        computeCurrentGroup();
         doUpdate(a, e);
         pushUpdate();
     }
@@ -352,9 +348,8 @@ public class EventForwarder implements BreakDisplay {
 
     @Subscribe
     public void slaveSwitchGroup(UIEvent.SwitchGroup e) {
-        Competition competition = Competition.getCurrent();
-        computeLeaders(competition);
-        computeCurrentGroup(competition);
+        computeLeaders();
+        computeCurrentGroup();
         switch (e.getState()) {
         case INACTIVE:
             setHidden(true);
@@ -417,64 +412,25 @@ public class EventForwarder implements BreakDisplay {
         this.weight = weight;
     }
 
-    private void computeCurrentGroup(Competition competition) {
+    private void computeCurrentGroup() {
+        ScoreboardResults results = fop.getScoreboardResults();
         Group group = fop.getGroup();
-        List<Athlete> globalRankingsForCurrentGroup = competition.getGlobalCategoryRankingsForGroup(group);
-        int liftsDone = AthleteSorter.countLiftsDone(globalRankingsForCurrentGroup);
         setGroupName(computeSecondLine(fop.getCurAthlete(), group != null ? group.getName() : null));
-        setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", liftsDone));
-        if (globalRankingsForCurrentGroup != null && globalRankingsForCurrentGroup.size() > 0) {
-            setGroupAthletes(getAthletesJson(globalRankingsForCurrentGroup, fop.getLiftingOrder()));
-        } else {
-            setGroupAthletes(null);
+        setLiftsDone(Translator.translate("Scoreboard.AttemptsDone", results.getLiftsDone()));
+        setGroupAthletes(results.getGroupAthletes());
+        if (results.isWideTeamNames()) {
+            setWideTeamNames(true);
         }
     }
 
-    private void computeLeaders(Competition competition) {
+    private void computeLeaders() {
         logger.debug("computeLeaders");
-        OwlcmsSession.withFop(fop -> {
-            Athlete curAthlete = fop.getCurAthlete();
-            if (curAthlete != null && curAthlete.getGender() != null) {
-                setCategoryName(curAthlete.getCategory().getName());
-
-                categoryRankings = competition.getGlobalTotalRanking(curAthlete.getGender());
-                // logger.debug("rankings for current gender {}
-                // size={}",curAthlete.getGender(),globalRankingsForCurrentGroup.size());
-                categoryRankings = filterToCategory(curAthlete.getCategory(), categoryRankings);
-                int size = categoryRankings.size();
-                // logger.debug("rankings for current category {}
-                // size={}",curAthlete.getCategory(),globalRankingsForCurrentGroup.size());
-                categoryRankings = categoryRankings.stream().filter(a -> a.getTotal() > 0).limit(3)
-                        .collect(Collectors.toList());
-
-                if (size > 15) {
-                    setLeaders(null);
-                } else if (categoryRankings.size() > 0) {
-                    // null as second argument because we do not highlight current athletes in the leaderboard
-                    setLeaders(getAthletesJson(categoryRankings, null));
-                } else {
-                    // no one has totaled, so we show the snatch leaders
-                    if (!fop.isCjStarted()) {
-                        categoryRankings = Competition.getCurrent()
-                                .getGlobalSnatchRanking(curAthlete.getGender());
-                        categoryRankings = filterToCategory(curAthlete.getCategory(),
-                                categoryRankings);
-                        categoryRankings = categoryRankings.stream()
-                                .filter(a -> a.getSnatchTotal() > 0).limit(3).collect(Collectors.toList());
-                        if (categoryRankings.size() > 0) {
-                            setLeaders(getAthletesJson(categoryRankings, null));
-                        } else {
-                            // nothing to show
-                            setLeaders(null);
-                        }
-                    } else {
-                        // nothing to show
-                        setLeaders(null);
-                    }
-                }
-            }
-        });
-
+        Athlete curAthlete = fop.getCurAthlete();
+        if (curAthlete != null && curAthlete.getGender() != null) {
+            ScoreboardResults results = fop.getScoreboardResults();
+            setCategoryName(results.getCategoryName());
+            setLeaders(results.getLeaders());
+        }
     }
 
     private String computeSecondLine(Athlete a, String groupName) {
@@ -536,7 +492,7 @@ public class EventForwarder implements BreakDisplay {
             BreakStarted bst = (BreakStarted) e;
             milliseconds = bst.isIndefinite() ? null : bst.getTimeRemaining();
         } else if (e instanceof BreakPaused) {
-            logger.debug("????? break paused {}", LoggerUtils.whereFrom());
+            logger.debug("????? break paused {}", LoggerUtils.callerLocation());
             BreakPaused bst = (BreakPaused) e;
             milliseconds = bst.isIndefinite() ? null : bst.getTimeRemaining();
         } else if (e instanceof BreakDone) {
@@ -656,160 +612,11 @@ public class EventForwarder implements BreakDisplay {
         }
     }
 
-    private List<Athlete> filterToCategory(Category category, List<Athlete> order) {
-        return order
-                .stream()
-                .filter(a -> category != null && category.equals(a.getCategory()))
-                .limit(3)
-                .collect(Collectors.toList());
-    }
-
     private String formatAttempt(Integer attemptNo) {
         String translate = Translator.translate("AttemptBoard_attempt_number", (attemptNo % 3) + 1);
         return translate;
     }
 
-    private String formatInt(Integer total) {
-        if (total == null || total == 0) {
-            return "-";
-        } else if (total == -1) {
-            return "inv.";// invited lifter, not eligible.
-        } else if (total < 0) {
-            return "(" + Math.abs(total) + ")";
-        } else {
-            return total.toString();
-        }
-    }
-
-    private String formatKg(String total) {
-        return (total == null || total.trim().isEmpty()) ? "-"
-                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
-    }
-
-    private void getAthleteJson(Athlete a, JsonObject ja, Category curCat, int liftOrderRank) {
-        String category;
-        category = curCat != null ? curCat.getName() : "";
-        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
-        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
-        ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
-        Integer startNumber = a.getStartNumber();
-        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
-        ja.put("category", category != null ? category : "");
-        getAttemptsJson(a, liftOrderRank);
-        ja.put("sattempts", sattempts);
-        ja.put("cattempts", cattempts);
-        ja.put("total", formatInt(a.getTotal()));
-        ja.put("snatchRank", formatInt(a.getSnatchRank()));
-        ja.put("cleanJerkRank", formatInt(a.getCleanJerkRank()));
-        ja.put("totalRank", formatInt(a.getTotalRank()));
-        ja.put("group", a.getGroup() != null ? a.getGroup().getName() : "");
-        boolean notDone = a.getAttemptsDone() < 6;
-        String blink = (notDone ? " blink" : "");
-        if (notDone) {
-            ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
-        }
-    }
-
-    /**
-     * @param groupAthletes, List<Athlete> liftOrder
-     * @return
-     */
-    private JsonValue getAthletesJson(List<Athlete> groupAthletes, List<Athlete> liftOrder) {
-        JsonArray jath = Json.createArray();
-        int athx = 0;
-        Category prevCat = null;
-        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
-        long nextId = (liftOrder != null && liftOrder.size() > 1) ? liftOrder.get(1).getId() : -1L;
-        List<Athlete> athletes = groupAthletes != null ? Collections.unmodifiableList(groupAthletes)
-                : Collections.emptyList();
-        for (Athlete a : athletes) {
-            JsonObject ja = Json.createObject();
-            Category curCat = a.getCategory();
-            if (curCat != null && !curCat.equals(prevCat)) {
-                // changing categories, put marker before athlete
-                ja.put("isSpacer", true);
-                jath.set(athx, ja);
-                ja = Json.createObject();
-                prevCat = curCat;
-                athx++;
-            }
-            getAthleteJson(a, ja, curCat, (a.getId() == currentId)
-                    ? 1
-                    : ((a.getId() == nextId)
-                            ? 2
-                            : 0));
-            String team = a.getTeam();
-            if (team != null && team.trim().length() > Competition.SHORT_TEAM_LENGTH) {
-                logger.trace("long team {}", team);
-                setWideTeamNames(true);
-            }
-            jath.set(athx, ja);
-            athx++;
-        }
-        return jath;
-    }
-
-    /**
-     * Compute Json string ready to be used by web component template
-     *
-     * CSS classes are pre-computed and passed along with the values; weights are formatted.
-     *
-     * @param a
-     * @param liftOrderRank2
-     * @return json string with nested attempts values
-     */
-    private void getAttemptsJson(Athlete a, int liftOrderRank) {
-        sattempts = Json.createArray();
-        cattempts = Json.createArray();
-        XAthlete x = new XAthlete(a);
-        Integer curLift = x.getAttemptsDone();
-        int ix = 0;
-        for (LiftInfo i : x.getRequestInfoArray()) {
-            JsonObject jri = Json.createObject();
-            String stringValue = i.getStringValue();
-            boolean notDone = x.getAttemptsDone() < 6;
-            String blink = (notDone ? " blink" : "");
-
-            jri.put("goodBadClassName", "narrow empty");
-            jri.put("stringValue", "");
-            if (i.getChangeNo() >= 0) {
-                String trim = stringValue != null ? stringValue.trim() : "";
-                switch (Changes.values()[i.getChangeNo()]) {
-                case ACTUAL:
-                    if (!trim.isEmpty()) {
-                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
-                            jri.put("goodBadClassName", "narrow fail");
-                            jri.put("stringValue", "-");
-                        } else {
-                            boolean failed = stringValue.startsWith("-");
-                            jri.put("goodBadClassName", failed ? "narrow fail" : "narrow good");
-                            jri.put("stringValue", formatKg(stringValue));
-                        }
-                    }
-                    break;
-                default:
-                    if (stringValue != null && !trim.isEmpty()) {
-                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
-                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
-                        jri.put("goodBadClassName", "narrow request");
-                        if (notDone) {
-                            jri.put("className", highlight);
-                        }
-                        jri.put("stringValue", stringValue);
-                    }
-                    break;
-                }
-            }
-
-            if (ix < 3) {
-                sattempts.set(ix, jri);
-            } else {
-                cattempts.set(ix % 3, jri);
-            }
-            ix++;
-        }
-    }
-
     private String groupResults(Group g) {
         return Translator.translate("Group_number_results", g.toString());
     }
@@ -878,24 +685,33 @@ public class EventForwarder implements BreakDisplay {
     }
 
     private void doPost(String url, Map<String, String> parameters) {
+        long start = System.nanoTime();
         HttpPost post = new HttpPost(url);
         // add request parameters or form parameters
         List<NameValuePair> urlParameters = new ArrayList<>();
         parameters.entrySet().stream()
                 .forEach((e) -> urlParameters.add(new BasicNameValuePair(e.getKey(), e.getValue())));
 
+        int status = 0;
         try {
             post.setEntity(new UrlEncodedFormEntity(urlParameters, "UTF-8"));
             try (CloseableHttpClient httpClient = HttpClients.createDefault();
                     CloseableHttpResponse response = httpClient.execute(post)) {
                 StatusLine statusLine = response.getStatusLine();
                 Integer statusCode = statusLine != null ? statusLine.getStatusCode() : null;
+                status = statusCode != null ? statusCode : 0;
                 if (statusCode != null && statusCode != 200) {
-                    logger.error("could not post to {} {} {}", url, statusLine, LoggerUtils.whereFrom(1));
+                    postFailures.inc();
+                    logger.error("could not post to {} {} {}", url, statusLine, LoggerUtils.callerLocation(1));
                 }
                 EntityUtils.toString(response.getEntity());
             } catch (Exception e1) {
+                postFailures.inc();
                 logger.error("could not post to {} {}", url, LoggerUtils.exceptionMessage(e1));
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                postTimer.record(elapsed);
+                FlightEvents.remotePush(url, status, post.getEntity().getContentLength(), elapsed);
             }
         } catch (UnsupportedEncodingException e2) {
             // can't happen.
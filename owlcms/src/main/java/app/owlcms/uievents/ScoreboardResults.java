@@ -0,0 +1,290 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.uievents;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.LiftDefinition.Changes;
+import app.owlcms.data.athlete.LiftInfo;
+import app.owlcms.data.athlete.XAthlete;
+import app.owlcms.data.athleteSort.AthleteSorter;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.data.group.Group;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import elemental.json.Json;
+import elemental.json.JsonArray;
+import elemental.json.JsonObject;
+import elemental.json.JsonValue;
+
+/**
+ * Immutable snapshot of the results shown at the bottom of the scoreboards for one field of play.
+ *
+ * The snapshot is computed once per ranking or lifting order change (see {@link FieldOfPlay#getScoreboardResults()})
+ * and shared between the {@link EventForwarder} that pushes to the remote site and the local scoreboards. The JSON is
+ * kept as text; each call to {@link #getGroupAthletes()} or {@link #getLeaders()} parses a new tree that belongs to the
+ * caller, so a consumer cannot change what the others see.
+ *
+ * @author owlcms
+ */
+public class ScoreboardResults {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(ScoreboardResults.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    /**
+     * Compute the results for the current group and the current athlete's category.
+     *
+     * @param fop the field of play
+     * @return a new snapshot
+     */
+    public static ScoreboardResults compute(FieldOfPlay fop) {
+        Competition competition = Competition.getCurrent();
+        Group group = fop.getGroup();
+        List<Athlete> liftingOrder = fop.getLiftingOrder();
+
+        ScoreboardResults r = new ScoreboardResults();
+        List<Athlete> groupRankings = competition.getGlobalCategoryRankingsForGroup(group);
+        r.groupRankings = groupRankings != null ? Collections.unmodifiableList(groupRankings)
+                : Collections.emptyList();
+        r.liftsDone = AthleteSorter.countLiftsDone(groupRankings);
+        if (groupRankings != null && groupRankings.size() > 0) {
+            r.groupAthletes = r.getAthletesJson(groupRankings, liftingOrder).toJson();
+        }
+
+        Athlete curAthlete = fop.getCurAthlete();
+        if (curAthlete != null && curAthlete.getGender() != null) {
+            Category category = curAthlete.getCategory();
+            r.categoryName = category != null ? category.getName() : null;
+            List<Athlete> leaders = competition.getGlobalTotalRanking(curAthlete.getGender());
+            leaders = filterToCategory(category, leaders).stream().filter(a -> a.getTotal() > 0)
+                    .collect(Collectors.toList());
+            if (leaders.size() == 0 && !fop.isCjStarted()) {
+                // no one has totaled, so we show the snatch leaders
+                leaders = competition.getGlobalSnatchRanking(curAthlete.getGender());
+                leaders = filterToCategory(category, leaders).stream().filter(a -> a.getSnatchTotal() > 0)
+                        .collect(Collectors.toList());
+            }
+            if (leaders.size() > 0) {
+                // null as second argument because we do not highlight current athletes in the leaderboard
+                r.leaders = r.getAthletesJson(leaders, null).toJson();
+            }
+        }
+        logger.debug("{} computed scoreboard results, {} athletes, leaders {}", fop.getName(),
+                r.groupRankings.size(), r.leaders != null);
+        return r;
+    }
+
+    private static List<Athlete> filterToCategory(Category category, List<Athlete> order) {
+        return order
+                .stream()
+                .filter(a -> category != null && category.equals(a.getCategory()))
+                .limit(3)
+                .collect(Collectors.toList());
+    }
+
+    private static String formatInt(Integer total) {
+        if (total == null || total == 0) {
+            return "-";
+        } else if (total == -1) {
+            return "inv.";// invited lifter, not eligible.
+        } else if (total < 0) {
+            return "(" + Math.abs(total) + ")";
+        } else {
+            return total.toString();
+        }
+    }
+
+    private static String formatKg(String total) {
+        return (total == null || total.trim().isEmpty()) ? "-"
+                : (total.startsWith("-") ? "(" + total.substring(1) + ")" : total);
+    }
+
+    private List<Athlete> groupRankings;
+    private int liftsDone;
+    private String groupAthletes;
+    private String leaders;
+    private String categoryName;
+    private boolean wideTeamNames;
+
+    private ScoreboardResults() {
+    }
+
+    /**
+     * @return name of the current athlete's category, null if there is no current athlete
+     */
+    public String getCategoryName() {
+        return categoryName;
+    }
+
+    /**
+     * @return a new copy of the json array for the group athletes, null if the group is empty
+     */
+    public JsonValue getGroupAthletes() {
+        return groupAthletes != null ? Json.parse(groupAthletes) : null;
+    }
+
+    /**
+     * @return the athletes of the current group, in global category ranking order (read-only)
+     */
+    public List<Athlete> getGroupRankings() {
+        return groupRankings;
+    }
+
+    /**
+     * @return a new copy of the json array for the category leaders, null if there is nothing to show
+     */
+    public JsonValue getLeaders() {
+        return leaders != null ? Json.parse(leaders) : null;
+    }
+
+    public int getLiftsDone() {
+        return liftsDone;
+    }
+
+    /**
+     * @return true if at least one team name requires the wide layout
+     */
+    public boolean isWideTeamNames() {
+        return wideTeamNames;
+    }
+
+    private void getAthleteJson(Athlete a, JsonObject ja, Category curCat, int liftOrderRank) {
+        String category;
+        category = curCat != null ? curCat.getName() : "";
+        ja.put("fullName", a.getFullName() != null ? a.getFullName() : "");
+        ja.put("teamName", a.getTeam() != null ? a.getTeam() : "");
+        ja.put("yearOfBirth", a.getYearOfBirth() != null ? a.getYearOfBirth().toString() : "");
+        Integer startNumber = a.getStartNumber();
+        ja.put("startNumber", (startNumber != null ? startNumber.toString() : ""));
+        ja.put("category", category != null ? category : "");
+        getAttemptsJson(a, ja, liftOrderRank);
+        ja.put("total", formatInt(a.getTotal()));
+        ja.put("snatchRank", formatInt(a.getSnatchRank()));
+        ja.put("cleanJerkRank", formatInt(a.getCleanJerkRank()));
+        ja.put("totalRank", formatInt(a.getTotalRank()));
+        ja.put("group", a.getGroup() != null ? a.getGroup().getName() : "");
+        boolean notDone = a.getAttemptsDone() < 6;
+        String blink = (notDone ? " blink" : "");
+        if (notDone) {
+            ja.put("classname", (liftOrderRank == 1 ? "current" + blink : (liftOrderRank == 2) ? "next" : ""));
+        }
+    }
+
+    /**
+     * @param groupAthletes, List<Athlete> liftOrder
+     * @return
+     */
+    private JsonValue getAthletesJson(List<Athlete> groupAthletes, List<Athlete> liftOrder) {
+        JsonArray jath = Json.createArray();
+        int athx = 0;
+        Category prevCat = null;
+        long currentId = (liftOrder != null && liftOrder.size() > 0) ? liftOrder.get(0).getId() : -1L;
+        long nextId = (liftOrder != null && liftOrder.size() > 1) ? liftOrder.get(1).getId() : -1L;
+        List<Athlete> athletes = groupAthletes != null ? Collections.unmodifiableList(groupAthletes)
+                : Collections.emptyList();
+        for (Athlete a : athletes) {
+            JsonObject ja = Json.createObject();
+            Category curCat = a.getCategory();
+            if (curCat != null && !curCat.equals(prevCat)) {
+                // changing categories, put marker before athlete
+                ja.put("isSpacer", true);
+                jath.set(athx, ja);
+                ja = Json.createObject();
+                prevCat = curCat;
+                athx++;
+            }
+            // compute the blinking rank
+            getAthleteJson(a, ja, curCat, (a.getId() == currentId)
+                    ? 1
+                    : ((a.getId() == nextId)
+                            ? 2
+                            : 0));
+            String team = a.getTeam();
+            if (team != null && team.trim().length() > Competition.SHORT_TEAM_LENGTH) {
+                logger.trace("long team {}", team);
+                wideTeamNames = true;
+            }
+            jath.set(athx, ja);
+            athx++;
+        }
+        return jath;
+    }
+
+    /**
+     * Compute Json string ready to be used by web component template
+     *
+     * CSS classes are pre-computed and passed along with the values; weights are formatted.
+     *
+     * @param a
+     * @param ja            the athlete json object to which the attempts are added
+     * @param liftOrderRank
+     */
+    private void getAttemptsJson(Athlete a, JsonObject ja, int liftOrderRank) {
+        JsonArray sattempts = Json.createArray();
+        JsonArray cattempts = Json.createArray();
+        XAthlete x = new XAthlete(a);
+        Integer curLift = x.getAttemptsDone();
+        int ix = 0;
+        for (LiftInfo i : x.getRequestInfoArray()) {
+            JsonObject jri = Json.createObject();
+            String stringValue = i.getStringValue();
+            boolean notDone = x.getAttemptsDone() < 6;
+            String blink = (notDone ? " blink" : "");
+
+            jri.put("goodBadClassName", "narrow empty");
+            jri.put("stringValue", "");
+            if (i.getChangeNo() >= 0) {
+                String trim = stringValue != null ? stringValue.trim() : "";
+                switch (Changes.values()[i.getChangeNo()]) {
+                case ACTUAL:
+                    if (!trim.isEmpty()) {
+                        if (trim.contentEquals("-") || trim.contentEquals("0")) {
+                            jri.put("goodBadClassName", "narrow fail");
+                            jri.put("stringValue", "-");
+                        } else {
+                            boolean failed = stringValue.startsWith("-");
+                            jri.put("goodBadClassName", failed ? "narrow fail" : "narrow good");
+                            jri.put("stringValue", formatKg(stringValue));
+                        }
+                    }
+                    break;
+                default:
+                    if (stringValue != null && !trim.isEmpty()) {
+                        String highlight = i.getLiftNo() == curLift && liftOrderRank == 1 ? (" current" + blink)
+                                : (i.getLiftNo() == curLift && liftOrderRank == 2) ? " next" : "";
+                        jri.put("goodBadClassName", "narrow request");
+                        if (notDone) {
+                            jri.put("className", highlight);
+                        }
+                        jri.put("stringValue", stringValue);
+                    }
+                    break;
+                }
+            }
+
+            if (ix < 3) {
+                sattempts.set(ix, jri);
+            } else {
+                cattempts.set(ix % 3, jri);
+            }
+            ix++;
+        }
+        ja.put("sattempts", sattempts);
+        ja.put("cattempts", cattempts);
+    }
+
+}
@@ -6,10 +6,15 @@
  */
 package app.owlcms.utils;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.LoggerFactory;
 
@@ -44,6 +49,38 @@ public class AccessUtils {
         return whiteListed;
     }
 
+    /**
+     * Access check for the diagnostic servlets, which are outside the Vaadin UI and its login screen.
+     *
+     * They must be enabled with the <code>diagnostics</code> parameter, and the client must give the owlcms PIN as the
+     * password in HTTP basic authentication (any user name) or as a bearer token. Access is refused when no PIN is
+     * configured. The client address is not used: behind a reverse proxy, every request comes from the proxy.
+     *
+     * @return true if the request may proceed; otherwise the error has been sent
+     * @throws IOException
+     */
+    public static boolean checkDiagnosticsAccess(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!StartupUtils.getBooleanParam("diagnostics")) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return false;
+        }
+        String pin = Config.getCurrent().getParamPin();
+        if (pin == null) {
+            logger./**/warn("diagnostics requested from {}, but no PIN is configured", request.getRemoteAddr());
+            response.sendError(HttpServletResponse.SC_FORBIDDEN, "a PIN must be configured");
+            return false;
+        }
+        String password = getPassword(request);
+        if (password == null || !MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                pin.getBytes(StandardCharsets.UTF_8))) {
+            response.setHeader("WWW-Authenticate", "Basic realm=\"owlcms\", charset=\"UTF-8\"");
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return false;
+        }
+        return true;
+    }
+
     public static String getClientIp() {
         HttpServletRequest request;
         request = VaadinServletRequest.getCurrent().getHttpServletRequest();
@@ -60,4 +97,26 @@ public class AccessUtils {
         return remoteAddr;
     }
 
+    /**
+     * @return the password from a basic or bearer Authorization header, null if absent or malformed
+     */
+    private static String getPassword(HttpServletRequest request) {
+        String authorization = request.getHeader("Authorization");
+        if (authorization == null) {
+            return null;
+        } else if (authorization.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return authorization.substring(7).trim();
+        } else if (authorization.regionMatches(true, 0, "Basic ", 0, 6)) {
+            try {
+                String decoded = new String(Base64.getDecoder().decode(authorization.substring(6).trim()),
+                        StandardCharsets.UTF_8);
+                int colon = decoded.indexOf(':');
+                return colon >= 0 ? decoded.substring(colon + 1) : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
 }
@@ -8,6 +8,9 @@ package app.owlcms.utils;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.StackWalker.StackFrame;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import org.apache.log4j.MDC;
 
@@ -18,6 +21,88 @@ import app.owlcms.init.OwlcmsSession;
  */
 public class LoggerUtils {
 
+    /**
+     * A location in the code, looked up when the message is actually logged.
+     *
+     * The frames of the logging library are skipped, so the location is the same as {@link LoggerUtils#whereFrom(int)}
+     * called at the same place. Instances have no state of their own and are shared.
+     */
+    private static class CallerLocation implements Supplier<String> {
+        private final int depth;
+
+        CallerLocation(int depth) {
+            this.depth = depth;
+        }
+
+        @Override
+        public String get() {
+            return walker.walk(frames -> fromLoggingCall(frames).skip(1 + depth).findFirst())
+                    .map(StackFrame::toString).orElse("?");
+        }
+
+        @Override
+        public String toString() {
+            return get();
+        }
+    }
+
+    /**
+     * The stack, looked up when the message is actually logged.
+     */
+    private static class LazyStackTrace implements Supplier<String> {
+        @Override
+        public String get() {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            walker.walk(frames -> {
+                fromLoggingCall(frames)
+                        .takeWhile(f -> !f.getClassName().startsWith("com.vaadin.flow.server.communication"))
+                        .forEach(f -> pw.println("\t" + f));
+                return null;
+            });
+            return sw.toString();
+        }
+
+        @Override
+        public String toString() {
+            return get();
+        }
+    }
+
+    private static final StackWalker walker = StackWalker.getInstance();
+    private static final CallerLocation[] callerLocations = { new CallerLocation(0), new CallerLocation(1),
+            new CallerLocation(2), new CallerLocation(3) };
+    private static final LazyStackTrace lazyStackTrace = new LazyStackTrace();
+
+    /**
+     * Caller of the current method, for use as a log message argument: the stack is only looked at if the message is
+     * logged, and nothing is allocated otherwise.
+     *
+     * @return an object whose <code>toString()</code> is what {@link #whereFrom()} would have returned
+     */
+    public static Supplier<String> callerLocation() {
+        return callerLocations[0];
+    }
+
+    /**
+     * Caller of the current method, additional depth, for use as a log message argument.
+     *
+     * @param depth the number of additional frames to skip
+     * @return an object whose <code>toString()</code> is what {@link #whereFrom(int)} would have returned
+     */
+    public static Supplier<String> callerLocation(int depth) {
+        return depth < callerLocations.length ? callerLocations[depth] : new CallerLocation(depth);
+    }
+
+    /**
+     * Stack trace of the current method, for use as a log message argument.
+     *
+     * @return an object whose <code>toString()</code> is what {@link #stackTrace()} would have returned
+     */
+    public static Supplier<String> lazyStackTrace() {
+        return lazyStackTrace;
+    }
+
     public static void setWhere(String where) {
         MDC.put("page", where);
         OwlcmsSession.withFop(fop -> MDC.put("currentGroup", fop.getGroup() != null ? fop.getGroup() : "-"));
@@ -65,7 +150,7 @@ public class LoggerUtils {
      * @return the string
      */
     public static String whereFrom() {
-        return Thread.currentThread().getStackTrace()[3].toString();
+        return walker.walk(frames -> frames.skip(2).findFirst()).map(StackFrame::toString).orElse("?");
     }
 
     /**
@@ -74,7 +159,7 @@ public class LoggerUtils {
      * @return the string
      */
     public static String whereFrom(int depth) {
-        return Thread.currentThread().getStackTrace()[3 + depth].toString();
+        return walker.walk(frames -> frames.skip(2 + depth).findFirst()).map(StackFrame::toString).orElse("?");
     }
 
     /**
@@ -94,4 +179,21 @@ public class LoggerUtils {
         }
         return message;
     }
+
+    /**
+     * @return the frames starting with the method that called the logger
+     */
+    private static Stream<StackFrame> fromLoggingCall(Stream<StackFrame> frames) {
+        return frames.dropWhile(LoggerUtils::isLoggingFrame);
+    }
+
+    /**
+     * @return true for the frames of the logging library, of this class, and of the JDK methods that build the message
+     */
+    private static boolean isLoggingFrame(StackFrame f) {
+        String className = f.getClassName();
+        return className.startsWith("ch.qos.logback.") || className.startsWith("org.slf4j.")
+                || className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.")
+                || className.startsWith(LoggerUtils.class.getName());
+    }
 }
@@ -9,6 +9,7 @@ package app.owlcms.utils;
 import java.awt.Desktop;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.HttpURLConnection;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
@@ -136,6 +137,35 @@ public class StartupUtils {
         return false;
     }
 
+    /**
+     * Log the time since the JVM was started, which is what class data sharing reduces.
+     *
+     * With <code>-DexitAfterStartup=true</code>, the home page is fetched so the classes needed to display it are also
+     * loaded, and the server should then be stopped. This is the training run used to build the class data sharing
+     * archive (see <code>cds.sh</code>).
+     *
+     * @param appName
+     * @return true if the server should be stopped
+     */
+    public static boolean logReady(String appName) {
+        mainLogger.info("{} ready {} ms after JVM start", appName, ManagementFactory.getRuntimeMXBean().getUptime());
+        if (!getBooleanParam("exitAfterStartup")) {
+            return false;
+        }
+        try {
+            URL homeURL = new URL("http", "localhost", serverPort, "/");
+            HttpURLConnection huc = (HttpURLConnection) homeURL.openConnection();
+            huc.setRequestMethod("GET");
+            try (InputStream in = huc.getInputStream()) {
+                in.readAllBytes();
+            }
+            mainLogger.info("{} home page status {}, exiting", appName, huc.getResponseCode());
+        } catch (IOException e) {
+            logger./**/warn("cannot fetch home page: {}", e.getMessage());
+        }
+        return true;
+    }
+
     public static void setMainLogger(Logger mainLogger) {
         StartupUtils.mainLogger = mainLogger;
     }
@@ -0,0 +1,69 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.jpa.JPAService;
+
+/**
+ * Concurrent edits of the same athlete on two screens.
+ */
+public class AthleteVersionTest {
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        TestData.insertInitialData(5, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void liftCardsMerged() {
+        Long id = AthleteRepository.findAll().get(0).getId();
+        Athlete marshal = AthleteRepository.findById(id);
+        Athlete weighIn = AthleteRepository.findById(id);
+        marshal.setValidation(false);
+        weighIn.setValidation(false);
+        Long version = weighIn.getVersion();
+
+        weighIn.setBodyWeight(80.0D);
+        weighIn.setCleanJerk1Declaration("90");
+        AthleteRepository.save(weighIn);
+        assertTrue(weighIn.getVersion() > version);
+
+        // stale copy: only the lift card is written, merged with the weigh-in changes
+        marshal.setSnatch1Declaration("70");
+        AthleteRepository.saveResults(marshal);
+        assertEquals("90", marshal.getCleanJerk1Declaration());
+        Athlete saved = AthleteRepository.findById(id);
+        assertEquals("70", saved.getSnatch1Declaration());
+        assertEquals("90", saved.getCleanJerk1Declaration());
+        assertEquals(80.0D, saved.getBodyWeight(), 0.001D);
+        assertEquals(marshal.getVersion(), saved.getVersion());
+
+        // now the weigh-in copy is stale: lift card changes made by the marshal are kept
+        weighIn.setBodyWeight(81.0D);
+        AthleteRepository.save(weighIn);
+        saved = AthleteRepository.findById(id);
+        assertEquals("70", saved.getSnatch1Declaration());
+        assertEquals("90", saved.getCleanJerk1Declaration());
+        assertEquals(81.0D, saved.getBodyWeight(), 0.001D);
+        assertEquals(weighIn.getVersion(), saved.getVersion());
+    }
+}
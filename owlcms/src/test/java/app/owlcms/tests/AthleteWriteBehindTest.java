@@ -0,0 +1,139 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.AthleteWriteBehind;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.data.jpa.JPAService;
+
+public class AthleteWriteBehindTest {
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        TestData.insertInitialData(5, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    private Path dir;
+    private Path path;
+
+    @Before
+    public void setupTest() throws IOException {
+        dir = Files.createTempDirectory("wbj");
+        path = dir.resolve("athletes.wbj");
+    }
+
+    @After
+    public void tearDownTest() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void writtenLater() throws IOException {
+        AthleteWriteBehind wb = new AthleteWriteBehind(path);
+        assertEquals(0, wb.open());
+        Athlete a = AthleteRepository.findAll().get(0);
+
+        lift(a, "61");
+        wb.save(a);
+        lift(a, "62");
+        wb.save(a);
+        assertEquals(1, wb.getPendingCount());
+        assertEquals(null, AthleteRepository.findById(a.getId()).getSnatch1ActualLift());
+
+        assertEquals(1, wb.flush());
+        assertEquals(0, wb.getPendingCount());
+        assertEquals("62", AthleteRepository.findById(a.getId()).getSnatch1ActualLift());
+        assertEquals(0, AthleteWriteBehind.readUncommitted(path).size());
+        wb.close();
+    }
+
+    @Test
+    public void recoveredAfterCrash() throws IOException {
+        AthleteWriteBehind wb = new AthleteWriteBehind(path);
+        wb.open();
+        Athlete a = AthleteRepository.findAll().get(1);
+        Athlete b = AthleteRepository.findAll().get(2);
+        lift(a, "71");
+        wb.save(a);
+        wb.flush();
+        lift(a, "-72");
+        wb.save(a);
+        lift(b, "73");
+        wb.save(b);
+        // not flushed, not closed: the journal is all that is left
+
+        AthleteWriteBehind recovered = new AthleteWriteBehind(path);
+        assertEquals(2, recovered.open());
+        assertEquals("71", AthleteRepository.findById(a.getId()).getSnatch1ActualLift());
+        assertEquals(2, recovered.flush());
+        assertEquals("-72", AthleteRepository.findById(a.getId()).getSnatch1ActualLift());
+        assertEquals("73", AthleteRepository.findById(b.getId()).getSnatch1ActualLift());
+        recovered.close();
+    }
+
+    @Test
+    public void rankingsDoNotWait() {
+        System.setProperty("writeBehind", "true");
+        System.setProperty("writeBehindDir", dir.toString());
+        // no periodic write during the test
+        System.setProperty("writeBehindMillis", "3600000");
+        try {
+            AthleteWriteBehind.init();
+            AthleteWriteBehind wb = AthleteWriteBehind.getCurrent();
+            Athlete a = AthleteRepository.findAllByGroupAndWeighIn(null, true).get(3);
+
+            // what the field of play does on a decision
+            lift(a, "81");
+            AthleteRepository.saveResults(a);
+            Competition.getCurrent().computeGlobalRankings(false);
+            assertEquals(1, wb.getPendingCount());
+
+            Athlete seen = AthleteRepository.findAllByGroupAndWeighIn(null, true).stream()
+                    .filter(x -> x.getId().equals(a.getId())).findFirst().get();
+            assertEquals("81", seen.getSnatch1ActualLift());
+            assertEquals("81", AthleteRepository.findById(a.getId()).getSnatch1ActualLift());
+            assertEquals(1, wb.getPendingCount());
+
+            // saving the whole athlete waits for the write
+            AthleteRepository.save(AthleteRepository.findById(a.getId()));
+            assertEquals(0, wb.getPendingCount());
+        } finally {
+            AthleteWriteBehind.shutdown();
+            System.clearProperty("writeBehind");
+            System.clearProperty("writeBehindDir");
+            System.clearProperty("writeBehindMillis");
+        }
+    }
+
+    private void lift(Athlete a, String weight) {
+        a.setValidation(false);
+        a.setSnatch1Declaration(Integer.toString(Math.abs(Integer.parseInt(weight))));
+        a.setSnatch1ActualLift(weight);
+        a.setValidation(true);
+    }
+}
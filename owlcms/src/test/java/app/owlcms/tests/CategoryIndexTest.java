@@ -0,0 +1,110 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.agegroup.AgeGroupRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.category.AgeDivision;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.category.CategoryIndex;
+import app.owlcms.data.category.CategoryRepository;
+import app.owlcms.data.category.RegistrationPreferenceComparator;
+import app.owlcms.data.competition.Competition;
+import app.owlcms.data.jpa.JPAService;
+
+/**
+ * The in-memory category index must give the same answers as the JPQL query.
+ */
+public class CategoryIndexTest {
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        JPAService.runInTransaction(em -> {
+            Competition.setCurrent(new Competition());
+            AgeGroupRepository.insertAgeGroups(em, EnumSet.of(AgeDivision.IWF, AgeDivision.MASTERS, AgeDivision.U));
+            return null;
+        });
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void sameAsQuery() {
+        CategoryIndex index = CategoryIndex.build(CategoryRepository.findAll());
+        assertTrue(index.size() > 0);
+
+        Double[] bodyWeights = { null, 30.0D, 40.0D, 49.0D, 49.01D, 55.0D, 61.0D, 66.0D, 66.5D, 73.0D, 96.0D, 102.0D,
+                109.0D, 109.01D, 150.0D, 998.0D, 1000.0D };
+        Integer[] ages = { null, 0, 12, 13, 15, 17, 20, 21, 29, 30, 35, 39, 40, 64, 70, 90, 120 };
+        Gender[] genders = { null, Gender.F, Gender.M };
+        for (Gender gender : genders) {
+            for (Integer age : ages) {
+                for (Double bw : bodyWeights) {
+                    checkSame(index, gender, age, bw);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void indexFollowsChanges() {
+        List<Category> before = CategoryRepository.findByGenderAgeBW(Gender.M, 35, 80.0D);
+        AgeGroup masters = before.get(0).getAgeGroup();
+        assertEquals(AgeDivision.MASTERS, masters.getAgeDivision());
+
+        masters.setActive(false);
+        AgeGroupRepository.save(masters);
+        List<Category> after = CategoryRepository.findByGenderAgeBW(Gender.M, 35, 80.0D);
+        assertTrue(after.stream().noneMatch(c -> c.getAgeGroup().getId().equals(masters.getId())));
+
+        masters.setActive(true);
+        AgeGroupRepository.save(masters);
+        assertEquals(names(before), names(CategoryRepository.findByGenderAgeBW(Gender.M, 35, 80.0D)));
+    }
+
+    @Test
+    public void instancesNotShared() {
+        List<Category> first = CategoryRepository.findByGenderAgeBW(Gender.F, 25, 60.0D);
+        List<Category> second = CategoryRepository.findByGenderAgeBW(Gender.F, 25, 60.0D);
+        assertTrue(first.size() > 0);
+        assertEquals(names(first), names(second));
+        for (int i = 0; i < first.size(); i++) {
+            assertTrue(first.get(i) != second.get(i));
+        }
+    }
+
+    private void checkSame(CategoryIndex index, Gender gender, Integer age, Double bw) {
+        List<Category> expected = CategoryRepository.findFiltered(null, gender, null, null, age, bw, true, -1, -1);
+        expected.sort(new RegistrationPreferenceComparator());
+        List<Long> actual = index.find(gender, age, bw);
+        assertEquals(gender + " " + age + " " + bw, ids(expected), actual);
+    }
+
+    private List<Long> ids(List<Category> cats) {
+        return cats.stream().map(Category::getId).collect(Collectors.toList());
+    }
+
+    private String names(List<Category> cats) {
+        return cats.stream().map(c -> c.getId() + ":" + c.getCode()).collect(Collectors.joining(","));
+    }
+}
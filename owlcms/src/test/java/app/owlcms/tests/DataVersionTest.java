@@ -0,0 +1,49 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+
+/**
+ * The data version used to tell whether a generated report is still current.
+ */
+public class DataVersionTest {
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        TestData.insertInitialData(5, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void changesOnWrite() {
+        long version = JPAService.getDataVersion();
+        AthleteRepository.findAll();
+        GroupRepository.findAll();
+        assertEquals(version, JPAService.getDataVersion());
+
+        Group group = GroupRepository.findByName("A");
+        group.setAnnouncer("changed");
+        GroupRepository.save(group);
+        assertTrue(JPAService.getDataVersion() > version);
+    }
+}
@@ -0,0 +1,83 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.eventbus.Subscribe;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FOPEventBus;
+
+public class FOPEventBusTest {
+
+    private List<FOPEvent> received = new ArrayList<>();
+
+    @Subscribe
+    public void receive(FOPEvent e) {
+        received.add(e);
+    }
+
+    @Test
+    public void duplicatesRejected() {
+        FOPEventBus bus = new FOPEventBus("test");
+        bus.register(this);
+        Object origin = new Object();
+
+        FOPEvent.TimeStarted e1 = new FOPEvent.TimeStarted(origin);
+        bus.post(e1);
+        bus.post(e1);
+        assertEquals(1, received.size());
+
+        // identical contents are not duplicates
+        bus.post(new FOPEvent.TimeStarted(origin));
+        assertEquals(2, received.size());
+        assertEquals(2, bus.getAcceptedCount());
+        assertEquals(1, bus.getDuplicateCount());
+
+        // only recent events are remembered
+        for (int i = 0; i < 1000; i++) {
+            bus.post(new FOPEvent.TimeStopped(origin));
+        }
+        bus.post(e1);
+        assertEquals(1003, received.size());
+    }
+
+    @Test
+    public void decisionFromTwoDevices() {
+        FOPEventBus bus = new FOPEventBus("test");
+        bus.register(this);
+        Athlete athlete = new Athlete();
+        Object device1 = new Object();
+        Object device2 = new Object();
+
+        bus.post(new FOPEvent.DecisionFullUpdate(device1, athlete, true, true, false, 1000, 1200, 1500));
+        bus.post(new FOPEvent.DecisionFullUpdate(device2, athlete, true, true, false, 1000, 1200, 1500));
+        assertEquals(1, received.size());
+        assertEquals(1, bus.getDuplicateCount());
+
+        // individual decisions already known are also rejected
+        bus.post(new FOPEvent.DecisionUpdate(device2, athlete, 0, true));
+        assertEquals(1, received.size());
+
+        // a referee changing their mind is not a duplicate
+        bus.post(new FOPEvent.DecisionUpdate(device1, athlete, 2, true));
+        assertEquals(2, received.size());
+
+        // once decisions are reset, the same attempt may be decided again
+        bus.post(new FOPEvent.DecisionReset(device1));
+        bus.post(new FOPEvent.DecisionFullUpdate(device2, athlete, true, true, false, 1000, 1200, 1500));
+        assertEquals(4, received.size());
+        assertEquals(2, bus.getDuplicateCount());
+    }
+}
@@ -0,0 +1,130 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.fieldofplay.FOPJournal;
+import app.owlcms.fieldofplay.FOPState;
+import app.owlcms.uievents.BreakType;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+public class FOPJournalTest {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPJournalTest.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private Path dir;
+    private Path path;
+
+    @Before
+    public void setupTest() throws IOException {
+        dir = Files.createTempDirectory("fopj");
+        path = dir.resolve("A.fopj");
+    }
+
+    @After
+    public void tearDownTest() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void fullDay() throws IOException {
+        // 6 events per attempt, 6 attempts, 200 athletes, plus timer noise
+        final int nbEvents = 20000;
+        FOPJournal journal = new FOPJournal(path);
+        journal.setSnapshotInterval(1000);
+        assertNull(journal.open());
+
+        long start = System.nanoTime();
+        for (int i = 0; i < nbEvents; i++) {
+            journal.append(entry(i));
+        }
+        long elapsed = System.nanoTime() - start;
+        journal.close();
+        logger.info("queued {} events, {} µs per event", nbEvents, elapsed / 1000 / nbEvents);
+
+        // compacted every 1000 records, each well under 100 bytes
+        long size = Files.size(path);
+        assertTrue("journal not compacted: " + size, size < 1000 * 100);
+
+        start = System.nanoTime();
+        FOPJournal.Entry last = FOPJournal.readLast(path);
+        logger.info("replayed journal of {} bytes in {} ms", size, (System.nanoTime() - start) / 1000000);
+        // close() waits for the writer, so the last event appended is there
+        checkEntry(last, nbEvents - 1);
+    }
+
+    @Test
+    public void tornWrite() throws IOException {
+        FOPJournal journal = new FOPJournal(path);
+        journal.open();
+        journal.append(entry(1));
+        journal.append(entry(2));
+        journal.close();
+
+        // simulate a crash in the middle of the last record
+        long size = Files.size(path);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 5);
+        }
+        checkEntry(FOPJournal.readLast(path), 1);
+
+        // reopening compacts to the last valid entry and appends after it
+        journal = new FOPJournal(path);
+        checkEntry(journal.open(), 1);
+        journal.append(entry(3));
+        journal.close();
+        checkEntry(FOPJournal.readLast(path), 3);
+    }
+
+    private void checkEntry(FOPJournal.Entry last, int i) {
+        assertNotNull(last);
+        FOPJournal.Entry expected = entry(i);
+        assertEquals(expected.eventName, last.eventName);
+        assertEquals(expected.groupName, last.groupName);
+        assertEquals(expected.state, last.state);
+        assertEquals(expected.breakType, last.breakType);
+        assertEquals(expected.athleteTimeRemaining, last.athleteTimeRemaining);
+        assertEquals(expected.clockOwnerId, last.clockOwnerId);
+        assertEquals(expected.decisions[1], last.decisions[1]);
+        assertNull(last.decisions[2]);
+    }
+
+    private FOPJournal.Entry entry(int i) {
+        FOPJournal.Entry e = new FOPJournal.Entry();
+        e.timestamp = 1600000000000L + i * 1000L;
+        e.eventName = "Event" + i;
+        e.groupName = "M" + (i / 1000);
+        e.state = FOPState.values()[i % FOPState.values().length];
+        e.breakType = i % 2 == 0 ? null : BreakType.TECHNICAL;
+        e.athleteTimeRemaining = 60000 - (i % 60000);
+        e.athleteTimerRunning = i % 3 == 0;
+        e.clockOwnerId = i % 200;
+        e.previousAthleteId = -1;
+        e.decisions[1] = i % 2 == 0;
+        return e;
+    }
+}
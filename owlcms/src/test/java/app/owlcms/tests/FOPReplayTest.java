@@ -0,0 +1,70 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.DemoData;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.i18n.Translator;
+import app.owlcms.simulation.FOPReplay;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+public class FOPReplayTest {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FOPReplayTest.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        Translator.setForcedLocale(Locale.ENGLISH);
+        DemoData.insertInitialData(2, null);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void replayGeneratedCompetition() throws Exception {
+        List<Group> groups = GroupRepository.findAll();
+        List<FOPReplay.Step> script = FOPReplay.generateScript(groups, new Random(0));
+        assertTrue(script.size() > 0);
+
+        FOPReplay replay = new FOPReplay(0);
+        replay.add("Replay1", script);
+        FOPReplay.Report report = replay.run();
+        logger.info("{}", report);
+
+        assertEquals(script.size() - report.rejectedChanges, report.nbEvents);
+        assertTrue(report.rankingUpdates > 0);
+        for (Group g : groups) {
+            for (Athlete a : AthleteRepository.findAllByGroupAndWeighIn(g, true)) {
+                assertEquals(a.getFullName(), 6, (int) a.getAttemptsDone());
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.init.FileServlet;
+import app.owlcms.metrics.Counter;
+import app.owlcms.metrics.Metrics;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Large files under ./local served to many screens at once.
+ *
+ * The file is 20 MB by default so the build stays fast; run with <code>-DthroughputMB=200</code> for the venue
+ * scenario.
+ */
+public class FileServletThroughputTest {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FileServletThroughputTest.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final int CLIENTS = 20;
+
+    private static Path dir;
+    private static long size;
+    private static long crc;
+    private static Server server;
+    private static int port;
+
+    @BeforeClass
+    public static void setupTests() throws Exception {
+        dir = Files.createTempDirectory("local");
+        size = Long.getLong("throughputMB", 20) * 1024 * 1024;
+        Random random = new Random(0);
+        byte[] chunk = new byte[1024 * 1024];
+        CRC32 fileCrc = new CRC32();
+        try (OutputStream out = Files.newOutputStream(dir.resolve("intro.mp4"))) {
+            for (long written = 0; written < size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk);
+                fileCrc.update(chunk);
+            }
+        }
+        crc = fileCrc.getValue();
+
+        server = new Server(0);
+        ServletContextHandler context = new ServletContextHandler();
+        context.setContextPath("/");
+        ServletHolder holder = context.addServlet(FileServlet.class, "/local/*");
+        holder.setInitParameter("basePath", dir.toString());
+        server.setHandler(context);
+        server.start();
+        port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    @AfterClass
+    public static void tearDownTests() throws Exception {
+        server.stop();
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Test
+    public void concurrentClients() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        long start = System.nanoTime();
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            results.add(clients.submit(() -> fetch(null)));
+        }
+        for (Future<Long> f : results) {
+            assertEquals(crc, f.get().longValue());
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+        logger.info("{} clients, {} MB each: {} ms, {} MB/s", CLIENTS, size / (1024 * 1024), elapsed / 1000000,
+                CLIENTS * size * 1000L / (1024 * 1024) / Math.max(1, elapsed / 1000000));
+    }
+
+    @Test
+    public void singleRange() throws Exception {
+        // the last megabyte, as a video player seeking near the end
+        long from = size - 1024 * 1024;
+        CRC32 expected = new CRC32();
+        Random random = new Random(0);
+        byte[] chunk = new byte[1024 * 1024];
+        for (long written = 0; written < size; written += chunk.length) {
+            random.nextBytes(chunk);
+        }
+        expected.update(chunk);
+        assertEquals(expected.getValue(), fetch("bytes=" + from + "-").longValue());
+    }
+
+    @Test
+    public void zeroCopy() throws Exception {
+        // same metrics as those updated by FileServlet
+        Counter channel = Metrics.counter("owlcms_file_sends_total",
+                "byte ranges of files not in memory, by how they were written", "path", "channel");
+        Counter copy = Metrics.counter("owlcms_file_sends_total",
+                "byte ranges of files not in memory, by how they were written", "path", "copy");
+        long channelBefore = channel.getCount();
+        long copyBefore = copy.getCount();
+
+        // too large for the resource cache: whole file and single range are handed to Jetty as a channel
+        assertEquals(crc, fetch(null).longValue());
+        fetch("bytes=0-1023");
+        assertEquals(channelBefore + 2, channel.getCount());
+        assertEquals(copyBefore, copy.getCount());
+    }
+
+    /**
+     * @return the CRC of the content received
+     */
+    private Long fetch(String range) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL("http", "localhost", port, "/local/intro.mp4")
+                .openConnection();
+        if (range != null) {
+            c.setRequestProperty("Range", range);
+        }
+        assertEquals(range != null ? 206 : 200, c.getResponseCode());
+        CRC32 received = new CRC32();
+        byte[] buffer = new byte[65536];
+        try (InputStream in = c.getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                received.update(buffer, 0, n);
+            }
+        }
+        return received.getValue();
+    }
+}
@@ -0,0 +1,165 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import javax.persistence.Query;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.agegroup.AgeGroup;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.athlete.Gender;
+import app.owlcms.data.category.AgeDivision;
+import app.owlcms.data.category.Category;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.jpa.QueryRegistry;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Filtering queries built from registered shapes, on 2000 athletes.
+ */
+public class FilterQueryTest {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(FilterQueryTest.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final String TYPED = "Simpson";
+    private static final int ROUNDS = 20;
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        // two groups of 1000
+        TestData.insertInitialData(1000, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void sameAsInMemory() {
+        List<Athlete> all = AthleteRepository.findAll();
+        assertEquals(2000, all.size());
+        Group groupA = GroupRepository.findByName("A");
+        for (String lastName : new String[] { null, "", "s", "Sim", "zz" }) {
+            for (Group group : new Group[] { null, groupA }) {
+                for (Gender gender : new Gender[] { null, Gender.M, Gender.F }) {
+                    for (Boolean weighedIn : new Boolean[] { null, true, false }) {
+                        List<Athlete> expected = all.stream()
+                                .filter(a -> lastName == null
+                                        || a.getLastName().toLowerCase().startsWith(lastName.toLowerCase()))
+                                .filter(a -> group == null || group.equals(a.getGroup()))
+                                .filter(a -> gender == null || gender == a.getGender())
+                                .filter(a -> weighedIn == null || weighedIn == (a.getBodyWeight() != null
+                                        && a.getBodyWeight() > 0.1D))
+                                .collect(Collectors.toList());
+                        String filters = lastName + " " + group + " " + gender + " " + weighedIn;
+                        assertEquals(filters, expected.size(), AthleteRepository.findFiltered(lastName, group,
+                                (Category) null, (AgeGroup) null, (AgeDivision) null, gender, weighedIn, -1, -1)
+                                .size());
+                        assertEquals(filters, expected.size(), AthleteRepository.countFiltered(lastName, group,
+                                (Category) null, (AgeGroup) null, (AgeDivision) null, gender, weighedIn));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Typing a last name in the registration filter: one count and one page of results per keystroke. Compares
+     * building and compiling the JPQL on each keystroke with the registered shape. Timings are logged, not asserted.
+     */
+    @Test
+    public void typingLatency() {
+        Group groupA = GroupRepository.findByName("A");
+        QueryRegistry registry = new QueryRegistry("FilterQueryTest");
+
+        // warm up both paths
+        typeAdHoc(groupA);
+        typeRegistered(registry, groupA);
+
+        long adHoc = 0;
+        long registered = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            typeAdHoc(groupA);
+            adHoc += System.nanoTime() - start;
+            start = System.nanoTime();
+            typeRegistered(registry, groupA);
+            registered += System.nanoTime() - start;
+        }
+        int keystrokes = ROUNDS * TYPED.length();
+        logger.info("filter typing on 2000 athletes: {} us/keystroke built each time, {} us/keystroke registered",
+                adHoc / 1000 / keystrokes, registered / 1000 / keystrokes);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            for (int j = 1; j <= TYPED.length(); j++) {
+                String prefix = TYPED.substring(0, j);
+                AthleteRepository.countFiltered(prefix, groupA, null, null, null, null, null);
+                AthleteRepository.findFiltered(prefix, groupA, null, null, null, null, null, 0, 50);
+            }
+        }
+        logger.info("filter typing on 2000 athletes: {} us/keystroke through AthleteRepository",
+                (System.nanoTime() - start) / 1000 / keystrokes);
+        assertEquals(2, registry.size());
+    }
+
+    private String jpql(String select) {
+        // same JPQL as the repository, rebuilt on every call
+        StringBuilder sb = new StringBuilder(select);
+        sb.append(" from Athlete a join a.group g where ");
+        sb.append("g.id = :groupId");
+        sb.append(" and ");
+        sb.append("lower(a.lastName) like :lastName");
+        return sb.toString();
+    }
+
+    private void typeAdHoc(Group group) {
+        JPAService.runInTransaction(em -> {
+            for (int j = 1; j <= TYPED.length(); j++) {
+                String lastName = TYPED.substring(0, j).toLowerCase() + "%";
+                Query count = em.createQuery(jpql("select count(a.id)"));
+                count.setParameter("groupId", group.getId()).setParameter("lastName", lastName).getSingleResult();
+                Query find = em.createQuery(jpql("select a"));
+                find.setParameter("groupId", group.getId()).setParameter("lastName", lastName).setMaxResults(50)
+                        .getResultList();
+            }
+            return null;
+        });
+    }
+
+    private void typeRegistered(QueryRegistry registry, Group group) {
+        JPAService.runInTransaction(em -> {
+            for (int j = 1; j <= TYPED.length(); j++) {
+                String lastName = TYPED.substring(0, j).toLowerCase() + "%";
+                Query count = registry.create(em, "count", () -> jpql("select count(a.id)"));
+                count.setParameter("groupId", group.getId()).setParameter("lastName", lastName).getSingleResult();
+                Query find = registry.create(em, "find", () -> jpql("select a"));
+                find.setParameter("groupId", group.getId()).setParameter("lastName", lastName).setMaxResults(50)
+                        .getResultList();
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,63 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import app.owlcms.metrics.FlightEvents;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class FlightEventsTest {
+
+    @Test
+    public void eventsRecorded() throws Exception {
+        assumeTrue(FlightRecorder.isAvailable());
+        Path file = Files.createTempFile("owlcms", ".jfr");
+        try (Recording r = new Recording()) {
+            r.enable("app.owlcms.FopEventHandled");
+            r.enable("app.owlcms.GroupLoaded");
+            r.enable("app.owlcms.RemotePush");
+            r.start();
+            FlightEvents.fopEventHandled("A", "M1", "DecisionFullUpdate", 2000000);
+            FlightEvents.groupLoaded("A", "M1", false, 14, 3000000);
+            FlightEvents.remotePush("http://localhost/update", 0, 512, 4000000);
+            r.stop();
+            r.dump(file);
+
+            Map<String, RecordedEvent> events = new HashMap<>();
+            List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+            for (RecordedEvent e : recorded) {
+                events.put(e.getEventType().getName(), e);
+            }
+            RecordedEvent fop = events.get("app.owlcms.FopEventHandled");
+            assertEquals("M1", fop.getString("group"));
+            assertEquals("DecisionFullUpdate", fop.getString("event"));
+            assertEquals(Duration.ofMillis(2), fop.getDuration("elapsed"));
+            RecordedEvent load = events.get("app.owlcms.GroupLoaded");
+            assertEquals(false, load.getBoolean("full"));
+            assertEquals(14, load.getInt("athletes"));
+            RecordedEvent push = events.get("app.owlcms.RemotePush");
+            assertEquals(0, push.getInt("status"));
+            assertEquals(512, push.getLong("size"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import app.owlcms.data.agegroup.AgeGroupRepository;
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.group.Group;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FieldOfPlay;
+
+/**
+ * Reloading the current group of a field of play after athletes were changed without recording which ones.
+ */
+public class GroupReloadTest {
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        TestData.insertInitialData(5, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void ageGroupsReloaded() {
+        Group gA = GroupRepository.findByName("A");
+        FieldOfPlay fop = new FieldOfPlay(new ArrayList<Athlete>(), new MockCountdownTimer(),
+                new MockCountdownTimer(), true);
+        fop.loadGroup(gA, this, true);
+        assertEquals(1, fop.getFullLoads());
+        assertFalse(fop.getLiftingOrder().isEmpty());
+
+        // nothing changed, the athletes already loaded are kept
+        fop.loadGroup(gA, this, true);
+        assertEquals(1, fop.getFullLoads());
+
+        // all the categories are replaced
+        AgeGroupRepository.reloadDefinitions("AgeGroups.xlsx");
+        fop.loadGroup(gA, this, true);
+        assertEquals(2, fop.getFullLoads());
+        for (Athlete a : fop.getLiftingOrder()) {
+            Athlete saved = AthleteRepository.findById(a.getId());
+            assertEquals(saved.getCategory(), a.getCategory());
+        }
+    }
+}
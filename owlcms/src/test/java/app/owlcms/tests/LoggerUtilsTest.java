@@ -0,0 +1,156 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.eventbus.EventBus;
+
+import app.owlcms.data.athlete.Athlete;
+import app.owlcms.data.athlete.AthleteRepository;
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.fieldofplay.FOPEvent;
+import app.owlcms.fieldofplay.FieldOfPlay;
+import app.owlcms.utils.LoggerUtils;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * Caller locations in log messages, and what they cost on the field of play event path when the loggers are at INFO.
+ */
+public class LoggerUtilsTest {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(LoggerUtilsTest.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final int CALLS = 10000;
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void sameLocationAsWhereFrom() {
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        logger.addAppender(appender);
+        logger.setLevel(Level.DEBUG);
+        try {
+            String[] eager = logSite();
+            List<ILoggingEvent> events = appender.list;
+            assertEquals(2, events.size());
+            assertEquals(eager[0], events.get(0).getFormattedMessage());
+            assertEquals(eager[1], events.get(1).getFormattedMessage());
+            assertTrue(events.get(0).getFormattedMessage().contains("sameLocationAsWhereFrom"));
+        } finally {
+            logger.setLevel(Level.INFO);
+            logger.detachAppender(appender);
+        }
+    }
+
+    @Test
+    public void noAllocationWhenNotLogged() {
+        com.sun.management.ThreadMXBean threads = threads();
+        for (int i = 0; i < CALLS; i++) {
+            logEager();
+            logLazy();
+        }
+        long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < CALLS; i++) {
+            logEager();
+        }
+        long eagerBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+
+        start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < CALLS; i++) {
+            logLazy();
+        }
+        long lazyBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+
+        logger.info("debug message at INFO: eager {} bytes/call, lazy {} bytes/call", eagerBytes / CALLS,
+                lazyBytes / CALLS);
+        assertTrue(lazyBytes < eagerBytes / 100);
+    }
+
+    @Test
+    public void fopEventPath() {
+        TestData.insertInitialData(5, true);
+        JPAService.runInTransaction((em) -> {
+            TestData.deleteAllLifters(em);
+            TestData.insertSampleLifters(em, 5, GroupRepository.doFindByName("A", em),
+                    GroupRepository.doFindByName("B", em), GroupRepository.doFindByName("C", em));
+            return null;
+        });
+        List<Athlete> athletes = AthleteRepository.findAll();
+        FieldOfPlay fop = new FieldOfPlay(athletes, new MockCountdownTimer(), new MockCountdownTimer(), true);
+        fop.getLogger().setLevel(Level.INFO);
+        EventBus fopBus = fop.getFopEventBus();
+
+        com.sun.management.ThreadMXBean threads = threads();
+        for (int i = 0; i < CALLS / 10; i++) {
+            startStop(fopBus);
+        }
+        long start = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        for (int i = 0; i < CALLS; i++) {
+            startStop(fopBus);
+        }
+        long bytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - start;
+        logger.info("clock start/stop: {} bytes/event", bytes / (2 * CALLS));
+    }
+
+    private void logEager() {
+        logger.debug("eager {} {}", "x", LoggerUtils.whereFrom());
+    }
+
+    private void logLazy() {
+        logger.debug("lazy {} {}", "x", LoggerUtils.callerLocation());
+    }
+
+    /**
+     * @return what whereFrom() and whereFrom(1) return here, the same calls are logged with lazy locations.
+     */
+    private String[] logSite() {
+        String[] eager = { LoggerUtils.whereFrom(), LoggerUtils.whereFrom(1) };
+        logger.debug("{}", LoggerUtils.callerLocation());
+        logger.debug("{}", LoggerUtils.callerLocation(1));
+        return eager;
+    }
+
+    private void startStop(EventBus fopBus) {
+        fopBus.post(new FOPEvent.TimeStarted(null));
+        fopBus.post(new FOPEvent.TimeStopped(null));
+    }
+
+    private com.sun.management.ThreadMXBean threads() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        return threads;
+    }
+}
@@ -0,0 +1,90 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import app.owlcms.metrics.Counter;
+import app.owlcms.metrics.Metrics;
+import app.owlcms.metrics.Timer;
+
+public class MetricsTest {
+
+    @Test
+    public void concurrentRecording() throws Exception {
+        Counter counter = Metrics.counter("test_events_total", "events", "fop", "A");
+        Timer timer = Metrics.timer("test_event_seconds", "event handling", "fop", "A");
+        assertSame(counter, Metrics.counter("test_events_total", "events", "fop", "A"));
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    counter.inc();
+                    timer.record(2000000L);
+                }
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        assertEquals(80000, counter.getCount());
+        assertEquals(80000, timer.getCount());
+        assertEquals(2.0D, timer.getMeanMillis(), 0.0001D);
+        assertEquals(2.0D, timer.getMaxMillis(), 0.0001D);
+    }
+
+    @Test
+    public void textFormat() {
+        Timer timer = Metrics.timer("test_save_seconds", "time to save");
+        timer.record(300000L);
+        timer.record(7000000L);
+        timer.record(20000000000L);
+        Metrics.gauges("test_connected", "pages", "route",
+                () -> Map.of("lifting/announcer", 2, "displays/scoreboard", 5));
+
+        StringBuilder sb = new StringBuilder();
+        Metrics.write(sb);
+        String text = sb.toString();
+        assertTrue(text.contains("# TYPE test_save_seconds histogram\n"));
+        assertTrue(text.contains("test_save_seconds_bucket{le=\"0.0005\"} 1\n"));
+        assertTrue(text.contains("test_save_seconds_bucket{le=\"0.01\"} 2\n"));
+        assertTrue(text.contains("test_save_seconds_bucket{le=\"10.0\"} 2\n"));
+        assertTrue(text.contains("test_save_seconds_bucket{le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("test_save_seconds_count 3\n"));
+        assertTrue(text.contains("# TYPE test_connected gauge\n"));
+        assertTrue(text.contains("test_connected{route=\"displays/scoreboard\"} 5\n"));
+    }
+
+    @Test
+    public void jmx() throws Exception {
+        Metrics.counter("test_failures_total", "failures", "url", "http://x/\"update\"").inc();
+        Metrics.registerMBean();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Object value = server.getAttribute(new ObjectName(Metrics.OBJECT_NAME),
+                "test_failures_total{url=\"http://x/\\\"update\\\"\"}");
+        assertEquals(1L, value);
+    }
+}
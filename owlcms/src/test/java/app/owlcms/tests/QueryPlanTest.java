@@ -0,0 +1,114 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import app.owlcms.data.group.GroupRepository;
+import app.owlcms.data.jpa.JPAService;
+import app.owlcms.data.jpa.SchemaMigration;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * The main athlete queries must not scan the athlete table.
+ */
+public class QueryPlanTest {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(QueryPlanTest.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static long groupId;
+
+    @BeforeClass
+    public static void setupTests() {
+        JPAService.init(true, true);
+        TestData.insertInitialData(200, true);
+        groupId = GroupRepository.findByName("A").getId();
+    }
+
+    @AfterClass
+    public static void tearDownTests() {
+        JPAService.close();
+    }
+
+    @Test
+    public void athleteQueriesUseIndexes() {
+        // field of play and weigh-in lists
+        assertNoAthleteScan(explain("select a from Athlete a join a.group g where g.id = " + groupId
+                + " and a.bodyWeight > 0"));
+        assertNoAthleteScan(explain("select count(a.id) from Athlete a join a.group g where g.id = " + groupId));
+        // registration filter on a category
+        assertNoAthleteScan(explain("select a from Athlete a join a.category c where c.id = 1"));
+    }
+
+    @Test
+    public void categoryQueriesExplained() {
+        // reference tables are small, H2 may prefer a scan; the plans are logged for comparison
+        explain("select c from Category c join c.ageGroup ag where ag.active = true"
+                + " and c.gender = app.owlcms.data.athlete.Gender.M"
+                + " and (ag.minAge <= 30) and (ag.maxAge >= 30)"
+                + " and (c.minimumWeight < 80.0) and (c.maximumWeight >= 80.0)");
+        explain("select c from Category c join c.ageGroup ag where ag.id = 1");
+    }
+
+    @Test
+    public void missingIndexesCreated() {
+        // not used by a foreign key constraint, so H2 lets it be dropped
+        JPAService.runInTransaction(em -> em.createNativeQuery("drop index ix_athlete_lastname").executeUpdate());
+        assertFalse(indexNames().contains("IX_ATHLETE_LASTNAME"));
+
+        // a database created before the index was declared
+        SchemaMigration.createMissingIndexes();
+        List<String> names = indexNames();
+        assertTrue(names.contains("IX_ATHLETE_GROUP_BW"));
+        assertTrue(names.contains("IX_ATHLETE_CATEG"));
+        assertTrue(names.contains("IX_ATHLETE_LASTNAME"));
+
+        // nothing to do the second time
+        SchemaMigration.createMissingIndexes();
+        assertNoAthleteScan(explain("select a from Athlete a join a.group g where g.id = " + groupId
+                + " and a.bodyWeight > 0"));
+    }
+
+    private void assertNoAthleteScan(String plan) {
+        assertFalse(plan, plan.contains("ATHLETE.tableScan"));
+    }
+
+    /**
+     * @return the H2 plan for the SQL generated by Hibernate for a JPQL query
+     */
+    private String explain(String jpql) {
+        return JPAService.runInTransaction(em -> {
+            SessionFactoryImplementor sf = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+            String sql = sf.getQueryPlanCache().getHQLQueryPlan(jpql, false, Collections.emptyMap())
+                    .getSqlStrings()[0];
+            String plan = em.createNativeQuery("explain " + sql).getSingleResult().toString();
+            logger.info("{}\n{}", jpql, plan);
+            return plan;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> indexNames() {
+        return JPAService.runInTransaction(em -> em
+                .createNativeQuery("select index_name from information_schema.indexes where table_name = 'ATHLETE'")
+                .getResultList());
+    }
+}
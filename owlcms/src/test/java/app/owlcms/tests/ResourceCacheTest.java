@@ -0,0 +1,152 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import app.owlcms.init.ResourceCache;
+import app.owlcms.init.ResourceCache.CachedResource;
+
+public class ResourceCacheTest {
+
+    private Path dir;
+    private ResourceCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("local");
+        cache = new ResourceCache(dir, 10000, name -> name.endsWith(".css") || name.endsWith(".csv"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        cache.close();
+        FileUtils.deleteDirectory(dir.toFile());
+    }
+
+    @Test
+    public void classPathResource() throws IOException {
+        // large enough for the translation file to be kept in memory
+        cache.close();
+        cache = new ResourceCache(dir, 4000000, name -> name.endsWith(".csv"));
+        CachedResource r = cache.get(Paths.get("i18n/translation4.csv"));
+        assertNotNull(r);
+        assertNull(r.getFile());
+        byte[] expected = IOUtils.toByteArray(getClass().getResourceAsStream("/i18n/translation4.csv"));
+        assertArrayEquals(expected, r.getContent());
+        assertArrayEquals(expected, IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(r.getGzipped()))));
+
+        // same validators on the next request, so browsers can keep their copy
+        assertSame(r, cache.get(Paths.get("i18n/translation4.csv")));
+        assertEquals(1, cache.getHits());
+        assertNull(cache.get(Paths.get("i18n/missing.csv")));
+    }
+
+    @Test
+    public void classPathResourceTooLarge() throws IOException {
+        // the test class path is a directory, so the resource is read from disk on each request
+        CachedResource r = cache.get(Paths.get("i18n/translation4.csv"));
+        assertNull(r.getContent());
+        assertNotNull(r.getFile());
+        assertTrue(r.getLength() > 1000);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() throws IOException {
+        byte[] kb = new byte[900];
+        for (int i = 0; i < 12; i++) {
+            Files.write(dir.resolve(i + ".png"), kb);
+        }
+        for (int i = 0; i < 11; i++) {
+            cache.get(Paths.get(i + ".png"));
+            // 0.png stays the most recently used
+            cache.get(Paths.get("0.png"));
+        }
+        assertEquals(11, cache.size());
+        cache.get(Paths.get("11.png"));
+        assertTrue(cache.getBytes() <= 10000);
+        assertEquals(11, cache.size());
+
+        long hits = cache.getHits();
+        cache.get(Paths.get("0.png"));
+        assertEquals(hits + 1, cache.getHits());
+        cache.get(Paths.get("1.png"));
+        assertEquals(hits + 1, cache.getHits());
+    }
+
+    @Test
+    public void largeFileReadFromDisk() throws IOException {
+        Files.write(dir.resolve("video.mp4"), new byte[2000]);
+        CachedResource r = cache.get(Paths.get("video.mp4"));
+        assertNull(r.getContent());
+        assertEquals(2000, r.getLength());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void overrideChanged() throws IOException {
+        Path css = dir.resolve("styles/results.css");
+        Files.createDirectories(css.getParent());
+        Files.write(css, "body { color: red; }".getBytes(StandardCharsets.UTF_8));
+        CachedResource r = cache.get(Paths.get("styles/results.css"));
+        assertNotNull(r.getFile());
+        assertEquals("body { color: red; }", new String(r.getContent(), StandardCharsets.UTF_8));
+        // does not compress
+        assertNull(r.getGzipped());
+
+        char[] blue = new char[1000];
+        Arrays.fill(blue, ' ');
+        Files.write(css, ("body { color: blue; }" + new String(blue)).getBytes(StandardCharsets.UTF_8));
+        cache.invalidate(Paths.get("styles"));
+        CachedResource r2 = cache.get(Paths.get("styles/results.css"));
+        assertTrue(new String(r2.getContent(), StandardCharsets.UTF_8).startsWith("body { color: blue; }"));
+        assertNotNull(r2.getGzipped());
+        assertTrue(!r.getETag().equals(r2.getETag()));
+    }
+
+    @Test
+    public void watcherInvalidates() throws IOException, InterruptedException {
+        Path css = dir.resolve("styles/results.css");
+        Files.createDirectories(css.getParent());
+        Files.write(css, "body { color: red; }".getBytes(StandardCharsets.UTF_8));
+        cache.watch();
+        cache.get(Paths.get("styles/results.css"));
+        assertEquals(1, cache.size());
+
+        // edited in place, no explicit invalidation
+        Files.write(css, "body { color: blue; }".getBytes(StandardCharsets.UTF_8));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (cache.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, cache.size());
+        CachedResource r = cache.get(Paths.get("styles/results.css"));
+        assertEquals("body { color: blue; }", new String(r.getContent(), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,122 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.LineUnavailableException;
+
+import org.junit.Test;
+
+import app.owlcms.sound.PcmSound;
+import app.owlcms.sound.SoundBank;
+import app.owlcms.sound.SoundOutput;
+
+public class SoundBankTest {
+
+    /**
+     * Stands in for a sound card that takes a while to play each sound.
+     */
+    private static class RecordingOutput implements SoundOutput {
+        final List<String> prepared = Collections.synchronizedList(new ArrayList<>());
+        final List<String> played = Collections.synchronizedList(new ArrayList<>());
+        final List<Long> startTimes = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch;
+        final long playMillis;
+        boolean fail;
+
+        RecordingOutput(int expected, long playMillis) {
+            this.latch = new CountDownLatch(expected);
+            this.playMillis = playMillis;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void play(PcmSound sound) throws LineUnavailableException {
+            startTimes.add(System.nanoTime());
+            try {
+                if (fail) {
+                    throw new LineUnavailableException("unplugged");
+                }
+                played.add(sound.getName());
+                Thread.sleep(playMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void prepare(PcmSound sound) {
+            prepared.add(sound.getName());
+        }
+    }
+
+    @Test
+    public void decodedOnce() {
+        RecordingOutput output = new RecordingOutput(0, 0);
+        SoundBank bank = new SoundBank("A", output, e -> {
+        });
+        assertEquals(3, output.prepared.size());
+        PcmSound timeOver = SoundBank.getSounds().get(SoundBank.TIME_OVER);
+        assertTrue(timeOver.getSamples().length > 0);
+        assertTrue(timeOver.getDurationMillis() > 0);
+        assertEquals(1200, SoundBank.getSounds().get(SoundBank.DOWN).getDurationMillis());
+
+        new SoundBank("B", new RecordingOutput(0, 0), e -> {
+        }).close();
+        assertTrue(timeOver == SoundBank.getSounds().get(SoundBank.TIME_OVER));
+        bank.close();
+    }
+
+    @Test
+    public void playDoesNotWait() throws InterruptedException {
+        RecordingOutput output = new RecordingOutput(3, 200);
+        SoundBank bank = new SoundBank("A", output, e -> {
+        });
+        long start = System.nanoTime();
+        bank.play(SoundBank.INITIAL_WARNING);
+        bank.play(SoundBank.DOWN);
+        bank.play(SoundBank.TIME_OVER);
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue("play waited " + elapsed + " ms", elapsed < 100);
+
+        assertTrue(output.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(SoundBank.INITIAL_WARNING, SoundBank.DOWN, SoundBank.TIME_OVER), output.played);
+        long firstLatency = (output.startTimes.get(0) - start) / 1000000;
+        assertTrue("first sound started after " + firstLatency + " ms", firstLatency < 100);
+        bank.close();
+    }
+
+    @Test
+    public void failureReported() throws InterruptedException {
+        RecordingOutput output = new RecordingOutput(1, 0);
+        output.fail = true;
+        List<Exception> errors = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch reported = new CountDownLatch(1);
+        SoundBank bank = new SoundBank("A", output, e -> {
+            errors.add(e);
+            reported.countDown();
+        });
+        bank.play(SoundBank.DOWN);
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        bank.close();
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof LineUnavailableException);
+    }
+}
@@ -0,0 +1,49 @@
+#!/bin/sh
+# Class data sharing: the classes loaded at startup are read from a prebuilt archive instead of the jar,
+# which shortens the time until ${project.artifactId} is ready.
+#
+#   sh cds.sh              create ${project.artifactId}.jsa for the java found on the PATH
+#                          (run again after updating java or ${project.artifactId})
+#   sh cds.sh benchmark    compare the startup time with and without the archive
+#
+# then start with
+#   java -XX:SharedArchiveFile=${project.artifactId}.jsa -Xshare:auto -jar ${project.artifactId}.jar
+#
+# startup.classlist lists the classes loaded by a training run during the build.
+# OpenJ9 does not use this archive; use -Xshareclasses instead.
+
+cd "$(dirname "$0")" || exit 1
+JAR=${project.artifactId}.jar
+ARCHIVE=${project.artifactId}.jsa
+PORT=18080
+
+dump() {
+    # -cp must be the class path used at run time, as given by -jar
+    java -Xshare:dump -XX:SharedClassListFile=startup.classlist -XX:SharedArchiveFile=$ARCHIVE -cp $JAR \
+        > cds.log 2>&1 || { cat cds.log; exit 1; }
+    echo "created $ARCHIVE ($(wc -c < $ARCHIVE) bytes), details in cds.log"
+}
+
+# time until ready, as logged by the application; same flags as the training run (class-list in pom.xml)
+ready() {
+    java "$@" -DexitAfterStartup=true -Dport=$PORT -jar $JAR 2>&1 \
+        | sed -n 's/.* ready \([0-9]*\) ms after JVM start.*/\1/p'
+}
+
+benchmark() {
+    [ -f $ARCHIVE ] || dump
+    # first run warms up the file system cache
+    ready -Xshare:off > /dev/null
+    for i in 1 2 3; do
+        without=$(ready -Xshare:off)
+        default=$(ready)
+        with=$(ready -XX:SharedArchiveFile=$ARCHIVE -Xshare:auto)
+        echo "run $i: ready after ${without:-?} ms without sharing, ${default:-?} ms with the JDK archive," \
+            "${with:-?} ms with $ARCHIVE"
+    done
+}
+
+case "$1" in
+    benchmark) benchmark ;;
+    *) dump ;;
+esac
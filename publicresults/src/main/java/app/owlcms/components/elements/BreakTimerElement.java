@@ -104,14 +104,14 @@ public class BreakTimerElement extends TimerElement {
 
         milliseconds = e.isIndefinite() ? null : e.getTimeRemaining();
         uiEventLogger.debug("&&& breakTimer set {} {} {} {}", parentName, formatDuration(milliseconds),
-                e.isIndefinite(), LoggerUtils.whereFrom());
+                e.isIndefinite(), LoggerUtils.callerLocation());
         doSetTimer(milliseconds);
     }
 
     @Subscribe
     public void slaveBreakStart(BreakTimerEvent.BreakStart e) {
         Integer tr = e.isIndefinite() ? null : e.getTimeRemaining();
-        uiEventLogger.debug("&&& breakTimer start {} {} {}", parentName, tr, LoggerUtils.whereFrom());
+        uiEventLogger.debug("&&& breakTimer start {} {} {}", parentName, tr, LoggerUtils.callerLocation());
         doStartTimer(tr, true); // true means "silent".
     }
 
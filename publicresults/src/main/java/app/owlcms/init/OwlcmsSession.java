@@ -54,7 +54,7 @@ public class OwlcmsSession {
         if (currentVaadinSession != null) {
             OwlcmsSession owlcmsSession = (OwlcmsSession) currentVaadinSession.getAttribute("owlcmsSession");
             if (owlcmsSession == null) {
-                logger.trace("creating new OwlcmsSession {}", LoggerUtils.whereFrom());
+                logger.trace("creating new OwlcmsSession {}", LoggerUtils.callerLocation());
                 owlcmsSession = new OwlcmsSession();
                 currentVaadinSession.setAttribute("owlcmsSession", owlcmsSession);
             }
@@ -41,7 +41,7 @@ public class ServiceListener implements VaadinServiceInitListener {
      */
     @Override
     public void serviceInit(ServiceInitEvent event) {
-        logger.debug("Vaadin Service Startup Configuration. {} {}", event.toString(), LoggerUtils.whereFrom());
+        logger.debug("Vaadin Service Startup Configuration. {} {}", event.toString(), LoggerUtils.callerLocation());
         event.getSource()
                 .addSessionInitListener(sessionInitEvent -> {
                     sessionInit(sessionInitEvent);
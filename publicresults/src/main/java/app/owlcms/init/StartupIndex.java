@@ -0,0 +1,191 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.init;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.EventListener;
+import java.util.List;
+import java.util.Properties;
+
+import javax.servlet.Filter;
+import javax.servlet.Servlet;
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebInitParam;
+import javax.servlet.annotation.WebServlet;
+
+import org.eclipse.jetty.annotations.AnnotationConfiguration;
+import org.eclipse.jetty.annotations.ServletContainerInitializersStarter;
+import org.eclipse.jetty.plus.annotation.ContainerInitializer;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.FilterMapping;
+import org.eclipse.jetty.servlet.ServletHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.servlet.ServletMapping;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.resource.ResourceCollection;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Servlets, filters, listeners and servlet container initializers found at build time by {@link StartupIndexer}.
+ *
+ * When started with <code>-DfastStart=true</code>, {@link EmbeddedJetty} registers them from this index instead of
+ * having Jetty scan every jar on the class path.
+ *
+ * @author Jean-François Lamy
+ */
+public class StartupIndex {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(StartupIndex.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    static final String RESOURCE = "META-INF/owlcms/startup-index.properties";
+    static final String SERVLETS = "servlets";
+    static final String FILTERS = "filters";
+    static final String LISTENERS = "listeners";
+    static final String INITIALIZERS = "initializers";
+    static final String INITIALIZER_PREFIX = "initializer.";
+
+    /**
+     * @return the index built with the application, null if there is none
+     * @throws IOException
+     */
+    public static StartupIndex load() throws IOException {
+        ClassLoader loader = StartupIndex.class.getClassLoader();
+        try (InputStream is = loader.getResourceAsStream(RESOURCE)) {
+            if (is == null) {
+                return null;
+            }
+            Properties properties = new Properties();
+            properties.load(is);
+            return new StartupIndex(properties, loader);
+        }
+    }
+
+    private final Properties properties;
+    private final ClassLoader loader;
+
+    private StartupIndex(Properties properties, ClassLoader loader) {
+        this.properties = properties;
+        this.loader = loader;
+    }
+
+    /**
+     * Register the indexed servlets, filters, listeners and initializers in a context whose configurations do not
+     * scan for annotations.
+     *
+     * @param context
+     * @throws Exception if an indexed class cannot be loaded; the index is out of date.
+     */
+    public void register(WebAppContext context) throws Exception {
+        ServletHandler handler = context.getServletHandler();
+        for (String name : list(SERVLETS)) {
+            registerServlet(handler, loader.loadClass(name));
+        }
+        for (String name : list(FILTERS)) {
+            registerFilter(handler, loader.loadClass(name));
+        }
+        for (String name : list(LISTENERS)) {
+            context.addEventListener((EventListener) loader.loadClass(name).getDeclaredConstructor().newInstance());
+        }
+
+        // same mechanism as the Jetty AnnotationConfiguration, with the classes already known
+        List<ContainerInitializer> initializers = new ArrayList<>();
+        int types = 0;
+        for (String name : list(INITIALIZERS)) {
+            ServletContainerInitializer sci = (ServletContainerInitializer) loader.loadClass(name)
+                    .getDeclaredConstructor().newInstance();
+            ContainerInitializer initializer = new ContainerInitializer(sci, null);
+            for (String type : list(INITIALIZER_PREFIX + name)) {
+                initializer.addApplicableTypeName(type);
+                types++;
+            }
+            initializers.add(initializer);
+        }
+        context.setAttribute(AnnotationConfiguration.CONTAINER_INITIALIZERS, initializers);
+        context.addBean(new ServletContainerInitializersStarter(context), true);
+        logger.debug("{} initializers, {} classes from startup index", initializers.size(), types);
+    }
+
+    /**
+     * The <code>META-INF/resources</code> folders of the application and its jars, which Jetty otherwise finds while
+     * scanning.
+     *
+     * @return the resources served by the web server
+     * @throws IOException
+     */
+    public Resource resourceBase() throws IOException {
+        List<Resource> resources = new ArrayList<>();
+        Enumeration<URL> urls = loader.getResources("META-INF/resources/");
+        while (urls.hasMoreElements()) {
+            resources.add(Resource.newResource(urls.nextElement()));
+        }
+        return resources.size() == 1 ? resources.get(0)
+                : new ResourceCollection(resources.toArray(new Resource[resources.size()]));
+    }
+
+    private List<String> list(String key) {
+        String value = properties.getProperty(key, "").trim();
+        return value.isEmpty() ? Collections.emptyList() : Arrays.asList(value.split(","));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void registerFilter(ServletHandler handler, Class<?> filterClass) {
+        WebFilter annotation = filterClass.getAnnotation(WebFilter.class);
+        String name = annotation.filterName().isEmpty() ? filterClass.getName() : annotation.filterName();
+        FilterHolder holder = new FilterHolder((Class<? extends Filter>) filterClass);
+        holder.setName(name);
+        holder.setAsyncSupported(annotation.asyncSupported());
+        for (WebInitParam param : annotation.initParams()) {
+            holder.setInitParameter(param.name(), param.value());
+        }
+        FilterMapping mapping = new FilterMapping();
+        mapping.setFilterName(name);
+        String[] patterns = annotation.urlPatterns().length > 0 ? annotation.urlPatterns() : annotation.value();
+        if (patterns.length > 0) {
+            mapping.setPathSpecs(patterns);
+        }
+        if (annotation.servletNames().length > 0) {
+            mapping.setServletNames(annotation.servletNames());
+        }
+        mapping.setDispatcherTypes(EnumSet.copyOf(Arrays.asList(annotation.dispatcherTypes())));
+        handler.addFilter(holder);
+        handler.addFilterMapping(mapping);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void registerServlet(ServletHandler handler, Class<?> servletClass) {
+        WebServlet annotation = servletClass.getAnnotation(WebServlet.class);
+        String name = annotation.name().isEmpty() ? servletClass.getName() : annotation.name();
+        ServletHolder holder = new ServletHolder(name, (Class<? extends Servlet>) servletClass);
+        holder.setAsyncSupported(annotation.asyncSupported());
+        if (annotation.loadOnStartup() >= 0) {
+            holder.setInitOrder(annotation.loadOnStartup());
+        }
+        for (WebInitParam param : annotation.initParams()) {
+            holder.setInitParameter(param.name(), param.value());
+        }
+        ServletMapping mapping = new ServletMapping();
+        mapping.setServletName(name);
+        mapping.setPathSpecs(annotation.urlPatterns().length > 0 ? annotation.urlPatterns() : annotation.value());
+        handler.addServlet(holder);
+        handler.addServletMapping(mapping);
+    }
+}
@@ -0,0 +1,297 @@
+/***
+ * Copyright (c) 2009-2020 Jean-François Lamy
+ *
+ * Licensed under the Non-Profit Open Software License version 3.0  ("Non-Profit OSL" 3.0)
+ * License text at https://github.com/jflamy/owlcms4/blob/master/LICENSE.txt
+ */
+package app.owlcms.init;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.annotation.HandlesTypes;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.annotation.WebListener;
+import javax.servlet.annotation.WebServlet;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+
+/**
+ * Build the {@link StartupIndex} at build time.
+ *
+ * Run by the exec-maven-plugin after compilation, with the runtime class path. Every class on the class path is read
+ * with ASM (not loaded), the way Jetty does when it scans for annotations, and the index records
+ * <ul>
+ * <li>the classes annotated with <code>@WebServlet</code>, <code>@WebFilter</code> and <code>@WebListener</code></li>
+ * <li>the servlet container initializers declared in <code>META-INF/services</code>, and for each one the classes
+ * matching its <code>@HandlesTypes</code>: annotated classes for annotation types, subclasses and implementations for
+ * the others. This is how Vaadin finds the routes.</li>
+ * </ul>
+ * Unlike Jetty, annotations on methods and fields are not considered; the Vaadin initializers only use class
+ * annotations.
+ *
+ * @author Jean-François Lamy
+ */
+public class StartupIndexer {
+
+    final private static Logger logger = (Logger) LoggerFactory.getLogger(StartupIndexer.class);
+    static {
+        logger.setLevel(Level.INFO);
+    }
+
+    private static final String SERVICES = "META-INF/services/" + ServletContainerInitializer.class.getName();
+
+    /**
+     * @param args the build output directory, where the index is written
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        long start = System.nanoTime();
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        StartupIndexer indexer = new StartupIndexer();
+        for (Path p : classPath(loader)) {
+            indexer.scan(p);
+        }
+        Properties index = indexer.index(loader);
+
+        Path output = Paths.get(args[0]).resolve(StartupIndex.RESOURCE);
+        Files.createDirectories(output.getParent());
+        try (OutputStream out = Files.newOutputStream(output)) {
+            index.store(out, "generated by " + StartupIndexer.class.getSimpleName() + ", do not edit");
+        }
+        logger.info("startup index: {} classes read in {} ms, written to {}", indexer.classes.size(),
+                (System.nanoTime() - start) / 1000000, output);
+    }
+
+    /**
+     * @return the directories and jars of the class path, in order
+     */
+    private static List<Path> classPath(ClassLoader loader) {
+        Set<Path> paths = new LinkedHashSet<>();
+        List<ClassLoader> loaders = new ArrayList<>();
+        for (ClassLoader cl = loader; cl != null; cl = cl.getParent()) {
+            loaders.add(0, cl);
+        }
+        for (ClassLoader cl : loaders) {
+            if (cl instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) cl).getURLs()) {
+                    try {
+                        paths.add(Paths.get(url.toURI()));
+                    } catch (Exception e) {
+                        logger./**/warn("ignoring class path entry {}", url);
+                    }
+                }
+            }
+        }
+        if (paths.isEmpty()) {
+            for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                paths.add(Paths.get(entry));
+            }
+        }
+        return new ArrayList<>(paths);
+    }
+
+    private static class ClassInfo {
+        String superName;
+        String[] interfaces;
+        Set<String> annotations = new HashSet<>();
+    }
+
+    /** the classes read, by name; the first one on the class path wins */
+    private final Map<String, ClassInfo> classes = new HashMap<>();
+    private final Map<String, Set<String>> supertypes = new HashMap<>();
+
+    private Properties index(ClassLoader loader) throws IOException {
+        Properties index = new Properties();
+        index.setProperty(StartupIndex.SERVLETS, String.join(",", annotatedWith(WebServlet.class.getName())));
+        index.setProperty(StartupIndex.FILTERS, String.join(",", annotatedWith(WebFilter.class.getName())));
+        index.setProperty(StartupIndex.LISTENERS, String.join(",", annotatedWith(WebListener.class.getName())));
+
+        List<String> initializers = new ArrayList<>();
+        for (String initializer : initializerNames(loader)) {
+            Class<?>[] handledTypes;
+            try {
+                HandlesTypes handlesTypes = Class.forName(initializer, false, loader)
+                        .getAnnotation(HandlesTypes.class);
+                handledTypes = handlesTypes != null ? handlesTypes.value() : new Class<?>[0];
+            } catch (ClassNotFoundException | LinkageError | TypeNotPresentException e) {
+                // Jetty would fail to load it too
+                logger./**/warn("skipping initializer {}: {}", initializer, e.toString());
+                continue;
+            }
+            Set<String> applicable = new TreeSet<>();
+            for (Class<?> type : handledTypes) {
+                if (type.isAnnotation()) {
+                    applicable.addAll(annotatedWith(type.getName()));
+                } else {
+                    applicable.addAll(subtypesOf(type.getName()));
+                }
+            }
+            initializers.add(initializer);
+            index.setProperty(StartupIndex.INITIALIZER_PREFIX + initializer, String.join(",", applicable));
+            logger.debug("{}: {} classes", initializer, applicable.size());
+        }
+        index.setProperty(StartupIndex.INITIALIZERS, String.join(",", initializers));
+        return index;
+    }
+
+    private Set<String> annotatedWith(String annotation) {
+        Set<String> found = new TreeSet<>();
+        classes.forEach((name, info) -> {
+            if (info.annotations.contains(annotation)) {
+                found.add(name);
+            }
+        });
+        return found;
+    }
+
+    /**
+     * @return the initializers declared in the service files, in class path order
+     */
+    private Set<String> initializerNames(ClassLoader loader) throws IOException {
+        Set<String> names = new LinkedHashSet<>();
+        Enumeration<URL> services = loader.getResources(SERVICES);
+        while (services.hasMoreElements()) {
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(services.nextElement().openStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String name = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (!name.isEmpty()) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        return names;
+    }
+
+    private void read(InputStream is) throws IOException {
+        ClassInfo info = new ClassInfo();
+        String[] className = new String[1];
+        new ClassReader(is).accept(new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName,
+                    String[] interfaces) {
+                className[0] = name.replace('/', '.');
+                info.superName = superName != null ? superName.replace('/', '.') : null;
+                info.interfaces = new String[interfaces.length];
+                for (int i = 0; i < interfaces.length; i++) {
+                    info.interfaces[i] = interfaces[i].replace('/', '.');
+                }
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                info.annotations.add(Type.getType(descriptor).getClassName());
+                return null;
+            }
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        classes.putIfAbsent(className[0], info);
+    }
+
+    private void scan(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.walk(path)) {
+                for (Path p : (Iterable<Path>) files::iterator) {
+                    if (isIndexed(path.relativize(p).toString())) {
+                        try (InputStream is = Files.newInputStream(p)) {
+                            read(is);
+                        }
+                    }
+                }
+            }
+        } else if (Files.isRegularFile(path) && path.toString().endsWith(".jar")) {
+            try (JarFile jar = new JarFile(path.toFile())) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (isIndexed(entry.getName())) {
+                        try (InputStream is = jar.getInputStream(entry)) {
+                            read(is);
+                        } catch (RuntimeException e) {
+                            // class file format not understood by this ASM version
+                            logger.debug("skipping {} in {}", entry.getName(), path);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isIndexed(String fileName) {
+        return fileName.endsWith(".class") && !fileName.endsWith("module-info.class")
+                && !fileName.startsWith("META-INF");
+    }
+
+    private Set<String> subtypesOf(String type) {
+        Set<String> found = new TreeSet<>();
+        for (String name : classes.keySet()) {
+            if (!name.equals(type) && supertypes(name).contains(type)) {
+                found.add(name);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @return the superclasses and interfaces of a class, including those that were not read
+     */
+    private Set<String> supertypes(String name) {
+        Set<String> known = supertypes.get(name);
+        if (known != null) {
+            return known;
+        }
+        Set<String> result = new HashSet<>();
+        // guard against cycles in inconsistent class paths
+        supertypes.put(name, result);
+        ClassInfo info = classes.get(name);
+        if (info != null) {
+            List<String> direct = new ArrayList<>();
+            if (info.superName != null) {
+                direct.add(info.superName);
+            }
+            for (String i : info.interfaces) {
+                direct.add(i);
+            }
+            for (String s : direct) {
+                result.add(s);
+                result.addAll(supertypes(s));
+            }
+        }
+        return result;
+    }
+}
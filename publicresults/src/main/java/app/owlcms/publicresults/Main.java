@@ -45,6 +45,10 @@ public class Main {
             e.printStackTrace();
         } finally {
         }
+        if (StartupUtils.getBooleanParam("exitAfterStartup")) {
+            // timers may still have threads running
+            System.exit(0);
+        }
     }
 
     /**
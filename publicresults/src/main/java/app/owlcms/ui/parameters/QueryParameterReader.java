@@ -74,7 +74,7 @@ public interface QueryParameterReader extends HasUrlParameter<String> {
             params.remove("group");
         }
 
-        logger.debug("URL parsing: {} OwlcmsSession: fop={} group={}", LoggerUtils.whereFrom(),
+        logger.debug("URL parsing: {} OwlcmsSession: fop={} group={}", LoggerUtils.callerLocation(),
                 (fopName != null ? fopName : null), (groupName != null ? groupName : null));
         return params;
     }
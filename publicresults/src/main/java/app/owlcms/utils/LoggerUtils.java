@@ -8,12 +8,44 @@ package app.owlcms.utils;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.lang.StackWalker.StackFrame;
+import java.util.function.Supplier;
 
 /**
  * The Class LoggerUtils.
  */
 public class LoggerUtils {
 
+    /**
+     * The caller of the method that logs, looked up when the message is actually logged. Has no state, one instance is
+     * shared.
+     */
+    private static class CallerLocation implements Supplier<String> {
+        @Override
+        public String get() {
+            return walker.walk(frames -> frames.dropWhile(LoggerUtils::isLoggingFrame).skip(1).findFirst())
+                    .map(StackFrame::toString).orElse("?");
+        }
+
+        @Override
+        public String toString() {
+            return get();
+        }
+    }
+
+    private static final StackWalker walker = StackWalker.getInstance();
+    private static final CallerLocation callerLocation = new CallerLocation();
+
+    /**
+     * Caller of the current method, for use as a log message argument: the stack is only looked at if the message is
+     * logged, and nothing is allocated otherwise.
+     *
+     * @return an object whose <code>toString()</code> is what {@link #whereFrom()} would have returned
+     */
+    public static Supplier<String> callerLocation() {
+        return callerLocation;
+    }
+
     /**
      * Where from.
      *
@@ -42,6 +74,16 @@ public class LoggerUtils {
      * @return the string
      */
     public static String whereFrom() {
-        return Thread.currentThread().getStackTrace()[3].toString();
+        return walker.walk(frames -> frames.skip(2).findFirst()).map(StackFrame::toString).orElse("?");
+    }
+
+    /**
+     * @return true for the frames of the logging library, of this class, and of the JDK methods that build the message
+     */
+    private static boolean isLoggingFrame(StackFrame f) {
+        String className = f.getClassName();
+        return className.startsWith("ch.qos.logback.") || className.startsWith("org.slf4j.")
+                || className.startsWith("java.") || className.startsWith("jdk.") || className.startsWith("sun.")
+                || className.startsWith(LoggerUtils.class.getName());
     }
 }